@@ -23,6 +23,13 @@ repositories {
 // Access parent's version catalog
 val libVersions: Map<String, String> by rootProject.extra
 
+// The SIMD column kernels use the incubating Vector API. They are compiled on their own, so only
+// they are built with the module, and packed with the main classes; ColumnKernels loads them by
+// name when the module is present at runtime.
+val vector by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
 dependencies {
     // ===== IMPLEMENTATION DEPENDENCIES =====
     // JSON Processing
@@ -58,6 +65,9 @@ dependencies {
 
     // JUnit Platform Launcher required for Gradle 9.x
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    // SIMD column kernels, picked up when the tests run with the Vector API
+    testRuntimeOnly(vector.output)
     
     // ===== TEST COMPILE-ONLY DEPENDENCIES =====
     // Lombok for tests
@@ -79,6 +89,18 @@ tasks.withType<JavaCompile> {
     ))
 }
 
+tasks.named<JavaCompile>(vector.compileJavaTaskName) {
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+}
+
+tasks.jar {
+    from(vector.output)
+}
+
+tasks.named<Jar>("sourcesJar") {
+    from(vector.allSource)
+}
+
 tasks.javadoc {
     (options as StandardJavadocDocletOptions).apply {
         addStringOption("Xdoclint:all", "-quiet")
@@ -90,6 +112,8 @@ tasks.javadoc {
 
 tasks.test {
     useJUnitPlatform()
+    // Run the SIMD column kernels; without the module the scalar kernels are used
+    jvmArgs("--add-modules", "jdk.incubator.vector")
 }
 
 publishing {
@@ -0,0 +1,361 @@
+package app.crushlog.cldf.api;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.Location;
+import app.crushlog.cldf.models.Route;
+import app.crushlog.cldf.models.Sector;
+import app.crushlog.cldf.models.Session;
+import app.crushlog.cldf.utils.GradeScale;
+import lombok.NonNull;
+
+/**
+ * Lookup structures over a loaded {@link CLDFArchive}: entities by id, children grouped by the id
+ * of their parent, and climbs and sessions ordered by date or grade. Each structure is built from
+ * the archive on first use, so an index over a {@link LazyCLDFArchive} only loads the collections
+ * it is asked about. Changes made to the archive after a structure was built are not reflected.
+ *
+ * <p>Where several entities share an id, lookups return the first one, as a linear search would.
+ * Returned lists are unmodifiable and keep archive order unless stated otherwise. Instances are
+ * thread-safe.
+ */
+public final class ArchiveIndex {
+
+  private final CLDFArchive archive;
+
+  private final Memo<Map<Integer, Location>> locationsById;
+  private final Memo<Map<Integer, Sector>> sectorsById;
+  private final Memo<Map<Integer, Route>> routesById;
+  private final Memo<Map<Integer, Session>> sessionsById;
+  private final Memo<Map<Integer, Climb>> climbsById;
+
+  private final Memo<Map<Integer, List<Sector>>> sectorsByLocation;
+  private final Memo<Map<Integer, List<Route>>> routesByLocation;
+  private final Memo<Map<Integer, List<Route>>> routesBySector;
+  private final Memo<Map<Integer, List<Session>>> sessionsByLocation;
+  private final Memo<Map<Integer, List<Climb>>> climbsBySession;
+  private final Memo<Map<Integer, List<Climb>>> climbsByRoute;
+
+  private final Memo<DateOrder<Climb>> climbsByDate;
+  private final Memo<DateOrder<Session>> sessionsByDate;
+  private final Memo<List<Climb>> climbsByGrade;
+
+  private ArchiveIndex(CLDFArchive archive) {
+    this.archive = archive;
+    locationsById = new Memo<>(() -> byId(archive.getLocations(), Location::getId));
+    sectorsById = new Memo<>(() -> byId(archive.getSectors(), Sector::getId));
+    routesById = new Memo<>(() -> byId(archive.getRoutes(), Route::getId));
+    sessionsById = new Memo<>(() -> byId(archive.getSessions(), Session::getId));
+    climbsById = new Memo<>(() -> byId(archive.getClimbs(), Climb::getId));
+
+    sectorsByLocation = new Memo<>(() -> groupBy(archive.getSectors(), Sector::getLocationId));
+    routesByLocation = new Memo<>(() -> groupBy(archive.getRoutes(), Route::getLocationId));
+    routesBySector = new Memo<>(() -> groupBy(archive.getRoutes(), Route::getSectorId));
+    sessionsByLocation = new Memo<>(() -> groupBy(archive.getSessions(), Session::getLocationId));
+    climbsBySession = new Memo<>(() -> groupBy(archive.getClimbs(), Climb::getSessionId));
+    climbsByRoute = new Memo<>(() -> groupBy(archive.getClimbs(), Climb::getRouteId));
+
+    climbsByDate = new Memo<>(() -> new DateOrder<>(archive.getClimbs(), Climb::getDate));
+    sessionsByDate = new Memo<>(() -> new DateOrder<>(archive.getSessions(), Session::getDate));
+    climbsByGrade = new Memo<>(() -> sortByGrade(archive.getClimbs()));
+  }
+
+  /**
+   * Creates an index over an archive. Nothing is built until a lookup needs it.
+   *
+   * @param archive the archive
+   * @return the index
+   */
+  public static ArchiveIndex of(@NonNull CLDFArchive archive) {
+    return new ArchiveIndex(archive);
+  }
+
+  /** Returns the indexed archive */
+  public CLDFArchive getArchive() {
+    return archive;
+  }
+
+  /** Returns the location with an id */
+  public Optional<Location> findLocation(Integer id) {
+    return find(locationsById, id);
+  }
+
+  /** Returns the sector with an id */
+  public Optional<Sector> findSector(Integer id) {
+    return find(sectorsById, id);
+  }
+
+  /** Returns the route with an id */
+  public Optional<Route> findRoute(Integer id) {
+    return find(routesById, id);
+  }
+
+  /** Returns the session with an id */
+  public Optional<Session> findSession(Integer id) {
+    return find(sessionsById, id);
+  }
+
+  /** Returns the climb with an id */
+  public Optional<Climb> findClimb(Integer id) {
+    return find(climbsById, id);
+  }
+
+  /** Returns the sectors of a location */
+  public List<Sector> getSectorsForLocation(Integer locationId) {
+    return children(sectorsByLocation, locationId);
+  }
+
+  /** Returns the routes of a location */
+  public List<Route> getRoutesForLocation(Integer locationId) {
+    return children(routesByLocation, locationId);
+  }
+
+  /** Returns the routes of a sector */
+  public List<Route> getRoutesForSector(Integer sectorId) {
+    return children(routesBySector, sectorId);
+  }
+
+  /** Returns the sessions at a location */
+  public List<Session> getSessionsForLocation(Integer locationId) {
+    return children(sessionsByLocation, locationId);
+  }
+
+  /** Returns the climbs of a session */
+  public List<Climb> getClimbsForSession(Integer sessionId) {
+    return children(climbsBySession, sessionId);
+  }
+
+  /** Returns the climbs of a route */
+  public List<Climb> getClimbsForRoute(Integer routeId) {
+    return children(climbsByRoute, routeId);
+  }
+
+  /** Returns the climbs with a date, oldest first; climbs on the same day keep archive order */
+  public List<Climb> getClimbsByDate() {
+    return climbsByDate.get().sorted();
+  }
+
+  /**
+   * Returns the climbs dated within a range, in archive order.
+   *
+   * @param from the first date, inclusive, or null for no lower bound
+   * @param to the last date, inclusive, or null for no upper bound
+   * @return the climbs
+   */
+  public List<Climb> getClimbsBetween(LocalDate from, LocalDate to) {
+    return climbsByDate.get().between(from, to);
+  }
+
+  /** Returns the sessions with a date, oldest first; sessions on the same day keep archive order */
+  public List<Session> getSessionsByDate() {
+    return sessionsByDate.get().sorted();
+  }
+
+  /**
+   * Returns the sessions dated within a range, in archive order.
+   *
+   * @param from the first date, inclusive, or null for no lower bound
+   * @param to the last date, inclusive, or null for no upper bound
+   * @return the sessions
+   */
+  public List<Session> getSessionsBetween(LocalDate from, LocalDate to) {
+    return sessionsByDate.get().between(from, to);
+  }
+
+  /**
+   * Returns the climbs with a grade, easiest first on the {@link GradeScale} across grade systems,
+   * then climbs whose grade is not on the scale ordered by its text. Climbs with equal grades keep
+   * archive order.
+   */
+  public List<Climb> getClimbsByGrade() {
+    return climbsByGrade.get();
+  }
+
+  private static <T> Optional<T> find(Memo<Map<Integer, T>> index, Integer id) {
+    return id == null ? Optional.empty() : Optional.ofNullable(index.get().get(id));
+  }
+
+  private static <T> List<T> children(Memo<Map<Integer, List<T>>> index, Integer parentId) {
+    return parentId == null
+        ? Collections.emptyList()
+        : index.get().getOrDefault(parentId, Collections.emptyList());
+  }
+
+  private static <T> Map<Integer, T> byId(List<T> items, Function<T, Integer> id) {
+    if (items == null) {
+      return Collections.emptyMap();
+    }
+    Map<Integer, T> index = HashMap.newHashMap(items.size());
+    for (T item : items) {
+      Integer key = id.apply(item);
+      if (key != null) {
+        index.putIfAbsent(key, item);
+      }
+    }
+    return index;
+  }
+
+  private static <T> Map<Integer, List<T>> groupBy(List<T> items, Function<T, Integer> parentId) {
+    if (items == null) {
+      return Collections.emptyMap();
+    }
+    Map<Integer, List<T>> groups = new HashMap<>();
+    for (T item : items) {
+      Integer key = parentId.apply(item);
+      if (key != null) {
+        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(item);
+      }
+    }
+    groups.replaceAll((key, group) -> Collections.unmodifiableList(group));
+    return groups;
+  }
+
+  private static List<Climb> sortByGrade(List<Climb> climbs) {
+    if (climbs == null) {
+      return Collections.emptyList();
+    }
+    List<GradeKey> keys = new ArrayList<>();
+    for (Climb climb : climbs) {
+      if (climb.getGrades() != null && climb.getGrades().getGrade() != null) {
+        keys.add(GradeKey.of(climb));
+      }
+    }
+    keys.sort(null);
+    List<Climb> sorted = new ArrayList<>(keys.size());
+    for (GradeKey key : keys) {
+      sorted.add(key.climb());
+    }
+    return Collections.unmodifiableList(sorted);
+  }
+
+  /**
+   * Sort key of a climb's grade: grades on the {@link GradeScale} first, by ordinal, then any
+   * other grade ordered as text.
+   */
+  private record GradeKey(Climb climb, int ordinal, String grade) implements Comparable<GradeKey> {
+
+    static GradeKey of(Climb climb) {
+      Climb.GradeInfo grades = climb.getGrades();
+      return new GradeKey(climb, GradeScale.ordinal(grades), grades.getGrade());
+    }
+
+    @Override
+    public int compareTo(GradeKey other) {
+      boolean known = ordinal != GradeScale.UNKNOWN;
+      if (known != (other.ordinal != GradeScale.UNKNOWN)) {
+        return known ? -1 : 1;
+      }
+      return known ? Integer.compare(ordinal, other.ordinal) : grade.compareTo(other.grade);
+    }
+  }
+
+  /**
+   * The positions of the dated items of a collection, sorted by date. Each entry packs the epoch
+   * day in the high 32 bits and the archive position in the low 32 bits, so sorting the packed
+   * values orders by date and then by position.
+   */
+  private static final class DateOrder<T> {
+
+    private final List<T> items;
+    private final long[] keys;
+
+    DateOrder(List<T> items, Function<T, LocalDate> date) {
+      this.items = items != null ? items : Collections.emptyList();
+      long[] packed = new long[this.items.size()];
+      int count = 0;
+      for (int i = 0; i < this.items.size(); i++) {
+        LocalDate day = date.apply(this.items.get(i));
+        if (day != null) {
+          packed[count++] = key(day.toEpochDay(), i);
+        }
+      }
+      keys = Arrays.copyOf(packed, count);
+      Arrays.sort(keys);
+    }
+
+    List<T> sorted() {
+      List<T> sorted = new ArrayList<>(keys.length);
+      for (long key : keys) {
+        sorted.add(items.get(position(key)));
+      }
+      return Collections.unmodifiableList(sorted);
+    }
+
+    List<T> between(LocalDate from, LocalDate to) {
+      int start = from == null ? 0 : lowerBound(key(from.toEpochDay(), 0));
+      int end = to == null ? keys.length : lowerBound(key(to.toEpochDay() + 1, 0));
+      if (start >= end) {
+        return Collections.emptyList();
+      }
+      int[] positions = new int[end - start];
+      for (int i = start; i < end; i++) {
+        positions[i - start] = position(keys[i]);
+      }
+      Arrays.sort(positions);
+      List<T> range = new ArrayList<>(positions.length);
+      for (int position : positions) {
+        range.add(items.get(position));
+      }
+      return Collections.unmodifiableList(range);
+    }
+
+    /** Returns the index of the first key not below a value */
+    private int lowerBound(long value) {
+      int low = 0;
+      int high = keys.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (keys[mid] < value) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private static long key(long epochDay, int position) {
+      return epochDay << 32 | position;
+    }
+
+    private static int position(long key) {
+      return (int) key;
+    }
+  }
+
+  /** A value computed on first use */
+  private static final class Memo<T> {
+
+    private Supplier<T> supplier;
+    private volatile T value;
+
+    Memo(Supplier<T> supplier) {
+      this.supplier = supplier;
+    }
+
+    T get() {
+      T result = value;
+      if (result == null) {
+        synchronized (this) {
+          result = value;
+          if (result == null) {
+            result = supplier.get();
+            value = result;
+            supplier = null;
+          }
+        }
+      }
+      return result;
+    }
+  }
+}
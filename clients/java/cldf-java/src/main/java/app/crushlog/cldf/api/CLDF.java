@@ -27,6 +27,19 @@ public class CLDF {
     return reader.read(file);
   }
 
+  /**
+   * Open a CLDF archive for lazy reading. Collections are only parsed when first accessed; the
+   * returned archive must be closed.
+   *
+   * @param file The CLDF file to open
+   * @return The lazily loaded CLDF archive
+   * @throws IOException if an I/O error occurs
+   */
+  public static LazyCLDFArchive open(File file) throws IOException {
+    CLDFReader reader = new CLDFReader();
+    return reader.open(file);
+  }
+
   /**
    * Read a CLDF archive from an input stream.
    *
@@ -63,6 +76,14 @@ public class CLDF {
     writer.write(archive, outputStream);
   }
 
+  /**
+   * Compile the bundled JSON schemas ahead of time. Readers and writers share one compiled schema
+   * set per JVM; calling this at startup keeps schema setup out of the first request.
+   */
+  public static void warmUp() {
+    SchemaValidator.warmUp();
+  }
+
   /**
    * Create a new CLDFReader with custom settings.
    *
@@ -7,7 +7,9 @@ import app.crushlog.cldf.models.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 /**
  * Represents a complete CLDF (CrushLog Data Format) archive containing climbing data. This is the
@@ -30,13 +32,19 @@ public class CLDFArchive {
   private List<MediaMetadataItem> mediaItems;
   private Map<String, byte[]> mediaFiles;
 
+  /**
+   * SHA-256 digests of the archive entries, computed while the entries were inflated by {@link
+   * CLDFReader}. Null for archives built in memory or read without checksum validation.
+   */
+  @EqualsAndHashCode.Exclude @ToString.Exclude private Map<String, String> computedChecksums;
+
   /**
    * Checks if this archive contains route data.
    *
    * @return true if routes are present and not empty
    */
   public boolean hasRoutes() {
-    return routes != null && !routes.isEmpty();
+    return getRoutes() != null && !getRoutes().isEmpty();
   }
 
   /**
@@ -45,7 +53,7 @@ public class CLDFArchive {
    * @return true if sectors are present and not empty
    */
   public boolean hasSectors() {
-    return sectors != null && !sectors.isEmpty();
+    return getSectors() != null && !getSectors().isEmpty();
   }
 
   /**
@@ -54,7 +62,7 @@ public class CLDFArchive {
    * @return true if tags are present and not empty
    */
   public boolean hasTags() {
-    return tags != null && !tags.isEmpty();
+    return getTags() != null && !getTags().isEmpty();
   }
 
   /**
@@ -63,7 +71,7 @@ public class CLDFArchive {
    * @return true if media items are present and not empty
    */
   public boolean hasMedia() {
-    return mediaItems != null && !mediaItems.isEmpty();
+    return getMediaItems() != null && !getMediaItems().isEmpty();
   }
 
   /**
@@ -72,6 +80,6 @@ public class CLDFArchive {
    * @return true if media files are present and not empty
    */
   public boolean hasEmbeddedMedia() {
-    return mediaFiles != null && !mediaFiles.isEmpty();
+    return getMediaFiles() != null && !getMediaFiles().isEmpty();
   }
 }
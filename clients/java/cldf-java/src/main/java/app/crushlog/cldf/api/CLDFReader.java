@@ -1,17 +1,36 @@
 package app.crushlog.cldf.api;
 
 import java.io.*;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import app.crushlog.cldf.models.*;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 
 /**
  * Reads CLDF (CrushLog Data Format) archives from ZIP files. Supports validation of checksums and
@@ -20,21 +39,22 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 @Slf4j
 public class CLDFReader {
 
-  private static final String MANIFEST_FILE = "manifest.json";
-  private static final String LOCATIONS_FILE = "locations.json";
-  private static final String CLIMBS_FILE = "climbs.json";
-  private static final String SESSIONS_FILE = "sessions.json";
-  private static final String CHECKSUMS_FILE = "checksums.json";
-  private static final String ROUTES_FILE = "routes.json";
-  private static final String SECTORS_FILE = "sectors.json";
-  private static final String TAGS_FILE = "tags.json";
-  private static final String MEDIA_METADATA_FILE = "media-metadata.json";
+  static final String MANIFEST_FILE = "manifest.json";
+  static final String LOCATIONS_FILE = "locations.json";
+  static final String CLIMBS_FILE = "climbs.json";
+  static final String SESSIONS_FILE = "sessions.json";
+  static final String CHECKSUMS_FILE = "checksums.json";
+  static final String ROUTES_FILE = "routes.json";
+  static final String SECTORS_FILE = "sectors.json";
+  static final String TAGS_FILE = "tags.json";
+  static final String MEDIA_METADATA_FILE = "media-metadata.json";
   private static final String ALGORITHM = "SHA-256";
 
   private final ObjectMapper objectMapper;
   private final boolean validateChecksums;
   private final boolean validateSchemas;
   private final SchemaValidator schemaValidator;
+  private boolean parallelParsing = false;
 
   /** Creates a CLDFReader with default settings (checksum and schema validation enabled). */
   public CLDFReader() {
@@ -50,13 +70,24 @@ public class CLDFReader {
   public CLDFReader(boolean validateChecksums, boolean validateSchemas) {
     this.validateChecksums = validateChecksums;
     this.validateSchemas = validateSchemas;
-    this.schemaValidator = validateSchemas ? new SchemaValidator() : null;
+    this.schemaValidator = validateSchemas ? SchemaValidator.shared() : null;
     this.objectMapper = new ObjectMapper();
     this.objectMapper.registerModule(new JavaTimeModule());
   }
 
   /**
-   * Reads a CLDF archive from a file.
+   * Sets whether the JSON files of an archive are validated and parsed concurrently, one task per
+   * file on virtual threads. The resulting archive is identical to the sequential path. Default is
+   * false.
+   */
+  public CLDFReader withParallelParsing(boolean parallel) {
+    this.parallelParsing = parallel;
+    return this;
+  }
+
+  /**
+   * Reads a CLDF archive from a file. The entries are located through the ZIP central directory,
+   * so entries added by {@link CLDFWriter#append} are read as well.
    *
    * @param file the CLDF archive file
    * @return the parsed CLDFArchive
@@ -67,45 +98,457 @@ public class CLDFReader {
       throw new FileNotFoundException("CLDF file not found: " + file.getAbsolutePath());
     }
 
-    try (FileInputStream fis = new FileInputStream(file)) {
-      return read(fis);
+    Map<String, String> entryChecksums = validateChecksums ? new HashMap<>() : null;
+    Map<String, byte[]> fileContents;
+    try (ZipFile zipFile = ZipFile.builder().setFile(file).get()) {
+      fileContents = extractZipContents(zipFile, entryChecksums);
     }
+    return read(fileContents, entryChecksums);
   }
 
   /**
-   * Reads a CLDF archive from an input stream.
+   * Reads a CLDF archive from an input stream. The stream is read sequentially and ends at the
+   * first ZIP central directory, so entries added by {@link CLDFWriter#append} are only seen once
+   * the archive has been compacted; read such archives with {@link #read(File)}.
    *
    * @param inputStream the input stream containing the CLDF archive
    * @return the parsed CLDFArchive
    * @throws IOException if an I/O error occurs
    */
   public CLDFArchive read(InputStream inputStream) throws IOException {
-    Map<String, byte[]> fileContents = extractZipContents(inputStream);
+    Map<String, String> entryChecksums = validateChecksums ? new HashMap<>() : null;
+    return read(extractZipContents(inputStream, entryChecksums), entryChecksums);
+  }
+
+  private CLDFArchive read(Map<String, byte[]> fileContents, Map<String, String> entryChecksums)
+      throws IOException {
     validateRequiredFiles(fileContents);
 
-    if (validateSchemas) {
-      validateAllSchemas(fileContents);
+    if (parallelParsing) {
+      return buildArchiveInParallel(fileContents, entryChecksums);
+    }
+
+    return buildArchive(fileContents, entryChecksums);
+  }
+
+  /**
+   * Opens a CLDF archive for lazy, random-access reading. Only the manifest and checksums are read
+   * up front; the archive is located through the ZIP central directory and every other file is
+   * inflated, validated and parsed the first time it is accessed. The returned archive keeps the
+   * file open and must be closed.
+   *
+   * @param file the CLDF archive file
+   * @return a lazily loaded archive
+   * @throws IOException if the file cannot be opened or the manifest or checksums are invalid
+   */
+  public LazyCLDFArchive open(File file) throws IOException {
+    if (!file.exists()) {
+      throw new FileNotFoundException("CLDF file not found: " + file.getAbsolutePath());
+    }
+
+    ZipFile zipFile = ZipFile.builder().setFile(file).get();
+    try {
+      byte[] checksumsContent = readRequiredEntry(zipFile, CHECKSUMS_FILE);
+      byte[] manifestContent = readRequiredEntry(zipFile, MANIFEST_FILE);
+
+      Checksums checksums = parseValidated(CHECKSUMS_FILE, checksumsContent, Checksums.class);
+      if (validateChecksums) {
+        validateAlgorithm(checksums);
+      }
+      mergeDeltaChecksums(
+          checksums, entryNames(zipFile), name -> readRequiredEntry(zipFile, name));
+
+      Manifest manifest = parseEntry(checksums, MANIFEST_FILE, manifestContent, Manifest.class);
+      validateFormat(manifest);
+
+      return new LazyCLDFArchive(file, zipFile, this, manifest, checksums);
+    } catch (IOException | RuntimeException e) {
+      zipFile.close();
+      throw e;
     }
+  }
+
+  /**
+   * Streams the climbs of an archive one at a time without binding the whole of {@code
+   * climbs.json}. The stream holds the archive open and must be closed, e.g. with
+   * try-with-resources. Checksums are verified once the last climb has been read; schema
+   * validation is not applied to streamed files.
+   *
+   * @param file the CLDF archive file
+   * @return a stream of climbs, empty if the archive has no climbs
+   * @throws IOException if the archive cannot be opened
+   */
+  public Stream<Climb> streamClimbs(File file) throws IOException {
+    return streamCollection(file, CLIMBS_FILE, "climbs", Climb.class);
+  }
+
+  /**
+   * Streams the sessions of an archive one at a time. See {@link #streamClimbs(File)}.
+   *
+   * @param file the CLDF archive file
+   * @return a stream of sessions, empty if the archive has no sessions
+   * @throws IOException if the archive cannot be opened
+   */
+  public Stream<Session> streamSessions(File file) throws IOException {
+    return streamCollection(file, SESSIONS_FILE, "sessions", Session.class);
+  }
 
-    return buildArchive(fileContents);
+  /**
+   * Streams the routes of an archive one at a time. See {@link #streamClimbs(File)}.
+   *
+   * @param file the CLDF archive file
+   * @return a stream of routes, empty if the archive has no routes
+   * @throws IOException if the archive cannot be opened
+   */
+  public Stream<Route> streamRoutes(File file) throws IOException {
+    return streamCollection(file, ROUTES_FILE, "routes", Route.class);
   }
 
   /**
-   * Extracts all files from the ZIP archive into a map.
+   * Streams the elements of the array field of a single archive file through the Jackson token
+   * stream. When checksum validation is enabled the entry is hashed as it is inflated and compared
+   * once the array has been consumed.
+   *
+   * @param file the CLDF archive file
+   * @param filename the archive file holding the collection
+   * @param fieldName the array field within that file
+   * @param type the element type
+   * @return a stream of elements backed by the open archive
+   * @throws IOException if the archive cannot be opened
+   */
+  private <T> Stream<T> streamCollection(
+      File file, String filename, String fieldName, Class<T> type) throws IOException {
+    if (!file.exists()) {
+      throw new FileNotFoundException("CLDF file not found: " + file.getAbsolutePath());
+    }
+
+    ZipFile zipFile = ZipFile.builder().setFile(file).get();
+    List<String> deltas = DeltaFiles.deltasOf(filename, entryNames(zipFile));
+    Stream<T> stream = streamEntry(zipFile, filename, fieldName, type);
+    if (deltas.isEmpty()) {
+      return stream;
+    }
+    // Each delta opens the archive again only once the elements before it have been consumed
+    return Stream.concat(
+        stream,
+        deltas.stream()
+            .flatMap(
+                delta -> {
+                  try {
+                    return streamEntry(
+                        ZipFile.builder().setFile(file).get(), delta, fieldName, type);
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                }));
+  }
+
+  /**
+   * Streams the array field of a single entry. The stream takes ownership of the open archive and
+   * closes it when the stream is closed or when there is nothing to stream.
+   */
+  private <T> Stream<T> streamEntry(
+      ZipFile zipFile, String filename, String fieldName, Class<T> type) throws IOException {
+    try {
+      ZipArchiveEntry entry = zipFile.getEntry(filename);
+      if (entry == null) {
+        zipFile.close();
+        return Stream.empty();
+      }
+
+      String expectedChecksum = validateChecksums ? expectedChecksum(zipFile, filename) : null;
+      InputStream in = zipFile.getInputStream(entry);
+      DigestInputStream digestStream = expectedChecksum != null ? digesting(in) : null;
+      JsonParser parser =
+          objectMapper.getFactory().createParser(digestStream != null ? digestStream : in);
+
+      JsonArrayIterator<T> iterator =
+          new JsonArrayIterator<>(
+              parser,
+              objectMapper.readerFor(type),
+              () -> {
+                if (digestStream != null) {
+                  digestStream.transferTo(OutputStream.nullOutputStream());
+                  verifyChecksum(
+                      filename, expectedChecksum, toHex(digestStream.getMessageDigest().digest()));
+                }
+              });
+      if (!iterator.seekToArray(fieldName)) {
+        iterator.close();
+        zipFile.close();
+        return Stream.empty();
+      }
+
+      return StreamSupport.stream(
+              Spliterators.spliteratorUnknownSize(
+                  iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+              false)
+          .onClose(
+              () -> {
+                try {
+                  iterator.close();
+                  zipFile.close();
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    } catch (IOException | RuntimeException e) {
+      zipFile.close();
+      throw e;
+    }
+  }
+
+  private String expectedChecksum(ZipFile zipFile, String filename) throws IOException {
+    // A delta's digest is kept in the checksums delta written by the same append
+    int sequence = DeltaFiles.sequence(filename);
+    String checksumsFile =
+        sequence > 0 ? DeltaFiles.deltaName(CHECKSUMS_FILE, sequence) : CHECKSUMS_FILE;
+    Checksums checksums = parseJson(readRequiredEntry(zipFile, checksumsFile), Checksums.class);
+    validateAlgorithm(checksums);
+    return checksums.getFiles() != null ? checksums.getFiles().get(filename) : null;
+  }
+
+  private DigestInputStream digesting(InputStream in) throws IOException {
+    return new DigestInputStream(in, newDigest());
+  }
+
+  private MessageDigest newDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException("SHA-256 algorithm not available", e);
+    }
+  }
+
+  /**
+   * Parses one element of a collection file from a stream positioned at or before it, skipping the
+   * array separators in front of the element. Used by {@link LazyCLDFArchive} to decode entities
+   * located through the entity index; checksums and schemas are not validated.
+   *
+   * @param in the stream, positioned within the array of a collection file
+   * @param type the element type
+   * @return the element, or null if the stream is not positioned before an object
+   * @throws IOException if the element cannot be parsed
+   */
+  <T> T parseElement(InputStream in, Class<T> type) throws IOException {
+    PushbackInputStream pushback = new PushbackInputStream(in);
+    int next = pushback.read();
+    while (next == ',' || next == ' ' || next == '\n' || next == '\r' || next == '\t') {
+      next = pushback.read();
+    }
+    if (next != '{') {
+      return null;
+    }
+    pushback.unread(next);
+    return objectMapper.readerFor(type).readValue(pushback);
+  }
+
+  /**
+   * Verifies and parses a single archive file. Used by {@link LazyCLDFArchive} to load files on
+   * demand with the same checks as {@link #read(InputStream)}.
+   *
+   * @param checksums the archive checksums
+   * @param filename the name of the file
+   * @param content the file content
+   * @param type the type to bind the content to
+   * @return the parsed file
+   * @throws IOException if validation or parsing fails
+   */
+  <T> T parseEntry(Checksums checksums, String filename, byte[] content, Class<T> type)
+      throws IOException {
+    verifyEntry(checksums, filename, content);
+    return parseValidated(filename, content, type);
+  }
+
+  /**
+   * Verifies the checksum of a single archive file when checksum validation is enabled.
+   *
+   * @param checksums the archive checksums
+   * @param filename the name of the file
+   * @param content the file content
+   * @throws IOException if the checksum does not match
+   */
+  void verifyEntry(Checksums checksums, String filename, byte[] content) throws IOException {
+    if (validateChecksums && checksums.getFiles() != null) {
+      String expectedChecksum = checksums.getFiles().get(filename);
+      if (expectedChecksum != null) {
+        verifyChecksum(filename, expectedChecksum, calculateSHA256(content));
+      }
+    }
+  }
+
+  private byte[] readRequiredEntry(ZipFile zipFile, String filename) throws IOException {
+    ZipArchiveEntry entry = zipFile.getEntry(filename);
+    if (entry == null) {
+      throw new IOException("Missing required file: " + filename);
+    }
+    try (InputStream is = zipFile.getInputStream(entry)) {
+      return is.readAllBytes();
+    }
+  }
+
+  private static List<String> entryNames(ZipFile zipFile) {
+    List<String> names = new ArrayList<>();
+    for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+      names.add(entry.getName());
+    }
+    return names;
+  }
+
+  /** Reads the content of an archive file by name. */
+  @FunctionalInterface
+  interface EntryReader {
+    byte[] read(String filename) throws IOException;
+  }
+
+  /**
+   * Adds the digests listed in the checksums deltas written by {@link CLDFWriter#append} to the
+   * archive checksums, so delta files are verified like any other file.
+   *
+   * @param checksums the checksums parsed from {@code checksums.json}
+   * @param names the entry names of the archive
+   * @param entries reads the checksums deltas
+   * @throws IOException if a checksums delta cannot be read or parsed
+   */
+  private void mergeDeltaChecksums(
+      Checksums checksums, Collection<String> names, EntryReader entries) throws IOException {
+    List<String> deltas = DeltaFiles.deltasOf(CHECKSUMS_FILE, names);
+    if (deltas.isEmpty()) {
+      return;
+    }
+    Map<String, String> files =
+        new LinkedHashMap<>(checksums.getFiles() != null ? checksums.getFiles() : Map.of());
+    for (String delta : deltas) {
+      Checksums deltaChecksums = parseValidated(delta, entries.read(delta), Checksums.class);
+      if (validateChecksums) {
+        validateAlgorithm(deltaChecksums);
+      }
+      if (deltaChecksums.getFiles() != null) {
+        files.putAll(deltaChecksums.getFiles());
+      }
+    }
+    checksums.setFiles(files);
+  }
+
+  /**
+   * Appends the elements of the delta files of a collection, in sequence order, to the elements
+   * of its base file.
+   *
+   * @param base the elements of the base file, or null if the archive has no base file
+   * @param baseFile the base file name, e.g. {@code climbs.json}
+   * @param type the file type to bind each delta to
+   * @param extractor extracts the elements from a bound file
+   * @param names the entry names of the archive
+   * @param entries reads the deltas; checksums are expected to be verified by the caller
+   * @return the merged elements, or {@code base} itself if there are no deltas
+   * @throws IOException if a delta cannot be read or parsed
+   */
+  <F, E> List<E> appendDeltas(
+      List<E> base,
+      String baseFile,
+      Class<F> type,
+      Function<F, List<E>> extractor,
+      Collection<String> names,
+      EntryReader entries)
+      throws IOException {
+    List<String> deltas = DeltaFiles.deltasOf(baseFile, names);
+    if (deltas.isEmpty()) {
+      return base;
+    }
+    List<E> merged = base != null ? new ArrayList<>(base) : new ArrayList<>();
+    for (String delta : deltas) {
+      List<E> elements = extractor.apply(parseValidated(delta, entries.read(delta), type));
+      if (elements != null) {
+        merged.addAll(elements);
+      }
+    }
+    log.debug("Merged {} delta files into {}", deltas.size(), baseFile);
+    return merged;
+  }
+
+  /**
+   * Merges the delta files of every collection into an eagerly read archive.
+   *
+   * @param archive the archive built from the base files
+   * @param fileContents map of file names to their content
+   * @throws IOException if a delta cannot be parsed
+   */
+  private void mergeDeltas(CLDFArchive archive, Map<String, byte[]> fileContents)
+      throws IOException {
+    Collection<String> names = fileContents.keySet();
+    EntryReader entries = fileContents::get;
+    archive.setLocations(
+        appendDeltas(
+            archive.getLocations(),
+            LOCATIONS_FILE,
+            LocationsFile.class,
+            LocationsFile::getLocations,
+            names,
+            entries));
+    archive.setClimbs(
+        appendDeltas(
+            archive.getClimbs(),
+            CLIMBS_FILE,
+            ClimbsFile.class,
+            ClimbsFile::getClimbs,
+            names,
+            entries));
+    archive.setSessions(
+        appendDeltas(
+            archive.getSessions(),
+            SESSIONS_FILE,
+            SessionsFile.class,
+            SessionsFile::getSessions,
+            names,
+            entries));
+    archive.setRoutes(
+        appendDeltas(
+            archive.getRoutes(),
+            ROUTES_FILE,
+            RoutesFile.class,
+            RoutesFile::getRoutes,
+            names,
+            entries));
+    archive.setSectors(
+        appendDeltas(
+            archive.getSectors(),
+            SECTORS_FILE,
+            SectorsFile.class,
+            SectorsFile::getSectors,
+            names,
+            entries));
+    archive.setTags(
+        appendDeltas(
+            archive.getTags(), TAGS_FILE, TagsFile.class, TagsFile::getTags, names, entries));
+    archive.setMediaItems(
+        appendDeltas(
+            archive.getMediaItems(),
+            MEDIA_METADATA_FILE,
+            MediaMetadataFile.class,
+            MediaMetadataFile::getMedia,
+            names,
+            entries));
+  }
+
+  /**
+   * Extracts all files from the ZIP archive into a map. When a checksum map is given, each entry is
+   * hashed as it is inflated so checksum validation needs no second pass over the data.
    *
    * @param inputStream the input stream containing the ZIP archive
+   * @param entryChecksums map to receive the SHA-256 of every entry, or null to skip hashing
    * @return map of file names to their byte content
    * @throws IOException if an I/O error occurs
    */
-  private Map<String, byte[]> extractZipContents(InputStream inputStream) throws IOException {
+  private Map<String, byte[]> extractZipContents(
+      InputStream inputStream, Map<String, String> entryChecksums) throws IOException {
     Map<String, byte[]> fileContents = new HashMap<>();
+    MessageDigest digest = entryChecksums != null ? newDigest() : null;
 
     try (ZipArchiveInputStream zis = new ZipArchiveInputStream(inputStream)) {
       ZipArchiveEntry entry;
       while ((entry = zis.getNextEntry()) != null) {
         if (!entry.isDirectory()) {
-          byte[] content = readEntryContent(zis);
-          fileContents.put(entry.getName(), content);
+          putEntryContent(entry.getName(), zis, fileContents, digest, entryChecksums);
         }
       }
     }
@@ -113,18 +556,55 @@ public class CLDFReader {
     return fileContents;
   }
 
+  /**
+   * Extracts all files from an opened ZIP file into a map, in the order they are stored. See
+   * {@link #extractZipContents(InputStream, Map)}.
+   */
+  private Map<String, byte[]> extractZipContents(
+      ZipFile zipFile, Map<String, String> entryChecksums) throws IOException {
+    Map<String, byte[]> fileContents = new HashMap<>();
+    MessageDigest digest = entryChecksums != null ? newDigest() : null;
+
+    for (ZipArchiveEntry entry : Collections.list(zipFile.getEntriesInPhysicalOrder())) {
+      if (!entry.isDirectory()) {
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          putEntryContent(entry.getName(), in, fileContents, digest, entryChecksums);
+        }
+      }
+    }
+
+    return fileContents;
+  }
+
+  /** Reads an entry into the map, hashing it as it is inflated when a digest is given. */
+  private void putEntryContent(
+      String name,
+      InputStream in,
+      Map<String, byte[]> fileContents,
+      MessageDigest digest,
+      Map<String, String> entryChecksums)
+      throws IOException {
+    if (digest != null) {
+      byte[] content = readEntryContent(new DigestInputStream(in, digest));
+      entryChecksums.put(name, toHex(digest.digest()));
+      fileContents.put(name, content);
+    } else {
+      fileContents.put(name, readEntryContent(in));
+    }
+  }
+
   /**
    * Reads the content of a ZIP entry.
    *
-   * @param zis the ZIP archive input stream
+   * @param in the stream positioned at the entry
    * @return the content as byte array
    * @throws IOException if an I/O error occurs
    */
-  private byte[] readEntryContent(ZipArchiveInputStream zis) throws IOException {
+  private byte[] readEntryContent(InputStream in) throws IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     byte[] buffer = new byte[8192];
     int len;
-    while ((len = zis.read(buffer)) > 0) {
+    while ((len = in.read(buffer)) > 0) {
       baos.write(buffer, 0, len);
     }
     return baos.toByteArray();
@@ -145,48 +625,51 @@ public class CLDFReader {
     }
   }
 
-  /**
-   * Validates all schemas for files in the archive.
-   *
-   * @param fileContents map of file names to their content
-   * @throws IOException if schema validation fails
-   */
-  private void validateAllSchemas(Map<String, byte[]> fileContents) throws IOException {
-    String[] requiredFiles = {MANIFEST_FILE, LOCATIONS_FILE, CHECKSUMS_FILE};
-    String[] optionalFiles = {
-      CLIMBS_FILE, SESSIONS_FILE, ROUTES_FILE, SECTORS_FILE, TAGS_FILE, MEDIA_METADATA_FILE
-    };
-
-    validateSchemaForFiles(fileContents, requiredFiles, true);
-    validateSchemaForFiles(fileContents, optionalFiles, false);
+  private <T> T parseFile(Map<String, byte[]> fileContents, String filename, Class<T> type)
+      throws IOException {
+    return parseValidated(filename, fileContents.get(filename), type);
   }
 
   /**
-   * Validates schemas for a set of files.
+   * Parses a file once into a tree, validates the tree against its schema when schema validation
+   * is enabled, and binds the model from the same tree.
    *
-   * @param fileContents map of file names to their content
-   * @param filenames array of file names to validate
-   * @param required whether the files are required to exist
-   * @throws IOException if schema validation fails
+   * @param filename the name of the file
+   * @param content the file content
+   * @param type the type to bind the content to
+   * @return the parsed file
+   * @throws IOException if parsing or schema validation fails
    */
-  private void validateSchemaForFiles(
-      Map<String, byte[]> fileContents, String[] filenames, boolean required) throws IOException {
-    for (String filename : filenames) {
-      if (fileContents.containsKey(filename) || required) {
-        validateSingleSchema(filename, fileContents.get(filename));
-      }
+  private <T> T parseValidated(String filename, byte[] content, Class<T> type)
+      throws IOException {
+    if (!validateSchemas) {
+      return parseJson(content, type);
+    }
+    JsonNode tree;
+    try {
+      tree = objectMapper.readTree(content);
+    } catch (JsonProcessingException e) {
+      throw new IOException(
+          "Schema validation failed for "
+              + filename
+              + ":\n  - Failed to validate: "
+              + e.getOriginalMessage()
+              + "\n",
+          e);
     }
+    validateSingleSchema(filename, tree);
+    return objectMapper.treeToValue(tree, type);
   }
 
   /**
    * Validates the schema for a single file.
    *
    * @param filename the name of the file
-   * @param content the file content
+   * @param tree the parsed file content
    * @throws IOException if schema validation fails
    */
-  private void validateSingleSchema(String filename, byte[] content) throws IOException {
-    ValidationResult result = schemaValidator.validateWithResult(filename, content);
+  private void validateSingleSchema(String filename, JsonNode tree) throws IOException {
+    ValidationResult result = schemaValidator.validateWithResult(filename, tree);
     if (!result.valid()) {
       StringBuilder errorMessage = new StringBuilder();
       errorMessage.append("Schema validation failed for ").append(filename).append(":\n");
@@ -201,21 +684,123 @@ public class CLDFReader {
    * Builds the CLDFArchive from the extracted file contents.
    *
    * @param fileContents map of file names to their content
+   * @param entryChecksums digests computed during extraction, or null if not computed
    * @return the constructed CLDFArchive
    * @throws IOException if parsing or validation fails
    */
-  private CLDFArchive buildArchive(Map<String, byte[]> fileContents) throws IOException {
+  private CLDFArchive buildArchive(
+      Map<String, byte[]> fileContents, Map<String, String> entryChecksums) throws IOException {
     CLDFArchive archive = new CLDFArchive();
 
     parseAndSetManifest(archive, fileContents);
-    parseAndValidateChecksums(archive, fileContents);
+    parseAndValidateChecksums(archive, fileContents, entryChecksums);
     parseRequiredFiles(archive, fileContents);
     parseOptionalFiles(archive, fileContents);
+    mergeDeltas(archive, fileContents);
     extractMediaFiles(archive, fileContents);
 
     return archive;
   }
 
+  /**
+   * Builds the CLDFArchive by validating and parsing each JSON file in its own task. Results are
+   * collected in the same order as {@link #buildArchive}, so the first failing file in that order
+   * determines the exception thrown.
+   *
+   * @param fileContents map of file names to their content
+   * @param entryChecksums digests computed during extraction, or null if not computed
+   * @return the constructed CLDFArchive
+   * @throws IOException if parsing or validation fails
+   */
+  private CLDFArchive buildArchiveInParallel(
+      Map<String, byte[]> fileContents, Map<String, String> entryChecksums) throws IOException {
+    CLDFArchive archive = new CLDFArchive();
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<Manifest> manifest = submit(executor, fileContents, MANIFEST_FILE, Manifest.class);
+      Future<Checksums> checksums =
+          submit(executor, fileContents, CHECKSUMS_FILE, Checksums.class);
+      Future<LocationsFile> locations =
+          submit(executor, fileContents, LOCATIONS_FILE, LocationsFile.class);
+      Future<ClimbsFile> climbs =
+          submitOptional(executor, fileContents, CLIMBS_FILE, ClimbsFile.class);
+      Future<SessionsFile> sessions =
+          submitOptional(executor, fileContents, SESSIONS_FILE, SessionsFile.class);
+      Future<RoutesFile> routes =
+          submitOptional(executor, fileContents, ROUTES_FILE, RoutesFile.class);
+      Future<SectorsFile> sectors =
+          submitOptional(executor, fileContents, SECTORS_FILE, SectorsFile.class);
+      Future<TagsFile> tags = submitOptional(executor, fileContents, TAGS_FILE, TagsFile.class);
+      Future<MediaMetadataFile> media =
+          submitOptional(executor, fileContents, MEDIA_METADATA_FILE, MediaMetadataFile.class);
+
+      archive.setManifest(await(manifest));
+      validateFormat(archive.getManifest());
+
+      archive.setChecksums(await(checksums));
+      mergeDeltaChecksums(archive.getChecksums(), fileContents.keySet(), fileContents::get);
+      if (validateChecksums) {
+        removeChecksumsFiles(entryChecksums);
+        validateChecksums(archive.getChecksums(), entryChecksums);
+        archive.setComputedChecksums(entryChecksums);
+      }
+
+      archive.setLocations(await(locations).getLocations());
+      if (climbs != null) {
+        archive.setClimbs(await(climbs).getClimbs());
+      }
+      if (sessions != null) {
+        archive.setSessions(await(sessions).getSessions());
+      }
+      if (routes != null) {
+        archive.setRoutes(await(routes).getRoutes());
+      }
+      if (sectors != null) {
+        archive.setSectors(await(sectors).getSectors());
+      }
+      if (tags != null) {
+        archive.setTags(await(tags).getTags());
+      }
+      if (media != null) {
+        archive.setMediaItems(await(media).getMedia());
+      }
+    }
+
+    mergeDeltas(archive, fileContents);
+    extractMediaFiles(archive, fileContents);
+    return archive;
+  }
+
+  private <T> Future<T> submit(
+      ExecutorService executor, Map<String, byte[]> fileContents, String filename, Class<T> type) {
+    byte[] content = fileContents.get(filename);
+    return executor.submit(() -> parseValidated(filename, content, type));
+  }
+
+  private <T> Future<T> submitOptional(
+      ExecutorService executor, Map<String, byte[]> fileContents, String filename, Class<T> type) {
+    return fileContents.containsKey(filename)
+        ? submit(executor, fileContents, filename, type)
+        : null;
+  }
+
+  private <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while parsing archive");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IOException("Failed to parse archive", e.getCause());
+    }
+  }
+
   /**
    * Parses and sets the manifest in the archive.
    *
@@ -225,50 +810,44 @@ public class CLDFReader {
    */
   private void parseAndSetManifest(CLDFArchive archive, Map<String, byte[]> fileContents)
       throws IOException {
-    Manifest manifest = parseJson(fileContents.get(MANIFEST_FILE), Manifest.class);
+    Manifest manifest = parseFile(fileContents, MANIFEST_FILE, Manifest.class);
     archive.setManifest(manifest);
+    validateFormat(manifest);
+  }
 
+  private void validateFormat(Manifest manifest) throws IOException {
     if (!"CLDF".equals(manifest.getFormat())) {
       throw new IOException("Invalid format. Expected 'CLDF', got: " + manifest.getFormat());
     }
   }
 
   /**
-   * Parses and validates checksums.
+   * Parses and validates checksums against the digests computed during extraction.
    *
    * @param archive the archive to populate
    * @param fileContents map of file names to their content
+   * @param entryChecksums digests computed during extraction, or null if not computed
    * @throws IOException if parsing or validation fails
    */
-  private void parseAndValidateChecksums(CLDFArchive archive, Map<String, byte[]> fileContents)
+  private void parseAndValidateChecksums(
+      CLDFArchive archive, Map<String, byte[]> fileContents, Map<String, String> entryChecksums)
       throws IOException {
-    Checksums checksums = parseJson(fileContents.get(CHECKSUMS_FILE), Checksums.class);
+    Checksums checksums = parseFile(fileContents, CHECKSUMS_FILE, Checksums.class);
+    mergeDeltaChecksums(checksums, fileContents.keySet(), fileContents::get);
     archive.setChecksums(checksums);
 
     if (validateChecksums) {
-      Map<String, String> actualChecksums = calculateActualChecksums(fileContents);
-      validateChecksums(checksums, actualChecksums);
+      removeChecksumsFiles(entryChecksums);
+      validateChecksums(checksums, entryChecksums);
+      archive.setComputedChecksums(entryChecksums);
     }
   }
 
-  /**
-   * Calculates actual checksums for all files except checksums.json.
-   *
-   * @param fileContents map of file names to their content
-   * @return map of file names to their calculated checksums
-   * @throws IOException if checksum calculation fails
-   */
-  private Map<String, String> calculateActualChecksums(Map<String, byte[]> fileContents)
-      throws IOException {
-    Map<String, String> actualChecksums = new HashMap<>();
-
-    for (Map.Entry<String, byte[]> entry : fileContents.entrySet()) {
-      if (!entry.getKey().equals(CHECKSUMS_FILE)) {
-        actualChecksums.put(entry.getKey(), calculateSHA256(entry.getValue()));
-      }
+  private void removeChecksumsFiles(Map<String, String> entryChecksums) {
+    entryChecksums.remove(CHECKSUMS_FILE);
+    for (String delta : DeltaFiles.deltasOf(CHECKSUMS_FILE, List.copyOf(entryChecksums.keySet()))) {
+      entryChecksums.remove(delta);
     }
-
-    return actualChecksums;
   }
 
   /**
@@ -280,7 +859,7 @@ public class CLDFReader {
    */
   private void parseRequiredFiles(CLDFArchive archive, Map<String, byte[]> fileContents)
       throws IOException {
-    LocationsFile locationsFile = parseJson(fileContents.get(LOCATIONS_FILE), LocationsFile.class);
+    LocationsFile locationsFile = parseFile(fileContents, LOCATIONS_FILE, LocationsFile.class);
     archive.setLocations(locationsFile.getLocations());
   }
 
@@ -308,12 +887,12 @@ public class CLDFReader {
   private void parseOptionalClimbsAndSessions(CLDFArchive archive, Map<String, byte[]> fileContents)
       throws IOException {
     if (fileContents.containsKey(CLIMBS_FILE)) {
-      ClimbsFile climbsFile = parseJson(fileContents.get(CLIMBS_FILE), ClimbsFile.class);
+      ClimbsFile climbsFile = parseFile(fileContents, CLIMBS_FILE, ClimbsFile.class);
       archive.setClimbs(climbsFile.getClimbs());
     }
 
     if (fileContents.containsKey(SESSIONS_FILE)) {
-      SessionsFile sessionsFile = parseJson(fileContents.get(SESSIONS_FILE), SessionsFile.class);
+      SessionsFile sessionsFile = parseFile(fileContents, SESSIONS_FILE, SessionsFile.class);
       archive.setSessions(sessionsFile.getSessions());
     }
   }
@@ -328,17 +907,17 @@ public class CLDFReader {
   private void parseOptionalRouteData(CLDFArchive archive, Map<String, byte[]> fileContents)
       throws IOException {
     if (fileContents.containsKey(ROUTES_FILE)) {
-      RoutesFile routesFile = parseJson(fileContents.get(ROUTES_FILE), RoutesFile.class);
+      RoutesFile routesFile = parseFile(fileContents, ROUTES_FILE, RoutesFile.class);
       archive.setRoutes(routesFile.getRoutes());
     }
 
     if (fileContents.containsKey(SECTORS_FILE)) {
-      SectorsFile sectorsFile = parseJson(fileContents.get(SECTORS_FILE), SectorsFile.class);
+      SectorsFile sectorsFile = parseFile(fileContents, SECTORS_FILE, SectorsFile.class);
       archive.setSectors(sectorsFile.getSectors());
     }
 
     if (fileContents.containsKey(TAGS_FILE)) {
-      TagsFile tagsFile = parseJson(fileContents.get(TAGS_FILE), TagsFile.class);
+      TagsFile tagsFile = parseFile(fileContents, TAGS_FILE, TagsFile.class);
       archive.setTags(tagsFile.getTags());
     }
   }
@@ -354,7 +933,7 @@ public class CLDFReader {
       throws IOException {
     if (fileContents.containsKey(MEDIA_METADATA_FILE)) {
       MediaMetadataFile mediaFile =
-          parseJson(fileContents.get(MEDIA_METADATA_FILE), MediaMetadataFile.class);
+          parseFile(fileContents, MEDIA_METADATA_FILE, MediaMetadataFile.class);
       archive.setMediaItems(mediaFile.getMedia());
     }
   }
@@ -383,9 +962,7 @@ public class CLDFReader {
 
   private void validateChecksums(Checksums checksums, Map<String, String> actualChecksums)
       throws IOException {
-    if (!ALGORITHM.equals(checksums.getAlgorithm())) {
-      throw new IOException("Unsupported checksum algorithm: " + checksums.getAlgorithm());
-    }
+    validateAlgorithm(checksums);
 
     for (Map.Entry<String, String> entry : checksums.getFiles().entrySet()) {
       String filename = entry.getKey();
@@ -394,30 +971,41 @@ public class CLDFReader {
 
       if (actualChecksum == null) {
         log.warn("File referenced in checksums but not found in archive: {}", filename);
-      } else if (!expectedChecksum.equals(actualChecksum)) {
-        throw new IOException(
-            String.format(
-                "Checksum mismatch for file '%s'. Expected: %s, Actual: %s",
-                filename, expectedChecksum, actualChecksum));
+      } else {
+        verifyChecksum(filename, expectedChecksum, actualChecksum);
       }
     }
   }
 
+  private void validateAlgorithm(Checksums checksums) throws IOException {
+    if (!ALGORITHM.equals(checksums.getAlgorithm())) {
+      throw new IOException("Unsupported checksum algorithm: " + checksums.getAlgorithm());
+    }
+  }
+
+  private void verifyChecksum(String filename, String expectedChecksum, String actualChecksum)
+      throws IOException {
+    if (!expectedChecksum.equals(actualChecksum)) {
+      throw new IOException(
+          String.format(
+              "Checksum mismatch for file '%s'. Expected: %s, Actual: %s",
+              filename, expectedChecksum, actualChecksum));
+    }
+  }
+
   private String calculateSHA256(byte[] data) throws IOException {
-    try {
-      MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
-      byte[] hash = digest.digest(data);
-      StringBuilder hexString = new StringBuilder();
-      for (byte b : hash) {
-        String hex = Integer.toHexString(0xff & b);
-        if (hex.length() == 1) {
-          hexString.append('0');
-        }
-        hexString.append(hex);
+    return toHex(newDigest().digest(data));
+  }
+
+  private static String toHex(byte[] hash) {
+    StringBuilder hexString = new StringBuilder();
+    for (byte b : hash) {
+      String hex = Integer.toHexString(0xff & b);
+      if (hex.length() == 1) {
+        hexString.append('0');
       }
-      return hexString.toString();
-    } catch (NoSuchAlgorithmException e) {
-      throw new IOException("SHA-256 algorithm not available", e);
+      hexString.append(hex);
     }
+    return hexString.toString();
   }
 }
@@ -2,22 +2,48 @@ package app.crushlog.cldf.api;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 
 import app.crushlog.cldf.domain.CLIDService;
 import app.crushlog.cldf.models.*;
+import app.crushlog.cldf.models.enums.MediaType;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
 
 /**
  * Writes CLDF (CrushLog Data Format) archives to ZIP files. Supports pretty printing and automatic
@@ -36,12 +62,59 @@ public class CLDFWriter {
   private static final String TAGS_FILE = "tags.json";
   private static final String MEDIA_METADATA_FILE = "media-metadata.json";
 
+  // Collection files in the order they are written
+  private static final List<String> COLLECTION_FILES =
+      List.of(
+          LOCATIONS_FILE,
+          CLIMBS_FILE,
+          SESSIONS_FILE,
+          ROUTES_FILE,
+          SECTORS_FILE,
+          TAGS_FILE,
+          MEDIA_METADATA_FILE);
+
+  // Media formats that are already compressed and are stored rather than deflated
+  private static final Set<String> PRECOMPRESSED_EXTENSIONS =
+      Set.of(
+          "jpg",
+          "jpeg",
+          "png",
+          "gif",
+          "webp",
+          "heic",
+          "heif",
+          "avif",
+          "mp4",
+          "m4v",
+          "mov",
+          "webm",
+          "mkv",
+          "avi",
+          "3gp",
+          "mp3",
+          "m4a",
+          "aac",
+          "ogg",
+          "zip",
+          "gz");
+
+  // Media formats that still compress well even though they are media files
+  private static final Set<String> COMPRESSIBLE_EXTENSIONS =
+      Set.of("bmp", "tif", "tiff", "svg", "wav", "txt", "json", "xml");
+
+  // Collection files are validated in batches of this many elements while streaming
+  private static final int VALIDATION_BATCH_SIZE = 1000;
+
   private final ObjectMapper objectMapper;
+  private final ObjectWriter elementWriter;
   private final boolean validateSchemas;
   private final SchemaValidator schemaValidator;
   private final CLIDService clidService;
   private boolean autoGenerateCLIDs = true;
   private boolean validateCLIDs = true;
+  private CompressionProfile compressionProfile = CompressionProfile.MAX;
+  private int compressionThreads = 1;
+  private boolean entityIndex = false;
 
   /**
    * Creates a CLDFWriter with default settings (pretty printing enabled, schema validation
@@ -68,7 +141,7 @@ public class CLDFWriter {
    */
   public CLDFWriter(boolean prettyPrint, boolean validateSchemas) {
     this.validateSchemas = validateSchemas;
-    this.schemaValidator = validateSchemas ? new SchemaValidator() : null;
+    this.schemaValidator = validateSchemas ? SchemaValidator.shared() : null;
     this.clidService = new CLIDService();
     this.objectMapper = new ObjectMapper();
     this.objectMapper.registerModule(new JavaTimeModule());
@@ -78,6 +151,8 @@ public class CLDFWriter {
     if (prettyPrint) {
       this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
     }
+    this.elementWriter =
+        objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
   }
 
   /**
@@ -98,20 +173,81 @@ public class CLDFWriter {
   }
 
   /**
-   * Writes a CLDF archive to a file.
+   * Sets whether CLIDs are generated and validated in parallel. The assigned CLIDs are the same as
+   * in sequential processing. Default is false.
+   */
+  public CLDFWriter withParallelCLIDProcessing(boolean parallel) {
+    clidService.withParallelProcessing(parallel);
+    return this;
+  }
+
+  /**
+   * Sets the compression profile. Default is {@link CompressionProfile#MAX}. Already-compressed
+   * media is stored uncompressed under every profile.
+   */
+  public CLDFWriter withCompressionProfile(CompressionProfile profile) {
+    if (profile == null) {
+      throw new IllegalArgumentException("Compression profile cannot be null");
+    }
+    this.compressionProfile = profile;
+    return this;
+  }
+
+  /**
+   * Sets the number of threads used to compress entries. With more than one thread, every file is
+   * serialized and deflated on a worker thread into a temporary file, and the compressed entries
+   * are then copied into the archive in the usual order. Each JSON file is held in memory in full
+   * while its worker compresses it. Default is 1, which streams every entry on the calling thread.
+   */
+  public CLDFWriter withCompressionThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Compression threads must be at least 1");
+    }
+    this.compressionThreads = threads;
+    return this;
+  }
+
+  /**
+   * Sets whether an entity index is written, mapping every canonical CLID and numeric id to the
+   * position of its entity so {@link LazyCLDFArchive#findByCLID} and {@link
+   * LazyCLDFArchive#findById} can decode a single entity without parsing its whole collection. The
+   * index is stored uncompressed as {@code entity-index.bin}; it takes 26 bytes per CLID and 13
+   * bytes per id at most three quarters full. Archives updated or compacted from an indexed archive
+   * keep their index regardless of this setting. Default is false.
+   */
+  public CLDFWriter withEntityIndex(boolean enabled) {
+    this.entityIndex = enabled;
+    return this;
+  }
+
+  /**
+   * Writes a CLDF archive to a file. If writing fails, the partially written file is deleted.
    *
    * @param archive the CLDFArchive to write
    * @param file the output file
    * @throws IOException if an I/O error occurs
    */
   public void write(CLDFArchive archive, File file) throws IOException {
+    writeFile(file, out -> write(archive, out));
+  }
+
+  private void writeFile(File file, ArchiveOutput output) throws IOException {
+    boolean written = false;
     try (FileOutputStream fos = new FileOutputStream(file)) {
-      write(archive, fos);
+      output.writeTo(fos);
+      written = true;
+    } finally {
+      // Entries are streamed as they are produced, so a failure leaves a truncated archive behind
+      if (!written && file.exists() && !file.delete()) {
+        log.warn("Failed to delete incomplete archive {}", file);
+      }
     }
   }
 
   /**
-   * Writes a CLDF archive to an output stream.
+   * Writes a CLDF archive to an output stream. Each file is serialized straight into the ZIP
+   * stream and hashed on the way, so no file is ever buffered in full; {@code checksums.json} is
+   * written last from the collected digests.
    *
    * @param archive the CLDFArchive to write
    * @param outputStream the output stream
@@ -127,19 +263,326 @@ public class CLDFWriter {
     validateArchive(archive);
     processCLIDs(archive);
 
-    Map<String, byte[]> fileContents = new HashMap<>();
-    Map<String, String> checksums = new HashMap<>();
+    Map<String, String> checksums = new LinkedHashMap<>();
+    EntityIndex.Builder index = entityIndex ? new EntityIndex.Builder() : null;
+
+    try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(outputStream)) {
+      zos.setLevel(compressionProfile.getJsonLevel());
+
+      if (compressionThreads > 1) {
+        writeEntriesInParallel(zos, archive, checksums, index);
+      } else {
+        writeManifest(zos, archive, checksums);
+        writeCollections(zos, archive, checksums, index);
+        writeMediaFiles(zos, archive, checksums);
+      }
+      writeEntityIndex(zos, index, checksums);
+      writeChecksumsFile(zos, checksums);
+
+      zos.finish();
+    }
+
+    log.info("Successfully wrote CLDF archive with {} files", checksums.size() + 1);
+  }
+
+  /**
+   * Writes an updated copy of a lazily opened archive to a file. See {@link
+   * #update(LazyCLDFArchive, OutputStream)}. The target must not be the source file. If writing
+   * fails, the partially written file is deleted.
+   *
+   * @param source the archive to update, opened with {@link CLDFReader#open(File)}
+   * @param file the output file
+   * @throws IOException if an I/O error occurs
+   */
+  public void update(LazyCLDFArchive source, File file) throws IOException {
+    if (source == null) {
+      throw new IllegalArgumentException("Archive cannot be null");
+    }
+    if (file.exists() && Files.isSameFile(source.getFile().toPath(), file.toPath())) {
+      throw new IllegalArgumentException("Cannot update an archive in place: " + file);
+    }
+    writeFile(file, out -> update(source, out));
+  }
+
+  /**
+   * Writes an updated copy of a lazily opened archive. Only the collections that were loaded or
+   * replaced on {@code source} are serialized again, together with the manifest; every other
+   * entry, including all embedded media unless the media files were loaded, is copied as raw
+   * compressed bytes and keeps its checksum from the source {@code checksums.json}. Manifest
+   * statistics are updated for the re-encoded collections; a manifest without statistics gets them
+   * calculated, which loads and re-encodes every collection. Collections with delta files written
+   * by {@link #append} are loaded with their deltas merged and re-encoded, so the copy has no
+   * deltas.
+   *
+   * <p>CLIDs are only generated and validated for the re-encoded collections. Routes and sectors
+   * need the location CLIDs, so re-encoding either of them also loads and re-encodes the
+   * locations.
+   *
+   * <p>An entity index is written if {@link #withEntityIndex} is enabled or the source has one.
+   * Copied collections keep their entries from the source index; collections the source index does
+   * not cover are left unindexed and are scanned on lookup.
+   *
+   * @param source the archive to update, opened with {@link CLDFReader#open(File)}
+   * @param outputStream the output stream
+   * @throws IOException if an I/O error occurs
+   */
+  public void update(LazyCLDFArchive source, OutputStream outputStream) throws IOException {
+    if (source == null) {
+      throw new IllegalArgumentException("Archive cannot be null");
+    }
+    if (source.getManifest() == null) {
+      throw new IllegalArgumentException("Manifest is required");
+    }
+
+    // Deltas are not copied, so collections with deltas are re-encoded with them merged
+    source.loadCollectionsWithDeltas();
+    // Without statistics every collection must be loaded to count it, and is then re-encoded
+    if (source.getManifest().getStats() == null) {
+      log.debug("Calculating archive statistics");
+      source.getManifest().setStats(calculateStats(source));
+    }
+    CLDFArchive changed = loadedCollections(source);
+    processCLIDs(changed);
+    updateStats(source, changed);
+
+    Map<String, CollectionFile> changedFiles = new HashMap<>();
+    for (CollectionFile collection : collectionFiles(changed)) {
+      changedFiles.put(collection.filename(), collection);
+    }
+    Map<String, String> sourceChecksums =
+        source.getChecksums() != null && source.getChecksums().getFiles() != null
+            ? source.getChecksums().getFiles()
+            : Map.of();
+    Map<String, String> checksums = new LinkedHashMap<>();
+    EntityIndex sourceIndex = source.getEntityIndex();
+    EntityIndex.Builder index =
+        entityIndex || sourceIndex != null ? new EntityIndex.Builder() : null;
+    int copied = 0;
+
+    try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(outputStream)) {
+      zos.setLevel(compressionProfile.getJsonLevel());
+
+      writeManifest(zos, source, checksums);
+      for (String filename : COLLECTION_FILES) {
+        if (source.isLoaded(filename)) {
+          CollectionFile collection = changedFiles.get(filename);
+          if (collection != null) {
+            writeCollection(zos, collection, checksums, index);
+          }
+        } else if (copyRawEntry(zos, source, filename, sourceChecksums, checksums)) {
+          copied++;
+          if (index != null && sourceIndex != null) {
+            sourceIndex.copyTo(filename, index);
+          }
+        }
+      }
+      if (source.isLoaded(LazyCLDFArchive.MEDIA_FILES_KEY)) {
+        writeMediaFiles(zos, source, checksums);
+      } else {
+        for (String filename : source.getMediaFileNames()) {
+          copyRawEntry(zos, source, filename, sourceChecksums, checksums);
+          copied++;
+        }
+      }
+      writeEntityIndex(zos, index, checksums);
+      writeChecksumsFile(zos, checksums);
+
+      zos.finish();
+    }
+
+    log.info(
+        "Successfully updated CLDF archive: {} files copied, {} re-encoded",
+        copied,
+        checksums.size() + 1 - copied);
+  }
 
-    prepareFileContents(archive, fileContents, checksums);
-    createChecksumsFile(fileContents, checksums);
+  /**
+   * Appends climbs and sessions to an existing archive without rewriting it. The elements are
+   * written as delta files named after the next free sequence number, e.g. {@code
+   * climbs.delta-0003.json} and {@code sessions.delta-0003.json}, together with {@code
+   * checksums.delta-0003.json} holding their digests. Only the new entries and the ZIP central
+   * directory are written. {@link CLDFReader} merges the deltas after their base files on read;
+   * {@link #compact(File)} folds them back into the base files.
+   *
+   * <p>Missing CLIDs are generated, and existing ones validated, among the appended elements only.
+   * The manifest is not rewritten, so its statistics only reflect the appended elements once the
+   * archive is compacted. The new entries and directory are written after the end of the file, so
+   * the archive keeps its previous content if the process dies while appending. Archives that
+   * would need ZIP64 cannot be appended to.
+   *
+   * @param file the archive to append to
+   * @param climbs the climbs to append, may be null or empty
+   * @param sessions the sessions to append, may be null or empty
+   * @throws IOException if the archive cannot be read or written, or validation fails
+   */
+  public void append(File file, List<Climb> climbs, List<Session> sessions) throws IOException {
+    if (!file.exists()) {
+      throw new FileNotFoundException("CLDF file not found: " + file.getAbsolutePath());
+    }
+    CLDFArchive additions = new CLDFArchive();
+    additions.setClimbs(climbs);
+    additions.setSessions(sessions);
+    List<CollectionFile> collections = collectionFiles(additions);
+    if (collections.isEmpty()) {
+      throw new IllegalArgumentException("Nothing to append: no climbs or sessions given");
+    }
+    processCLIDs(additions);
 
-    if (validateSchemas) {
-      validateAllSchemas(fileContents);
+    List<String> names = new ArrayList<>();
+    try (ZipFile zipFile = ZipFile.builder().setFile(file).get()) {
+      for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+        names.add(entry.getName());
+      }
     }
+    int sequence = DeltaFiles.nextSequence(names);
 
-    writeZipArchive(outputStream, fileContents);
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    Map<String, String> checksums = new LinkedHashMap<>();
+    for (CollectionFile collection : collections) {
+      String deltaName = DeltaFiles.deltaName(collection.filename(), sequence);
+      byte[] content =
+          serializeCollection(
+              new CollectionFile(deltaName, collection.fieldName(), collection.elements()), null);
+      entries.put(deltaName, content);
+      checksums.put(deltaName, calculateSHA256(content));
+    }
+    String checksumsName = DeltaFiles.deltaName(CHECKSUMS_FILE, sequence);
+    entries.put(checksumsName, serializeValidated(checksumsName, buildChecksums(checksums)));
 
-    log.info("Successfully wrote CLDF archive with {} files", fileContents.size());
+    ZipAppender.append(file, entries, compressionProfile.getJsonLevel());
+    log.info("Appended delta {} with {} files to {}", sequence, entries.size(), file);
+  }
+
+  /**
+   * Folds the delta files written by {@link #append} back into the base files. Collections with
+   * deltas are re-encoded with the deltas merged and their manifest counts refreshed; every other
+   * entry is copied raw as in {@link #update(LazyCLDFArchive, OutputStream)}. The compacted archive
+   * is written next to the original and then moved over it. Archives without deltas are left
+   * untouched.
+   *
+   * @param file the archive to compact
+   * @throws IOException if the archive cannot be read or written
+   */
+  public void compact(File file) throws IOException {
+    File target = file.getAbsoluteFile();
+    Path tempFile = Files.createTempFile(target.getParentFile().toPath(), target.getName(), ".tmp");
+    boolean replaced = false;
+    try {
+      try (LazyCLDFArchive source = new CLDFReader(true, validateSchemas).open(target)) {
+        if (!source.loadCollectionsWithDeltas()) {
+          log.debug("No delta files to compact in {}", file);
+          return;
+        }
+        update(source, tempFile.toFile());
+      }
+      Files.move(
+          tempFile,
+          target.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      replaced = true;
+      log.info("Compacted delta files of {}", file);
+    } finally {
+      if (!replaced) {
+        Files.deleteIfExists(tempFile);
+      }
+    }
+  }
+
+  /**
+   * Builds an archive holding only the collections of {@code source} that were loaded or
+   * replaced, plus the locations when routes or sectors need their CLIDs.
+   */
+  private CLDFArchive loadedCollections(LazyCLDFArchive source) {
+    CLDFArchive changed = new CLDFArchive();
+    changed.setManifest(source.getManifest());
+    if (source.isLoaded(LOCATIONS_FILE)
+        || source.isLoaded(ROUTES_FILE)
+        || source.isLoaded(SECTORS_FILE)) {
+      changed.setLocations(source.getLocations());
+    }
+    if (source.isLoaded(CLIMBS_FILE)) {
+      changed.setClimbs(source.getClimbs());
+    }
+    if (source.isLoaded(SESSIONS_FILE)) {
+      changed.setSessions(source.getSessions());
+    }
+    if (source.isLoaded(ROUTES_FILE)) {
+      changed.setRoutes(source.getRoutes());
+    }
+    if (source.isLoaded(SECTORS_FILE)) {
+      changed.setSectors(source.getSectors());
+    }
+    if (source.isLoaded(TAGS_FILE)) {
+      changed.setTags(source.getTags());
+    }
+    if (source.isLoaded(MEDIA_METADATA_FILE)) {
+      changed.setMediaItems(source.getMediaItems());
+    }
+    return changed;
+  }
+
+  /** Refreshes the manifest counts of the re-encoded collections; counts of copied ones are kept */
+  private void updateStats(LazyCLDFArchive source, CLDFArchive changed) {
+    Manifest.Stats stats = source.getManifest().getStats();
+    if (stats == null) {
+      return;
+    }
+    Manifest.Stats changedStats = calculateStats(changed);
+    if (source.isLoaded(LOCATIONS_FILE)) {
+      stats.setLocationsCount(changedStats.getLocationsCount());
+    }
+    if (source.isLoaded(CLIMBS_FILE)) {
+      stats.setClimbsCount(changedStats.getClimbsCount());
+    }
+    if (source.isLoaded(SESSIONS_FILE)) {
+      stats.setSessionsCount(changedStats.getSessionsCount());
+    }
+    if (source.isLoaded(ROUTES_FILE)) {
+      stats.setRoutesCount(changedStats.getRoutesCount());
+    }
+    if (source.isLoaded(SECTORS_FILE)) {
+      stats.setSectorsCount(changedStats.getSectorsCount());
+    }
+    if (source.isLoaded(TAGS_FILE)) {
+      stats.setTagsCount(changedStats.getTagsCount());
+    }
+    if (source.isLoaded(MEDIA_METADATA_FILE)) {
+      stats.setMediaCount(changedStats.getMediaCount());
+    }
+  }
+
+  /**
+   * Copies an entry of the source archive without inflating it. The checksum is taken from the
+   * source {@code checksums.json}; only entries missing from it are inflated to be hashed.
+   *
+   * @return true if the source archive has the entry
+   */
+  private boolean copyRawEntry(
+      ZipArchiveOutputStream zos,
+      LazyCLDFArchive source,
+      String filename,
+      Map<String, String> sourceChecksums,
+      Map<String, String> checksums)
+      throws IOException {
+    ZipFile zipFile = source.getZipFile();
+    ZipArchiveEntry entry = zipFile.getEntry(filename);
+    if (entry == null) {
+      return false;
+    }
+    String checksum = sourceChecksums.get(filename);
+    if (checksum == null) {
+      MessageDigest digest = newDigest();
+      try (InputStream is = new DigestInputStream(zipFile.getInputStream(entry), digest)) {
+        is.transferTo(OutputStream.nullOutputStream());
+      }
+      checksum = toHex(digest.digest());
+    }
+    try (InputStream raw = zipFile.getRawInputStream(entry)) {
+      zos.addRawArchiveEntry(entry, raw);
+    }
+    checksums.put(filename, checksum);
+    return true;
   }
 
   /**
@@ -161,33 +604,22 @@ public class CLDFWriter {
   }
 
   /**
-   * Prepares all file contents and calculates their checksums.
+   * Writes the manifest file.
    *
-   * @param archive the archive to serialize
-   * @param fileContents map to store file contents
+   * @param zos the ZIP stream
+   * @param archive the archive
    * @param checksums map to store file checksums
    * @throws IOException if serialization fails
    */
-  private void prepareFileContents(
-      CLDFArchive archive, Map<String, byte[]> fileContents, Map<String, String> checksums)
+  private void writeManifest(
+      ZipArchiveOutputStream zos, CLDFArchive archive, Map<String, String> checksums)
       throws IOException {
-    prepareManifest(archive, fileContents, checksums);
-    prepareCoreFiles(archive, fileContents, checksums);
-    prepareOptionalFiles(archive, fileContents, checksums);
-    prepareMediaFiles(archive, fileContents, checksums);
+    prepareManifest(archive);
+    byte[] manifestBytes = serializeValidated(MANIFEST_FILE, archive.getManifest());
+    writeEntry(zos, MANIFEST_FILE, manifestBytes, checksums);
   }
 
-  /**
-   * Prepares the manifest file.
-   *
-   * @param archive the archive
-   * @param fileContents map to store file contents
-   * @param checksums map to store file checksums
-   * @throws IOException if serialization fails
-   */
-  private void prepareManifest(
-      CLDFArchive archive, Map<String, byte[]> fileContents, Map<String, String> checksums)
-      throws IOException {
+  private void prepareManifest(CLDFArchive archive) {
     if (archive.getManifest() == null) {
       throw new IllegalArgumentException("Manifest is required");
     }
@@ -196,161 +628,441 @@ public class CLDFWriter {
       log.debug("Calculating archive statistics");
       archive.getManifest().setStats(calculateStats(archive));
     }
-
-    byte[] manifestBytes = serializeToJson(archive.getManifest());
-    fileContents.put(MANIFEST_FILE, manifestBytes);
-    checksums.put(MANIFEST_FILE, calculateSHA256(manifestBytes));
   }
 
   /**
-   * Prepares core data files (locations, climbs, sessions).
+   * Writes the data files (locations, climbs, sessions, routes, sectors, tags, media metadata).
    *
+   * @param zos the ZIP stream
    * @param archive the archive
-   * @param fileContents map to store file contents
    * @param checksums map to store file checksums
+   * @param index the entity index to record entries in, or null
    * @throws IOException if serialization fails
    */
-  private void prepareCoreFiles(
-      CLDFArchive archive, Map<String, byte[]> fileContents, Map<String, String> checksums)
+  private void writeCollections(
+      ZipArchiveOutputStream zos,
+      CLDFArchive archive,
+      Map<String, String> checksums,
+      EntityIndex.Builder index)
       throws IOException {
-    if (archive.getLocations() != null && !archive.getLocations().isEmpty()) {
-      LocationsFile locationsFile =
-          LocationsFile.builder().locations(archive.getLocations()).build();
-      addFileToContents(LOCATIONS_FILE, locationsFile, fileContents, checksums);
+    for (CollectionFile collection : collectionFiles(archive)) {
+      writeCollection(zos, collection, checksums, index);
     }
+  }
 
+  /** Returns the collection files present in the archive, in the order they are written. */
+  private List<CollectionFile> collectionFiles(CLDFArchive archive) {
+    List<CollectionFile> files = new ArrayList<>();
+    if (archive.getLocations() != null && !archive.getLocations().isEmpty()) {
+      files.add(new CollectionFile(LOCATIONS_FILE, "locations", archive.getLocations()));
+    }
     if (archive.getClimbs() != null && !archive.getClimbs().isEmpty()) {
-      ClimbsFile climbsFile = ClimbsFile.builder().climbs(archive.getClimbs()).build();
-      addFileToContents(CLIMBS_FILE, climbsFile, fileContents, checksums);
+      files.add(new CollectionFile(CLIMBS_FILE, "climbs", archive.getClimbs()));
     }
-
     if (archive.getSessions() != null && !archive.getSessions().isEmpty()) {
-      SessionsFile sessionsFile = SessionsFile.builder().sessions(archive.getSessions()).build();
-      addFileToContents(SESSIONS_FILE, sessionsFile, fileContents, checksums);
+      files.add(new CollectionFile(SESSIONS_FILE, "sessions", archive.getSessions()));
     }
-  }
-
-  /**
-   * Prepares optional data files (routes, sectors, tags, media metadata).
-   *
-   * @param archive the archive
-   * @param fileContents map to store file contents
-   * @param checksums map to store file checksums
-   * @throws IOException if serialization fails
-   */
-  private void prepareOptionalFiles(
-      CLDFArchive archive, Map<String, byte[]> fileContents, Map<String, String> checksums)
-      throws IOException {
     if (archive.hasRoutes()) {
-      RoutesFile routesFile = RoutesFile.builder().routes(archive.getRoutes()).build();
-      addFileToContents(ROUTES_FILE, routesFile, fileContents, checksums);
+      files.add(new CollectionFile(ROUTES_FILE, "routes", archive.getRoutes()));
     }
-
     if (archive.hasSectors()) {
-      SectorsFile sectorsFile = SectorsFile.builder().sectors(archive.getSectors()).build();
-      addFileToContents(SECTORS_FILE, sectorsFile, fileContents, checksums);
+      files.add(new CollectionFile(SECTORS_FILE, "sectors", archive.getSectors()));
     }
-
     if (archive.hasTags()) {
-      TagsFile tagsFile = TagsFile.builder().tags(archive.getTags()).build();
-      addFileToContents(TAGS_FILE, tagsFile, fileContents, checksums);
+      files.add(new CollectionFile(TAGS_FILE, "tags", archive.getTags()));
     }
-
     if (archive.hasMedia()) {
-      MediaMetadataFile mediaFile =
-          MediaMetadataFile.builder().media(archive.getMediaItems()).build();
-      addFileToContents(MEDIA_METADATA_FILE, mediaFile, fileContents, checksums);
+      files.add(new CollectionFile(MEDIA_METADATA_FILE, "media", archive.getMediaItems()));
     }
+    return files;
   }
 
   /**
-   * Prepares embedded media files.
+   * Writes embedded media files.
    *
+   * @param zos the ZIP stream
    * @param archive the archive
-   * @param fileContents map to store file contents
    * @param checksums map to store file checksums
-   * @throws IOException if checksum calculation fails
+   * @throws IOException if writing fails
    */
-  private void prepareMediaFiles(
-      CLDFArchive archive, Map<String, byte[]> fileContents, Map<String, String> checksums)
+  private void writeMediaFiles(
+      ZipArchiveOutputStream zos, CLDFArchive archive, Map<String, String> checksums)
       throws IOException {
     if (archive.hasEmbeddedMedia()) {
+      Map<String, MediaType> mediaTypes = mediaTypesByFilename(archive);
       for (Map.Entry<String, byte[]> entry : archive.getMediaFiles().entrySet()) {
-        fileContents.put(entry.getKey(), entry.getValue());
-        checksums.put(entry.getKey(), calculateSHA256(entry.getValue()));
+        if (shouldStore(entry.getKey(), mediaTypes)) {
+          writeStoredEntry(zos, entry.getKey(), entry.getValue(), checksums);
+        } else {
+          writeEntry(zos, entry.getKey(), entry.getValue(), checksums);
+        }
       }
     }
   }
 
   /**
-   * Helper method to serialize an object and add it to file contents.
+   * Serializes and compresses every entry except {@code checksums.json} on {@link
+   * #compressionThreads} worker threads. Compressed entries are gathered in temporary files and
+   * copied into the ZIP stream in the order they were added, so the layout matches the sequential
+   * path.
    *
-   * @param filename the file name
-   * @param object the object to serialize
-   * @param fileContents map to store file contents
+   * @param zos the ZIP stream
+   * @param archive the archive
    * @param checksums map to store file checksums
-   * @throws IOException if serialization fails
+   * @param index the entity index to record entries in, or null
+   * @throws IOException if serialization, schema validation or compression fails
    */
-  private void addFileToContents(
+  private void writeEntriesInParallel(
+      ZipArchiveOutputStream zos,
+      CLDFArchive archive,
+      Map<String, String> checksums,
+      EntityIndex.Builder index)
+      throws IOException {
+    prepareManifest(archive);
+
+    List<String> entryOrder = new ArrayList<>();
+    Map<String, String> digests = new ConcurrentHashMap<>();
+    ExecutorService executor = Executors.newFixedThreadPool(compressionThreads);
+    try {
+      ParallelScatterZipCreator creator =
+          new ParallelScatterZipCreator(
+              executor, CLDFWriter::newBackingStore, compressionProfile.getJsonLevel());
+
+      addParallelEntry(
+          creator,
+          entryOrder,
+          digests,
+          MANIFEST_FILE,
+          false,
+          () -> serializeValidated(MANIFEST_FILE, archive.getManifest()));
+      for (CollectionFile collection : collectionFiles(archive)) {
+        // Each worker records into the entries of its own file
+        EntityIndex.FileEntries entries = index != null ? index.file(collection.filename()) : null;
+        addParallelEntry(
+            creator,
+            entryOrder,
+            digests,
+            collection.filename(),
+            false,
+            () -> serializeCollection(collection, entries));
+      }
+      if (archive.hasEmbeddedMedia()) {
+        Map<String, MediaType> mediaTypes = mediaTypesByFilename(archive);
+        for (Map.Entry<String, byte[]> entry : archive.getMediaFiles().entrySet()) {
+          addParallelEntry(
+              creator,
+              entryOrder,
+              digests,
+              entry.getKey(),
+              shouldStore(entry.getKey(), mediaTypes),
+              entry::getValue);
+        }
+      }
+
+      creator.writeTo(zos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while compressing archive");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+        throw uncheckedIOException.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IOException("Failed to compress archive", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (String filename : entryOrder) {
+      checksums.put(filename, digests.get(filename));
+    }
+  }
+
+  private void addParallelEntry(
+      ParallelScatterZipCreator creator,
+      List<String> entryOrder,
+      Map<String, String> digests,
       String filename,
-      Object object,
-      Map<String, byte[]> fileContents,
-      Map<String, String> checksums)
+      boolean stored,
+      EntryContent content) {
+    ZipArchiveEntry entry = new ZipArchiveEntry(filename);
+    entry.setMethod(stored ? ZipEntry.STORED : ZipEntry.DEFLATED);
+    entryOrder.add(filename);
+    creator.addArchiveEntry(
+        entry,
+        () -> {
+          try {
+            byte[] bytes = content.get();
+            digests.put(filename, calculateSHA256(bytes));
+            return new ByteArrayInputStream(bytes);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  private static ScatterGatherBackingStore newBackingStore() throws IOException {
+    return new FileBasedScatterGatherBackingStore(File.createTempFile("cldf-scatter", ".tmp"));
+  }
+
+  /**
+   * Decides whether a media file is stored rather than deflated. The file extension decides where
+   * it is known; otherwise photos and videos from the media metadata are assumed to be compressed.
+   */
+  private boolean shouldStore(String path, Map<String, MediaType> mediaTypes) {
+    if (compressionProfile.storesAllMedia()) {
+      return true;
+    }
+    String name = path.substring(path.lastIndexOf('/') + 1);
+    int dot = name.lastIndexOf('.');
+    String extension = dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    if (PRECOMPRESSED_EXTENSIONS.contains(extension)) {
+      return true;
+    }
+    if (COMPRESSIBLE_EXTENSIONS.contains(extension)) {
+      return false;
+    }
+    return mediaTypes.get(name) != null;
+  }
+
+  private Map<String, MediaType> mediaTypesByFilename(CLDFArchive archive) {
+    Map<String, MediaType> mediaTypes = new HashMap<>();
+    if (archive.getMediaItems() != null) {
+      for (MediaMetadataItem item : archive.getMediaItems()) {
+        if (item.getFilename() != null && item.getType() != null) {
+          String filename = item.getFilename();
+          mediaTypes.put(filename.substring(filename.lastIndexOf('/') + 1), item.getType());
+        }
+      }
+    }
+    return mediaTypes;
+  }
+
+  /**
+   * Writes the entity index, if one is being built, as a STORED entry so it can be memory-mapped
+   * when the archive is read.
+   *
+   * @param zos the ZIP stream
+   * @param index the entity index, or null
+   * @param checksums map to store file checksums
+   * @throws IOException if writing fails
+   */
+  private void writeEntityIndex(
+      ZipArchiveOutputStream zos, EntityIndex.Builder index, Map<String, String> checksums)
       throws IOException {
-    byte[] bytes = serializeToJson(object);
-    fileContents.put(filename, bytes);
-    checksums.put(filename, calculateSHA256(bytes));
+    if (index != null) {
+      writeStoredEntry(zos, EntityIndex.INDEX_FILE, index.toByteArray(), checksums);
+    }
   }
 
   /**
-   * Creates the checksums file.
+   * Writes the checksums file from the digests collected while writing the other entries.
    *
-   * @param fileContents map to store file contents
+   * @param zos the ZIP stream
    * @param checksums map of file checksums
    * @throws IOException if serialization fails
    */
-  private void createChecksumsFile(Map<String, byte[]> fileContents, Map<String, String> checksums)
+  private void writeChecksumsFile(ZipArchiveOutputStream zos, Map<String, String> checksums)
       throws IOException {
-    Checksums checksumsObj =
-        Checksums.builder()
-            .algorithm("SHA-256")
-            .files(checksums)
-            .generatedAt(OffsetDateTime.now())
-            .build();
-    byte[] checksumsBytes = serializeToJson(checksumsObj);
-    fileContents.put(CHECKSUMS_FILE, checksumsBytes);
+    zos.putArchiveEntry(new ZipArchiveEntry(CHECKSUMS_FILE));
+    zos.write(serializeValidated(CHECKSUMS_FILE, buildChecksums(checksums)));
+    zos.closeArchiveEntry();
+  }
+
+  private static Checksums buildChecksums(Map<String, String> checksums) {
+    return Checksums.builder()
+        .algorithm("SHA-256")
+        .files(checksums)
+        .generatedAt(OffsetDateTime.now())
+        .build();
   }
 
   /**
-   * Validates all schemas for the prepared files.
+   * Streams a collection file of the form {@code {"<field>": [...]}} into a new ZIP entry, one
+   * element at a time, and records its checksum.
    *
-   * @param fileContents map of file contents to validate
-   * @throws IOException if schema validation fails
+   * @param zos the ZIP stream
+   * @param collection the collection file to write
+   * @param checksums map to store file checksums
+   * @param index the entity index to record entries in, or null
+   * @throws IOException if serialization or schema validation fails
    */
-  private void validateAllSchemas(Map<String, byte[]> fileContents) throws IOException {
-    log.debug("Validating schemas for {} files", fileContents.size());
+  private void writeCollection(
+      ZipArchiveOutputStream zos,
+      CollectionFile collection,
+      Map<String, String> checksums,
+      EntityIndex.Builder index)
+      throws IOException {
+    MessageDigest digest = newDigest();
+    zos.putArchiveEntry(new ZipArchiveEntry(collection.filename()));
+    writeCollectionJson(
+        new DigestOutputStream(zos, digest),
+        collection,
+        index != null ? index.file(collection.filename()) : null);
+    zos.closeArchiveEntry();
+    checksums.put(collection.filename(), toHex(digest.digest()));
+  }
 
-    for (Map.Entry<String, byte[]> entry : fileContents.entrySet()) {
-      if (!entry.getKey().startsWith("media/")) {
-        validateSingleFileSchema(entry.getKey(), entry.getValue());
+  private byte[] serializeCollection(CollectionFile collection, EntityIndex.FileEntries entries)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeCollectionJson(out, collection, entries);
+    return out.toByteArray();
+  }
+
+  /**
+   * Writes a collection file one element at a time. With schema validation enabled, elements are
+   * converted to JSON trees and validated in batches of {@value #VALIDATION_BATCH_SIZE} before
+   * they are written, so only one batch is held in memory. The target stream is left open.
+   *
+   * @param out the stream to write to
+   * @param collection the collection file to write
+   * @param entries the entity index entries to record the elements in, or null
+   * @throws IOException if serialization or schema validation fails
+   */
+  private void writeCollectionJson(
+      OutputStream out, CollectionFile collection, EntityIndex.FileEntries entries)
+      throws IOException {
+    try (JsonGenerator generator =
+        objectMapper.createGenerator(entries != null ? entries.track(out) : out)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      generator.writeStartObject();
+      generator.writeFieldName(collection.fieldName());
+      generator.writeStartArray();
+      if (validateSchemas) {
+        writeValidatedElements(generator, collection, entries);
+      } else {
+        for (Object element : collection.elements()) {
+          if (entries != null) {
+            entries.add(element, generator);
+          }
+          elementWriter.writeValue(generator, element);
+        }
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
+
+  private void writeValidatedElements(
+      JsonGenerator generator, CollectionFile collection, EntityIndex.FileEntries entries)
+      throws IOException {
+    ArrayNode batch = objectMapper.createArrayNode();
+    int batchStart = 0;
+    for (Object element : collection.elements()) {
+      batch.add(objectMapper.<JsonNode>valueToTree(element));
+      if (batch.size() == VALIDATION_BATCH_SIZE) {
+        writeBatch(generator, collection, batch, batchStart, entries);
+        batchStart += batch.size();
+        batch.removeAll();
+      }
+    }
+    if (!batch.isEmpty()) {
+      writeBatch(generator, collection, batch, batchStart, entries);
+    }
+  }
+
+  private void writeBatch(
+      JsonGenerator generator,
+      CollectionFile collection,
+      ArrayNode batch,
+      int batchStart,
+      EntityIndex.FileEntries entries)
+      throws IOException {
+    ObjectNode document = objectMapper.createObjectNode();
+    document.set(collection.fieldName(), batch);
+    validateSingleFileSchema(collection.filename(), document, batchStart);
+    for (JsonNode node : batch) {
+      if (entries != null) {
+        entries.add(node, generator);
       }
+      elementWriter.writeValue(generator, node);
     }
+  }
+
+  /**
+   * Writes an in-memory entry and records its checksum.
+   *
+   * @param zos the ZIP stream
+   * @param filename the entry name
+   * @param content the entry content
+   * @param checksums map to store file checksums
+   * @throws IOException if writing fails
+   */
+  private void writeEntry(
+      ZipArchiveOutputStream zos, String filename, byte[] content, Map<String, String> checksums)
+      throws IOException {
+    zos.putArchiveEntry(new ZipArchiveEntry(filename));
+    zos.write(content);
+    zos.closeArchiveEntry();
+    checksums.put(filename, calculateSHA256(content));
+  }
+
+  /**
+   * Writes an in-memory entry with the STORED method. Size and CRC are set up front so the entry
+   * can be written to a non-seekable stream.
+   *
+   * @param zos the ZIP stream
+   * @param filename the entry name
+   * @param content the entry content
+   * @param checksums map to store file checksums
+   * @throws IOException if writing fails
+   */
+  private void writeStoredEntry(
+      ZipArchiveOutputStream zos, String filename, byte[] content, Map<String, String> checksums)
+      throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    ZipArchiveEntry entry = new ZipArchiveEntry(filename);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    entry.setCompressedSize(content.length);
+    entry.setCrc(crc.getValue());
+    zos.putArchiveEntry(entry);
+    zos.write(content);
+    zos.closeArchiveEntry();
+    checksums.put(filename, calculateSHA256(content));
+  }
 
-    log.debug("Schema validation passed for all files");
+  /**
+   * Serializes a single-object file such as the manifest, validating it against its schema first
+   * when schema validation is enabled. The object is converted to a JSON tree once; the same tree
+   * is validated and written, so the output is never parsed back.
+   *
+   * @param filename the file name, used to select the schema
+   * @param object the object to serialize
+   * @return the serialized JSON
+   * @throws IOException if serialization or schema validation fails
+   */
+  private byte[] serializeValidated(String filename, Object object) throws IOException {
+    if (!validateSchemas) {
+      return serializeToJson(object);
+    }
+    JsonNode tree = objectMapper.valueToTree(object);
+    validateSingleFileSchema(filename, tree, 0);
+    return serializeToJson(tree);
   }
 
   /**
-   * Validates the schema for a single file.
+   * Validates the schema for a single file, or for one batch of a collection file.
    *
    * @param filename the file name
-   * @param content the file content
+   * @param tree the file content as a JSON tree
+   * @param offset index of the first element in the batch, used in error messages
    * @throws IOException if schema validation fails
    */
-  private void validateSingleFileSchema(String filename, byte[] content) throws IOException {
-    ValidationResult result = schemaValidator.validateWithResult(filename, content);
+  private void validateSingleFileSchema(String filename, JsonNode tree, int offset)
+      throws IOException {
+    ValidationResult result = schemaValidator.validateWithResult(filename, tree);
     if (!result.valid()) {
       StringBuilder errorMessage = new StringBuilder();
-      errorMessage.append("Schema validation failed for ").append(filename).append(":\n");
+      errorMessage.append("Schema validation failed for ").append(filename);
+      if (offset > 0) {
+        errorMessage.append(" (elements from index ").append(offset).append(")");
+      }
+      errorMessage.append(":\n");
       for (ValidationResult.ValidationError error : result.errors()) {
         errorMessage.append("  - ").append(error.message()).append("\n");
       }
@@ -360,29 +1072,6 @@ public class CLDFWriter {
     }
   }
 
-  /**
-   * Writes the ZIP archive to the output stream.
-   *
-   * @param outputStream the output stream
-   * @param fileContents map of file contents to write
-   * @throws IOException if writing fails
-   */
-  private void writeZipArchive(OutputStream outputStream, Map<String, byte[]> fileContents)
-      throws IOException {
-    try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(outputStream)) {
-      zos.setLevel(9); // Maximum compression
-
-      for (Map.Entry<String, byte[]> entry : fileContents.entrySet()) {
-        ZipArchiveEntry zipEntry = new ZipArchiveEntry(entry.getKey());
-        zos.putArchiveEntry(zipEntry);
-        zos.write(entry.getValue());
-        zos.closeArchiveEntry();
-      }
-
-      zos.finish();
-    }
-  }
-
   private void validateArchive(CLDFArchive archive) {
     if (archive == null) {
       throw new IllegalArgumentException("Archive cannot be null");
@@ -407,23 +1096,29 @@ public class CLDFWriter {
   }
 
   private String calculateSHA256(byte[] data) throws IOException {
+    return toHex(newDigest().digest(data));
+  }
+
+  private static MessageDigest newDigest() throws IOException {
     try {
-      MessageDigest digest = MessageDigest.getInstance("SHA-256");
-      byte[] hash = digest.digest(data);
-      StringBuilder hexString = new StringBuilder();
-      for (byte b : hash) {
-        String hex = Integer.toHexString(0xff & b);
-        if (hex.length() == 1) {
-          hexString.append('0');
-        }
-        hexString.append(hex);
-      }
-      return hexString.toString();
+      return MessageDigest.getInstance("SHA-256");
     } catch (NoSuchAlgorithmException e) {
       throw new IOException("SHA-256 algorithm not available", e);
     }
   }
 
+  private static String toHex(byte[] hash) {
+    StringBuilder hexString = new StringBuilder();
+    for (byte b : hash) {
+      String hex = Integer.toHexString(0xff & b);
+      if (hex.length() == 1) {
+        hexString.append('0');
+      }
+      hexString.append(hex);
+    }
+    return hexString.toString();
+  }
+
   private Manifest.Stats calculateStats(CLDFArchive archive) {
     return Manifest.Stats.builder()
         .climbsCount(Optional.ofNullable(archive.getClimbs()).map(List::size).orElse(0))
@@ -435,4 +1130,19 @@ public class CLDFWriter {
         .mediaCount(Optional.ofNullable(archive.getMediaItems()).map(List::size).orElse(0))
         .build();
   }
+
+  /** A collection file of the form {@code {"<fieldName>": [...]}}. */
+  private record CollectionFile(String filename, String fieldName, List<?> elements) {}
+
+  /** Writes a whole archive to a stream. */
+  @FunctionalInterface
+  private interface ArchiveOutput {
+    void writeTo(OutputStream out) throws IOException;
+  }
+
+  /** Produces the content of an entry on a compression worker thread. */
+  @FunctionalInterface
+  private interface EntryContent {
+    byte[] get() throws IOException;
+  }
 }
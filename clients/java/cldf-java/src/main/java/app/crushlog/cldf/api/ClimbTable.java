@@ -0,0 +1,288 @@
+package app.crushlog.cldf.api;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.enums.ClimbType;
+import app.crushlog.cldf.models.enums.FinishType;
+import app.crushlog.cldf.utils.GradeScale;
+import lombok.NonNull;
+
+/**
+ * Climbs stored column by column in primitive arrays, for aggregations over many climbs. Dates are
+ * kept as epoch days, grades as {@link GradeScale} ordinals and the other columns as small codes,
+ * so a kernel reads a few bytes per climb from contiguous memory instead of following pointers
+ * through {@link Climb} objects. Each kernel makes a single pass over the rows. When the runtime
+ * has the incubating {@code jdk.incubator.vector} module ({@code --add-modules
+ * jdk.incubator.vector}), counts, sums and selections compare a vector of rows per instruction;
+ * otherwise, or with the system property {@code cldf.kernels.scalar=true}, they run as scalar
+ * loops with the same results.
+ *
+ * <p>Rows are in the order of the climbs the table was built from. Every column stores {@link
+ * #MISSING} where a climb has no value. A table is a snapshot: later changes to the climbs are not
+ * reflected. Instances are immutable and thread-safe.
+ */
+public final class ClimbTable {
+
+  /** Code of a missing value */
+  public static final int MISSING = -1;
+
+  private static final ClimbType[] CLIMB_TYPES = ClimbType.values();
+  private static final FinishType[] FINISH_TYPES = FinishType.values();
+  private static final ColumnKernels KERNELS = ColumnKernels.create();
+
+  /** Columns of small integer codes */
+  public enum Column {
+    /** The {@link ClimbType} ordinal */
+    CLIMB_TYPE,
+    /** The {@link FinishType} ordinal */
+    FINISH_TYPE,
+    /** 1 for indoor climbs and 0 for outdoor climbs */
+    INDOOR,
+    /** The {@link GradeScale} ordinal of the climb's grade */
+    GRADE,
+    /** The rating */
+    RATING
+  }
+
+  private final ColumnKernels kernels;
+  private final int size;
+  private final int[] epochDays;
+  private final byte[] climbTypes;
+  private final byte[] finishTypes;
+  private final byte[] indoor;
+  private final byte[] ratings;
+  private final short[] grades;
+  private final int gradeCardinality;
+  private final int ratingCardinality;
+
+  private ClimbTable(List<Climb> climbs, ColumnKernels kernels) {
+    this.kernels = kernels;
+    size = climbs.size();
+    epochDays = new int[size];
+    climbTypes = new byte[size];
+    finishTypes = new byte[size];
+    indoor = new byte[size];
+    ratings = new byte[size];
+    grades = new short[size];
+    int maxGrade = MISSING;
+    int maxRating = MISSING;
+    int row = 0;
+    for (Climb climb : climbs) {
+      LocalDate date = climb.getDate();
+      epochDays[row] = date != null ? (int) date.toEpochDay() : Integer.MIN_VALUE;
+      climbTypes[row] = (byte) (climb.getType() != null ? climb.getType().ordinal() : MISSING);
+      finishTypes[row] =
+          (byte) (climb.getFinishType() != null ? climb.getFinishType().ordinal() : MISSING);
+      indoor[row] = (byte) (climb.getIsIndoor() != null ? (climb.getIsIndoor() ? 1 : 0) : MISSING);
+      Integer rating = climb.getRating();
+      ratings[row] =
+          (byte) (rating != null && rating >= 0 && rating <= Byte.MAX_VALUE ? rating : MISSING);
+      int grade = GradeScale.ordinal(climb.getGrades());
+      grades[row] = (short) (grade <= Short.MAX_VALUE ? grade : MISSING);
+      maxGrade = Math.max(maxGrade, grades[row]);
+      maxRating = Math.max(maxRating, ratings[row]);
+      row++;
+    }
+    gradeCardinality = maxGrade + 1;
+    ratingCardinality = maxRating + 1;
+  }
+
+  /**
+   * Builds a table of the climbs of an archive.
+   *
+   * @param archive the archive
+   * @return the table
+   */
+  public static ClimbTable of(@NonNull CLDFArchive archive) {
+    List<Climb> climbs = archive.getClimbs();
+    return of(climbs != null ? climbs : Collections.emptyList());
+  }
+
+  /**
+   * Builds a table of climbs.
+   *
+   * @param climbs the climbs, one row each
+   * @return the table
+   */
+  public static ClimbTable of(@NonNull List<Climb> climbs) {
+    return new ClimbTable(climbs, KERNELS);
+  }
+
+  /** Builds a table of climbs that runs on the given kernels */
+  static ClimbTable of(List<Climb> climbs, ColumnKernels kernels) {
+    return new ClimbTable(climbs, kernels);
+  }
+
+  /** Returns the number of rows */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of codes a column can hold: codes run from 0 to one less than this.
+   *
+   * @param column the column
+   * @return the number of codes
+   */
+  public int cardinality(Column column) {
+    return switch (column) {
+      case CLIMB_TYPE -> CLIMB_TYPES.length;
+      case FINISH_TYPE -> FINISH_TYPES.length;
+      case INDOOR -> 2;
+      case GRADE -> gradeCardinality;
+      case RATING -> ratingCardinality;
+    };
+  }
+
+  /**
+   * Returns the code of a row in a column.
+   *
+   * @param column the column
+   * @param row the row
+   * @return the code, or {@link #MISSING}
+   */
+  public int get(Column column, int row) {
+    byte[] bytes = bytes(column);
+    return bytes != null ? bytes[row] : grades[row];
+  }
+
+  /** Returns the date of a row, or null */
+  public LocalDate getDate(int row) {
+    int epochDay = epochDays[row];
+    return epochDay != Integer.MIN_VALUE ? LocalDate.ofEpochDay(epochDay) : null;
+  }
+
+  /**
+   * Counts the rows with a code.
+   *
+   * @param column the column
+   * @param code the code
+   * @return the number of rows
+   */
+  public long count(Column column, int code) {
+    byte[] bytes = bytes(column);
+    return bytes != null ? kernels.count(bytes, code) : kernels.count(grades, code);
+  }
+
+  /**
+   * Counts the rows with each code of a column.
+   *
+   * @param column the column to group by
+   * @return the counts, indexed by code; rows with a missing value are not counted
+   */
+  public long[] countBy(Column column) {
+    return countBy(column, null);
+  }
+
+  /**
+   * Counts the selected rows with each code of a column.
+   *
+   * @param column the column to group by
+   * @param rows the rows to count, or null for all rows
+   * @return the counts, indexed by code; rows with a missing value are not counted
+   */
+  public long[] countBy(Column column, BitSet rows) {
+    byte[] bytes = bytes(column);
+    long[] counts = new long[cardinality(column)];
+    long[] words = rows != null ? rows.toLongArray() : null;
+    if (bytes != null) {
+      kernels.countBy(bytes, words, counts);
+    } else {
+      kernels.countBy(grades, words, counts);
+    }
+    return counts;
+  }
+
+  /**
+   * Averages the codes of a numeric column, such as {@link Column#RATING} or {@link
+   * Column#GRADE}, skipping missing values.
+   *
+   * @param column the column to average
+   * @return the average, or NaN if every value is missing
+   */
+  public double average(Column column) {
+    byte[] bytes = bytes(column);
+    long[] sum = bytes != null ? kernels.sum(bytes) : kernels.sum(grades);
+    return sum[1] > 0 ? (double) sum[0] / sum[1] : Double.NaN;
+  }
+
+  /**
+   * Averages the codes of a numeric column per code of another column, skipping rows where either
+   * value is missing.
+   *
+   * @param groupBy the column to group by
+   * @param column the column to average
+   * @return the averages, indexed by the code of {@code groupBy}; NaN for codes without values
+   */
+  public double[] averageBy(Column groupBy, Column column) {
+    byte[] groupBytes = bytes(groupBy);
+    byte[] valueBytes = bytes(column);
+    int groups = cardinality(groupBy);
+    long[] sums = new long[groups];
+    long[] counts = new long[groups];
+    for (int row = 0; row < size; row++) {
+      int group = groupBytes != null ? groupBytes[row] : grades[row];
+      int value = valueBytes != null ? valueBytes[row] : grades[row];
+      if (group >= 0 && value >= 0) {
+        sums[group] += value;
+        counts[group]++;
+      }
+    }
+    double[] averages = new double[groups];
+    for (int group = 0; group < groups; group++) {
+      averages[group] = counts[group] > 0 ? (double) sums[group] / counts[group] : Double.NaN;
+    }
+    return averages;
+  }
+
+  /**
+   * Selects the rows whose code is one of several.
+   *
+   * @param column the column
+   * @param codes the codes to select
+   * @return the selected rows
+   */
+  public BitSet rowsWhere(Column column, int... codes) {
+    byte[] bytes = bytes(column);
+    boolean[] selected = new boolean[cardinality(column)];
+    for (int code : codes) {
+      if (code >= 0 && code < selected.length) {
+        selected[code] = true;
+      }
+    }
+    return BitSet.valueOf(
+        bytes != null ? kernels.select(bytes, selected) : kernels.select(grades, selected));
+  }
+
+  /**
+   * Selects the rows dated within a range. Rows without a date are never selected.
+   *
+   * @param from the first date, inclusive, or null for no lower bound
+   * @param to the last date, inclusive, or null for no upper bound
+   * @return the selected rows
+   */
+  public BitSet rowsBetween(LocalDate from, LocalDate to) {
+    // Integer.MIN_VALUE marks rows without a date, so it is never in range
+    long low = Math.max(from != null ? from.toEpochDay() : Long.MIN_VALUE, Integer.MIN_VALUE + 1L);
+    long high = Math.min(to != null ? to.toEpochDay() : Long.MAX_VALUE, Integer.MAX_VALUE);
+    if (low > high) {
+      return new BitSet();
+    }
+    return BitSet.valueOf(kernels.selectRange(epochDays, (int) low, (int) high));
+  }
+
+  /** Returns the byte array of a column, or null for the grade column */
+  private byte[] bytes(Column column) {
+    return switch (column) {
+      case CLIMB_TYPE -> climbTypes;
+      case FINISH_TYPE -> finishTypes;
+      case INDOOR -> indoor;
+      case RATING -> ratings;
+      case GRADE -> null;
+    };
+  }
+}
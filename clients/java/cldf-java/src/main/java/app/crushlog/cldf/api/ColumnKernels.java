@@ -0,0 +1,203 @@
+package app.crushlog.cldf.api;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The loops behind {@link ClimbTable}, written as plain scalar code. Codes and values are small
+ * non-negative ints, with negative entries marking missing values that are skipped. Row selections
+ * are the words of a {@link java.util.BitSet}, bit {@code i} of word {@code i / 64} standing for
+ * row {@code i}.
+ *
+ * <p>{@link #create()} returns the SIMD kernels, {@code VectorColumnKernels}, when the incubating
+ * {@code jdk.incubator.vector} module has been added to the runtime, for example with {@code
+ * --add-modules jdk.incubator.vector}, and these kernels otherwise. Both produce identical results.
+ */
+@Slf4j
+class ColumnKernels {
+
+  /** The module of the Vector API */
+  static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+  /** The SIMD kernels, compiled apart from the other classes so only they need the module */
+  static final String VECTOR_KERNELS = "app.crushlog.cldf.api.VectorColumnKernels";
+
+  /** Set to true to use the scalar kernels even when the Vector API is available */
+  static final String SCALAR_PROPERTY = "cldf.kernels.scalar";
+
+  /** Returns the fastest kernels the runtime supports */
+  static ColumnKernels create() {
+    if (!Boolean.getBoolean(SCALAR_PROPERTY)
+        && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      try {
+        return (ColumnKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        log.debug("Vector API unavailable, using scalar column kernels", e);
+      }
+    }
+    return new ColumnKernels();
+  }
+
+  /** Returns a short name of the kernels, for logs and benchmarks */
+  String name() {
+    return "scalar";
+  }
+
+  /**
+   * Counts the selected entries with each code.
+   *
+   * @param codes the codes
+   * @param rows the selected rows, or null for all rows
+   * @param counts the counts to add to, indexed by code and covering every code
+   */
+  void countBy(byte[] codes, long[] rows, long[] counts) {
+    if (rows == null) {
+      for (byte code : codes) {
+        if (code >= 0) {
+          counts[code]++;
+        }
+      }
+    } else {
+      for (int word = 0; word < rows.length; word++) {
+        for (long bits = rows[word]; bits != 0; bits &= bits - 1) {
+          int row = word << 6 | Long.numberOfTrailingZeros(bits);
+          if (row >= codes.length) {
+            return;
+          }
+          if (codes[row] >= 0) {
+            counts[codes[row]]++;
+          }
+        }
+      }
+    }
+  }
+
+  /** Counts the selected entries with each code, as {@link #countBy(byte[], long[], long[])} */
+  void countBy(short[] codes, long[] rows, long[] counts) {
+    if (rows == null) {
+      for (short code : codes) {
+        if (code >= 0) {
+          counts[code]++;
+        }
+      }
+    } else {
+      for (int word = 0; word < rows.length; word++) {
+        for (long bits = rows[word]; bits != 0; bits &= bits - 1) {
+          int row = word << 6 | Long.numberOfTrailingZeros(bits);
+          if (row >= codes.length) {
+            return;
+          }
+          if (codes[row] >= 0) {
+            counts[codes[row]]++;
+          }
+        }
+      }
+    }
+  }
+
+  /** Counts the entries equal to a code */
+  long count(byte[] codes, int code) {
+    long count = 0;
+    for (byte value : codes) {
+      if (value == code) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /** Counts the entries equal to a code */
+  long count(short[] codes, int code) {
+    long count = 0;
+    for (short value : codes) {
+      if (value == code) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Sums the values that are not missing.
+   *
+   * @param values the values
+   * @return the sum and the number of values summed
+   */
+  long[] sum(byte[] values) {
+    long sum = 0;
+    long count = 0;
+    for (byte value : values) {
+      if (value >= 0) {
+        sum += value;
+        count++;
+      }
+    }
+    return new long[] {sum, count};
+  }
+
+  /** Sums the values that are not missing, as {@link #sum(byte[])} */
+  long[] sum(short[] values) {
+    long sum = 0;
+    long count = 0;
+    for (short value : values) {
+      if (value >= 0) {
+        sum += value;
+        count++;
+      }
+    }
+    return new long[] {sum, count};
+  }
+
+  /**
+   * Selects the entries whose code is selected.
+   *
+   * @param codes the codes
+   * @param selected whether each code is selected, indexed by code and covering every code
+   * @return the selected rows as bit set words
+   */
+  long[] select(byte[] codes, boolean[] selected) {
+    long[] words = new long[words(codes.length)];
+    for (int row = 0; row < codes.length; row++) {
+      int code = codes[row];
+      if (code >= 0 && selected[code]) {
+        words[row >>> 6] |= 1L << row;
+      }
+    }
+    return words;
+  }
+
+  /** Selects the entries whose code is selected, as {@link #select(byte[], boolean[])} */
+  long[] select(short[] codes, boolean[] selected) {
+    long[] words = new long[words(codes.length)];
+    for (int row = 0; row < codes.length; row++) {
+      int code = codes[row];
+      if (code >= 0 && selected[code]) {
+        words[row >>> 6] |= 1L << row;
+      }
+    }
+    return words;
+  }
+
+  /**
+   * Selects the entries within a range.
+   *
+   * @param values the values
+   * @param low the lowest value to select
+   * @param high the highest value to select
+   * @return the selected rows as bit set words
+   */
+  long[] selectRange(int[] values, int low, int high) {
+    long[] words = new long[words(values.length)];
+    for (int row = 0; row < values.length; row++) {
+      int value = values[row];
+      if (value >= low && value <= high) {
+        words[row >>> 6] |= 1L << row;
+      }
+    }
+    return words;
+  }
+
+  /** Returns the number of bit set words covering a number of rows */
+  static int words(int rows) {
+    return (rows + 63) >>> 6;
+  }
+}
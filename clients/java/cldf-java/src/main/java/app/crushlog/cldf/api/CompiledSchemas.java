@@ -0,0 +1,119 @@
+package app.crushlog.cldf.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.networknt.schema.InputFormat;
+import com.networknt.schema.Schema;
+import com.networknt.schema.SchemaRegistry;
+import com.networknt.schema.dialect.BasicDialectRegistry;
+import com.networknt.schema.dialect.Dialects;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Immutable set of compiled CLDF schemas. Schemas are read from the classpath and compiled once per
+ * base path for the whole JVM, so every {@link SchemaValidator} shares the same thread-safe {@link
+ * Schema} instances instead of rebuilding the registry.
+ */
+@Slf4j
+final class CompiledSchemas {
+
+  private static final String SCHEMA_URL_PREFIX = "https://cldf.io/schemas/";
+
+  // Schema files that may be referenced via $ref
+  private static final String[] ALL_SCHEMA_FILES = {
+    "manifest.schema.json",
+    "locations.schema.json",
+    "climbs.schema.json",
+    "sessions.schema.json",
+    "routes.schema.json",
+    "sectors.schema.json",
+    "tags.schema.json",
+    "media-metadata.schema.json",
+    "media.schema.json",
+    "checksums.schema.json",
+    "definitions.schema.json" // Common definitions referenced by other schemas
+  };
+
+  private static final Map<String, CompiledSchemas> INSTANCES = new ConcurrentHashMap<>();
+
+  private final Map<String, Schema> schemas;
+
+  private CompiledSchemas(Map<String, Schema> schemas) {
+    this.schemas = Map.copyOf(schemas);
+  }
+
+  /**
+   * Returns the compiled schemas for a classpath base path, compiling them on first use.
+   *
+   * @param basePath the classpath directory holding the schema files, e.g. {@code /schemas/}
+   * @return the shared compiled schemas
+   */
+  static CompiledSchemas forBasePath(String basePath) {
+    return INSTANCES.computeIfAbsent(basePath, CompiledSchemas::compile);
+  }
+
+  /**
+   * Returns a compiled schema.
+   *
+   * @param schemaFile the schema file name, e.g. {@code climbs.schema.json}
+   * @return the compiled schema, or null if it was not found on the classpath
+   */
+  Schema get(String schemaFile) {
+    return schemas.get(schemaFile);
+  }
+
+  int size() {
+    return schemas.size();
+  }
+
+  private static CompiledSchemas compile(String basePath) {
+    // Pre-load all schemas to map URLs to classpath resources
+    Map<String, String> schemaContents = loadAllSchemas(basePath);
+    Map<String, String> schemaResources = new HashMap<>();
+    schemaContents.forEach(
+        (file, content) -> schemaResources.put(SCHEMA_URL_PREFIX + file, content));
+
+    // Create schema registry with Draft 7 dialect and URL mapping (json-schema-validator 2.0.0+)
+    SchemaRegistry schemaRegistry =
+        SchemaRegistry.builder()
+            .defaultDialectId("http://json-schema.org/draft-07/schema#")
+            .dialectRegistry(new BasicDialectRegistry(Dialects.getDraft7()))
+            .schemaLoader(
+                loader -> loader.resourceLoaders(resources -> resources.resources(schemaResources)))
+            .build();
+
+    Map<String, Schema> compiled = new HashMap<>();
+    for (Map.Entry<String, String> entry : schemaContents.entrySet()) {
+      Schema schema = schemaRegistry.getSchema(entry.getValue(), InputFormat.JSON);
+      // Resolve $refs now rather than on the first validation
+      schema.initializeValidators();
+      compiled.put(entry.getKey(), schema);
+    }
+    log.debug("Compiled {} schemas from {}", compiled.size(), basePath);
+    return new CompiledSchemas(compiled);
+  }
+
+  /** Load all schema files from classpath, keyed by file name. */
+  private static Map<String, String> loadAllSchemas(String basePath) {
+    Map<String, String> schemas = new HashMap<>();
+    for (String schemaFile : ALL_SCHEMA_FILES) {
+      String resourcePath = basePath + schemaFile;
+      try (InputStream is = CompiledSchemas.class.getResourceAsStream(resourcePath)) {
+        if (is != null) {
+          schemas.put(schemaFile, new String(is.readAllBytes(), StandardCharsets.UTF_8));
+          log.debug("Loaded schema: {} -> {}", SCHEMA_URL_PREFIX + schemaFile, schemaFile);
+        } else {
+          log.debug("Schema not found in classpath: {}", resourcePath);
+        }
+      } catch (IOException e) {
+        log.warn("Failed to load schema: {}", resourcePath, e);
+      }
+    }
+    return schemas;
+  }
+}
@@ -0,0 +1,35 @@
+package app.crushlog.cldf.api;
+
+import java.util.zip.Deflater;
+
+/**
+ * Compression settings used by {@link CLDFWriter}. The profile sets the deflate level for JSON
+ * files. Embedded media that is already compressed (JPEG, PNG, MP4, ...) is always written with
+ * the STORED method, because deflating it again only costs CPU time.
+ */
+public enum CompressionProfile {
+  /** Fastest deflate for JSON files. */
+  FAST(Deflater.BEST_SPEED),
+  /** Default zlib trade-off between size and speed. */
+  BALANCED(6),
+  /** Smallest JSON files; the writer's default. */
+  MAX(Deflater.BEST_COMPRESSION),
+  /** No compression. JSON entries use deflate level 0 and all media is stored. */
+  STORE(Deflater.NO_COMPRESSION);
+
+  private final int jsonLevel;
+
+  CompressionProfile(int jsonLevel) {
+    this.jsonLevel = jsonLevel;
+  }
+
+  /** Returns the deflate level used for JSON entries. */
+  public int getJsonLevel() {
+    return jsonLevel;
+  }
+
+  /** Returns true if every media file is stored, including ones that would still compress. */
+  public boolean storesAllMedia() {
+    return this == STORE;
+  }
+}
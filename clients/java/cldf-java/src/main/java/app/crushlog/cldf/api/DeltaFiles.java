@@ -0,0 +1,89 @@
+package app.crushlog.cldf.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Naming rules for delta files appended by {@link CLDFWriter#append}. A delta of {@code
+ * climbs.json} is named {@code climbs.delta-0001.json}; every append writes one sequence number
+ * shared by all its files, including {@code checksums.delta-0001.json} holding their digests.
+ * Deltas are validated against the schema of their base file and merged after it in sequence
+ * order.
+ */
+final class DeltaFiles {
+
+  private static final Pattern DELTA_NAME =
+      Pattern.compile("^([^/]+)\\.delta-(\\d{4,9})\\.json$");
+
+  private DeltaFiles() {}
+
+  /**
+   * Returns the name of a delta of a base file.
+   *
+   * @param baseFile the base file, e.g. {@code climbs.json}
+   * @param sequence the delta sequence number
+   * @return the delta file name
+   */
+  static String deltaName(String baseFile, int sequence) {
+    String stem = baseFile.substring(0, baseFile.length() - ".json".length());
+    return String.format("%s.delta-%04d.json", stem, sequence);
+  }
+
+  /**
+   * Returns the base file of a delta file, or the name itself if it is not a delta.
+   *
+   * @param filename the file name
+   * @return the base file name
+   */
+  static String baseName(String filename) {
+    Matcher matcher = DELTA_NAME.matcher(filename);
+    return matcher.matches() ? matcher.group(1) + ".json" : filename;
+  }
+
+  /**
+   * Returns the sequence number of a delta file.
+   *
+   * @param filename the file name
+   * @return the sequence number, or 0 if the name is not a delta
+   */
+  static int sequence(String filename) {
+    Matcher matcher = DELTA_NAME.matcher(filename);
+    return matcher.matches() ? Integer.parseInt(matcher.group(2)) : 0;
+  }
+
+  /**
+   * Returns the sequence number the next append should use.
+   *
+   * @param names the entry names of the archive
+   * @return one more than the highest sequence number present
+   */
+  static int nextSequence(Collection<String> names) {
+    int highest = 0;
+    for (String name : names) {
+      highest = Math.max(highest, sequence(name));
+    }
+    return highest + 1;
+  }
+
+  /**
+   * Returns the deltas of a base file in sequence order.
+   *
+   * @param baseFile the base file, e.g. {@code climbs.json}
+   * @param names the entry names of the archive
+   * @return the delta file names, oldest first
+   */
+  static List<String> deltasOf(String baseFile, Collection<String> names) {
+    List<String> deltas = new ArrayList<>();
+    for (String name : names) {
+      if (sequence(name) > 0 && baseName(name).equals(baseFile)) {
+        deltas.add(name);
+      }
+    }
+    deltas.sort(Comparator.comparingInt(DeltaFiles::sequence));
+    return deltas;
+  }
+}
@@ -0,0 +1,577 @@
+package app.crushlog.cldf.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import app.crushlog.cldf.clid.CompactCLID;
+import app.crushlog.cldf.models.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * An index from entity CLIDs and numeric ids to the byte offset of the entity within its collection
+ * file, stored in the archive as {@code entity-index.bin}. It lets {@link LazyCLDFArchive} decode a
+ * single entity without parsing the rest of its collection.
+ *
+ * <p>The entry is written with the STORED method so it can be memory-mapped in place. It holds a
+ * header naming the indexed collection files with the CRC-32 and size of their uncompressed
+ * content, followed by two open-addressing hash tables probed linearly: one keyed by canonical CLID
+ * ({@link CompactCLID}), one keyed by collection file and id. Offsets point at or before the
+ * opening brace of the entity in the uncompressed JSON. All numbers are big-endian.
+ *
+ * <p>A collection whose CRC-32 or size no longer matches the ZIP central directory is treated as
+ * not indexed, so an index is never trusted for a file that was rewritten without it. Entities with
+ * a non-canonical CLID are only indexed by id; the first entity wins when a key is repeated.
+ */
+@Slf4j
+final class EntityIndex {
+
+  static final String INDEX_FILE = "entity-index.bin";
+
+  private static final int MAGIC = 0x434c4958; // "CLIX"
+  private static final short VERSION = 1;
+
+  // Slot layouts; the first byte of a slot is 0 when the slot is empty
+  // CLID slot: type ordinal + 1, file, UUID msb, UUID lsb, offset
+  private static final int CLID_SLOT = 1 + 1 + 8 + 8 + 8;
+  // Id slot: file + 1, id, offset
+  private static final int ID_SLOT = 1 + 4 + 8;
+
+  private static final int MAX_FILES = 255;
+
+  private final List<String> files;
+  private final long[] crcs;
+  private final long[] sizes;
+  private final ByteBuffer clidTable;
+  private final int clidCapacity;
+  private final ByteBuffer idTable;
+  private final int idCapacity;
+  // Files of the index whose content no longer matches, by index file number
+  private final boolean[] stale;
+
+  private EntityIndex(
+      List<String> files,
+      long[] crcs,
+      long[] sizes,
+      ByteBuffer clidTable,
+      int clidCapacity,
+      ByteBuffer idTable,
+      int idCapacity,
+      boolean[] stale) {
+    this.files = files;
+    this.crcs = crcs;
+    this.sizes = sizes;
+    this.clidTable = clidTable;
+    this.clidCapacity = clidCapacity;
+    this.idTable = idTable;
+    this.idCapacity = idCapacity;
+    this.stale = stale;
+  }
+
+  /**
+   * Reads the entity index of an open archive. A STORED index is memory-mapped, so only the slots
+   * that are probed are ever read from disk.
+   *
+   * @param file the archive file
+   * @param zipFile the open archive
+   * @return the index, or null if the archive has none or it cannot be used
+   * @throws IOException if the index cannot be read
+   */
+  static EntityIndex read(File file, ZipFile zipFile) throws IOException {
+    ZipArchiveEntry entry = zipFile.getEntry(INDEX_FILE);
+    if (entry == null) {
+      return null;
+    }
+    ByteBuffer buffer;
+    if (entry.getMethod() == ZipEntry.STORED
+        && entry.getDataOffset() >= 0
+        && entry.getSize() <= Integer.MAX_VALUE) {
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, entry.getDataOffset(), entry.getSize());
+      }
+    } else {
+      try (InputStream is = zipFile.getInputStream(entry)) {
+        buffer = ByteBuffer.wrap(is.readAllBytes());
+      }
+    }
+    try {
+      return parse(buffer, zipFile);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      log.warn("Ignoring corrupt {}", INDEX_FILE);
+      return null;
+    }
+  }
+
+  private static EntityIndex parse(ByteBuffer buffer, ZipFile zipFile) {
+    if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+      log.warn("Ignoring {} with unsupported format", INDEX_FILE);
+      return null;
+    }
+    int fileCount = buffer.get() & 0xff;
+    List<String> files = new ArrayList<>(fileCount);
+    long[] crcs = new long[fileCount];
+    long[] sizes = new long[fileCount];
+    boolean[] stale = new boolean[fileCount];
+    for (int i = 0; i < fileCount; i++) {
+      byte[] name = new byte[buffer.getShort() & 0xffff];
+      buffer.get(name);
+      files.add(new String(name, StandardCharsets.UTF_8));
+      crcs[i] = buffer.getLong();
+      sizes[i] = buffer.getLong();
+      ZipArchiveEntry entry = zipFile.getEntry(files.get(i));
+      stale[i] = entry == null || entry.getCrc() != crcs[i] || entry.getSize() != sizes[i];
+      if (stale[i]) {
+        log.debug("Entity index of {} is out of date and will not be used", files.get(i));
+      }
+    }
+    int clidCapacity = buffer.getInt();
+    int idCapacity = buffer.getInt();
+    ByteBuffer clidTable = slice(buffer, clidCapacity, CLID_SLOT);
+    ByteBuffer idTable = slice(buffer, idCapacity, ID_SLOT);
+    return new EntityIndex(
+        files, crcs, sizes, clidTable, clidCapacity, idTable, idCapacity, stale);
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int capacity, int slotSize) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Table capacity is not a power of two: " + capacity);
+    }
+    long length = (long) capacity * slotSize;
+    if (length > buffer.remaining()) {
+      throw new IllegalArgumentException("Truncated table");
+    }
+    ByteBuffer table = buffer.slice(buffer.position(), (int) length);
+    buffer.position(buffer.position() + (int) length);
+    return table;
+  }
+
+  /**
+   * Checks whether a collection file is indexed and the index still matches its content.
+   *
+   * @param filename the collection file
+   * @return true if lookups in this file can be answered by the index
+   */
+  boolean covers(String filename) {
+    int file = files.indexOf(filename);
+    return file >= 0 && !stale[file];
+  }
+
+  /**
+   * Looks up a canonical CLID.
+   *
+   * @param clid the CLID
+   * @return the position of the entity, or null if the CLID is not indexed
+   */
+  Position find(CompactCLID clid) {
+    int typeOrdinal = clid.type().ordinal();
+    long msb = clid.mostSignificantBits();
+    long lsb = clid.leastSignificantBits();
+    int mask = clidCapacity - 1;
+    int slot = clidHash(typeOrdinal, msb, lsb) & mask;
+    for (int probes = 0; probes < clidCapacity; probes++, slot = (slot + 1) & mask) {
+      int base = slot * CLID_SLOT;
+      int type = clidTable.get(base) & 0xff;
+      if (type == 0) {
+        break;
+      }
+      if (type == typeOrdinal + 1
+          && clidTable.getLong(base + 2) == msb
+          && clidTable.getLong(base + 10) == lsb) {
+        int file = clidTable.get(base + 1) & 0xff;
+        return file < files.size()
+            ? new Position(files.get(file), clidTable.getLong(base + 18))
+            : null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Looks up a numeric id within one collection file.
+   *
+   * @param filename the collection file
+   * @param id the entity id
+   * @return the position of the entity, or null if the id is not indexed
+   */
+  Position find(String filename, int id) {
+    int file = files.indexOf(filename);
+    if (file < 0) {
+      return null;
+    }
+    int mask = idCapacity - 1;
+    int slot = idHash(file, id) & mask;
+    for (int probes = 0; probes < idCapacity; probes++, slot = (slot + 1) & mask) {
+      int base = slot * ID_SLOT;
+      int slotFile = idTable.get(base) & 0xff;
+      if (slotFile == 0) {
+        break;
+      }
+      if (slotFile == file + 1 && idTable.getInt(base + 1) == id) {
+        return new Position(filename, idTable.getLong(base + 5));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds the entries of one collection file to a new index, for files copied unchanged into
+   * another archive.
+   *
+   * @param filename the collection file
+   * @param target the index being built
+   * @return true if the file was indexed and copied
+   */
+  boolean copyTo(String filename, Builder target) {
+    int file = files.indexOf(filename);
+    if (file < 0 || stale[file]) {
+      return false;
+    }
+    FileEntries entries = target.file(filename);
+    entries.crc = crcs[file];
+    entries.size = sizes[file];
+    for (int slot = 0; slot < clidCapacity; slot++) {
+      int base = slot * CLID_SLOT;
+      int type = clidTable.get(base) & 0xff;
+      if (type != 0 && (clidTable.get(base + 1) & 0xff) == file) {
+        entries.addClid(
+            type - 1,
+            clidTable.getLong(base + 2),
+            clidTable.getLong(base + 10),
+            clidTable.getLong(base + 18));
+      }
+    }
+    for (int slot = 0; slot < idCapacity; slot++) {
+      int base = slot * ID_SLOT;
+      if ((idTable.get(base) & 0xff) == file + 1) {
+        entries.addId(idTable.getInt(base + 1), idTable.getLong(base + 5));
+      }
+    }
+    return true;
+  }
+
+  private static int clidHash(int typeOrdinal, long msb, long lsb) {
+    return mix(msb * 31 + lsb + typeOrdinal);
+  }
+
+  private static int idHash(int file, int id) {
+    return mix(((long) file << 32) | (id & 0xffffffffL));
+  }
+
+  /** The 64-bit murmur3 finalizer */
+  private static int mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  /** Tables are kept at most three quarters full */
+  private static int capacityFor(int size) {
+    int capacity = 16;
+    while (capacity - (capacity >>> 2) < size) {
+      if (capacity == 1 << 30) {
+        throw new IllegalStateException("Too many entities to index: " + size);
+      }
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /** The collection file of an entity and the offset of the entity in its uncompressed content. */
+  record Position(String filename, long offset) {}
+
+  /**
+   * Collects index entries while collection files are written. Each file gets its own {@link
+   * FileEntries}, so files can be serialized on different threads; {@link #file} and {@link
+   * #toByteArray} must be called from one thread.
+   */
+  static final class Builder {
+
+    private final Map<String, FileEntries> files = new HashMap<>();
+    private final List<FileEntries> order = new ArrayList<>();
+
+    /**
+     * Returns the entries of a collection file, creating them on first use.
+     *
+     * @param filename the collection file
+     * @return the entries of the file
+     */
+    FileEntries file(String filename) {
+      return files.computeIfAbsent(
+          filename,
+          name -> {
+            if (order.size() == MAX_FILES) {
+              throw new IllegalStateException("Too many files to index");
+            }
+            FileEntries entries = new FileEntries(name);
+            order.add(entries);
+            return entries;
+          });
+    }
+
+    /**
+     * Serializes the index.
+     *
+     * @return the content of {@value #INDEX_FILE}
+     */
+    byte[] toByteArray() throws IOException {
+      int clidCount = 0;
+      int idCount = 0;
+      for (FileEntries entries : order) {
+        clidCount += entries.clidCount;
+        idCount += entries.idCount;
+      }
+      int clidCapacity = capacityFor(clidCount);
+      int idCapacity = capacityFor(idCount);
+      ByteBuffer clidTable =
+          ByteBuffer.allocate(Math.multiplyExact(clidCapacity, CLID_SLOT));
+      ByteBuffer idTable = ByteBuffer.allocate(Math.multiplyExact(idCapacity, ID_SLOT));
+      for (int file = 0; file < order.size(); file++) {
+        order.get(file).insertInto(file, clidTable, clidCapacity, idTable, idCapacity);
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+      out.writeByte(order.size());
+      for (FileEntries entries : order) {
+        byte[] name = entries.filename.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(name.length);
+        out.write(name);
+        out.writeLong(entries.crc);
+        out.writeLong(entries.size);
+      }
+      out.writeInt(clidCapacity);
+      out.writeInt(idCapacity);
+      out.write(clidTable.array());
+      out.write(idTable.array());
+      out.flush();
+      return bytes.toByteArray();
+    }
+  }
+
+  /**
+   * The index entries of one collection file. Entries are either recorded from the elements as the
+   * file is serialized through {@link #track} and {@link #add}, or copied from another index
+   * with {@link EntityIndex#copyTo} together with the CRC-32 and size of the copied file.
+   */
+  static final class FileEntries {
+
+    private final String filename;
+    private long crc;
+    private long size;
+    private TrackingOutputStream tracker;
+
+    // CLID entries: type ordinal, UUID msb, UUID lsb and offset, four longs per entry
+    private long[] clids = new long[64];
+    private int clidCount;
+    // Id entries: id and offset, two longs per entry
+    private long[] ids = new long[32];
+    private int idCount;
+
+    private FileEntries(String filename) {
+      this.filename = filename;
+    }
+
+    /**
+     * Wraps the stream the collection file is written to, so entity offsets and the CRC-32 of the
+     * content can be recorded.
+     *
+     * @param out the stream the JSON generator writes to
+     * @return the stream to hand to the generator instead
+     */
+    OutputStream track(OutputStream out) {
+      tracker = new TrackingOutputStream(out);
+      return tracker;
+    }
+
+    /**
+     * Records an element about to be written. Must be called before the element is written.
+     *
+     * @param element the element, either a model object or its JSON tree
+     * @param generator the generator writing to the stream returned by {@link #track}
+     */
+    void add(Object element, JsonGenerator generator) {
+      int buffered = generator.getOutputBuffered();
+      if (buffered < 0) {
+        throw new IllegalStateException("Generator does not expose its buffered output");
+      }
+      long offset = tracker.count + buffered;
+      String clid = clidOf(element);
+      int type = CompactCLID.typeOrdinal(clid);
+      if (type >= 0) {
+        addClid(
+            type,
+            CompactCLID.parseMostSignificantBits(clid),
+            CompactCLID.parseLeastSignificantBits(clid),
+            offset);
+      }
+      Integer id = idOf(element);
+      if (id != null) {
+        addId(id, offset);
+      }
+    }
+
+    private void addClid(int type, long msb, long lsb, long offset) {
+      if (clidCount * 4 == clids.length) {
+        clids = Arrays.copyOf(clids, clids.length * 2);
+      }
+      int base = clidCount++ * 4;
+      clids[base] = type;
+      clids[base + 1] = msb;
+      clids[base + 2] = lsb;
+      clids[base + 3] = offset;
+    }
+
+    private void addId(int id, long offset) {
+      if (idCount * 2 == ids.length) {
+        ids = Arrays.copyOf(ids, ids.length * 2);
+      }
+      int base = idCount++ * 2;
+      ids[base] = id;
+      ids[base + 1] = offset;
+    }
+
+    private void insertInto(
+        int file, ByteBuffer clidTable, int clidCapacity, ByteBuffer idTable, int idCapacity) {
+      if (tracker != null) {
+        crc = tracker.crc.getValue();
+        size = tracker.count;
+      }
+      int mask = clidCapacity - 1;
+      for (int i = 0; i < clidCount * 4; i += 4) {
+        int type = (int) clids[i];
+        long msb = clids[i + 1];
+        long lsb = clids[i + 2];
+        int slot = clidHash(type, msb, lsb) & mask;
+        while (!isFreeClidSlot(clidTable, slot * CLID_SLOT, type, msb, lsb)) {
+          slot = (slot + 1) & mask;
+        }
+        int base = slot * CLID_SLOT;
+        if (clidTable.get(base) == 0) {
+          clidTable.put(base, (byte) (type + 1));
+          clidTable.put(base + 1, (byte) file);
+          clidTable.putLong(base + 2, msb);
+          clidTable.putLong(base + 10, lsb);
+          clidTable.putLong(base + 18, clids[i + 3]);
+        }
+      }
+      mask = idCapacity - 1;
+      for (int i = 0; i < idCount * 2; i += 2) {
+        int id = (int) ids[i];
+        int slot = idHash(file, id) & mask;
+        while (!isFreeIdSlot(idTable, slot * ID_SLOT, file, id)) {
+          slot = (slot + 1) & mask;
+        }
+        int base = slot * ID_SLOT;
+        if (idTable.get(base) == 0) {
+          idTable.put(base, (byte) (file + 1));
+          idTable.putInt(base + 1, id);
+          idTable.putLong(base + 5, ids[i + 1]);
+        }
+      }
+    }
+
+    /** Returns true if the slot is empty or already holds the key, which then keeps its entry */
+    private static boolean isFreeClidSlot(
+        ByteBuffer table, int base, int type, long msb, long lsb) {
+      int slotType = table.get(base) & 0xff;
+      return slotType == 0
+          || (slotType == type + 1
+              && table.getLong(base + 2) == msb
+              && table.getLong(base + 10) == lsb);
+    }
+
+    private static boolean isFreeIdSlot(ByteBuffer table, int base, int file, int id) {
+      int slotFile = table.get(base) & 0xff;
+      return slotFile == 0 || (slotFile == file + 1 && table.getInt(base + 1) == id);
+    }
+
+    private static String clidOf(Object element) {
+      if (element instanceof JsonNode node) {
+        return node.path("clid").textValue();
+      } else if (element instanceof Location location) {
+        return location.getClid();
+      } else if (element instanceof Climb climb) {
+        return climb.getClid();
+      } else if (element instanceof Session session) {
+        return session.getClid();
+      } else if (element instanceof Route route) {
+        return route.getClid();
+      } else if (element instanceof Sector sector) {
+        return sector.getClid();
+      }
+      return null;
+    }
+
+    private static Integer idOf(Object element) {
+      if (element instanceof JsonNode node) {
+        JsonNode id = node.path("id");
+        return id.canConvertToInt() && id.isIntegralNumber() ? id.intValue() : null;
+      } else if (element instanceof Location location) {
+        return location.getId();
+      } else if (element instanceof Climb climb) {
+        return climb.getId();
+      } else if (element instanceof Session session) {
+        return session.getId();
+      } else if (element instanceof Route route) {
+        return route.getId();
+      } else if (element instanceof Sector sector) {
+        return sector.getId();
+      } else if (element instanceof Tag tag) {
+        return tag.getId();
+      } else if (element instanceof MediaMetadataItem item) {
+        return item.getId();
+      }
+      return null;
+    }
+  }
+
+  /** Counts and checksums the bytes written through it. */
+  private static final class TrackingOutputStream extends FilterOutputStream {
+
+    private final CRC32 crc = new CRC32();
+    private long count;
+
+    TrackingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      crc.update(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      crc.update(b, off, len);
+      count += len;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package app.crushlog.cldf.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Iterates over the elements of a top-level array field (e.g. {@code climbs} in {@code
+ * climbs.json}) one element at a time, so only a single element is held in memory.
+ *
+ * @param <T> the element type
+ */
+class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+
+  /** Called once after the last element has been read. */
+  @FunctionalInterface
+  interface CompletionCallback {
+    void onComplete() throws IOException;
+  }
+
+  private final JsonParser parser;
+  private final ObjectReader elementReader;
+  private final CompletionCallback onComplete;
+  private boolean positioned;
+  private boolean finished;
+
+  JsonArrayIterator(
+      JsonParser parser, ObjectReader elementReader, CompletionCallback onComplete) {
+    this.parser = parser;
+    this.elementReader = elementReader;
+    this.onComplete = onComplete;
+  }
+
+  /**
+   * Moves the parser to the start of the named array.
+   *
+   * @param fieldName the top-level field holding the array
+   * @return false if the document has no such field
+   * @throws IOException if the document is not a JSON object or the field is not an array
+   */
+  boolean seekToArray(String fieldName) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new IOException("Expected a JSON object at the start of the document");
+    }
+    JsonToken token;
+    while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      JsonToken value = parser.nextToken();
+      if (fieldName.equals(name)) {
+        if (value != JsonToken.START_ARRAY) {
+          throw new IOException("Expected '" + fieldName + "' to be an array");
+        }
+        return true;
+      }
+      parser.skipChildren();
+    }
+    if (token != JsonToken.END_OBJECT) {
+      throw new IOException("Malformed JSON document");
+    }
+    finish();
+    return false;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (finished) {
+      return false;
+    }
+    if (!positioned) {
+      try {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY || token == null) {
+          finish();
+          return false;
+        }
+        positioned = true;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    positioned = false;
+    try {
+      return elementReader.readValue(parser);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    parser.close();
+  }
+
+  private void finish() throws IOException {
+    finished = true;
+    onComplete.onComplete();
+  }
+}
@@ -0,0 +1,517 @@
+package app.crushlog.cldf.api;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import app.crushlog.cldf.clid.CompactCLID;
+import app.crushlog.cldf.clid.EntityType;
+import app.crushlog.cldf.models.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * A {@link CLDFArchive} backed by the central directory of a CLDF file. Only the manifest and
+ * checksums are read when the archive is opened; every other file is inflated, verified and parsed
+ * the first time its getter is called. Instances keep the underlying file open and must be closed.
+ *
+ * <p>Getters throw {@link UncheckedIOException} if a file cannot be read or fails validation.
+ *
+ * <p>{@link #findByCLID} and {@link #findById} use the entity index written by {@link
+ * CLDFWriter#withEntityIndex}, if the archive has one, to decode a single entity without loading
+ * its collection.
+ */
+@Slf4j
+public class LazyCLDFArchive extends CLDFArchive implements Closeable {
+
+  private static final String MEDIA_PREFIX = "media/";
+  static final String MEDIA_FILES_KEY = MEDIA_PREFIX + "*";
+  private static final int SKIP_BUFFER_SIZE = 16384;
+
+  // Collections in the order they are searched for a CLID
+  private static final List<EntityCollection<?>> COLLECTIONS =
+      List.of(
+          new EntityCollection<>(
+              CLDFReader.LOCATIONS_FILE,
+              Location.class,
+              EntityType.LOCATION,
+              Location::getClid,
+              Location::getId,
+              LazyCLDFArchive::getLocations),
+          new EntityCollection<>(
+              CLDFReader.ROUTES_FILE,
+              Route.class,
+              EntityType.ROUTE,
+              Route::getClid,
+              Route::getId,
+              LazyCLDFArchive::getRoutes),
+          new EntityCollection<>(
+              CLDFReader.SECTORS_FILE,
+              Sector.class,
+              EntityType.SECTOR,
+              Sector::getClid,
+              Sector::getId,
+              LazyCLDFArchive::getSectors),
+          new EntityCollection<>(
+              CLDFReader.CLIMBS_FILE,
+              Climb.class,
+              EntityType.CLIMB,
+              Climb::getClid,
+              Climb::getId,
+              LazyCLDFArchive::getClimbs),
+          new EntityCollection<>(
+              CLDFReader.SESSIONS_FILE,
+              Session.class,
+              EntityType.SESSION,
+              Session::getClid,
+              Session::getId,
+              LazyCLDFArchive::getSessions),
+          new EntityCollection<>(
+              CLDFReader.TAGS_FILE,
+              Tag.class,
+              null,
+              tag -> null,
+              Tag::getId,
+              LazyCLDFArchive::getTags),
+          new EntityCollection<>(
+              CLDFReader.MEDIA_METADATA_FILE,
+              MediaMetadataItem.class,
+              null,
+              item -> null,
+              MediaMetadataItem::getId,
+              LazyCLDFArchive::getMediaItems));
+
+  private final File file;
+  private final ZipFile zipFile;
+  private final CLDFReader reader;
+  private final Set<String> loaded = new HashSet<>();
+  private final List<String> entryNames = new ArrayList<>();
+  private EntityIndex entityIndex;
+  private boolean entityIndexRead;
+
+  LazyCLDFArchive(
+      File file, ZipFile zipFile, CLDFReader reader, Manifest manifest, Checksums checksums) {
+    this.file = file;
+    this.zipFile = zipFile;
+    this.reader = reader;
+    super.setManifest(manifest);
+    super.setChecksums(checksums);
+    for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+      entryNames.add(entry.getName());
+    }
+  }
+
+  @Override
+  public synchronized List<Location> getLocations() {
+    if (!loaded.contains(CLDFReader.LOCATIONS_FILE)) {
+      super.setLocations(
+          load(CLDFReader.LOCATIONS_FILE, LocationsFile.class, LocationsFile::getLocations));
+      loaded.add(CLDFReader.LOCATIONS_FILE);
+    }
+    return super.getLocations();
+  }
+
+  @Override
+  public synchronized void setLocations(List<Location> locations) {
+    loaded.add(CLDFReader.LOCATIONS_FILE);
+    super.setLocations(locations);
+  }
+
+  @Override
+  public synchronized List<Climb> getClimbs() {
+    if (!loaded.contains(CLDFReader.CLIMBS_FILE)) {
+      super.setClimbs(load(CLDFReader.CLIMBS_FILE, ClimbsFile.class, ClimbsFile::getClimbs));
+      loaded.add(CLDFReader.CLIMBS_FILE);
+    }
+    return super.getClimbs();
+  }
+
+  @Override
+  public synchronized void setClimbs(List<Climb> climbs) {
+    loaded.add(CLDFReader.CLIMBS_FILE);
+    super.setClimbs(climbs);
+  }
+
+  @Override
+  public synchronized List<Session> getSessions() {
+    if (!loaded.contains(CLDFReader.SESSIONS_FILE)) {
+      super.setSessions(
+          load(CLDFReader.SESSIONS_FILE, SessionsFile.class, SessionsFile::getSessions));
+      loaded.add(CLDFReader.SESSIONS_FILE);
+    }
+    return super.getSessions();
+  }
+
+  @Override
+  public synchronized void setSessions(List<Session> sessions) {
+    loaded.add(CLDFReader.SESSIONS_FILE);
+    super.setSessions(sessions);
+  }
+
+  @Override
+  public synchronized List<Route> getRoutes() {
+    if (!loaded.contains(CLDFReader.ROUTES_FILE)) {
+      super.setRoutes(load(CLDFReader.ROUTES_FILE, RoutesFile.class, RoutesFile::getRoutes));
+      loaded.add(CLDFReader.ROUTES_FILE);
+    }
+    return super.getRoutes();
+  }
+
+  @Override
+  public synchronized void setRoutes(List<Route> routes) {
+    loaded.add(CLDFReader.ROUTES_FILE);
+    super.setRoutes(routes);
+  }
+
+  @Override
+  public synchronized List<Sector> getSectors() {
+    if (!loaded.contains(CLDFReader.SECTORS_FILE)) {
+      super.setSectors(load(CLDFReader.SECTORS_FILE, SectorsFile.class, SectorsFile::getSectors));
+      loaded.add(CLDFReader.SECTORS_FILE);
+    }
+    return super.getSectors();
+  }
+
+  @Override
+  public synchronized void setSectors(List<Sector> sectors) {
+    loaded.add(CLDFReader.SECTORS_FILE);
+    super.setSectors(sectors);
+  }
+
+  @Override
+  public synchronized List<Tag> getTags() {
+    if (!loaded.contains(CLDFReader.TAGS_FILE)) {
+      super.setTags(load(CLDFReader.TAGS_FILE, TagsFile.class, TagsFile::getTags));
+      loaded.add(CLDFReader.TAGS_FILE);
+    }
+    return super.getTags();
+  }
+
+  @Override
+  public synchronized void setTags(List<Tag> tags) {
+    loaded.add(CLDFReader.TAGS_FILE);
+    super.setTags(tags);
+  }
+
+  @Override
+  public synchronized List<MediaMetadataItem> getMediaItems() {
+    if (!loaded.contains(CLDFReader.MEDIA_METADATA_FILE)) {
+      super.setMediaItems(
+          load(
+              CLDFReader.MEDIA_METADATA_FILE,
+              MediaMetadataFile.class,
+              MediaMetadataFile::getMedia));
+      loaded.add(CLDFReader.MEDIA_METADATA_FILE);
+    }
+    return super.getMediaItems();
+  }
+
+  @Override
+  public synchronized void setMediaItems(List<MediaMetadataItem> mediaItems) {
+    loaded.add(CLDFReader.MEDIA_METADATA_FILE);
+    super.setMediaItems(mediaItems);
+  }
+
+  /**
+   * Returns all embedded media files, inflating every {@code media/} entry on first access. Prefer
+   * {@link #getMediaFileNames()} and {@link #readMediaFile(String)} when only some files are
+   * needed.
+   */
+  @Override
+  public synchronized Map<String, byte[]> getMediaFiles() {
+    if (!loaded.contains(MEDIA_FILES_KEY)) {
+      Map<String, byte[]> mediaFiles = new HashMap<>();
+      for (String name : getMediaFileNames()) {
+        mediaFiles.put(name, readMediaFile(name));
+      }
+      super.setMediaFiles(mediaFiles.isEmpty() ? null : mediaFiles);
+      loaded.add(MEDIA_FILES_KEY);
+    }
+    return super.getMediaFiles();
+  }
+
+  @Override
+  public synchronized void setMediaFiles(Map<String, byte[]> mediaFiles) {
+    loaded.add(MEDIA_FILES_KEY);
+    super.setMediaFiles(mediaFiles);
+  }
+
+  /**
+   * Lists the embedded media files without inflating them.
+   *
+   * @return the entry names of all files under {@code media/}
+   */
+  public List<String> getMediaFileNames() {
+    List<String> names = new ArrayList<>();
+    for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+      if (!entry.isDirectory() && entry.getName().startsWith(MEDIA_PREFIX)) {
+        names.add(entry.getName());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Inflates a single embedded media file.
+   *
+   * @param path the entry name, e.g. {@code media/photo1.jpg}
+   * @return the file content, or null if the archive has no such entry
+   */
+  public byte[] readMediaFile(String path) {
+    ZipArchiveEntry entry = zipFile.getEntry(path);
+    if (entry == null || entry.isDirectory()) {
+      return null;
+    }
+    try {
+      byte[] content = readEntry(entry);
+      reader.verifyEntry(getChecksums(), path, content);
+      return content;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + path, e);
+    }
+  }
+
+  /**
+   * Finds a location, route, sector, climb or session by CLID.
+   *
+   * <p>If the archive has an entity index covering the collection, only the matching entity is
+   * decoded: the collection file is inflated up to the indexed offset and a single element is
+   * parsed, and a CLID missing from the index is reported without reading the collection at all.
+   * Otherwise, and for collections that were already loaded or replaced, the collection is loaded
+   * and scanned. A canonical CLID is only looked for in the collection of its entity type; any
+   * other CLID is looked for in every collection.
+   *
+   * <p>Entities decoded through the index are not verified against {@code checksums.json}, as that
+   * would mean inflating the whole file. The index is only used for files whose CRC-32 still
+   * matches the ZIP central directory, and the decoded entity must carry the requested CLID.
+   *
+   * @param clid the CLID to look for
+   * @return the first entity with that CLID
+   * @throws UncheckedIOException if a file cannot be read or fails validation
+   */
+  public synchronized Optional<Object> findByCLID(String clid) {
+    if (clid == null) {
+      return Optional.empty();
+    }
+    CompactCLID key = CompactCLID.isCanonical(clid) ? CompactCLID.parse(clid) : null;
+    for (EntityCollection<?> collection : COLLECTIONS) {
+      if (collection.clidType() == null || (key != null && collection.clidType() != key.type())) {
+        continue;
+      }
+      Optional<?> found = findByCLID(collection, clid, key);
+      if (found.isPresent()) {
+        return Optional.of(found.get());
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Finds an entity by its numeric id, using the entity index like {@link #findByCLID}.
+   *
+   * @param type the entity class, e.g. {@code Climb.class}
+   * @param id the entity id
+   * @return the first entity of that type with that id
+   * @throws IllegalArgumentException if the type is not stored in a collection file
+   * @throws UncheckedIOException if a file cannot be read or fails validation
+   */
+  public synchronized <T> Optional<T> findById(Class<T> type, int id) {
+    for (EntityCollection<?> collection : COLLECTIONS) {
+      if (collection.type() == type) {
+        @SuppressWarnings("unchecked")
+        EntityCollection<T> typed = (EntityCollection<T>) collection;
+        return find(
+            typed,
+            element -> Objects.equals(typed.id().apply(element), id),
+            index -> index.find(typed.filename(), id));
+      }
+    }
+    throw new IllegalArgumentException("Not an archive entity type: " + type.getName());
+  }
+
+  private <E> Optional<E> findByCLID(EntityCollection<E> collection, String clid, CompactCLID key) {
+    return find(
+        collection,
+        element -> clid.equals(collection.clid().apply(element)),
+        key != null ? index -> index.find(key) : null);
+  }
+
+  /**
+   * Finds the first element of a collection matching a predicate, through the entity index when
+   * it can answer the lookup and by scanning the loaded collection otherwise.
+   */
+  private <E> Optional<E> find(
+      EntityCollection<E> collection,
+      Predicate<E> matches,
+      Function<EntityIndex, EntityIndex.Position> lookup) {
+    String filename = collection.filename();
+    EntityIndex index = !loaded.contains(filename) && lookup != null ? getEntityIndex() : null;
+    if (index != null && index.covers(filename)) {
+      EntityIndex.Position position = lookup.apply(index);
+      if (position == null || !position.filename().equals(filename)) {
+        // Deltas are not indexed, so a miss is only final without them
+        if (DeltaFiles.deltasOf(filename, entryNames).isEmpty()) {
+          return Optional.empty();
+        }
+      } else {
+        E element = readElement(position, collection.type());
+        if (element != null && matches.test(element)) {
+          return Optional.of(element);
+        }
+        log.warn("Entity index does not match {}, scanning the collection instead", filename);
+      }
+    }
+    List<E> elements = collection.getter().apply(this);
+    return elements == null ? Optional.empty() : elements.stream().filter(matches).findFirst();
+  }
+
+  /** Decodes the element at an indexed offset, or returns null if there is none there. */
+  private <E> E readElement(EntityIndex.Position position, Class<E> type) {
+    ZipArchiveEntry entry = zipFile.getEntry(position.filename());
+    try (InputStream is = zipFile.getInputStream(entry)) {
+      // InflaterInputStream.skip inflates through a 512-byte buffer, so skip in larger reads
+      byte[] buffer = new byte[SKIP_BUFFER_SIZE];
+      long remaining = position.offset();
+      while (remaining > 0) {
+        int read = is.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (read < 0) {
+          throw new EOFException();
+        }
+        remaining -= read;
+      }
+      return reader.parseElement(new BufferedInputStream(is), type);
+    } catch (EOFException | JsonProcessingException e) {
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + position.filename(), e);
+    }
+  }
+
+  /**
+   * Returns the entity index of the archive, reading its header on first access.
+   *
+   * @return the index, or null if the archive has none or it cannot be used
+   */
+  synchronized EntityIndex getEntityIndex() {
+    if (!entityIndexRead) {
+      try {
+        entityIndex = EntityIndex.read(file, zipFile);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read " + EntityIndex.INDEX_FILE, e);
+      }
+      entityIndexRead = true;
+    }
+    return entityIndex;
+  }
+
+  /**
+   * Checks whether the archive contains a file, without inflating it.
+   *
+   * @param filename the entry name
+   * @return true if the entry exists
+   */
+  public boolean containsFile(String filename) {
+    return zipFile.getEntry(filename) != null;
+  }
+
+  /**
+   * Checks whether a file has been loaded or replaced through a setter. Files that were never
+   * touched still match the underlying archive byte for byte.
+   *
+   * @param filename the entry name, or {@link #MEDIA_FILES_KEY} for the embedded media
+   * @return true if the in-memory content may differ from the archive
+   */
+  synchronized boolean isLoaded(String filename) {
+    return loaded.contains(filename);
+  }
+
+  /**
+   * Loads every collection that has delta files, so the deltas are merged and the collection is
+   * marked as loaded.
+   *
+   * @return true if the archive has any delta files
+   */
+  synchronized boolean loadCollectionsWithDeltas() {
+    Map<String, Supplier<?>> getters =
+        Map.of(
+            CLDFReader.LOCATIONS_FILE, this::getLocations,
+            CLDFReader.CLIMBS_FILE, this::getClimbs,
+            CLDFReader.SESSIONS_FILE, this::getSessions,
+            CLDFReader.ROUTES_FILE, this::getRoutes,
+            CLDFReader.SECTORS_FILE, this::getSectors,
+            CLDFReader.TAGS_FILE, this::getTags,
+            CLDFReader.MEDIA_METADATA_FILE, this::getMediaItems);
+    boolean found = false;
+    for (Map.Entry<String, Supplier<?>> getter : getters.entrySet()) {
+      if (!DeltaFiles.deltasOf(getter.getKey(), entryNames).isEmpty()) {
+        getter.getValue().get();
+        found = true;
+      }
+    }
+    return found;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  ZipFile getZipFile() {
+    return zipFile;
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+
+  private <F, E> List<E> load(String filename, Class<F> type, Function<F, List<E>> extractor) {
+    ZipArchiveEntry entry = zipFile.getEntry(filename);
+    try {
+      List<E> elements = null;
+      if (entry != null) {
+        log.debug("Loading {} on first access", filename);
+        elements =
+            extractor.apply(reader.parseEntry(getChecksums(), filename, readEntry(entry), type));
+      }
+      return reader.appendDeltas(
+          elements, filename, type, extractor, entryNames, this::readVerifiedDelta);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + filename, e);
+    }
+  }
+
+  private byte[] readVerifiedDelta(String filename) throws IOException {
+    byte[] content = readEntry(zipFile.getEntry(filename));
+    reader.verifyEntry(getChecksums(), filename, content);
+    return content;
+  }
+
+  private byte[] readEntry(ZipArchiveEntry entry) throws IOException {
+    try (InputStream is = zipFile.getInputStream(entry)) {
+      return is.readAllBytes();
+    }
+  }
+
+  /**
+   * A collection file that entities can be looked up in.
+   *
+   * @param clidType the entity type of the CLIDs in the file, or null if its entities have none
+   */
+  private record EntityCollection<E>(
+      String filename,
+      Class<E> type,
+      EntityType clidType,
+      Function<E, String> clid,
+      Function<E, Integer> id,
+      Function<LazyCLDFArchive, List<E>> getter) {}
+}
@@ -1,7 +1,6 @@
 package app.crushlog.cldf.api;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -10,36 +9,19 @@ import java.util.Map;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.networknt.schema.Error;
-import com.networknt.schema.InputFormat;
 import com.networknt.schema.Schema;
-import com.networknt.schema.SchemaRegistry;
-import com.networknt.schema.dialect.BasicDialectRegistry;
-import com.networknt.schema.dialect.Dialects;
 import lombok.extern.slf4j.Slf4j;
 
-/** Validates JSON data against CLDF schemas using the NetworkNT JSON Schema Validator. */
+/**
+ * Validates JSON data against CLDF schemas using the NetworkNT JSON Schema Validator. Schemas are
+ * compiled once per JVM and shared by all instances; validators are immutable and thread-safe.
+ */
 @Slf4j
 public class SchemaValidator {
 
   private static final String DEFAULT_SCHEMAS_BASE_PATH = "/schemas/";
-  private static final String SCHEMA_URL_PREFIX = "https://cldf.io/schemas/";
   private static final Map<String, String> FILE_TO_SCHEMA_MAPPING = new HashMap<>();
 
-  // Schema files that may be referenced via $ref
-  private static final String[] ALL_SCHEMA_FILES = {
-    "manifest.schema.json",
-    "locations.schema.json",
-    "climbs.schema.json",
-    "sessions.schema.json",
-    "routes.schema.json",
-    "sectors.schema.json",
-    "tags.schema.json",
-    "media-metadata.schema.json",
-    "media.schema.json",
-    "checksums.schema.json",
-    "definitions.schema.json" // Common definitions referenced by other schemas
-  };
-
   private final String schemasBasePath;
 
   static {
@@ -55,8 +37,7 @@ public class SchemaValidator {
   }
 
   private final ObjectMapper objectMapper;
-  private final SchemaRegistry schemaRegistry;
-  private final Map<String, Schema> schemaCache;
+  private final CompiledSchemas schemas;
 
   public SchemaValidator() {
     this(DEFAULT_SCHEMAS_BASE_PATH);
@@ -74,41 +55,26 @@ public class SchemaValidator {
     this.objectMapper.disable(
         com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
 
-    // Pre-load all schemas to map URLs to classpath resources
-    Map<String, String> schemaResources = loadAllSchemas(schemasBasePath);
-
-    // Create schema registry with Draft 7 dialect and URL mapping (json-schema-validator 2.0.0+)
-    this.schemaRegistry =
-        SchemaRegistry.builder()
-            .defaultDialectId("http://json-schema.org/draft-07/schema#")
-            .dialectRegistry(new BasicDialectRegistry(Dialects.getDraft7()))
-            .schemaLoader(
-                loader -> loader.resourceLoaders(resources -> resources.resources(schemaResources)))
-            .build();
-    this.schemaCache = new HashMap<>();
+    this.schemas = CompiledSchemas.forBasePath(schemasBasePath);
   }
 
   /**
-   * Load all schema files from classpath and map them to their URL identifiers.
+   * Returns the validator for the bundled schemas shared by all readers and writers.
+   *
+   * @return the shared validator
    */
-  private Map<String, String> loadAllSchemas(String basePath) {
-    Map<String, String> schemas = new HashMap<>();
-    for (String schemaFile : ALL_SCHEMA_FILES) {
-      String resourcePath = basePath + schemaFile;
-      try (InputStream is = getClass().getResourceAsStream(resourcePath)) {
-        if (is != null) {
-          String content = new String(is.readAllBytes());
-          // Map both the full URL and just the filename
-          schemas.put(SCHEMA_URL_PREFIX + schemaFile, content);
-          log.debug("Loaded schema: {} -> {}", SCHEMA_URL_PREFIX + schemaFile, schemaFile);
-        } else {
-          log.debug("Schema not found in classpath: {}", resourcePath);
-        }
-      } catch (IOException e) {
-        log.warn("Failed to load schema: {}", resourcePath, e);
-      }
-    }
-    return schemas;
+  public static SchemaValidator shared() {
+    return SharedHolder.INSTANCE;
+  }
+
+  /**
+   * Compiles the bundled schemas eagerly so the first read or write does not pay for it. Calling
+   * this more than once has no further effect.
+   *
+   * @return the number of compiled schemas
+   */
+  public static int warmUp() {
+    return shared().schemas.size();
   }
 
   /**
@@ -121,37 +87,64 @@ public class SchemaValidator {
    */
   public ValidationResult validateWithResult(String filename, byte[] jsonContent) {
     try {
-      String schemaFile = FILE_TO_SCHEMA_MAPPING.get(filename);
-      if (schemaFile == null) {
+      if (!FILE_TO_SCHEMA_MAPPING.containsKey(DeltaFiles.baseName(filename))) {
         log.debug("No schema mapping found for file: {}", filename);
         return ValidationResult.success(filename); // Allow unknown files
       }
+      return validate(filename, objectMapper.readTree(jsonContent));
+    } catch (IOException e) {
+      return parseFailure(filename, e);
+    }
+  }
 
-      Schema schema = loadSchema(schemaFile);
-      JsonNode jsonNode = objectMapper.readTree(jsonContent);
+  /**
+   * Validates an already parsed JSON tree. Callers that need both validation and a bound model can
+   * parse once, validate the tree here and bind it with {@code ObjectMapper.treeToValue}.
+   *
+   * @param filename The name of the file being validated (e.g., "manifest.json")
+   * @param jsonNode The parsed JSON content
+   * @return ValidationResult containing success/failure status and any errors
+   */
+  public ValidationResult validateWithResult(String filename, JsonNode jsonNode) {
+    try {
+      return validate(filename, jsonNode);
+    } catch (IOException e) {
+      return parseFailure(filename, e);
+    }
+  }
 
-      List<Error> errors = schema.validate(jsonNode);
+  private ValidationResult validate(String filename, JsonNode jsonNode) throws IOException {
+    // Delta files such as climbs.delta-0001.json share the schema of their base file
+    String schemaFile = FILE_TO_SCHEMA_MAPPING.get(DeltaFiles.baseName(filename));
+    if (schemaFile == null) {
+      log.debug("No schema mapping found for file: {}", filename);
+      return ValidationResult.success(filename); // Allow unknown files
+    }
 
-      if (errors.isEmpty()) {
-        return ValidationResult.success(filename);
-      }
+    Schema schema = loadSchema(schemaFile);
+    List<Error> errors = schema.validate(jsonNode);
 
-      List<ValidationResult.ValidationError> validationErrors = new ArrayList<>();
-      for (Error error : errors) {
-        validationErrors.add(
-            new ValidationResult.ValidationError(
-                error.getInstanceLocation().toString(), error.getMessage(), error.getKeyword()));
-      }
+    if (errors.isEmpty()) {
+      return ValidationResult.success(filename);
+    }
 
-      return ValidationResult.failure(filename, validationErrors);
-    } catch (IOException e) {
-      // If we can't parse the JSON or load the schema, return a failure
-      return ValidationResult.failure(
-          filename,
-          List.of(
-              new ValidationResult.ValidationError(
-                  "$", "Failed to validate: " + e.getMessage(), "parse_error")));
+    List<ValidationResult.ValidationError> validationErrors = new ArrayList<>();
+    for (Error error : errors) {
+      validationErrors.add(
+          new ValidationResult.ValidationError(
+              error.getInstanceLocation().toString(), error.getMessage(), error.getKeyword()));
     }
+
+    return ValidationResult.failure(filename, validationErrors);
+  }
+
+  private ValidationResult parseFailure(String filename, IOException e) {
+    // If we can't parse the JSON or load the schema, return a failure
+    return ValidationResult.failure(
+        filename,
+        List.of(
+            new ValidationResult.ValidationError(
+                "$", "Failed to validate: " + e.getMessage(), "parse_error")));
   }
 
   /**
@@ -165,8 +158,7 @@ public class SchemaValidator {
    */
   public ValidationResult validateObjectWithResult(String filename, Object object) {
     try {
-      byte[] jsonBytes = objectMapper.writeValueAsBytes(object);
-      return validateWithResult(filename, jsonBytes);
+      return validateWithResult(filename, objectMapper.<JsonNode>valueToTree(object));
     } catch (Exception e) {
       // If we can't serialize the object, return a failure
       return ValidationResult.failure(
@@ -178,22 +170,14 @@ public class SchemaValidator {
   }
 
   private Schema loadSchema(String schemaFile) throws IOException {
-    if (schemaCache.containsKey(schemaFile)) {
-      return schemaCache.get(schemaFile);
+    Schema schema = schemas.get(schemaFile);
+    if (schema == null) {
+      throw new IOException("Schema not found: " + schemasBasePath + schemaFile);
     }
+    return schema;
+  }
 
-    // Load from classpath resources
-    String resourcePath = schemasBasePath + schemaFile;
-    try (InputStream is = getClass().getResourceAsStream(resourcePath)) {
-      if (is == null) {
-        throw new IOException("Schema not found: " + resourcePath);
-      }
-      String schemaContent = new String(is.readAllBytes());
-
-      // Create schema from content (json-schema-validator 2.0.0+)
-      Schema schema = schemaRegistry.getSchema(schemaContent, InputFormat.JSON);
-      schemaCache.put(schemaFile, schema);
-      return schema;
-    }
+  private static final class SharedHolder {
+    private static final SchemaValidator INSTANCE = new SchemaValidator();
   }
 }
@@ -0,0 +1,262 @@
+package app.crushlog.cldf.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Appends entries to an existing ZIP file without rewriting it. The new entries are written after
+ * the end of the file, followed by a copy of the old directory records, records for the new
+ * entries and a new end-of-central-directory record. Only the appended data and the central
+ * directory are written, so the cost does not grow with the size of the existing entries.
+ *
+ * <p>Nothing before the old end of the file is modified, and the new end record is written only
+ * once everything it refers to is on disk. A crash before then leaves the old directory and end
+ * record valid, followed by partial data that ZIP readers skip when they search the last 64 KiB of
+ * the file for the end record, as does the next append. The old directory stays in the file as dead
+ * bytes, so a sequential reader such as {@code ZipArchiveInputStream} stops before the appended
+ * entries; {@code CLDFWriter.compact} rewrites the file without them. ZIP64 archives are not
+ * supported.
+ */
+final class ZipAppender {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int EOCD_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int LOCAL_HEADER_LENGTH = 30;
+  private static final int CENTRAL_HEADER_LENGTH = 46;
+  private static final int EOCD_LENGTH = 22;
+  private static final int ZIP64_LOCATOR_LENGTH = 20;
+  private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+  private static final int VERSION = 20;
+  private static final int UTF8_FLAG = 0x0800;
+  private static final int DEFLATED = 8;
+  private static final long MAX_OFFSET = 0xFFFFFFFFL;
+  private static final int MAX_ENTRIES = 0xFFFF;
+
+  private ZipAppender() {}
+
+  /**
+   * Appends deflated entries to a ZIP file.
+   *
+   * @param file the ZIP file
+   * @param entries entry names and their uncompressed content, in the order they are written
+   * @param level the deflate level
+   * @throws IOException if the file is not a ZIP file, uses ZIP64, or cannot be written
+   */
+  static void append(File file, Map<String, byte[]> entries, int level) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      EndOfCentralDirectory end = findEndOfCentralDirectory(channel);
+      byte[] centralDirectory = read(channel, end.directoryOffset(), (int) end.directorySize());
+
+      long dosTime = dosTime(LocalDateTime.now());
+      ByteArrayOutputStream localEntries = new ByteArrayOutputStream();
+      ByteArrayOutputStream newRecords = new ByteArrayOutputStream();
+      long appendOffset = channel.size();
+      long offset = appendOffset;
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        byte[] content = entry.getValue();
+        byte[] compressed = deflate(content, level);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        localEntries.write(
+            localHeader(name, crc.getValue(), compressed.length, content.length, dosTime));
+        localEntries.write(compressed);
+        newRecords.write(
+            centralHeader(
+                name, crc.getValue(), compressed.length, content.length, dosTime, offset));
+        offset = appendOffset + localEntries.size();
+      }
+
+      long directoryOffset = appendOffset + localEntries.size();
+      long directorySize = (long) centralDirectory.length + newRecords.size();
+      int entryCount = end.entryCount() + entries.size();
+      if (directoryOffset + directorySize > MAX_OFFSET || entryCount > MAX_ENTRIES) {
+        throw new IOException("Appending would require ZIP64; compact the archive instead");
+      }
+
+      channel.position(appendOffset);
+      writeFully(channel, localEntries.toByteArray());
+      writeFully(channel, centralDirectory);
+      writeFully(channel, newRecords.toByteArray());
+      // The new directory must be on disk before the end record that makes it current
+      channel.force(false);
+      writeFully(
+          channel,
+          endOfCentralDirectory(entryCount, directorySize, directoryOffset, end.comment()));
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Finds the end record at the end of the file, or else the last one whose directory ends where
+   * it starts, which is the one left in place when an earlier append did not complete.
+   */
+  private static EndOfCentralDirectory findEndOfCentralDirectory(FileChannel channel)
+      throws IOException {
+    long size = channel.size();
+    int tailLength = (int) Math.min(size, EOCD_LENGTH + MAX_COMMENT_LENGTH);
+    ByteBuffer tail = ByteBuffer.wrap(read(channel, size - tailLength, tailLength));
+    tail.order(ByteOrder.LITTLE_ENDIAN);
+
+    for (int pos = tailLength - EOCD_LENGTH; pos >= 0; pos--) {
+      if (tail.getInt(pos) != EOCD_SIGNATURE) {
+        continue;
+      }
+      int commentLength = Short.toUnsignedInt(tail.getShort(pos + 20));
+      if (pos + EOCD_LENGTH + commentLength > tailLength) {
+        continue;
+      }
+      boolean atEnd = pos + EOCD_LENGTH + commentLength == tailLength;
+      int entryCount = Short.toUnsignedInt(tail.getShort(pos + 10));
+      long directorySize = Integer.toUnsignedLong(tail.getInt(pos + 12));
+      long directoryOffset = Integer.toUnsignedLong(tail.getInt(pos + 16));
+      long eocdPosition = size - tailLength + pos;
+      if (Short.toUnsignedInt(tail.getShort(pos + 4)) != 0
+          || directoryOffset + directorySize != eocdPosition) {
+        if (!atEnd) {
+          continue;
+        }
+        throw new IOException("Cannot append to a multi-part or prefixed ZIP archive");
+      }
+      if (entryCount == MAX_ENTRIES
+          || directoryOffset == MAX_OFFSET
+          || hasZip64Locator(channel, eocdPosition)) {
+        throw new IOException("Cannot append to a ZIP64 archive");
+      }
+      byte[] comment = new byte[commentLength];
+      tail.get(pos + EOCD_LENGTH, comment);
+      return new EndOfCentralDirectory(entryCount, directorySize, directoryOffset, comment);
+    }
+    throw new IOException("Not a ZIP archive: end of central directory not found");
+  }
+
+  private static boolean hasZip64Locator(FileChannel channel, long eocdPosition)
+      throws IOException {
+    if (eocdPosition < ZIP64_LOCATOR_LENGTH) {
+      return false;
+    }
+    ByteBuffer locator =
+        ByteBuffer.wrap(read(channel, eocdPosition - ZIP64_LOCATOR_LENGTH, 4))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    return locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE;
+  }
+
+  private static byte[] localHeader(
+      byte[] name, long crc, long compressedSize, long size, long dosTime) {
+    ByteBuffer header =
+        ByteBuffer.allocate(LOCAL_HEADER_LENGTH + name.length).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(LOCAL_HEADER_SIGNATURE);
+    header.putShort((short) VERSION);
+    header.putShort((short) UTF8_FLAG);
+    header.putShort((short) DEFLATED);
+    header.putInt((int) dosTime);
+    header.putInt((int) crc);
+    header.putInt((int) compressedSize);
+    header.putInt((int) size);
+    header.putShort((short) name.length);
+    header.putShort((short) 0);
+    header.put(name);
+    return header.array();
+  }
+
+  private static byte[] centralHeader(
+      byte[] name, long crc, long compressedSize, long size, long dosTime, long offset) {
+    ByteBuffer header =
+        ByteBuffer.allocate(CENTRAL_HEADER_LENGTH + name.length).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(CENTRAL_HEADER_SIGNATURE);
+    header.putShort((short) VERSION);
+    header.putShort((short) VERSION);
+    header.putShort((short) UTF8_FLAG);
+    header.putShort((short) DEFLATED);
+    header.putInt((int) dosTime);
+    header.putInt((int) crc);
+    header.putInt((int) compressedSize);
+    header.putInt((int) size);
+    header.putShort((short) name.length);
+    header.putShort((short) 0); // extra field length
+    header.putShort((short) 0); // comment length
+    header.putShort((short) 0); // disk number
+    header.putShort((short) 0); // internal attributes
+    header.putInt(0); // external attributes
+    header.putInt((int) offset);
+    header.put(name);
+    return header.array();
+  }
+
+  private static byte[] endOfCentralDirectory(
+      int entryCount, long directorySize, long directoryOffset, byte[] comment) {
+    ByteBuffer record =
+        ByteBuffer.allocate(EOCD_LENGTH + comment.length).order(ByteOrder.LITTLE_ENDIAN);
+    record.putInt(EOCD_SIGNATURE);
+    record.putShort((short) 0);
+    record.putShort((short) 0);
+    record.putShort((short) entryCount);
+    record.putShort((short) entryCount);
+    record.putInt((int) directorySize);
+    record.putInt((int) directoryOffset);
+    record.putShort((short) comment.length);
+    record.put(comment);
+    return record.array();
+  }
+
+  private static byte[] deflate(byte[] content, int level) {
+    Deflater deflater = new Deflater(level, true);
+    try {
+      deflater.setInput(content);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length / 2));
+      byte[] buffer = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /** Packs a local time into the MS-DOS date and time fields used by ZIP headers. */
+  private static long dosTime(LocalDateTime time) {
+    int year = Math.max(time.getYear(), 1980);
+    return ((long) (year - 1980) << 25)
+        | ((long) time.getMonthValue() << 21)
+        | ((long) time.getDayOfMonth() << 16)
+        | ((long) time.getHour() << 11)
+        | ((long) time.getMinute() << 5)
+        | ((long) time.getSecond() >> 1);
+  }
+
+  private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of ZIP archive");
+      }
+    }
+    return buffer.array();
+  }
+
+  private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private record EndOfCentralDirectory(
+      int entryCount, long directorySize, long directoryOffset, byte[] comment) {}
+}
@@ -7,6 +7,8 @@
  *   <li>{@link app.crushlog.cldf.api.CLDFArchive} - The main data structure representing a CLDF
  *       archive
  *   <li>{@link app.crushlog.cldf.api.CLDFReader} - Reads CLDF archives from ZIP files
+ *   <li>{@link app.crushlog.cldf.api.LazyCLDFArchive} - An archive whose files are parsed on first
+ *       access
  *   <li>{@link app.crushlog.cldf.api.CLDFWriter} - Writes CLDF archives to ZIP files
  *   <li>{@link app.crushlog.cldf.api.CLDF} - Convenience factory for creating readers and writers
  * </ul>
@@ -1,8 +1,5 @@
 package app.crushlog.cldf.clid;
 
-import java.util.UUID;
-import java.util.regex.Pattern;
-
 import lombok.NonNull;
 
 /** Represents a parsed CLID (CrushLog ID) */
@@ -14,11 +11,6 @@ public record CLID(
     @NonNull String fullId,
     @NonNull String shortForm,
     @NonNull String url) {
-  private static final Pattern UUID_PATTERN =
-      Pattern.compile(
-          "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$",
-          Pattern.CASE_INSENSITIVE);
-
   private static final String EXPECTED_NAMESPACE = "clid";
 
   /** Factory method to create a CLID from a string with validation */
@@ -42,7 +34,7 @@ public record CLID(
 
     // Validate version
     String version = parts[1];
-    if (!version.matches("^v\\d+$")) {
+    if (!isVersion(version)) {
       throw new IllegalArgumentException(
           "Invalid version '%s'. Expected format: v<number> (e.g., v1)".formatted(version));
     }
@@ -59,18 +51,10 @@ public record CLID(
 
     // Validate UUID format
     String uuidStr = parts[3];
-    if (!UUID_PATTERN.matcher(uuidStr).matches()) {
+    if (!isUuid(uuidStr)) {
       throw new IllegalArgumentException("Invalid UUID format '%s'".formatted(uuidStr));
     }
 
-    // Validate it's a parseable UUID
-    try {
-      UUID.fromString(uuidStr);
-    } catch (IllegalArgumentException e) {
-      throw new IllegalArgumentException(
-          "Invalid UUID '%s': %s".formatted(uuidStr, e.getMessage()));
-    }
-
     final String substring = uuidStr.substring(0, Math.min(uuidStr.length(), 8));
     return new CLID(
         parts[0],
@@ -82,6 +66,38 @@ public record CLID(
         "https://crushlog.pro/g/%s".formatted(substring));
   }
 
+  /** Matches {@code v<number>} without a regex */
+  private static boolean isVersion(String version) {
+    if (version.length() < 2 || version.charAt(0) != 'v') {
+      return false;
+    }
+    for (int i = 1; i < version.length(); i++) {
+      char c = version.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Matches the 8-4-4-4-12 hex UUID layout, in either case, without a regex */
+  private static boolean isUuid(String uuid) {
+    if (uuid.length() != 36) {
+      return false;
+    }
+    for (int i = 0; i < uuid.length(); i++) {
+      char c = uuid.charAt(i);
+      boolean valid =
+          (i == 8 || i == 13 || i == 18 || i == 23)
+              ? c == '-'
+              : (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+      if (!valid) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /** Check if a string is a valid CLID */
   public static boolean isValid(String clid) {
     try {
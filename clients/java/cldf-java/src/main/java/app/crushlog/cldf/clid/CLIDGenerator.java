@@ -1,12 +1,15 @@
 package app.crushlog.cldf.clid;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * CLID (CrushLog ID) Generator Generates globally unique, deterministic identifiers for climbing
@@ -25,6 +28,23 @@ public class CLIDGenerator {
   public static final UUID CRUSHLOG_NAMESPACE =
       UUID.fromString("6ba7b810-9dad-11d1-80b4-00c04fd430c8");
 
+  // Namespace bytes hashed ahead of every UUID v5 name
+  private static final byte[] NAMESPACE_BYTES = toBytes(CRUSHLOG_NAMESPACE);
+
+  // MessageDigest instances are not thread-safe, so each thread keeps its own
+  private static final ThreadLocal<MessageDigest> SHA1 =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+              throw new CLIDGenerationException("SHA-1 algorithm not available", e);
+            }
+          });
+
+  // Locale last checked for plain ASCII decimal formatting, see formatFixed
+  private static volatile Locale plainDecimalLocale;
+
   /**
    * Format a CLID with the current version
    *
@@ -33,11 +53,86 @@ public class CLIDGenerator {
    * @return Formatted CLID string
    */
   private static String formatCLID(EntityType type, UUID uuid) {
-    return "clid:%s:%s:%s".formatted(CURRENT_VERSION, type.value, uuid);
+    return "clid:" + CURRENT_VERSION + ":" + type.value + ":" + uuid;
   }
 
   /** Generate a deterministic CLID for a location */
   public static String generateLocationCLID(Location location) {
+    return locationCLID(location, new StringBuilder(96));
+  }
+
+  /**
+   * Generate deterministic CLIDs for a batch of locations. Equivalent to calling {@link
+   * #generateLocationCLID(Location)} for each location, but shares the working buffers.
+   *
+   * @param locations the locations
+   * @return the CLIDs, in the same order as the locations
+   * @throws IllegalArgumentException if any location is invalid
+   */
+  public static List<String> generateLocationCLIDs(List<Location> locations) {
+    StringBuilder buffer = new StringBuilder(96);
+    List<String> clids = new ArrayList<>(locations.size());
+    for (Location location : locations) {
+      clids.add(locationCLID(location, buffer));
+    }
+    return clids;
+  }
+
+  /** Generate a deterministic CLID for a route */
+  public static String generateRouteCLID(String locationCLID, Route route) {
+    return routeCLID(locationUuid(locationCLID), route, new StringBuilder(96));
+  }
+
+  /**
+   * Generate deterministic CLIDs for a batch of routes at one location. Equivalent to calling
+   * {@link #generateRouteCLID(String, Route)} for each route, but extracts the location UUID once
+   * and shares the working buffers.
+   *
+   * @param locationCLID the CLID of the location the routes belong to
+   * @param routes the routes
+   * @return the CLIDs, in the same order as the routes
+   * @throws IllegalArgumentException if any route is invalid
+   */
+  public static List<String> generateRouteCLIDs(String locationCLID, List<Route> routes) {
+    String locationUuid = locationUuid(locationCLID);
+    StringBuilder buffer = new StringBuilder(96);
+    List<String> clids = new ArrayList<>(routes.size());
+    for (Route route : routes) {
+      clids.add(routeCLID(locationUuid, route, buffer));
+    }
+    return clids;
+  }
+
+  /** Generate a deterministic CLID for a sector */
+  public static String generateSectorCLID(String locationCLID, Sector sector) {
+    return sectorCLID(locationUuid(locationCLID), sector, new StringBuilder(64));
+  }
+
+  /**
+   * Generate deterministic CLIDs for a batch of sectors at one location. Equivalent to calling
+   * {@link #generateSectorCLID(String, Sector)} for each sector.
+   *
+   * @param locationCLID the CLID of the location the sectors belong to
+   * @param sectors the sectors
+   * @return the CLIDs, in the same order as the sectors
+   */
+  public static List<String> generateSectorCLIDs(String locationCLID, List<Sector> sectors) {
+    String locationUuid = locationUuid(locationCLID);
+    StringBuilder buffer = new StringBuilder(64);
+    List<String> clids = new ArrayList<>(sectors.size());
+    for (Sector sector : sectors) {
+      clids.add(sectorCLID(locationUuid, sector, buffer));
+    }
+    return clids;
+  }
+
+  /** Generate a random UUID v4 for user content */
+  public static String generateRandomCLID(EntityType type) {
+    UUID uuid = UUID.randomUUID();
+    return formatCLID(type, uuid);
+  }
+
+  private static String locationCLID(Location location, StringBuilder buffer) {
     // Validate required fields
     ValidationResult validation = validateLocation(location);
     if (!validation.isValid()) {
@@ -45,26 +140,26 @@ public class CLIDGenerator {
           "Invalid location data: " + String.join(", ", validation.getErrors()));
     }
 
-    // Build deterministic components
-    List<String> components =
-        Arrays.asList(
-            location.country().toUpperCase(),
-            location.state() != null ? location.state().toLowerCase() : "",
-            location.city() != null ? normalizeString(location.city()) : "",
-            normalizeString(location.name()),
-            "%.6f".formatted(location.coordinates().lat()),
-            "%.6f".formatted(location.coordinates().lon()),
-            location.isIndoor() ? "indoor" : "outdoor");
-
-    String input = components.stream().filter(s -> !s.isEmpty()).collect(Collectors.joining(":"));
+    // Build deterministic components, skipping empty ones
+    buffer.setLength(0);
+    appendNonEmpty(buffer, location.country().toUpperCase());
+    if (location.state() != null) {
+      appendNonEmpty(buffer, location.state().toLowerCase());
+    }
+    if (location.city() != null) {
+      appendNonEmpty(buffer, normalizeString(location.city()));
+    }
+    appendNonEmpty(buffer, normalizeString(location.name()));
+    appendNonEmpty(buffer, formatFixed(location.coordinates().lat(), 6));
+    appendNonEmpty(buffer, formatFixed(location.coordinates().lon(), 6));
+    appendNonEmpty(buffer, location.isIndoor() ? "indoor" : "outdoor");
 
-    UUID uuid = generateUUIDv5(input);
+    UUID uuid = generateUUIDv5(buffer.toString());
 
     return formatCLID(EntityType.LOCATION, uuid);
   }
 
-  /** Generate a deterministic CLID for a route */
-  public static String generateRouteCLID(String locationCLID, Route route) {
+  private static String routeCLID(String locationUuid, Route route, StringBuilder buffer) {
     // Validate required fields
     ValidationResult validation = validateRoute(route);
     if (!validation.isValid()) {
@@ -72,79 +167,72 @@ public class CLIDGenerator {
           "Invalid route data: " + String.join(", ", validation.getErrors()));
     }
 
-    // Extract location UUID (remove prefix)
-    // Handle both v1 format and potential legacy format
-    String locationUuid =
-        locationCLID.contains(":location:")
-            ? locationCLID.substring(locationCLID.lastIndexOf(':') + 1)
-            : locationCLID;
-
-    // Build deterministic components
-    List<String> components =
-        Arrays.asList(
-            locationUuid,
-            normalizeString(route.name()),
-            standardizeGrade(route.grade()),
-            route.firstAscent() != null && route.firstAscent().year() != null
-                ? route.firstAscent().year().toString()
-                : "",
-            route.firstAscent() != null && route.firstAscent().name() != null
-                ? normalizeString(route.firstAscent().name())
-                : "",
-            route.height() != null ? "%.1f".formatted(route.height()) : "");
-
-    String input = String.join(":", components);
-    UUID uuid = generateUUIDv5(input);
+    // Build deterministic components, keeping empty ones
+    Route.FirstAscent firstAscent = route.firstAscent();
+    buffer.setLength(0);
+    buffer.append(locationUuid).append(':');
+    buffer.append(normalizeString(route.name())).append(':');
+    buffer.append(standardizeGrade(route.grade())).append(':');
+    if (firstAscent != null && firstAscent.year() != null) {
+      buffer.append(firstAscent.year().intValue());
+    }
+    buffer.append(':');
+    if (firstAscent != null && firstAscent.name() != null) {
+      buffer.append(normalizeString(firstAscent.name()));
+    }
+    buffer.append(':');
+    if (route.height() != null) {
+      buffer.append(formatFixed(route.height(), 1));
+    }
+
+    UUID uuid = generateUUIDv5(buffer.toString());
 
     return formatCLID(EntityType.ROUTE, uuid);
   }
 
-  /** Generate a deterministic CLID for a sector */
-  public static String generateSectorCLID(String locationCLID, Sector sector) {
-    // Extract location UUID (handle v1 format)
-    String locationUuid =
-        locationCLID.contains(":location:")
-            ? locationCLID.substring(locationCLID.lastIndexOf(':') + 1)
-            : locationCLID;
-
-    List<String> components =
-        Arrays.asList(
-            locationUuid,
-            normalizeString(sector.name()),
-            sector.order() != null ? sector.order().toString() : "0");
+  private static String sectorCLID(String locationUuid, Sector sector, StringBuilder buffer) {
+    buffer.setLength(0);
+    buffer.append(locationUuid).append(':');
+    buffer.append(normalizeString(sector.name())).append(':');
+    buffer.append(sector.order() != null ? sector.order().intValue() : 0);
 
-    String input = String.join(":", components);
-    UUID uuid = generateUUIDv5(input);
+    UUID uuid = generateUUIDv5(buffer.toString());
 
     return formatCLID(EntityType.SECTOR, uuid);
   }
 
-  /** Generate a random UUID v4 for user content */
-  public static String generateRandomCLID(EntityType type) {
-    UUID uuid = UUID.randomUUID();
-    return formatCLID(type, uuid);
+  /** Extract the location UUID from a CLID, accepting a bare UUID as well */
+  private static String locationUuid(String locationCLID) {
+    return locationCLID.contains(":location:")
+        ? locationCLID.substring(locationCLID.lastIndexOf(':') + 1)
+        : locationCLID;
+  }
+
+  private static void appendNonEmpty(StringBuilder buffer, String component) {
+    if (component.isEmpty()) {
+      return;
+    }
+    if (!buffer.isEmpty()) {
+      buffer.append(':');
+    }
+    buffer.append(component);
   }
 
   /** Generate UUID v5 (deterministic) from input string */
   private static UUID generateUUIDv5(String input) {
-    try {
-      MessageDigest md = MessageDigest.getInstance("SHA-1");
-      md.update(toBytes());
-      byte[] hash = md.digest(input.getBytes(StandardCharsets.UTF_8));
-
-      // Set version (5) and variant bits
-      hash[6] = (byte) ((hash[6] & 0x0f) | 0x50); // Version 5
-      hash[8] = (byte) ((hash[8] & 0x3f) | 0x80); // Variant 10
-
-      return toUUID(Arrays.copyOf(hash, 16));
-    } catch (NoSuchAlgorithmException e) {
-      throw new CLIDGenerationException("SHA-1 algorithm not available", e);
-    }
+    MessageDigest md = SHA1.get();
+    md.update(NAMESPACE_BYTES);
+    byte[] hash = md.digest(input.getBytes(StandardCharsets.UTF_8));
+
+    // Set version (5) and variant bits
+    hash[6] = (byte) ((hash[6] & 0x0f) | 0x50); // Version 5
+    hash[8] = (byte) ((hash[8] & 0x3f) | 0x80); // Variant 10
+
+    return toUUID(hash);
   }
 
   /** Convert UUID to byte array */
-  private static byte[] toBytes() {
-    UUID uuid = CRUSHLOG_NAMESPACE;
+  private static byte[] toBytes(UUID uuid) {
     long msb = uuid.getMostSignificantBits();
     long lsb = uuid.getLeastSignificantBits();
     byte[] buffer = new byte[16];
@@ -157,7 +245,7 @@ public class CLIDGenerator {
     return buffer;
   }
 
-  /** Convert byte array to UUID */
+  /** Convert the first 16 bytes of a hash to a UUID */
   private static UUID toUUID(byte[] hash) {
     long msb = 0;
     long lsb = 0;
@@ -204,20 +292,87 @@ public class CLIDGenerator {
     return parsed.shortForm();
   }
 
-  /** Normalize string for consistent ID generation */
+  /**
+   * Normalize string for consistent ID generation. Lower-cases and trims the input, turns runs of
+   * whitespace and hyphens into a single hyphen, drops everything except ASCII letters, digits and
+   * underscores, and strips leading and trailing hyphens, in a single pass.
+   */
   private static String normalizeString(String input) {
-    return input
-        .toLowerCase()
-        .trim()
-        .replaceAll("\\s+", "-")
-        .replaceAll("[^\\w\\-]", "")
-        .replaceAll("-+", "-")
-        .replaceAll("(^-)|(-$)", "");
+    String lower = input.toLowerCase().trim();
+    StringBuilder out = new StringBuilder(lower.length());
+    for (int i = 0; i < lower.length(); i++) {
+      char c = lower.charAt(i);
+      if (isWordChar(c)) {
+        out.append(c);
+      } else if ((c == '-' || isWhitespace(c))
+          && !out.isEmpty()
+          && out.charAt(out.length() - 1) != '-') {
+        out.append('-');
+      }
+    }
+    if (!out.isEmpty() && out.charAt(out.length() - 1) == '-') {
+      out.setLength(out.length() - 1);
+    }
+    return out.toString();
   }
 
   /** Standardize grade format */
   private static String standardizeGrade(String grade) {
-    return grade.replaceAll("\\s", "").toLowerCase();
+    StringBuilder out = new StringBuilder(grade.length());
+    for (int i = 0; i < grade.length(); i++) {
+      char c = grade.charAt(i);
+      if (!isWhitespace(c)) {
+        out.append(c);
+      }
+    }
+    return out.toString().toLowerCase();
+  }
+
+  /** Matches the regex class {@code \w} */
+  private static boolean isWordChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  /** Matches the regex class {@code \s} */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  /**
+   * Formats a value with a fixed number of decimals, producing exactly what {@code
+   * "%.<scale>f".formatted(value)} does. Values are rounded half-up from their shortest decimal
+   * representation. Falls back to the formatter for locales without ASCII digits and a '.'
+   * separator, and for values so close to a rounding tie that the two representations could
+   * disagree.
+   */
+  private static String formatFixed(double value, int scale) {
+    if (!Double.isFinite(value) || !isPlainDecimalLocale()) {
+      return ("%." + scale + "f").formatted(value);
+    }
+    double magnitude = Math.abs(value);
+    BigDecimal decimal = BigDecimal.valueOf(magnitude);
+    BigDecimal remainder = decimal.subtract(decimal.setScale(scale, RoundingMode.DOWN));
+    BigDecimal distanceToTie = remainder.subtract(BigDecimal.valueOf(5, scale + 1)).abs();
+    if (distanceToTie.compareTo(new BigDecimal(Math.ulp(magnitude))) <= 0) {
+      return ("%." + scale + "f").formatted(value);
+    }
+    String digits = decimal.setScale(scale, RoundingMode.HALF_UP).toPlainString();
+    return Double.compare(value, 0.0) < 0 ? "-" + digits : digits;
+  }
+
+  private static boolean isPlainDecimalLocale() {
+    Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+    if (locale.equals(plainDecimalLocale)) {
+      return true;
+    }
+    DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+    if (symbols.getDecimalSeparator() != '.'
+        || symbols.getZeroDigit() != '0'
+        || symbols.getMinusSign() != '-') {
+      return false;
+    }
+    plainDecimalLocale = locale;
+    return true;
   }
 
   /** Validate location data */
@@ -0,0 +1,198 @@
+package app.crushlog.cldf.clid;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from canonical CLIDs to {@code long} values. Keys are stored as their
+ * entity type and UUID bits in parallel primitive arrays, so an entry costs 25 bytes of table space
+ * instead of a CLID string, a boxed value and a map node. Not thread-safe.
+ *
+ * <p>Keys are passed either as a {@link CompactCLID} or as the components returned by {@link
+ * CompactCLID#typeOrdinal}, {@link CompactCLID#parseMostSignificantBits} and {@link
+ * CompactCLID#parseLeastSignificantBits}, which avoids allocating a key per lookup.
+ */
+public final class CLIDLongMap {
+
+  private static final int MIN_CAPACITY = 16;
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  // Entity type ordinal + 1 per slot; 0 marks an empty slot
+  private byte[] types;
+  private long[] mostSignificantBits;
+  private long[] leastSignificantBits;
+  private long[] values;
+  private int size;
+
+  /** Creates an empty map */
+  public CLIDLongMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * Creates an empty map sized for a number of entries.
+   *
+   * @param expectedSize the number of entries expected
+   */
+  public CLIDLongMap(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size cannot be negative");
+    }
+    allocate(capacityFor(expectedSize));
+  }
+
+  /** Returns the number of entries */
+  public int size() {
+    return size;
+  }
+
+  /** Returns true if the map has no entries */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the value of a CLID.
+   *
+   * @param clid the CLID
+   * @param defaultValue the value to return if the CLID is not present
+   * @return the value, or {@code defaultValue}
+   */
+  public long get(CompactCLID clid, long defaultValue) {
+    return get(
+        clid.type().ordinal(),
+        clid.mostSignificantBits(),
+        clid.leastSignificantBits(),
+        defaultValue);
+  }
+
+  /**
+   * Returns the value of a CLID given by its components.
+   *
+   * @param typeOrdinal the entity type ordinal
+   * @param msb the most significant UUID bits
+   * @param lsb the least significant UUID bits
+   * @param defaultValue the value to return if the CLID is not present
+   * @return the value, or {@code defaultValue}
+   */
+  public long get(int typeOrdinal, long msb, long lsb, long defaultValue) {
+    int slot = find(typeOrdinal, msb, lsb);
+    return types[slot] != 0 ? values[slot] : defaultValue;
+  }
+
+  /** Returns true if the CLID is present */
+  public boolean containsKey(CompactCLID clid) {
+    int slot = find(clid.type().ordinal(), clid.mostSignificantBits(), clid.leastSignificantBits());
+    return types[slot] != 0;
+  }
+
+  /**
+   * Associates a value with a CLID, replacing any previous value.
+   *
+   * @param clid the CLID
+   * @param value the value
+   */
+  public void put(CompactCLID clid, long value) {
+    put(clid.type().ordinal(), clid.mostSignificantBits(), clid.leastSignificantBits(), value);
+  }
+
+  /**
+   * Associates a value with a CLID given by its components, replacing any previous value.
+   *
+   * @param typeOrdinal the entity type ordinal
+   * @param msb the most significant UUID bits
+   * @param lsb the least significant UUID bits
+   * @param value the value
+   */
+  public void put(int typeOrdinal, long msb, long lsb, long value) {
+    int slot = find(typeOrdinal, msb, lsb);
+    if (types[slot] == 0) {
+      types[slot] = (byte) (typeOrdinal + 1);
+      mostSignificantBits[slot] = msb;
+      leastSignificantBits[slot] = lsb;
+      size++;
+    }
+    values[slot] = value;
+    if (size > maxSize(types.length)) {
+      rehash(types.length * 2);
+    }
+  }
+
+  /** Removes all entries, keeping the allocated table */
+  public void clear() {
+    Arrays.fill(types, (byte) 0);
+    size = 0;
+  }
+
+  /** Returns the slot holding the key, or the empty slot where it would be inserted */
+  private int find(int typeOrdinal, long msb, long lsb) {
+    byte type = (byte) (typeOrdinal + 1);
+    int mask = types.length - 1;
+    int slot = hash(typeOrdinal, msb, lsb) & mask;
+    while (types[slot] != 0
+        && (types[slot] != type
+            || mostSignificantBits[slot] != msb
+            || leastSignificantBits[slot] != lsb)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash(int capacity) {
+    if (capacity > MAX_CAPACITY) {
+      throw new IllegalStateException("CLID map cannot grow beyond " + maxSize(MAX_CAPACITY));
+    }
+    byte[] oldTypes = types;
+    long[] oldMsbs = mostSignificantBits;
+    long[] oldLsbs = leastSignificantBits;
+    long[] oldValues = values;
+    allocate(capacity);
+    int mask = capacity - 1;
+    for (int i = 0; i < oldTypes.length; i++) {
+      if (oldTypes[i] == 0) {
+        continue;
+      }
+      int slot = hash(oldTypes[i] - 1, oldMsbs[i], oldLsbs[i]) & mask;
+      while (types[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      types[slot] = oldTypes[i];
+      mostSignificantBits[slot] = oldMsbs[i];
+      leastSignificantBits[slot] = oldLsbs[i];
+      values[slot] = oldValues[i];
+    }
+  }
+
+  private void allocate(int capacity) {
+    types = new byte[capacity];
+    mostSignificantBits = new long[capacity];
+    leastSignificantBits = new long[capacity];
+    values = new long[capacity];
+  }
+
+  /** Tables are kept at most three quarters full */
+  private static int maxSize(int capacity) {
+    return capacity - (capacity >>> 2);
+  }
+
+  private static int capacityFor(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (maxSize(capacity) < expectedSize) {
+      if (capacity == MAX_CAPACITY) {
+        throw new IllegalArgumentException("Expected size too large: " + expectedSize);
+      }
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /** Mixes the key bits with the 64-bit murmur3 finalizer */
+  private static int hash(int typeOrdinal, long msb, long lsb) {
+    long h = msb * 31 + lsb + typeOrdinal;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+}
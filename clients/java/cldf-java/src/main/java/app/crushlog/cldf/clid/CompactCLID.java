@@ -0,0 +1,164 @@
+package app.crushlog.cldf.clid;
+
+import java.util.UUID;
+
+import lombok.NonNull;
+
+/**
+ * A CLID held as its entity type and the two halves of its UUID instead of a 50-character string.
+ *
+ * <p>Only canonical v1 CLIDs can be represented: {@code clid:v1:<type>:<uuid>} with the UUID in
+ * lower-case hex, as produced by {@link CLIDGenerator}. The static methods inspect a CLID in place
+ * without allocating, so callers can key primitive collections such as {@link CLIDLongMap} on the
+ * components directly.
+ */
+public record CompactCLID(
+    @NonNull EntityType type, long mostSignificantBits, long leastSignificantBits) {
+
+  private static final String PREFIX = "clid:" + CLIDGenerator.CURRENT_VERSION + ":";
+  private static final int UUID_LENGTH = 36;
+  private static final EntityType[] TYPES = EntityType.values();
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /** Creates a compact CLID from an entity type and UUID */
+  public static CompactCLID of(EntityType type, UUID uuid) {
+    return new CompactCLID(type, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+  }
+
+  /**
+   * Parses a canonical CLID.
+   *
+   * @param clid the CLID string
+   * @return the compact CLID
+   * @throws IllegalArgumentException if the CLID is not a canonical v1 CLID
+   */
+  public static CompactCLID parse(CharSequence clid) {
+    int type = typeOrdinal(clid);
+    if (type < 0) {
+      throw new IllegalArgumentException("Not a canonical v1 CLID: " + clid);
+    }
+    return new CompactCLID(
+        TYPES[type], parseMostSignificantBits(clid), parseLeastSignificantBits(clid));
+  }
+
+  /** Check if a string is a canonical v1 CLID */
+  public static boolean isCanonical(CharSequence clid) {
+    return typeOrdinal(clid) >= 0;
+  }
+
+  /**
+   * Returns the {@link EntityType} ordinal of a canonical CLID without allocating.
+   *
+   * @param clid the CLID string
+   * @return the ordinal, or -1 if the CLID is not a canonical v1 CLID
+   */
+  public static int typeOrdinal(CharSequence clid) {
+    if (clid == null) {
+      return -1;
+    }
+    int typeEnd = clid.length() - UUID_LENGTH - 1;
+    if (typeEnd <= PREFIX.length() || clid.charAt(typeEnd) != ':' || !startsWithPrefix(clid)) {
+      return -1;
+    }
+    int type = matchType(clid, PREFIX.length(), typeEnd);
+    return type >= 0 && isCanonicalUuid(clid, typeEnd + 1) ? type : -1;
+  }
+
+  /** Returns the most significant UUID bits of a CLID already checked with {@link #typeOrdinal} */
+  public static long parseMostSignificantBits(CharSequence clid) {
+    int start = clid.length() - UUID_LENGTH;
+    return parseHex(clid, start, start + 8) << 32
+        | parseHex(clid, start + 9, start + 13) << 16
+        | parseHex(clid, start + 14, start + 18);
+  }
+
+  /** Returns the least significant UUID bits of a CLID already checked with {@link #typeOrdinal} */
+  public static long parseLeastSignificantBits(CharSequence clid) {
+    int start = clid.length() - UUID_LENGTH;
+    return parseHex(clid, start + 19, start + 23) << 48
+        | parseHex(clid, start + 24, start + UUID_LENGTH);
+  }
+
+  /** Returns the UUID of this CLID */
+  public UUID uuid() {
+    return new UUID(mostSignificantBits, leastSignificantBits);
+  }
+
+  /**
+   * Appends the canonical string form of this CLID.
+   *
+   * @param out the builder to append to
+   * @return the builder
+   */
+  public StringBuilder appendTo(StringBuilder out) {
+    out.append(PREFIX).append(type.value).append(':');
+    appendHex(out, mostSignificantBits >>> 32, 8).append('-');
+    appendHex(out, mostSignificantBits >>> 16, 4).append('-');
+    appendHex(out, mostSignificantBits, 4).append('-');
+    appendHex(out, leastSignificantBits >>> 48, 4).append('-');
+    return appendHex(out, leastSignificantBits, 12);
+  }
+
+  @Override
+  @NonNull
+  public String toString() {
+    int length = PREFIX.length() + type.value.length() + 1 + UUID_LENGTH;
+    return appendTo(new StringBuilder(length)).toString();
+  }
+
+  private static boolean startsWithPrefix(CharSequence clid) {
+    for (int i = 0; i < PREFIX.length(); i++) {
+      if (clid.charAt(i) != PREFIX.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int matchType(CharSequence clid, int start, int end) {
+    for (EntityType type : TYPES) {
+      String value = type.value;
+      if (value.length() != end - start) {
+        continue;
+      }
+      int i = 0;
+      while (i < value.length() && clid.charAt(start + i) == value.charAt(i)) {
+        i++;
+      }
+      if (i == value.length()) {
+        return type.ordinal();
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isCanonicalUuid(CharSequence clid, int start) {
+    for (int i = 0; i < UUID_LENGTH; i++) {
+      char c = clid.charAt(start + i);
+      boolean valid =
+          (i == 8 || i == 13 || i == 18 || i == 23)
+              ? c == '-'
+              : (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+      if (!valid) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long parseHex(CharSequence clid, int start, int end) {
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      char c = clid.charAt(i);
+      value = (value << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+    }
+    return value;
+  }
+
+  private static StringBuilder appendHex(StringBuilder out, long value, int digits) {
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      out.append(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+    }
+    return out;
+  }
+}
@@ -1,13 +1,17 @@
 package app.crushlog.cldf.domain;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import app.crushlog.cldf.api.CLDFArchive;
 import app.crushlog.cldf.clid.CLID;
 import app.crushlog.cldf.clid.CLIDGenerator;
+import app.crushlog.cldf.clid.CLIDLongMap;
+import app.crushlog.cldf.clid.CompactCLID;
 import app.crushlog.cldf.clid.EntityType;
 import app.crushlog.cldf.models.*;
 import lombok.Builder;
@@ -21,6 +25,34 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CLIDService {
 
+  // Entity types in processing order; a type's rank is the high half of its entities' ordinals
+  private static final int LOCATION_RANK = 0;
+  private static final int ROUTE_RANK = 1;
+  private static final int SECTOR_RANK = 2;
+  private static final int CLIMB_RANK = 3;
+  private static final int SESSION_RANK = 4;
+  private static final Class<?>[] RANK_CLASSES = {
+    Location.class, Route.class, Sector.class, Climb.class, Session.class
+  };
+
+  // Lock stripes of the registry in parallel processing
+  private static final int REGISTRY_STRIPES = 64;
+
+  private boolean parallelProcessing = false;
+
+  /**
+   * Enables or disables parallel processing. When enabled, CLIDs of each entity type are generated
+   * and validated on the common fork-join pool and registered in a concurrent registry. Locations
+   * are processed before every other type because route and sector CLIDs are derived from them.
+   * The assigned CLIDs and any exception thrown are the same as in sequential processing, although
+   * on failure CLIDs may already have been assigned to entities after the failing one. Default is
+   * false.
+   */
+  public CLIDService withParallelProcessing(boolean parallel) {
+    this.parallelProcessing = parallel;
+    return this;
+  }
+
   /**
    * Process and validate CLIDs in a CLDF archive. - Generates missing CLIDs for entities -
    * Validates existing CLIDs for correct format and type matching - Ensures CLID uniqueness within
@@ -34,27 +66,36 @@ public class CLIDService {
   public void processArchiveCLIDs(
       CLDFArchive archive, boolean generateMissing, boolean validateExisting) {
     log.debug(
-        "Processing archive CLIDs: generateMissing={}, validateExisting={}",
+        "Processing archive CLIDs: generateMissing={}, validateExisting={}, parallel={}",
         generateMissing,
-        validateExisting);
+        validateExisting,
+        parallelProcessing);
 
     ProcessingContext context =
         ProcessingContext.builder()
             .generateMissing(generateMissing)
             .validateExisting(validateExisting)
-            .clidRegistry(new HashMap<>())
-            .locationCLIDs(buildLocationCLIDMap(archive.getLocations()))
+            .parallel(parallelProcessing)
+            .clidRegistry(new CLIDRegistry(parallelProcessing ? REGISTRY_STRIPES : 1))
+            .locationCLIDs(new HashMap<>())
+            .failures(new ConcurrentSkipListMap<>())
             .build();
 
+    // Route and sector CLIDs are derived from location CLIDs, so locations go first
+    ProcessingResult locations = processLocations(archive.getLocations(), context);
+    context.throwFirstFailure();
+    context.getLocationCLIDs().putAll(buildLocationCLIDMap(archive.getLocations()));
+
     // Process all entity types using functional streams
     ProcessingResult result =
         Stream.of(
-                processLocations(archive.getLocations(), context),
+                locations,
                 processRoutes(archive.getRoutes(), context),
                 processSectors(archive.getSectors(), context),
                 processClimbs(archive.getClimbs(), context),
                 processSessions(archive.getSessions(), context))
             .reduce(ProcessingResult.empty(), ProcessingResult::combine);
+    context.throwFirstFailure();
 
     log.info(
         "CLID processing complete: {} generated, {} validated, {} total unique CLIDs",
@@ -70,23 +111,24 @@ public class CLIDService {
 
     log.debug("Processing {} locations", locations.size());
 
-    return locations.stream()
-        .map(
-            location ->
-                processEntity(
-                    location.getClid(),
-                    () -> generateLocationCLID(location),
-                    clid ->
-                        validateAndRegister(
-                            clid,
-                            location,
-                            EntityType.LOCATION,
-                            "Location",
-                            location.getName(),
-                            context),
-                    location::setClid,
-                    context))
-        .reduce(ProcessingResult.empty(), ProcessingResult::combine);
+    return processAll(
+        locations,
+        LOCATION_RANK,
+        (location, ordinal) ->
+            processEntity(
+                location.getClid(),
+                () -> generateLocationCLID(location),
+                clid ->
+                    validateAndRegister(
+                        clid,
+                        ordinal,
+                        EntityType.LOCATION,
+                        "Location",
+                        location.getName(),
+                        context),
+                location::setClid,
+                context),
+        context);
   }
 
   private ProcessingResult processRoutes(List<Route> routes, ProcessingContext context) {
@@ -96,20 +138,21 @@ public class CLIDService {
 
     log.debug("Processing {} routes", routes.size());
 
-    return routes.stream()
-        .map(
-            route -> {
-              String locationCLID = context.getLocationCLIDs().get(route.getLocationId());
-              return processEntity(
-                  route.getClid(),
-                  () -> generateRouteCLID(route, locationCLID),
-                  clid ->
-                      validateAndRegister(
-                          clid, route, EntityType.ROUTE, "Route", route.getName(), context),
-                  route::setClid,
-                  context);
-            })
-        .reduce(ProcessingResult.empty(), ProcessingResult::combine);
+    return processAll(
+        routes,
+        ROUTE_RANK,
+        (route, ordinal) -> {
+          String locationCLID = context.getLocationCLIDs().get(route.getLocationId());
+          return processEntity(
+              route.getClid(),
+              () -> generateRouteCLID(route, locationCLID),
+              clid ->
+                  validateAndRegister(
+                      clid, ordinal, EntityType.ROUTE, "Route", route.getName(), context),
+              route::setClid,
+              context);
+        },
+        context);
   }
 
   private ProcessingResult processSectors(List<Sector> sectors, ProcessingContext context) {
@@ -119,20 +162,21 @@ public class CLIDService {
 
     log.debug("Processing {} sectors", sectors.size());
 
-    return sectors.stream()
-        .map(
-            sector -> {
-              String locationCLID = context.getLocationCLIDs().get(sector.getLocationId());
-              return processEntity(
-                  sector.getClid(),
-                  () -> generateSectorCLID(sector, locationCLID),
-                  clid ->
-                      validateAndRegister(
-                          clid, sector, EntityType.SECTOR, "Sector", sector.getName(), context),
-                  sector::setClid,
-                  context);
-            })
-        .reduce(ProcessingResult.empty(), ProcessingResult::combine);
+    return processAll(
+        sectors,
+        SECTOR_RANK,
+        (sector, ordinal) -> {
+          String locationCLID = context.getLocationCLIDs().get(sector.getLocationId());
+          return processEntity(
+              sector.getClid(),
+              () -> generateSectorCLID(sector, locationCLID),
+              clid ->
+                  validateAndRegister(
+                      clid, ordinal, EntityType.SECTOR, "Sector", sector.getName(), context),
+              sector::setClid,
+              context);
+        },
+        context);
   }
 
   private ProcessingResult processClimbs(List<Climb> climbs, ProcessingContext context) {
@@ -142,23 +186,24 @@ public class CLIDService {
 
     log.debug("Processing {} climbs", climbs.size());
 
-    return climbs.stream()
-        .map(
-            climb ->
-                processEntity(
-                    climb.getClid(),
-                    () -> CLIDGenerator.generateRandomCLID(EntityType.CLIMB),
-                    clid ->
-                        validateAndRegister(
-                            clid,
-                            climb,
-                            EntityType.CLIMB,
-                            "Climb",
-                            getClimbIdentifier(climb),
-                            context),
-                    climb::setClid,
-                    context))
-        .reduce(ProcessingResult.empty(), ProcessingResult::combine);
+    return processAll(
+        climbs,
+        CLIMB_RANK,
+        (climb, ordinal) ->
+            processEntity(
+                climb.getClid(),
+                () -> CLIDGenerator.generateRandomCLID(EntityType.CLIMB),
+                clid ->
+                    validateAndRegister(
+                        clid,
+                        ordinal,
+                        EntityType.CLIMB,
+                        "Climb",
+                        getClimbIdentifier(climb),
+                        context),
+                climb::setClid,
+                context),
+        context);
   }
 
   private ProcessingResult processSessions(List<Session> sessions, ProcessingContext context) {
@@ -168,22 +213,48 @@ public class CLIDService {
 
     log.debug("Processing {} sessions", sessions.size());
 
-    return sessions.stream()
-        .map(
-            session ->
-                processEntity(
-                    session.getClid(),
-                    () -> CLIDGenerator.generateRandomCLID(EntityType.SESSION),
-                    clid ->
-                        validateAndRegister(
-                            clid,
-                            session,
-                            EntityType.SESSION,
-                            "Session",
-                            getSessionIdentifier(session),
-                            context),
-                    session::setClid,
-                    context))
+    return processAll(
+        sessions,
+        SESSION_RANK,
+        (session, ordinal) ->
+            processEntity(
+                session.getClid(),
+                () -> CLIDGenerator.generateRandomCLID(EntityType.SESSION),
+                clid ->
+                    validateAndRegister(
+                        clid,
+                        ordinal,
+                        EntityType.SESSION,
+                        "Session",
+                        getSessionIdentifier(session),
+                        context),
+                session::setClid,
+                context),
+        context);
+  }
+
+  /**
+   * Processes the entities of one type, in parallel when enabled. Each entity gets an ordinal from
+   * the type's rank and its index, so failures can be reported in archive order.
+   */
+  private <T> ProcessingResult processAll(
+      List<T> entities, int rank, EntityProcessor<T> processor, ProcessingContext context) {
+    IntStream indices = IntStream.range(0, entities.size());
+    if (context.isParallel()) {
+      indices = indices.parallel();
+    }
+    long base = (long) rank << 32;
+    return indices
+        .mapToObj(
+            index -> {
+              long ordinal = base + index;
+              try {
+                return processor.process(entities.get(index), ordinal);
+              } catch (RuntimeException e) {
+                context.fail(ordinal, e);
+                return ProcessingResult.empty();
+              }
+            })
         .reduce(ProcessingResult.empty(), ProcessingResult::combine);
   }
 
@@ -220,7 +291,7 @@ public class CLIDService {
 
   private boolean validateAndRegister(
       String clid,
-      Object entity,
+      long ordinal,
       EntityType expectedType,
       String entityName,
       String identifier,
@@ -233,7 +304,7 @@ public class CLIDService {
     }
 
     // Register CLID for uniqueness check
-    registerCLID(clid, entity, context.getClidRegistry());
+    registerCLID(clid, ordinal, context);
 
     return true;
   }
@@ -349,19 +420,32 @@ public class CLIDService {
     }
   }
 
-  private void registerCLID(String clid, Object entity, Map<String, Object> registry) {
-    Object existing = registry.putIfAbsent(clid, entity);
-    if (existing != null) {
-      log.error(
-          "Duplicate CLID detected: '{}' already used by {}, attempted to use for {}",
-          clid,
-          existing.getClass().getSimpleName(),
-          entity.getClass().getSimpleName());
-      throw new CLIDValidationException(
-          String.format(
-              "Duplicate CLID '%s' found. Already used by %s, attempted to use for %s",
-              clid, existing.getClass().getSimpleName(), entity.getClass().getSimpleName()));
+  private void registerCLID(String clid, long ordinal, ProcessingContext context) {
+    long other = context.getClidRegistry().register(clid, ordinal);
+    if (other < 0) {
+      return;
     }
+
+    // The entity earliest in the archive keeps the CLID, as in sequential processing
+    long first = Math.min(ordinal, other);
+    long duplicate = Math.max(ordinal, other);
+    String existing = entityClassName(first);
+    String attempted = entityClassName(duplicate);
+    log.error(
+        "Duplicate CLID detected: '{}' already used by {}, attempted to use for {}",
+        clid,
+        existing,
+        attempted);
+    context.fail(
+        duplicate,
+        new CLIDValidationException(
+            String.format(
+                "Duplicate CLID '%s' found. Already used by %s, attempted to use for %s",
+                clid, existing, attempted)));
+  }
+
+  private static String entityClassName(long ordinal) {
+    return RANK_CLASSES[(int) (ordinal >>> 32)].getSimpleName();
   }
 
   private Map<Integer, String> buildLocationCLIDMap(List<Location> locations) {
@@ -397,8 +481,93 @@ public class CLIDService {
   private static class ProcessingContext {
     private final boolean generateMissing;
     private final boolean validateExisting;
-    private final Map<String, Object> clidRegistry;
+    private final boolean parallel;
+    private final CLIDRegistry clidRegistry;
     private final Map<Integer, String> locationCLIDs;
+    private final SortedMap<Long, RuntimeException> failures;
+
+    /**
+     * Reports the failure of the entity with the given ordinal. Sequential processing stops at the
+     * first failure; parallel processing collects them and throws the earliest once the current
+     * entity types are done.
+     */
+    void fail(long ordinal, RuntimeException e) {
+      if (!parallel) {
+        throw e;
+      }
+      failures.putIfAbsent(ordinal, e);
+    }
+
+    void throwFirstFailure() {
+      if (!failures.isEmpty()) {
+        throw failures.get(failures.firstKey());
+      }
+    }
+  }
+
+  /**
+   * Registry of the CLIDs seen so far, mapping each to the ordinal of the earliest entity using it.
+   * Canonical CLIDs are kept as type and UUID bits in primitive maps; anything else, such as
+   * upper-case or legacy CLIDs, falls back to a string map. The registry is split into stripes
+   * with their own lock so parallel workers rarely contend.
+   */
+  private static final class CLIDRegistry {
+    private final Stripe[] stripes;
+
+    CLIDRegistry(int stripeCount) {
+      stripes = new Stripe[stripeCount];
+      for (int i = 0; i < stripeCount; i++) {
+        stripes[i] = new Stripe();
+      }
+    }
+
+    /**
+     * Registers a CLID for an entity, keeping the smallest ordinal.
+     *
+     * @return the ordinal of the other entity already registered with the CLID, or -1
+     */
+    long register(String clid, long ordinal) {
+      int type = CompactCLID.typeOrdinal(clid);
+      if (type < 0) {
+        Stripe stripe = stripes[Math.floorMod(clid.hashCode(), stripes.length)];
+        synchronized (stripe) {
+          Long current = stripe.others.putIfAbsent(clid, ordinal);
+          if (current == null) {
+            return -1;
+          }
+          if (ordinal < current) {
+            stripe.others.put(clid, ordinal);
+          }
+          return current;
+        }
+      }
+
+      long msb = CompactCLID.parseMostSignificantBits(clid);
+      long lsb = CompactCLID.parseLeastSignificantBits(clid);
+      Stripe stripe = stripes[Math.floorMod(Long.hashCode(msb ^ lsb), stripes.length)];
+      synchronized (stripe) {
+        long current = stripe.canonical.get(type, msb, lsb, -1);
+        if (current < 0 || ordinal < current) {
+          stripe.canonical.put(type, msb, lsb, ordinal);
+        }
+        return current;
+      }
+    }
+
+    int size() {
+      int size = 0;
+      for (Stripe stripe : stripes) {
+        synchronized (stripe) {
+          size += stripe.canonical.size() + stripe.others.size();
+        }
+      }
+      return size;
+    }
+
+    private static final class Stripe {
+      private final CLIDLongMap canonical = new CLIDLongMap();
+      private final Map<String, Long> others = new HashMap<>();
+    }
   }
 
   /** Result of CLID processing operations */
@@ -435,4 +604,10 @@ public class CLIDService {
   private interface CLIDSetter {
     void setClid(String clid);
   }
+
+  /** Functional interface for processing one entity at a given ordinal */
+  @FunctionalInterface
+  private interface EntityProcessor<T> {
+    ProcessingResult process(T entity, long ordinal);
+  }
 }
@@ -0,0 +1,290 @@
+package app.crushlog.cldf.utils;
+
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.Route;
+import app.crushlog.cldf.models.enums.GradeSystem;
+
+/**
+ * Maps grades of every {@link GradeSystem} onto one ordinal scale, so that grades can be compared
+ * as ints across systems. The scale follows French sport grades, four points per step ({@code 6a}
+ * is 36, {@code 6a+} is 40); grades of other systems are placed at their usual French equivalent,
+ * between two steps where the conversion tables disagree. Fontainebleau grades share the numbers
+ * of the French grades written the same way ({@code 6A} and {@code 6a} are both 36), which is a
+ * convention for comparing boulders and routes rather than a claim that they are equally hard.
+ *
+ * <p>Within each system distinct grades have distinct, increasing ordinals. Grades are parsed
+ * without regexes or allocation, case-insensitively where the notation allows, and anything that
+ * is not a grade of the system maps to {@link #UNKNOWN}.
+ */
+public final class GradeScale {
+
+  /** The ordinal of a value that is not a grade */
+  public static final int UNKNOWN = -1;
+
+  private static final int STEP = 4;
+
+  /** Ordinals of V0 to V17 */
+  private static final int[] V_SCALE = {
+    12, 24, 32, 38, 46, 54, 60, 64, 70, 76, 80, 84, 88, 92, 96, 100, 104, 108
+  };
+
+  /** Ordinals of UIAA I to XII, each as minus, plain and plus */
+  private static final int[] UIAA = {
+    0, 1, 2, 3, 4, 5, 6, 8, 10, 11, 12, 16, 20, 24, 28, 32, 36, 40, 44, 48, 52, 58, 64, 68, 74, 80,
+    84, 88, 92, 98, 104, 108, 112, 116, 120, 124
+  };
+
+  /** Ordinals of YDS 5.0 to 5.9 */
+  private static final int[] YDS = {0, 2, 4, 8, 12, 16, 20, 24, 28, 32};
+
+  /** Ordinals of YDS 5.10a to 5.10d */
+  private static final int[] YDS_10 = {36, 40, 44, 46};
+
+  /** Ordinal of YDS 5.11a; from there on each letter is one French step */
+  private static final int YDS_11A = 48;
+
+  private static final String[] ROMAN = {
+    "XII", "XI", "X", "IX", "VIII", "VII", "VI", "V", "IV", "III", "II", "I"
+  };
+  private static final int[] ROMAN_VALUES = {12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1};
+
+  private GradeScale() {}
+
+  /**
+   * Returns the ordinal of a climb's grade, read in its declared system or, without one, in the
+   * system its notation suggests.
+   *
+   * @param grades the grade of a climb, may be null
+   * @return the ordinal, or {@link #UNKNOWN}
+   */
+  public static int ordinal(Climb.GradeInfo grades) {
+    if (grades == null) {
+      return UNKNOWN;
+    }
+    return grades.getSystem() != null
+        ? ordinal(grades.getSystem(), grades.getGrade())
+        : ordinal(grades.getGrade());
+  }
+
+  /**
+   * Returns the ordinal of a route's grade, taken from the first of its V-scale, Font, French, YDS
+   * and UIAA grades that can be read.
+   *
+   * @param grades the grades of a route, may be null
+   * @return the ordinal, or {@link #UNKNOWN}
+   */
+  public static int ordinal(Route.Grades grades) {
+    if (grades == null) {
+      return UNKNOWN;
+    }
+    int ordinal = ordinal(GradeSystem.V_SCALE, grades.getVScale());
+    if (ordinal == UNKNOWN) {
+      ordinal = ordinal(GradeSystem.FONT, grades.getFont());
+    }
+    if (ordinal == UNKNOWN) {
+      ordinal = ordinal(GradeSystem.FRENCH, grades.getFrench());
+    }
+    if (ordinal == UNKNOWN) {
+      ordinal = ordinal(GradeSystem.YDS, grades.getYds());
+    }
+    if (ordinal == UNKNOWN) {
+      ordinal = ordinal(GradeSystem.UIAA, grades.getUiaa());
+    }
+    return ordinal;
+  }
+
+  /**
+   * Returns the ordinal of a grade in the system its notation suggests: {@code V} grades, {@code
+   * 5.} YDS grades, Roman UIAA grades and otherwise French or Font grades. UIAA grades written
+   * with Arabic numerals are only read with {@link #ordinal(GradeSystem, String)}.
+   *
+   * @param grade the grade, may be null
+   * @return the ordinal, or {@link #UNKNOWN}
+   */
+  public static int ordinal(String grade) {
+    GradeSystem system = detect(grade);
+    return system != null ? ordinal(system, grade) : UNKNOWN;
+  }
+
+  /**
+   * Returns the ordinal of a grade of a system.
+   *
+   * @param system the grade system
+   * @param grade the grade, may be null
+   * @return the ordinal, or {@link #UNKNOWN} if the grade is not one of the system
+   */
+  public static int ordinal(GradeSystem system, String grade) {
+    if (system == null || grade == null || grade.isEmpty()) {
+      return UNKNOWN;
+    }
+    return switch (system) {
+      case V_SCALE -> vScale(grade);
+      case FONT, FRENCH -> french(grade);
+      case YDS -> yds(grade);
+      case UIAA -> uiaa(grade);
+    };
+  }
+
+  /**
+   * Returns the system a grade's notation suggests, without checking that the rest of the grade
+   * is valid.
+   *
+   * @param grade the grade, may be null
+   * @return the system, or null if the notation matches none
+   */
+  public static GradeSystem detect(String grade) {
+    if (grade == null || grade.isEmpty()) {
+      return null;
+    }
+    char first = grade.charAt(0);
+    if (first == 'V' || first == 'v') {
+      if (grade.length() == 1) {
+        // Either UIAA V or a V grade missing its number
+        return null;
+      }
+      return isDigit(grade.charAt(1)) || grade.charAt(1) == 'B'
+          ? GradeSystem.V_SCALE
+          : GradeSystem.UIAA;
+    }
+    if (first == 'I' || first == 'X') {
+      return GradeSystem.UIAA;
+    }
+    if (first == '5' && grade.length() > 1 && grade.charAt(1) == '.') {
+      return GradeSystem.YDS;
+    }
+    if (isDigit(first)) {
+      return grade.length() > 1 && grade.charAt(1) >= 'A' && grade.charAt(1) <= 'C'
+          ? GradeSystem.FONT
+          : GradeSystem.FRENCH;
+    }
+    return null;
+  }
+
+  /** Reads {@code VB}, {@code V<n>} and an optional trailing {@code -} or {@code +} */
+  private static int vScale(String grade) {
+    if (grade.charAt(0) != 'V' && grade.charAt(0) != 'v') {
+      return UNKNOWN;
+    }
+    int end = grade.length();
+    int modifier = modifier(grade);
+    if (modifier != 0) {
+      end--;
+    }
+    if (end == 2 && (grade.charAt(1) == 'B' || grade.charAt(1) == 'b')) {
+      return modifier == 0 ? 8 : UNKNOWN;
+    }
+    int number = parseNumber(grade, 1, end);
+    if (number < 0) {
+      return UNKNOWN;
+    }
+    int ordinal =
+        number < V_SCALE.length
+            ? V_SCALE[number]
+            : V_SCALE[V_SCALE.length - 1] + (number - V_SCALE.length + 1) * STEP;
+    return ordinal + modifier;
+  }
+
+  /**
+   * Reads French and Font grades: {@code 1} to {@code 3}, {@code 4a} to {@code 5c}, {@code 6a} to
+   * {@code 9c+}, and the Font forms {@code 4}, {@code 4+}, {@code 5} and {@code 5+}.
+   */
+  private static int french(String grade) {
+    int number = grade.charAt(0) - '0';
+    if (number < 1 || number > 9) {
+      return UNKNOWN;
+    }
+    int length = grade.length();
+    boolean plus = length > 1 && grade.charAt(length - 1) == '+';
+    int end = plus ? length - 1 : length;
+    if (end > 2) {
+      return UNKNOWN;
+    }
+    int letter = end == 2 ? Character.toLowerCase(grade.charAt(1)) - 'a' : -1;
+    if (end == 2 && (letter < 0 || letter > 2)) {
+      return UNKNOWN;
+    }
+    if (number <= 3) {
+      return letter < 0 && !plus ? (number - 1) * STEP : UNKNOWN;
+    }
+    if (number <= 5) {
+      int base = 3 + (number - 4) * 3;
+      if (letter < 0) {
+        // Font 4 and 5 are the a grades, 4+ and 5+ the c grades
+        return (base + (plus ? 2 : 0)) * STEP;
+      }
+      return (base + letter) * STEP + (plus ? STEP / 2 : 0);
+    }
+    int base = 9 + (number - 6) * 6;
+    return (base + Math.max(letter, 0) * 2 + (plus ? 1 : 0)) * STEP;
+  }
+
+  /** Reads {@code 5.<n>} with an a-d letter from 5.10 on */
+  private static int yds(String grade) {
+    if (grade.length() < 3 || grade.charAt(0) != '5' || grade.charAt(1) != '.') {
+      return UNKNOWN;
+    }
+    int end = grade.length();
+    int letter = Character.toLowerCase(grade.charAt(end - 1)) - 'a';
+    boolean hasLetter = letter >= 0 && letter <= 3;
+    int number = parseNumber(grade, 2, hasLetter ? end - 1 : end);
+    if (number < 0) {
+      return UNKNOWN;
+    }
+    if (number < 10) {
+      return hasLetter ? UNKNOWN : YDS[number];
+    }
+    int first = number == 10 ? YDS_10[0] : YDS_11A + (number - 11) * 4 * STEP;
+    if (!hasLetter) {
+      // A grade without a letter sits just below the a grade
+      return first - 1;
+    }
+    return number == 10 ? YDS_10[letter] : first + letter * STEP;
+  }
+
+  /** Reads Roman or Arabic numerals from 1 to 12 with an optional {@code -} or {@code +} */
+  private static int uiaa(String grade) {
+    int modifier = modifier(grade);
+    int end = modifier != 0 ? grade.length() - 1 : grade.length();
+    int number = isDigit(grade.charAt(0)) ? parseNumber(grade, 0, end) : parseRoman(grade, end);
+    if (number < 1 || number > 12) {
+      return UNKNOWN;
+    }
+    return UIAA[(number - 1) * 3 + modifier + 1];
+  }
+
+  private static int parseRoman(String grade, int end) {
+    for (int i = 0; i < ROMAN.length; i++) {
+      String numeral = ROMAN[i];
+      if (end == numeral.length() && grade.regionMatches(true, 0, numeral, 0, end)) {
+        return ROMAN_VALUES[i];
+      }
+    }
+    return UNKNOWN;
+  }
+
+  /** Returns -1 or 1 for a trailing minus or plus sign, otherwise 0 */
+  private static int modifier(String grade) {
+    char last = grade.charAt(grade.length() - 1);
+    return last == '+' ? 1 : last == '-' ? -1 : 0;
+  }
+
+  /** Parses the digits between two offsets, returning -1 if there are none or too many */
+  private static int parseNumber(String grade, int start, int end) {
+    if (start >= end || end - start > 3) {
+      return UNKNOWN;
+    }
+    int number = 0;
+    for (int i = start; i < end; i++) {
+      char c = grade.charAt(i);
+      if (!isDigit(c)) {
+        return UNKNOWN;
+      }
+      number = number * 10 + c - '0';
+    }
+    return number;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
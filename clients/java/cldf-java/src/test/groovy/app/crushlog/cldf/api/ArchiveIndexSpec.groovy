@@ -0,0 +1,144 @@
+package app.crushlog.cldf.api
+
+import app.crushlog.cldf.models.*
+import app.crushlog.cldf.models.enums.GradeSystem
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+class ArchiveIndexSpec extends Specification {
+
+	def "should find entities by id"() {
+		given:
+		def index = ArchiveIndex.of(createTestArchive())
+
+		expect:
+		index.findLocation(1).get().name == "Crag"
+		index.findSector(11).get().name == "Sector B"
+		index.findRoute(100).get().name == "Route 100"
+		index.findSession(2).get().location == "Gym"
+		index.findClimb(3).get().routeName == "Climb 3"
+
+		and: "unknown and null ids are not found"
+		!index.findClimb(99).isPresent()
+		!index.findRoute(null).isPresent()
+	}
+
+	def "should return the first entity when ids are duplicated"() {
+		given:
+		def archive = createTestArchive()
+		archive.sessions << Session.builder().id(1).location("Duplicate").build()
+
+		expect:
+		ArchiveIndex.of(archive).findSession(1).get().location == "Crag"
+	}
+
+	def "should group children by parent id in archive order"() {
+		given:
+		def index = ArchiveIndex.of(createTestArchive())
+
+		expect:
+		index.getSectorsForLocation(1)*.id == [10, 11]
+		index.getRoutesForLocation(1)*.id == [100, 101, 102]
+		index.getRoutesForSector(11)*.id == [101, 102]
+		index.getSessionsForLocation(2)*.id == [2]
+		index.getClimbsForSession(1)*.id == [1, 2, 4]
+		index.getClimbsForRoute(101)*.id == [2, 3]
+
+		and: "unknown and null parents have no children"
+		index.getClimbsForSession(99).isEmpty()
+		index.getClimbsForRoute(null).isEmpty()
+	}
+
+	def "should handle archives without collections"() {
+		given:
+		def index = ArchiveIndex.of(CLDFArchive.builder().build())
+
+		expect:
+		!index.findClimb(1).isPresent()
+		index.getRoutesForSector(1).isEmpty()
+		index.getClimbsByDate().isEmpty()
+		index.getClimbsBetween(null, null).isEmpty()
+		index.getClimbsByGrade().isEmpty()
+	}
+
+	def "should order and select climbs and sessions by date"() {
+		given:
+		def index = ArchiveIndex.of(createTestArchive())
+
+		expect: "sorted order skips undated climbs and keeps archive order on the same day"
+		index.getClimbsByDate()*.id == [2, 4, 1, 3]
+		index.getSessionsByDate()*.id == [1, 2]
+
+		and: "ranges are inclusive, open ended when null and in archive order"
+		index.getClimbsBetween(LocalDate.of(2024, 1, 10), LocalDate.of(2024, 2, 1))*.id == [1, 2, 4]
+		index.getClimbsBetween(LocalDate.of(2024, 1, 15), null)*.id == [1, 3]
+		index.getClimbsBetween(null, LocalDate.of(2024, 1, 9)).isEmpty()
+		index.getClimbsBetween(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 1, 1)).isEmpty()
+		index.getSessionsBetween(LocalDate.of(2024, 2, 1), null)*.id == [2]
+	}
+
+	def "should order climbs by grade"() {
+		given:
+		def grades = ["5.10a", "V10", "6a+", "5.9", "V2", "5.10", "V2", "5.10d", "Proj", "Easy"]
+		def climbs = grades.withIndex().collect { grade, i ->
+			Climb.builder().id(i + 1).grades(Climb.GradeInfo.builder().grade(grade).build()).build()
+		}
+		climbs << Climb.builder().id(11).grades(Climb.GradeInfo.builder().system(GradeSystem.UIAA).grade("6+").build()).build()
+		climbs << Climb.builder().id(99).build()
+		def index = ArchiveIndex.of(CLDFArchive.builder().climbs(climbs).build())
+
+		expect: "grades of every system on one scale, then unknown grades as text, ungraded climbs left out"
+		index.getClimbsByGrade()*.id == [4, 5, 7, 6, 1, 3, 11, 8, 2, 10, 9]
+	}
+
+	def "should return unmodifiable lists"() {
+		given:
+		def index = ArchiveIndex.of(createTestArchive())
+
+		when:
+		index.getClimbsForSession(1).add(Climb.builder().id(5).build())
+
+		then:
+		thrown(UnsupportedOperationException)
+	}
+
+	private CLDFArchive createTestArchive() {
+		return CLDFArchive.builder()
+				.locations([
+					Location.builder().id(1).name("Crag").build(),
+					Location.builder().id(2).name("Gym").build()
+				])
+				.sectors([
+					Sector.builder().id(10).locationId(1).name("Sector A").build(),
+					Sector.builder().id(11).locationId(1).name("Sector B").build()
+				])
+				.routes([
+					Route.builder().id(100).locationId(1).sectorId(10).name("Route 100").build(),
+					Route.builder().id(101).locationId(1).sectorId(11).name("Route 101").build(),
+					Route.builder().id(102).locationId(1).sectorId(11).name("Route 102").build()
+				])
+				.sessions([
+					Session.builder().id(1).locationId(1).location("Crag").date(LocalDate.of(2024, 1, 10)).build(),
+					Session.builder().id(2).locationId(2).location("Gym").date(LocalDate.of(2024, 2, 1)).build()
+				])
+				.climbs([
+					climb(1, 1, 100, LocalDate.of(2024, 1, 15)),
+					climb(2, 1, 101, LocalDate.of(2024, 1, 10)),
+					climb(3, 2, 101, LocalDate.of(2024, 2, 2)),
+					climb(4, 1, null, LocalDate.of(2024, 1, 10)),
+					climb(5, null, null, null)
+				])
+				.build()
+	}
+
+	private Climb climb(int id, Integer sessionId, Integer routeId, LocalDate date) {
+		Climb.builder()
+				.id(id)
+				.sessionId(sessionId)
+				.routeId(routeId)
+				.date(date)
+				.routeName("Climb $id".toString())
+				.build()
+	}
+}
@@ -0,0 +1,250 @@
+package app.crushlog.cldf.api
+
+import app.crushlog.cldf.models.*
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.LocalDate
+import java.time.OffsetDateTime
+import java.util.stream.Collectors
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+import app.crushlog.cldf.models.enums.ClimbType
+import app.crushlog.cldf.models.enums.FinishType
+import app.crushlog.cldf.models.enums.Platform
+
+class CLDFAppendSpec extends Specification {
+
+	@TempDir
+	Path tempDir
+
+	CLDFWriter writer = new CLDFWriter()
+	CLDFReader reader = new CLDFReader()
+
+	def "should append climbs as delta files without touching existing entries"() {
+		given: "an archive on disk"
+		def file = writeArchive(createTestArchive(3))
+		def before = entrySizes(file)
+
+		when: "appending two climbs"
+		writer.append(file, [climb(4), climb(5)], null)
+
+		then: "the delta and its checksums are added and existing entries are unchanged"
+		def after = entrySizes(file)
+		after.keySet() == before.keySet() + ["climbs.delta-0001.json", "checksums.delta-0001.json"] as Set
+		before.every { name, size -> after[name] == size }
+
+		and: "the reader merges the delta after the base file"
+		def archive = reader.read(file)
+		archive.climbs*.id == [1, 2, 3, 4, 5]
+		archive.climbs.every { it.clid != null }
+	}
+
+	def "should number successive appends and merge them in every read path"() {
+		given: "an archive with two appends"
+		def file = writeArchive(createTestArchive(2))
+		writer.append(file, [climb(3)], null)
+		writer.append(file, [climb(4)], [session(2)])
+
+		expect: "each append uses the next sequence number"
+		entrySizes(file).keySet().containsAll([
+			"climbs.delta-0001.json",
+			"climbs.delta-0002.json",
+			"sessions.delta-0002.json",
+			"checksums.delta-0002.json"
+		])
+
+		and: "eager, parallel, lazy and streaming reads agree"
+		reader.read(file).climbs*.id == [1, 2, 3, 4]
+		new CLDFReader().withParallelParsing(true).read(file).climbs*.id == [1, 2, 3, 4]
+		reader.open(file).withCloseable { it.climbs*.id } == [1, 2, 3, 4]
+		reader.open(file).withCloseable { it.sessions*.id } == [1, 2]
+		reader.streamClimbs(file).withCloseable { it.map { it.id }.collect(Collectors.toList()) } == [1, 2, 3, 4]
+	}
+
+	def "should write appended entries after the existing bytes"() {
+		given: "an archive on disk"
+		def file = writeArchive(createTestArchive(2))
+		def original = file.bytes
+
+		when: "appending a climb"
+		writer.append(file, [climb(3)], null)
+
+		then: "the original file is left intact as a prefix of the result"
+		def appended = file.bytes
+		appended.length > original.length
+		Arrays.equals(appended, 0, original.length, original, 0, original.length)
+	}
+
+	def "should keep the previous archive readable when an append is interrupted"() {
+		given: "an archive whose append stopped before the new end of central directory record"
+		def file = writeArchive(createTestArchive(2))
+		writer.append(file, [climb(3)], null)
+		new RandomAccessFile(file, "rw").withCloseable { it.setLength(it.length() - 22) }
+
+		expect: "the previous directory is still found"
+		reader.read(file).climbs*.id == [1, 2]
+
+		when: "appending again"
+		writer.append(file, [climb(4)], null)
+
+		then: "the partial data is skipped and the new climb is added"
+		reader.read(file).climbs*.id == [1, 2, 4]
+		reader.streamClimbs(file).withCloseable { it.map { it.id }.collect(Collectors.toList()) } == [1, 2, 4]
+	}
+
+	def "should reject invalid climbs before modifying the archive"() {
+		given: "an archive on disk"
+		def file = writeArchive(createTestArchive(2))
+		def length = file.length()
+
+		when: "appending a climb that fails schema validation"
+		writer.append(file, [Climb.builder().id(3).sessionId(1).build()], null)
+
+		then: "the archive is left as it was"
+		def e = thrown(IOException)
+		e.message.contains("Schema validation failed for climbs.delta-0001.json")
+		file.length() == length
+		reader.read(file).climbs.size() == 2
+	}
+
+	def "should reject an empty append"() {
+		given: "an archive on disk"
+		def file = writeArchive(createTestArchive(1))
+
+		when:
+		writer.append(file, [], null)
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+
+	def "should fold deltas back into the base files when compacting"() {
+		given: "an archive with appended climbs"
+		def file = writeArchive(createTestArchive(3))
+		writer.append(file, [climb(4)], null)
+		writer.append(file, [climb(5)], null)
+
+		when: "compacting it"
+		writer.compact(file)
+
+		then: "only base files remain"
+		def names = entrySizes(file).keySet()
+		!names.any { it.contains(".delta-") }
+
+		and: "the merged climbs and refreshed stats are read back"
+		def archive = reader.read(file)
+		archive.climbs*.id == [1, 2, 3, 4, 5]
+		archive.manifest.stats.climbsCount == 5
+		archive.sessions.size() == 1
+	}
+
+	def "should keep appended elements when another collection is updated"() {
+		given: "an archive with appended climbs and sessions"
+		def file = writeArchive(createTestArchive(2))
+		writer.append(file, [climb(3)], [session(2)])
+		def updated = tempDir.resolve("updated.cldf").toFile()
+
+		when: "only the locations are changed and the archive is updated"
+		reader.open(file).withCloseable { lazy ->
+			lazy.locations = lazy.locations + [Location.builder().id(2).name("Other Crag").isIndoor(true).build()]
+			writer.update(lazy, updated)
+		}
+
+		then: "the appended elements are merged into the base files of the copy"
+		!entrySizes(updated).keySet().any { it.contains(".delta-") }
+		def archive = reader.read(updated)
+		archive.locations*.id == [1, 2]
+		archive.climbs*.id == [1, 2, 3]
+		archive.sessions*.id == [1, 2]
+		archive.manifest.stats.climbsCount == 3
+	}
+
+	def "should ignore entries whose delta sequence is too long to be one"() {
+		given: "an archive with an entry named like a delta with a long digit run"
+		def file = writeArchive(createTestArchive(1))
+		def copy = tempDir.resolve("copy.cldf").toFile()
+		new ZipOutputStream(new FileOutputStream(copy)).withCloseable { zip ->
+			new ZipFile(file).withCloseable { original ->
+				original.entries().each { entry ->
+					zip.putNextEntry(new ZipEntry(entry.name))
+					zip.write(original.getInputStream(entry).bytes)
+					zip.closeEntry()
+				}
+			}
+			zip.putNextEntry(new ZipEntry("notes.delta-99999999999.json"))
+			zip.write("{}".bytes)
+			zip.closeEntry()
+		}
+
+		when: "appending to it"
+		writer.append(copy, [climb(2)], null)
+
+		then: "the entry is not taken for a delta"
+		entrySizes(copy).containsKey("climbs.delta-0001.json")
+		reader.read(copy).climbs*.id == [1, 2]
+	}
+
+	def "should leave archives without deltas untouched when compacting"() {
+		given: "an archive without deltas"
+		def file = writeArchive(createTestArchive(2))
+		def modified = file.lastModified()
+		def length = file.length()
+
+		when:
+		writer.compact(file)
+
+		then:
+		file.length() == length
+		file.lastModified() == modified
+		tempDir.toFile().list().length == 1
+	}
+
+	private Map<String, Long> entrySizes(File file) {
+		new ZipFile(file).withCloseable { zip ->
+			zip.entries().collectEntries { [(it.name): it.compressedSize] }
+		}
+	}
+
+	private File writeArchive(CLDFArchive archive) {
+		def file = tempDir.resolve("archive.cldf").toFile()
+		writer.write(archive, file)
+		return file
+	}
+
+	private Climb climb(int id) {
+		Climb.builder()
+				.id(id)
+				.sessionId(1)
+				.date(LocalDate.of(2024, 1, 15))
+				.routeName("Route $id".toString())
+				.type(ClimbType.BOULDER)
+				.finishType(FinishType.TOP)
+				.attempts(1)
+				.build()
+	}
+
+	private Session session(int id) {
+		Session.builder().id(id).date(LocalDate.of(2024, 1, 16)).location("Test Crag").locationId(1).build()
+	}
+
+	private CLDFArchive createTestArchive(int climbCount) {
+		return CLDFArchive.builder()
+				.manifest(Manifest.builder()
+				.version("1.0.0")
+				.format("CLDF")
+				.creationDate(OffsetDateTime.now())
+				.appVersion("1.0")
+				.platform(Platform.DESKTOP)
+				.build())
+				.locations([
+					Location.builder().id(1).name("Test Crag").isIndoor(false).build()
+				])
+				.climbs((1..climbCount).collect { climb(it) })
+				.sessions([session(1)])
+				.build()
+	}
+}
@@ -0,0 +1,216 @@
+package app.crushlog.cldf.api
+
+import app.crushlog.cldf.models.*
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.lang.Unroll
+
+import java.nio.file.Path
+import java.time.LocalDate
+import java.time.OffsetDateTime
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+import app.crushlog.cldf.models.enums.ClimbType
+import app.crushlog.cldf.models.enums.FinishType
+import app.crushlog.cldf.models.enums.Platform
+
+class CLDFEntityIndexSpec extends Specification {
+
+	@TempDir
+	Path tempDir
+
+	@Unroll
+	def "should decode single entities through the index (prettyPrint=#prettyPrint, threads=#threads)"() {
+		given: "an indexed archive"
+		def writer = new CLDFWriter(prettyPrint).withEntityIndex(true).withCompressionThreads(threads)
+		def file = writeArchive(writer, createTestArchive(500))
+		def eager = new CLDFReader().read(file)
+
+		when: "opening it lazily"
+		def lazy = CLDF.open(file)
+
+		then: "every climb is found by CLID and id"
+		eager.climbs.every { lazy.findByCLID(it.clid).get() == it }
+		eager.climbs.every { lazy.findById(Climb, it.id).get() == it }
+
+		and: "other collections are indexed as well"
+		lazy.findByCLID(eager.locations[0].clid).get() == eager.locations[0]
+		lazy.findById(Session, 1).get() == eager.sessions[0]
+
+		and: "no collection was loaded"
+		!lazy.isLoaded("climbs.json")
+		!lazy.isLoaded("locations.json")
+		!lazy.isLoaded("sessions.json")
+
+		cleanup:
+		lazy?.close()
+
+		where:
+		prettyPrint | threads
+		true        | 1
+		false       | 1
+		true        | 4
+	}
+
+	def "should answer misses from the index without loading the collection"() {
+		given:
+		def file = writeArchive(new CLDFWriter().withEntityIndex(true), createTestArchive(10))
+		def lazy = CLDF.open(file)
+
+		expect:
+		!lazy.findByCLID("clid:v1:climb:00000000-0000-0000-0000-000000000000").isPresent()
+		!lazy.findById(Climb, 999).isPresent()
+		!lazy.isLoaded("climbs.json")
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should scan collections of archives without an index"() {
+		given:
+		def file = writeArchive(new CLDFWriter(), createTestArchive(10))
+		def eager = new CLDFReader().read(file)
+		def lazy = CLDF.open(file)
+
+		expect:
+		lazy.findByCLID(eager.climbs[3].clid).get() == eager.climbs[3]
+		lazy.findById(Climb, 4).get() == eager.climbs[3]
+		lazy.isLoaded("climbs.json")
+		!lazy.findByCLID("not-a-clid").isPresent()
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should find appended climbs that are not in the index"() {
+		given: "an indexed archive with appended climbs"
+		def writer = new CLDFWriter().withEntityIndex(true)
+		def file = writeArchive(writer, createTestArchive(10))
+		writer.append(file, [climb(11)], null)
+		def lazy = CLDF.open(file)
+
+		expect:
+		lazy.findById(Climb, 3).get().routeName == "Route 3"
+		lazy.findById(Climb, 11).get().routeName == "Route 11"
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should keep the index when updating an archive"() {
+		given: "an indexed archive whose sessions are replaced"
+		def writer = new CLDFWriter().withEntityIndex(true)
+		def file = writeArchive(writer, createTestArchive(10))
+		def source = CLDF.open(file)
+		source.sessions = [session(1), session(2)]
+		def updated = tempDir.resolve("updated.cldf").toFile()
+
+		when: "updating it with a writer that does not index"
+		new CLDFWriter().update(source, updated)
+		source.close()
+		def lazy = CLDF.open(updated)
+
+		then: "copied and re-encoded collections are both indexed"
+		lazy.findById(Climb, 7).get().routeName == "Route 7"
+		lazy.findById(Session, 2).get().id == 2
+		!lazy.isLoaded("climbs.json")
+		!lazy.isLoaded("sessions.json")
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should not trust the index for a collection that was rewritten"() {
+		given: "an indexed archive whose climbs were reordered by another tool"
+		def file = writeArchive(new CLDFWriter().withEntityIndex(true), createTestArchive(20))
+		def reordered = createTestArchive(20)
+		reordered.climbs = reordered.climbs.reverse()
+		def reorderedFile = tempDir.resolve("reordered.cldf").toFile()
+		new CLDFWriter().write(reordered, reorderedFile)
+		def rewritten = replaceEntry(file, reorderedFile, "climbs.json")
+		def lazy = new CLDFReader(false, false).open(rewritten)
+
+		expect: "lookups fall back to scanning the climbs"
+		lazy.findById(Climb, 5).get().routeName == "Route 5"
+		lazy.isLoaded("climbs.json")
+
+		and: "other collections still use the index"
+		lazy.findById(Session, 1).isPresent()
+		!lazy.isLoaded("sessions.json")
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should reject lookups for types without a collection"() {
+		given:
+		def lazy = CLDF.open(writeArchive(new CLDFWriter(), createTestArchive(1)))
+
+		when:
+		lazy.findById(Manifest, 1)
+
+		then:
+		thrown(IllegalArgumentException)
+
+		cleanup:
+		lazy?.close()
+	}
+
+	private File writeArchive(CLDFWriter writer, CLDFArchive archive) {
+		def file = tempDir.resolve("archive.cldf").toFile()
+		writer.write(archive, file)
+		return file
+	}
+
+	private File replaceEntry(File source, File replacement, String entryName) {
+		def content = new ZipFile(replacement).withCloseable { zip ->
+			zip.getInputStream(zip.getEntry(entryName)).bytes
+		}
+		def target = tempDir.resolve("rewritten.cldf").toFile()
+		new ZipFile(source).withCloseable { zip ->
+			new ZipOutputStream(new FileOutputStream(target)).withCloseable { zos ->
+				zip.entries().each { entry ->
+					zos.putNextEntry(new ZipEntry(entry.name))
+					zos.write(entry.name == entryName ? content : zip.getInputStream(entry).bytes)
+					zos.closeEntry()
+				}
+			}
+		}
+		return target
+	}
+
+	private Climb climb(int id) {
+		Climb.builder()
+				.id(id)
+				.sessionId(1)
+				.date(LocalDate.of(2024, 1, 15))
+				.routeName("Route $id".toString())
+				.type(ClimbType.BOULDER)
+				.finishType(FinishType.TOP)
+				.attempts(1)
+				.build()
+	}
+
+	private Session session(int id) {
+		Session.builder().id(id).date(LocalDate.of(2024, 1, 16)).location("Test Crag").locationId(1).build()
+	}
+
+	private CLDFArchive createTestArchive(int climbCount) {
+		return CLDFArchive.builder()
+				.manifest(Manifest.builder()
+				.version("1.0.0")
+				.format("CLDF")
+				.creationDate(OffsetDateTime.now())
+				.appVersion("1.0")
+				.platform(Platform.DESKTOP)
+				.build())
+				.locations([
+					Location.builder().id(1).name("Test Crag").isIndoor(false).build()
+				])
+				.climbs((1..climbCount).collect { climb(it) })
+				.sessions([session(1)])
+				.build()
+	}
+}
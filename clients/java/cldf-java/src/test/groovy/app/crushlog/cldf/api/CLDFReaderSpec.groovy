@@ -160,6 +160,43 @@ class CLDFReaderSpec extends Specification {
 		archive.climbs[0].customFields["temperature"] == 72
 	}
 
+	def "should produce the same archive when parsing in parallel"() {
+		given: "an archive with optional files"
+		def archiveFile = createArchiveWithOptionalFiles()
+
+		when: "reading it sequentially and in parallel"
+		def sequential = new CLDFReader().read(archiveFile)
+		def parallel = new CLDFReader().withParallelParsing(true).read(archiveFile)
+
+		then: "both archives are identical"
+		parallel == sequential
+		parallel.routes.size() == 1
+		parallel.sectors.size() == 1
+		parallel.tags.size() == 1
+	}
+
+	def "should report parse failures when parsing in parallel"() {
+		given: "an archive with a malformed climbs file"
+		def file = tempDir.resolve("bad-climbs.cldf").toFile()
+		def zos = new ZipOutputStream(new FileOutputStream(file))
+		try {
+			addJsonEntry(zos, "manifest.json", createManifest())
+			addJsonEntry(zos, "locations.json", createLocationsFile())
+			zos.putNextEntry(new ZipEntry("climbs.json"))
+			zos.write("{ invalid json }".bytes)
+			zos.closeEntry()
+			addJsonEntry(zos, "checksums.json", createChecksums())
+		} finally {
+			zos.close()
+		}
+
+		when: "reading it in parallel"
+		new CLDFReader(false, false).withParallelParsing(true).read(file)
+
+		then: "the parse error is thrown"
+		thrown(IOException)
+	}
+
 	private File createValidArchive() {
 		def file = tempDir.resolve("valid.cldf").toFile()
 		def zos = new ZipOutputStream(new FileOutputStream(file))
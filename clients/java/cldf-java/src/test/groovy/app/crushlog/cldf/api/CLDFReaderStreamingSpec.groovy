@@ -0,0 +1,138 @@
+package app.crushlog.cldf.api
+
+import app.crushlog.cldf.models.*
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.LocalDate
+import java.time.OffsetDateTime
+import java.util.stream.Collectors
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+import app.crushlog.cldf.models.enums.ClimbType
+import app.crushlog.cldf.models.enums.FinishType
+import app.crushlog.cldf.models.enums.Platform
+
+class CLDFReaderStreamingSpec extends Specification {
+
+	@TempDir
+	Path tempDir
+
+	CLDFReader reader = new CLDFReader()
+
+	def "should stream climbs one at a time"() {
+		given: "an archive with several climbs"
+		def file = writeArchive(createTestArchive(5))
+
+		when: "streaming the climbs"
+		def climbs = reader.streamClimbs(file).withCloseable { it.collect(Collectors.toList()) }
+
+		then: "they match the eagerly read climbs"
+		climbs.size() == 5
+		climbs == reader.read(file).climbs
+	}
+
+	def "should stream sessions"() {
+		given: "an archive"
+		def file = writeArchive(createTestArchive(2))
+
+		expect: "sessions to be streamed"
+		reader.streamSessions(file).withCloseable { it.count() } == 1
+	}
+
+	def "should return an empty stream for missing collections"() {
+		given: "an archive without routes"
+		def file = writeArchive(createTestArchive(1))
+
+		expect: "an empty stream"
+		reader.streamRoutes(file).withCloseable { it.count() } == 0
+	}
+
+	def "should support short-circuiting operations"() {
+		given: "an archive with several climbs"
+		def file = writeArchive(createTestArchive(10))
+
+		when: "taking the first climb only"
+		def first = reader.streamClimbs(file).withCloseable { it.findFirst() }
+
+		then: "the first climb is returned"
+		first.get().routeName == "Route 1"
+	}
+
+	def "should verify the checksum once the stream is consumed"() {
+		given: "an archive whose climbs.json does not match its checksum"
+		def file = tamper(writeArchive(createTestArchive(3)))
+
+		when: "streaming all climbs"
+		reader.streamClimbs(file).withCloseable { it.count() }
+
+		then: "the mismatch is reported"
+		def e = thrown(UncheckedIOException)
+		e.cause.message.contains("Checksum mismatch for file 'climbs.json'")
+	}
+
+	def "should skip checksum verification when disabled"() {
+		given: "an archive whose climbs.json does not match its checksum"
+		def file = tamper(writeArchive(createTestArchive(3)))
+
+		expect: "all climbs to be streamed"
+		new CLDFReader(false, false).streamClimbs(file).withCloseable { it.count() } == 3
+	}
+
+	private File writeArchive(CLDFArchive archive) {
+		def file = tempDir.resolve("archive-${System.nanoTime()}.cldf").toFile()
+		CLDF.write(archive, file)
+		return file
+	}
+
+	private File tamper(File source) {
+		def target = tempDir.resolve("tampered.cldf").toFile()
+		new ZipFile(source).withCloseable { zip ->
+			new ZipOutputStream(new FileOutputStream(target)).withCloseable { zos ->
+				zip.entries().each { entry ->
+					def content = zip.getInputStream(entry).bytes
+					if (entry.name == "climbs.json") {
+						content = new String(content).replace("Route 2", "Route X").bytes
+					}
+					zos.putNextEntry(new ZipEntry(entry.name))
+					zos.write(content)
+					zos.closeEntry()
+				}
+			}
+		}
+		return target
+	}
+
+	private CLDFArchive createTestArchive(int climbCount) {
+		def climbs = (1..climbCount).collect { i ->
+			Climb.builder()
+					.id(i)
+					.sessionId(1)
+					.date(LocalDate.of(2024, 1, 15))
+					.routeName("Route $i".toString())
+					.type(ClimbType.BOULDER)
+					.finishType(FinishType.TOP)
+					.attempts(i)
+					.build()
+		}
+		return CLDFArchive.builder()
+				.manifest(Manifest.builder()
+				.version("1.0.0")
+				.format("CLDF")
+				.creationDate(OffsetDateTime.now())
+				.appVersion("1.0")
+				.platform(Platform.DESKTOP)
+				.build())
+				.locations([
+					Location.builder().id(1).name("Test Crag").isIndoor(false).build()
+				])
+				.climbs(climbs)
+				.sessions([
+					Session.builder().id(1).date(LocalDate.of(2024, 1, 15)).location("Test Crag").locationId(1).build()
+				])
+				.build()
+	}
+}
@@ -127,6 +127,24 @@ class CLDFReaderWriterSpec extends Specification {
 		readArchive.climbs.size() == 1
 	}
 
+	def "should keep the checksums computed while inflating entries"() {
+		given: "a written archive"
+		def file = tempDir.resolve("test-computed.cldf").toFile()
+		CLDF.write(createTestArchive(), file)
+
+		when: "reading with checksum validation enabled"
+		def readArchive = CLDF.createReader(true, false).read(file)
+
+		then: "the computed digests match the stored checksums"
+		readArchive.computedChecksums == readArchive.checksums.files
+
+		when: "reading with checksum validation disabled"
+		def unchecked = CLDF.createReader(false, false).read(file)
+
+		then: "no digests are computed"
+		unchecked.computedChecksums == null
+	}
+
 	private CLDFArchive createTestArchive() {
 		return CLDFArchive.builder()
 				.manifest(createTestManifest())
@@ -10,6 +10,7 @@ import java.nio.file.Path
 import java.time.LocalDate
 import java.time.LocalTime
 import java.time.OffsetDateTime
+import java.util.zip.ZipEntry
 import java.util.zip.ZipFile
 
 import app.crushlog.cldf.models.enums.ClimbType
@@ -157,6 +158,265 @@ class CLDFWriterSpec extends Specification {
 		readArchive.climbs.size() == 1000
 	}
 
+	def "should stream entries and write checksums last"() {
+		given: "a large archive"
+		def archive = createLargeArchive(10, 2500)
+		def outputFile = tempDir.resolve("streamed.cldf").toFile()
+
+		when: "writing the archive"
+		writer.write(archive, outputFile)
+
+		then: "checksums.json is the last entry"
+		def zip = new ZipFile(outputFile)
+		def names = zip.entries().collect { it.name }
+		names.last() == "checksums.json"
+
+		and: "the streamed digests match the stored content"
+		def checksumData = objectMapper.readValue(zip.getInputStream(zip.getEntry("checksums.json")), Checksums.class)
+		checksumData.files.keySet() == (names - "checksums.json") as Set
+		checksumData.files.every { name, hash ->
+			zip.getInputStream(zip.getEntry(name)).bytes.digest("SHA-256") == hash
+		}
+
+		and: "the streamed collection is the same JSON as the whole file serialized at once"
+		def climbsJson = objectMapper.readTree(zip.getInputStream(zip.getEntry("climbs.json")))
+		climbsJson.get("climbs").size() == 2500
+		new CLDFReader().read(outputFile).climbs == archive.climbs
+
+		cleanup:
+		zip?.close()
+	}
+
+	def "should validate large collections in batches and remove the incomplete file"() {
+		given: "a large archive with one invalid climb past the first batch"
+		def archive = createLargeArchive(10, 1500)
+		archive.climbs[1200] = Climb.builder().id(1201).sessionId(1).build()
+		def outputFile = tempDir.resolve("invalid-large.cldf").toFile()
+
+		when: "writing the archive"
+		writer.write(archive, outputFile)
+
+		then: "the failing batch is reported"
+		def e = thrown(IOException)
+		e.message.contains("Schema validation failed for climbs.json (elements from index 1000)")
+
+		and: "no truncated archive is left behind"
+		!outputFile.exists()
+	}
+
+	def "should store already compressed media and deflate JSON"() {
+		given: "an archive with embedded media of several kinds"
+		def archive = createCompleteArchive()
+		archive.mediaItems = [
+			MediaMetadataItem.builder().id(1).climbId(1).type(MediaType.VIDEO).filename("clip.raw").build()
+		]
+		archive.mediaFiles = [
+			"media/photo.jpg": ("x" * 1000).bytes,
+			"media/scan.bmp": ("y" * 1000).bytes,
+			"media/clip.raw": ("z" * 1000).bytes
+		]
+		def outputFile = tempDir.resolve("media-profile.cldf").toFile()
+
+		when: "writing with the default profile"
+		writer.write(archive, outputFile)
+
+		then: "JPEGs and typed videos are stored, other media and JSON are deflated"
+		def zip = new ZipFile(outputFile)
+		zip.getEntry("media/photo.jpg").method == ZipEntry.STORED
+		zip.getEntry("media/clip.raw").method == ZipEntry.STORED
+		zip.getEntry("media/scan.bmp").method == ZipEntry.DEFLATED
+		zip.getEntry("climbs.json").method == ZipEntry.DEFLATED
+
+		and: "the archive reads back with verified checksums"
+		new CLDFReader().read(outputFile).mediaFiles["media/photo.jpg"] == ("x" * 1000).bytes
+
+		cleanup:
+		zip?.close()
+	}
+
+	def "should apply the deflate level of the compression profile"() {
+		given: "a large archive"
+		def archive = createLargeArchive(10, 2000)
+		def fastFile = tempDir.resolve("fast.cldf").toFile()
+		def storeFile = tempDir.resolve("store.cldf").toFile()
+
+		when: "writing it with the fast and store profiles"
+		new CLDFWriter().withCompressionProfile(CompressionProfile.FAST).write(archive, fastFile)
+		new CLDFWriter().withCompressionProfile(CompressionProfile.STORE).write(archive, storeFile)
+
+		then: "stored JSON is not compressed"
+		def zip = new ZipFile(storeFile)
+		def climbs = zip.getEntry("climbs.json")
+		climbs.compressedSize >= climbs.size
+		zip.close()
+
+		and: "both archives read back"
+		storeFile.length() > fastFile.length()
+		new CLDFReader().read(fastFile).climbs.size() == 2000
+		new CLDFReader().read(storeFile).climbs.size() == 2000
+	}
+
+	def "should reject a null compression profile"() {
+		when:
+		new CLDFWriter().withCompressionProfile(null)
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+
+	def "should compress entries in parallel into the same archive layout"() {
+		given: "a large archive with embedded media"
+		def archive = createLargeArchive(10, 2500)
+		archive.mediaFiles = [
+			"media/photo.jpg": ("x" * 1000).bytes,
+			"media/scan.bmp": ("y" * 1000).bytes
+		]
+		def sequentialFile = tempDir.resolve("sequential.cldf").toFile()
+		def parallelFile = tempDir.resolve("parallel.cldf").toFile()
+
+		when: "writing it sequentially and on four threads"
+		new CLDFWriter().write(archive, sequentialFile)
+		new CLDFWriter().withCompressionThreads(4).write(archive, parallelFile)
+
+		then: "both archives have the same entries in the same order"
+		def sequentialZip = new ZipFile(sequentialFile)
+		def parallelZip = new ZipFile(parallelFile)
+		def names = parallelZip.entries().collect { it.name }
+		names == sequentialZip.entries().collect { it.name }
+		names.last() == "checksums.json"
+
+		and: "entry content and compression methods match"
+		names.findAll { it != "checksums.json" }.every { name ->
+			def entry = parallelZip.getEntry(name)
+			entry.method == sequentialZip.getEntry(name).method &&
+				parallelZip.getInputStream(entry).bytes == sequentialZip.getInputStream(sequentialZip.getEntry(name)).bytes
+		}
+		parallelZip.getEntry("media/photo.jpg").method == ZipEntry.STORED
+
+		and: "the parallel archive reads back with verified checksums"
+		new CLDFReader().read(parallelFile).climbs == archive.climbs
+
+		cleanup:
+		sequentialZip?.close()
+		parallelZip?.close()
+	}
+
+	def "should report schema errors from compression threads and remove the incomplete file"() {
+		given: "an archive with an invalid climb"
+		def archive = createLargeArchive(10, 1500)
+		archive.climbs[1200] = Climb.builder().id(1201).sessionId(1).build()
+		def outputFile = tempDir.resolve("invalid-parallel.cldf").toFile()
+
+		when: "writing it on several threads"
+		new CLDFWriter().withCompressionThreads(4).write(archive, outputFile)
+
+		then: "the schema error is rethrown"
+		def e = thrown(IOException)
+		e.message.contains("Schema validation failed for climbs.json (elements from index 1000)")
+
+		and: "no truncated archive is left behind"
+		!outputFile.exists()
+	}
+
+	def "should reject fewer than one compression thread"() {
+		when:
+		new CLDFWriter().withCompressionThreads(0)
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+
+	def "should copy unchanged entries raw when updating an opened archive"() {
+		given: "an archive with media on disk"
+		def archive = createLargeArchive(10, 2000)
+		archive.mediaFiles = [
+			"media/photo.jpg": ("x" * 1000).bytes,
+			"media/scan.bmp": ("y" * 1000).bytes
+		]
+		def sourceFile = tempDir.resolve("source.cldf").toFile()
+		writer.write(archive, sourceFile)
+		def updatedFile = tempDir.resolve("updated.cldf").toFile()
+
+		when: "a climb is appended to the lazily opened archive and it is updated"
+		def lazy = new CLDFReader().open(sourceFile)
+		def newClimb = Climb.builder()
+				.id(2001)
+				.sessionId(1)
+				.date(LocalDate.now())
+				.routeName("Route 2001")
+				.type(ClimbType.ROUTE)
+				.finishType(FinishType.REDPOINT)
+				.build()
+		lazy.climbs = lazy.climbs + [newClimb]
+		writer.update(lazy, updatedFile)
+		lazy.close()
+
+		then: "untouched entries keep their compressed bytes"
+		def source = new ZipFile(sourceFile)
+		def updated = new ZipFile(updatedFile)
+		["locations.json", "sessions.json", "media/photo.jpg", "media/scan.bmp"].every { name ->
+			def before = source.getEntry(name)
+			def after = updated.getEntry(name)
+			after.method == before.method && after.compressedSize == before.compressedSize && after.crc == before.crc
+		}
+
+		and: "the changed collection, stats and checksums are rewritten"
+		def read = new CLDFReader().read(updatedFile)
+		read.climbs.size() == 2001
+		read.climbs.last().clid != null
+		read.manifest.stats.climbsCount == 2001
+		read.manifest.stats.locationsCount == 10
+		read.mediaFiles["media/photo.jpg"] == ("x" * 1000).bytes
+		read.locations == archive.locations
+
+		cleanup:
+		source?.close()
+		updated?.close()
+	}
+
+	def "should keep every collection when updating an archive whose manifest has no stats"() {
+		given: "an opened archive whose manifest has lost its statistics"
+		def sourceFile = tempDir.resolve("no-stats.cldf").toFile()
+		writer.write(createArchiveWithOptionalData(), sourceFile)
+		def updatedFile = tempDir.resolve("no-stats-updated.cldf").toFile()
+		def lazy = new CLDFReader().open(sourceFile)
+		lazy.manifest.stats = null
+
+		when: "only the tags are replaced and the archive is updated"
+		lazy.tags = []
+		writer.update(lazy, updatedFile)
+		lazy.close()
+
+		then: "the untouched collections are still there and counted"
+		def read = new CLDFReader().read(updatedFile)
+		read.locations.size() == 1
+		read.climbs.size() == 1
+		read.sessions.size() == 1
+		read.routes.size() == 1
+		read.sectors.size() == 1
+		read.mediaItems.size() == 1
+		!read.tags
+		read.manifest.stats.climbsCount == 1
+		read.manifest.stats.routesCount == 1
+	}
+
+	def "should refuse to update an archive in place"() {
+		given: "an opened archive"
+		def sourceFile = tempDir.resolve("in-place.cldf").toFile()
+		writer.write(createCompleteArchive(), sourceFile)
+		def lazy = new CLDFReader().open(sourceFile)
+
+		when: "updating it onto its own file"
+		writer.update(lazy, sourceFile)
+
+		then:
+		thrown(IllegalArgumentException)
+		sourceFile.exists()
+
+		cleanup:
+		lazy?.close()
+	}
+
 	def "should handle IO errors"() {
 		given: "an invalid output path"
 		def archive = createCompleteArchive()
@@ -0,0 +1,150 @@
+package app.crushlog.cldf.api
+
+import app.crushlog.cldf.models.Climb
+import app.crushlog.cldf.utils.GradeScale
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+import app.crushlog.cldf.models.enums.ClimbType
+import app.crushlog.cldf.models.enums.FinishType
+
+import static app.crushlog.cldf.api.ClimbTable.Column.*
+
+class ClimbTableSpec extends Specification {
+
+	def "should store each climb as a row of codes"() {
+		given:
+		def table = ClimbTable.of(createClimbs())
+
+		expect:
+		table.size() == 5
+		table.get(CLIMB_TYPE, 0) == ClimbType.BOULDER.ordinal()
+		table.get(FINISH_TYPE, 1) == FinishType.REDPOINT.ordinal()
+		table.get(INDOOR, 0) == 1
+		table.get(INDOOR, 1) == 0
+		table.get(GRADE, 0) == GradeScale.ordinal("V5")
+		table.get(RATING, 2) == 3
+		table.getDate(0) == LocalDate.of(2024, 1, 10)
+
+		and: "missing values are coded as missing"
+		table.get(CLIMB_TYPE, 4) == ClimbTable.MISSING
+		table.get(INDOOR, 4) == ClimbTable.MISSING
+		table.get(GRADE, 4) == ClimbTable.MISSING
+		table.get(RATING, 4) == ClimbTable.MISSING
+		table.getDate(4) == null
+	}
+
+	def "should count rows per code"() {
+		given:
+		def table = ClimbTable.of(createClimbs())
+
+		expect:
+		table.countBy(CLIMB_TYPE)[ClimbType.BOULDER.ordinal()] == 2
+		table.countBy(CLIMB_TYPE)[ClimbType.ROUTE.ordinal()] == 2
+		table.countBy(FINISH_TYPE)[FinishType.FLASH.ordinal()] == 2
+		table.countBy(FINISH_TYPE).sum() == 4
+		table.count(INDOOR, 1) == 2
+		table.count(INDOOR, 0) == 2
+
+		and: "grades are counted on the shared grade scale"
+		def grades = table.countBy(GRADE)
+		grades.length == table.cardinality(GRADE)
+		grades[GradeScale.ordinal("6a")] == 3
+		grades[GradeScale.ordinal("V5")] == 1
+	}
+
+	def "should aggregate selected rows"() {
+		given:
+		def table = ClimbTable.of(createClimbs())
+
+		when: "selecting sends"
+		def sends = table.rowsWhere(FINISH_TYPE, FinishType.FLASH.ordinal(), FinishType.REDPOINT.ordinal())
+
+		then:
+		sends.cardinality() == 3
+		table.countBy(GRADE, sends)[GradeScale.ordinal("6a")] == 2
+
+		and: "date ranges are inclusive and skip undated rows"
+		table.rowsBetween(LocalDate.of(2024, 1, 10), LocalDate.of(2024, 2, 1)).stream().toArray() == [0, 1, 2] as int[]
+		table.rowsBetween(null, null).cardinality() == 4
+	}
+
+	def "should average numeric columns"() {
+		given:
+		def table = ClimbTable.of(createClimbs())
+
+		expect:
+		table.average(RATING) == 3.5
+		def byType = table.averageBy(CLIMB_TYPE, RATING)
+		byType[ClimbType.BOULDER.ordinal()] == 4.5
+		byType[ClimbType.ROUTE.ordinal()] == 2.5
+	}
+
+	def "should handle archives without climbs"() {
+		given:
+		def table = ClimbTable.of(CLDFArchive.builder().build())
+
+		expect:
+		table.size() == 0
+		table.countBy(GRADE).length == 0
+		table.countBy(FINISH_TYPE).sum() == 0
+		Double.isNaN(table.average(RATING))
+		table.averageBy(INDOOR, RATING).every { Double.isNaN(it) }
+	}
+
+	def "should give the same results with the vector and the scalar kernels"() {
+		given: "enough rows to flush the vector sums, and a partial vector at the end"
+		def random = new Random(42)
+		def grades = ["V2", "V5", "6a", "6b+", "5.10a", "VII", "Proj", null]
+		def climbs = (0..<20003).collect {
+			climb(
+					random.nextInt(8) == 0 ? null : ClimbType.values()[random.nextInt(ClimbType.values().length)],
+					random.nextInt(8) == 0 ? null : FinishType.values()[random.nextInt(FinishType.values().length)],
+					random.nextInt(5) == 0 ? null : random.nextBoolean(),
+					grades[random.nextInt(grades.size())],
+					random.nextInt(4) == 0 ? null : random.nextInt(6),
+					random.nextInt(10) == 0 ? null : LocalDate.of(2024, 1, 1).plusDays(random.nextInt(366)))
+		}
+		def fast = ClimbTable.of(climbs, ColumnKernels.create())
+		def scalar = ClimbTable.of(climbs, new ColumnKernels())
+		def sends = scalar.rowsWhere(FINISH_TYPE, FinishType.FLASH.ordinal(), FinishType.REDPOINT.ordinal())
+
+		expect:
+		[CLIMB_TYPE, FINISH_TYPE, INDOOR, GRADE, RATING].every { column ->
+			fast.countBy(column) == scalar.countBy(column) &&
+					fast.countBy(column, sends) == scalar.countBy(column, sends) &&
+					fast.count(column, 1) == scalar.count(column, 1) &&
+					fast.average(column) == scalar.average(column)
+		}
+		fast.rowsWhere(FINISH_TYPE, FinishType.FLASH.ordinal(), FinishType.REDPOINT.ordinal()) == sends
+		fast.rowsWhere(GRADE, GradeScale.ordinal("6a"), GradeScale.ordinal("V5")) ==
+				scalar.rowsWhere(GRADE, GradeScale.ordinal("6a"), GradeScale.ordinal("V5"))
+		fast.rowsBetween(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 5, 31)) ==
+				scalar.rowsBetween(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 5, 31))
+		fast.rowsBetween(null, null).cardinality() == climbs.count { it.date != null }
+		def ratings = climbs*.rating.findAll { it != null }
+		Math.abs(fast.average(RATING) - (ratings.sum() as double) / ratings.size()) < 1e-9
+	}
+
+	private List<Climb> createClimbs() {
+		[
+			climb(ClimbType.BOULDER, FinishType.FLASH, true, "V5", 5, LocalDate.of(2024, 1, 10)),
+			climb(ClimbType.ROUTE, FinishType.REDPOINT, false, "6a", 2, LocalDate.of(2024, 2, 1)),
+			climb(ClimbType.ROUTE, FinishType.PROJECT, true, "5.10a", 3, LocalDate.of(2024, 1, 15)),
+			climb(ClimbType.BOULDER, FinishType.FLASH, false, "6A", 4, LocalDate.of(2024, 3, 1)),
+			climb(null, null, null, null, null, null)
+		]
+	}
+
+	private Climb climb(ClimbType type, FinishType finishType, Boolean indoor, String grade, Integer rating, LocalDate date) {
+		Climb.builder()
+				.type(type)
+				.finishType(finishType)
+				.isIndoor(indoor)
+				.grades(grade != null ? Climb.GradeInfo.builder().grade(grade).build() : null)
+				.rating(rating)
+				.date(date)
+				.build()
+	}
+}
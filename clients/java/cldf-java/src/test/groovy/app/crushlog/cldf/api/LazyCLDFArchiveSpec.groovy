@@ -0,0 +1,183 @@
+package app.crushlog.cldf.api
+
+import app.crushlog.cldf.models.*
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+import java.time.LocalDate
+import java.time.OffsetDateTime
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+import app.crushlog.cldf.models.enums.ClimbType
+import app.crushlog.cldf.models.enums.FinishType
+import app.crushlog.cldf.models.enums.Platform
+import app.crushlog.cldf.models.enums.RouteType
+
+class LazyCLDFArchiveSpec extends Specification {
+
+	@TempDir
+	Path tempDir
+
+	def "should read the same data as the eager reader"() {
+		given: "a written archive"
+		def file = writeArchive(createTestArchive())
+
+		when: "opening it lazily and reading it eagerly"
+		def eager = new CLDFReader().read(file)
+		def lazy = new CLDFReader().open(file)
+
+		then: "all collections match"
+		lazy.manifest == eager.manifest
+		lazy.locations == eager.locations
+		lazy.climbs == eager.climbs
+		lazy.sessions == eager.sessions
+		lazy.routes == eager.routes
+		lazy.hasRoutes()
+		!lazy.hasSectors()
+		lazy.sectors == null
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should give random access to embedded media"() {
+		given: "an archive with embedded media"
+		def archive = createTestArchive()
+		archive.mediaFiles = ["media/photo1.jpg": [1, 2, 3] as byte[], "media/photo2.jpg": [4, 5] as byte[]]
+		def file = writeArchive(archive)
+
+		when: "opening it lazily"
+		def lazy = CLDF.open(file)
+
+		then: "media files can be listed and read one at a time"
+		lazy.mediaFileNames.toSet() == ["media/photo1.jpg", "media/photo2.jpg"] as Set
+		lazy.readMediaFile("media/photo2.jpg") == [4, 5] as byte[]
+		lazy.readMediaFile("media/missing.jpg") == null
+		lazy.containsFile("climbs.json")
+
+		and: "the full media map is still available"
+		lazy.mediaFiles.size() == 2
+		lazy.hasEmbeddedMedia()
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should only fail when a corrupted file is accessed"() {
+		given: "an archive whose climbs.json no longer matches its checksum"
+		def file = tamper(writeArchive(createTestArchive()), "climbs.json")
+
+		when: "opening it lazily"
+		def lazy = new CLDFReader(true, false).open(file)
+
+		then: "untouched collections load fine"
+		lazy.locations.size() == 1
+
+		when: "accessing the corrupted collection"
+		lazy.climbs
+
+		then: "the checksum mismatch is reported"
+		def e = thrown(UncheckedIOException)
+		e.cause.message.contains("Checksum mismatch for file 'climbs.json'")
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should keep values set on the archive"() {
+		given: "a lazily opened archive"
+		def lazy = CLDF.open(writeArchive(createTestArchive()))
+
+		when: "replacing a collection before it is loaded"
+		lazy.climbs = []
+
+		then: "the replacement is returned"
+		lazy.climbs.isEmpty()
+
+		cleanup:
+		lazy?.close()
+	}
+
+	def "should reject archives without a manifest"() {
+		given: "an archive with only checksums"
+		def file = tempDir.resolve("no-manifest.cldf").toFile()
+		new ZipOutputStream(new FileOutputStream(file)).withCloseable { zos ->
+			zos.putNextEntry(new ZipEntry("checksums.json"))
+			zos.write('{"algorithm":"SHA-256","files":{}}'.bytes)
+			zos.closeEntry()
+		}
+
+		when: "opening it"
+		new CLDFReader().open(file)
+
+		then: "an exception is thrown"
+		def e = thrown(IOException)
+		e.message.contains("manifest.json")
+	}
+
+	def "should reject missing files"() {
+		when: "opening a file that does not exist"
+		new CLDFReader().open(tempDir.resolve("missing.cldf").toFile())
+
+		then: "an exception is thrown"
+		thrown(FileNotFoundException)
+	}
+
+	private File writeArchive(CLDFArchive archive) {
+		def file = tempDir.resolve("archive-${System.nanoTime()}.cldf").toFile()
+		CLDF.write(archive, file)
+		return file
+	}
+
+	private File tamper(File source, String entryName) {
+		def target = tempDir.resolve("tampered.cldf").toFile()
+		new ZipFile(source).withCloseable { zip ->
+			new ZipOutputStream(new FileOutputStream(target)).withCloseable { zos ->
+				zip.entries().each { entry ->
+					def content = zip.getInputStream(entry).bytes
+					if (entry.name == entryName) {
+						content = new String(content).replace("Test Route", "Other Route").bytes
+					}
+					zos.putNextEntry(new ZipEntry(entry.name))
+					zos.write(content)
+					zos.closeEntry()
+				}
+			}
+		}
+		return target
+	}
+
+	private CLDFArchive createTestArchive() {
+		return CLDFArchive.builder()
+				.manifest(Manifest.builder()
+				.version("1.0.0")
+				.format("CLDF")
+				.creationDate(OffsetDateTime.now())
+				.appVersion("1.0")
+				.platform(Platform.DESKTOP)
+				.build())
+				.locations([
+					Location.builder().id(1).name("Test Crag").isIndoor(false).build()
+				])
+				.climbs([
+					Climb.builder()
+					.id(1)
+					.sessionId(1)
+					.date(LocalDate.of(2024, 1, 15))
+					.routeName("Test Route")
+					.type(ClimbType.BOULDER)
+					.finishType(FinishType.TOP)
+					.build()
+				])
+				.sessions([
+					Session.builder().id(1).date(LocalDate.of(2024, 1, 15)).location("Test Crag").locationId(1).build()
+				])
+				.routes([
+					Route.builder().id(1).locationId(1).name("Test Route").routeType(RouteType.BOULDER).build()
+				])
+				.build()
+	}
+}
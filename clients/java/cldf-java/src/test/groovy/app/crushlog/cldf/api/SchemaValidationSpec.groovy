@@ -85,6 +85,25 @@ class SchemaValidationSpec extends Specification {
 		e.message.contains("Schema validation failed")
 	}
 
+	def "should validate lazily opened files when they are loaded"() {
+		given: "an archive with an invalid climb written without validation"
+		def archive = createValidArchive()
+		archive.climbs[0] = Climb.builder().id(1).sessionId(1).build()
+		def outputFile = tempDir.resolve("invalid-lazy-climb.cldf").toFile()
+		new CLDFWriter(true, false).write(archive, outputFile)
+
+		when: "opening it and accessing the climbs"
+		def lazy = new CLDFReader(true, true).open(outputFile)
+		lazy.climbs
+
+		then: "the climbs fail validation"
+		def e = thrown(UncheckedIOException)
+		e.cause.message.contains("Schema validation failed for climbs.json")
+
+		cleanup:
+		lazy?.close()
+	}
+
 	def "should allow reading/writing when validation is disabled"() {
 		given: "an archive that might not pass strict validation"
 		def archive = createValidArchive()
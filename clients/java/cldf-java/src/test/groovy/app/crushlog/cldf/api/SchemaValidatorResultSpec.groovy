@@ -72,6 +72,19 @@ class SchemaValidatorResultSpec extends Specification {
 		result.errors[0].path == '$'
 	}
 
+	def "should validate an already parsed JSON tree"() {
+		given:
+		def mapper = new com.fasterxml.jackson.databind.ObjectMapper()
+		def valid = mapper.readTree('{"algorithm": "SHA-256", "files": {}}')
+		def invalid = mapper.readTree('{"files": {}}')
+
+		expect:
+		validator.validateWithResult("checksums.json", valid).valid
+		!validator.validateWithResult("checksums.json", invalid).valid
+		validator.validateWithResult("checksums.json", invalid).errors.any { it.type == "required" }
+		validator.validateWithResult("unknown.json", invalid).valid
+	}
+
 	def "should return multiple validation errors"() {
 		given:
 		// locations.json expects an array of locations
@@ -132,4 +145,47 @@ class SchemaValidatorResultSpec extends Specification {
 			error.type != null
 		}
 	}
+
+	def "should share one compiled schema set across the JVM"() {
+		expect:
+		SchemaValidator.shared().is(SchemaValidator.shared())
+		SchemaValidator.warmUp() >= 9
+	}
+
+	def "should validate concurrently with the shared validator"() {
+		given:
+		def manifest = [
+			version: "1.0.0",
+			format: "CLDF",
+			creationDate: java.time.OffsetDateTime.now().toString(),
+			appVersion: "1.0.0",
+			platform: "Android"
+		]
+
+		def results = Collections.synchronizedList([])
+
+		when:
+		(1..16).collect {
+			Thread.startVirtualThread {
+				results << SchemaValidator.shared().validateObjectWithResult("manifest.json", manifest).valid
+				results << !SchemaValidator.shared().validateObjectWithResult("manifest.json", [:]).valid
+			}
+		}.each { it.join() }
+
+		then:
+		results.size() == 32
+		results.every { it }
+	}
+
+	def "should report missing schemas for an unknown base path"() {
+		given:
+		def missing = new SchemaValidator("/no-such-schemas/")
+
+		when:
+		def result = missing.validateWithResult("manifest.json", "{}".bytes)
+
+		then:
+		!result.valid
+		result.errors[0].message.contains("Schema not found")
+	}
 }
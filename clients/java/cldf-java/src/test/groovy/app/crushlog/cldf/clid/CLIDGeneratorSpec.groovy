@@ -346,4 +346,45 @@ class CLIDGeneratorSpec extends Specification {
 		then: "CLIDs are different"
 		clid1 != clid2
 	}
+
+	def "should keep generating the same CLIDs through single and batch calls"() {
+		given: "El Capitan and routes with awkward names, grades and heights"
+		def elCapitan = Location.builder()
+				.country("US")
+				.state("CA")
+				.city("Yosemite Valley")
+				.name("El Capitan")
+				.coordinates(new Coordinates(37.734000, -119.637700))
+				.isIndoor(false)
+				.build()
+		def theNose = Route.builder()
+				.name("The Nose")
+				.grade("5.14a")
+				.firstAscent(Route.FirstAscent.builder().name("Warren Harding").year(1958).build())
+				.height(900.0)
+				.build()
+		def freerider = Route.builder()
+				.name("  --Freerider (5.12d)!  ")
+				.grade("5.12 D")
+				.height(850.25)
+				.build()
+
+		when: "generating CLIDs one at a time and in batches"
+		def locationCLID = CLIDGenerator.generateLocationCLID(elCapitan)
+		def routeCLIDs = [theNose, freerider].collect { CLIDGenerator.generateRouteCLID(locationCLID, it) }
+		def sectorCLID = CLIDGenerator.generateSectorCLID(locationCLID, new Sector("East Buttress", 2))
+
+		then: "the CLIDs match the published values"
+		locationCLID == "clid:v1:location:654508f3-a784-575e-8aa7-75ca7a1c3cd2"
+		routeCLIDs == [
+			"clid:v1:route:964b6dce-0578-59a1-8f3f-f9567ad1d55e",
+			"clid:v1:route:2a25b1cd-bdcd-538a-8bd8-7da7ca3d9cc3"
+		]
+		sectorCLID == "clid:v1:sector:8b355e22-d795-55f5-8dca-306aae0b580c"
+
+		and: "the batch API returns the same CLIDs in order"
+		CLIDGenerator.generateLocationCLIDs([elCapitan]) == [locationCLID]
+		CLIDGenerator.generateRouteCLIDs(locationCLID, [theNose, freerider]) == routeCLIDs
+		CLIDGenerator.generateSectorCLIDs(locationCLID, [new Sector("East Buttress", 2)]) == [sectorCLID]
+	}
 }
@@ -0,0 +1,104 @@
+package app.crushlog.cldf.clid
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class CompactCLIDSpec extends Specification {
+
+	@Unroll
+	def "should round-trip canonical CLID: #clid"() {
+		when: "parsing the CLID"
+		def compact = CompactCLID.parse(clid)
+
+		then: "the type and UUID are kept and the string form is identical"
+		compact.type() == expectedType
+		compact.uuid() == UUID.fromString(clid.substring(clid.lastIndexOf(':') + 1))
+		compact.toString() == clid
+		CompactCLID.typeOrdinal(clid) == expectedType.ordinal()
+
+		where:
+		clid                                                    | expectedType
+		"clid:v1:route:550e8400-e29b-41d4-a716-446655440000"    | EntityType.ROUTE
+		"clid:v1:location:123e4567-e89b-12d3-a456-426614174000" | EntityType.LOCATION
+		"clid:v1:sector:00000000-0000-0000-0000-000000000000"   | EntityType.SECTOR
+		"clid:v1:climb:ffffffff-ffff-ffff-ffff-ffffffffffff"    | EntityType.CLIMB
+		"clid:v1:media:abcdef12-3456-7890-abcd-ef1234567890"    | EntityType.MEDIA
+	}
+
+	@Unroll
+	def "should reject non-canonical CLID: '#clid'"() {
+		expect:
+		!CompactCLID.isCanonical(clid)
+
+		when:
+		CompactCLID.parse(clid)
+
+		then:
+		thrown(IllegalArgumentException)
+
+		where:
+		clid << [
+			null,
+			"",
+			"clid:v1:route:ABCDEF12-3456-7890-ABCD-EF1234567890",
+			"clid:v2:route:550e8400-e29b-41d4-a716-446655440000",
+			"clid:v1:invalid:550e8400-e29b-41d4-a716-446655440000",
+			"clid:v1:route:550e8400-e29b-41d4-a716-44665544000",
+			"clid:v1:route:550e8400xe29b-41d4-a716-446655440000",
+			"clid:v1:location:existing-123-456"
+		]
+	}
+
+	def "should generate CLIDs the compact form can represent"() {
+		given:
+		def clid = CLIDGenerator.generateRandomCLID(EntityType.SESSION)
+
+		expect:
+		CompactCLID.parse(clid).toString() == clid
+	}
+
+	def "should map compact CLIDs to values across resizes"() {
+		given: "more CLIDs than the initial table holds"
+		def map = new CLIDLongMap()
+		def clids = (0..<1000).collect {
+			CompactCLID.of(EntityType.values()[it % 6], new UUID(it % 7, it))
+		}
+
+		when:
+		clids.eachWithIndex { clid, i -> map.put(clid, i) }
+
+		then: "every CLID maps to its value"
+		map.size() == 1000
+		(0..<1000).every { map.get(clids[it], -1) == it }
+
+		and: "lookups by components match lookups by value"
+		def first = clids[0].toString()
+		map.get(CompactCLID.typeOrdinal(first), CompactCLID.parseMostSignificantBits(first),
+				CompactCLID.parseLeastSignificantBits(first), -1) == 0
+
+		and: "the same UUID under another type is a different key"
+		!map.containsKey(new CompactCLID(EntityType.MEDIA, 0, 0))
+		map.get(new CompactCLID(EntityType.LOCATION, 0, 0), -1) == 0
+	}
+
+	def "should replace values for existing keys"() {
+		given:
+		def map = new CLIDLongMap(4)
+		def clid = CompactCLID.parse("clid:v1:route:550e8400-e29b-41d4-a716-446655440000")
+
+		when:
+		map.put(clid, 1)
+		map.put(clid, 2)
+
+		then:
+		map.size() == 1
+		map.get(clid, -1) == 2
+
+		when:
+		map.clear()
+
+		then:
+		map.isEmpty()
+		map.get(clid, -1) == -1
+	}
+}
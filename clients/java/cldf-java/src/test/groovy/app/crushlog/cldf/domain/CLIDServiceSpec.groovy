@@ -428,4 +428,96 @@ class CLIDServiceSpec extends Specification {
 		route.getClid() != null
 		route.getClid().startsWith("clid:v1:route:")
 	}
+
+	def "should derive route CLIDs from location CLIDs generated in the same pass"() {
+		given: "a location without a CLID and a route at it"
+		def archive = routeArchive(1, 1)
+
+		when: "processing CLIDs twice from scratch"
+		service.processArchiveCLIDs(archive, true, false)
+		def first = archive.routes[0].clid
+		archive.locations[0].clid = null
+		archive.routes[0].clid = null
+		service.processArchiveCLIDs(archive, true, false)
+
+		then: "the route CLID is deterministic"
+		archive.routes[0].clid == first
+	}
+
+	def "should assign the same CLIDs in parallel as sequentially"() {
+		given: "the same route-heavy archive twice"
+		def sequential = routeArchive(20, 500)
+		def parallel = routeArchive(20, 500)
+
+		when: "processing one sequentially and one in parallel"
+		service.processArchiveCLIDs(sequential, true, true)
+		new CLIDService().withParallelProcessing(true).processArchiveCLIDs(parallel, true, true)
+
+		then: "locations and routes get identical CLIDs"
+		parallel.locations*.clid == sequential.locations*.clid
+		parallel.routes*.clid == sequential.routes*.clid
+		parallel.routes*.clid.toSet().size() == 500
+	}
+
+	def "should report the earliest duplicate CLID in parallel mode"() {
+		given: "routes where the second and fourth duplicate the first"
+		def archive = routeArchive(1, 200)
+		def clid = "clid:v1:route:550e8400-e29b-41d4-a716-446655440000"
+		[0, 1, 3].each { archive.routes[it].clid = clid }
+		archive.climbs = [
+			Climb.builder().id(1).sessionId(1).clid("not-a-clid").build()
+		]
+
+		when: "processing CLIDs in parallel"
+		new CLIDService().withParallelProcessing(true).processArchiveCLIDs(archive, true, true)
+
+		then: "the same duplicate is reported as in sequential processing"
+		def e = thrown(CLIDService.CLIDValidationException)
+		e.message == "Duplicate CLID '$clid' found. Already used by Route, attempted to use for Route"
+	}
+
+	@Unroll
+	def "should reject duplicate #form CLIDs"() {
+		given: "two locations sharing a CLID"
+		def archive = CLDFArchive.builder()
+				.locations([
+					Location.builder().id(1).clid(clid).name("Test Crag").isIndoor(false).build(),
+					Location.builder().id(2).clid(clid).name("Other Crag").isIndoor(false).build()
+				])
+				.build()
+
+		when: "validating the existing CLIDs"
+		service.processArchiveCLIDs(archive, false, true)
+
+		then:
+		def e = thrown(CLIDService.CLIDValidationException)
+		e.message == "Duplicate CLID '$clid' found. Already used by Location, attempted to use for Location"
+
+		where:
+		form         | clid
+		"canonical"  | "clid:v1:location:550e8400-e29b-41d4-a716-446655440000"
+		"upper-case" | "clid:v1:location:550E8400-E29B-41D4-A716-446655440000"
+	}
+
+	private CLDFArchive routeArchive(int locationCount, int routeCount) {
+		def locations = (1..locationCount).collect { i ->
+			Location.builder()
+					.id(i)
+					.name("Crag $i".toString())
+					.country("US")
+					.coordinates(Location.Coordinates.builder().latitude(37.0d + i / 100d).longitude(-119.0).build())
+					.isIndoor(false)
+					.build()
+		}
+		def routes = (1..routeCount).collect { i ->
+			Route.builder()
+					.id(i)
+					.locationId(i % locationCount + 1)
+					.name("Route $i".toString())
+					.grades(Route.Grades.builder().yds("5.${i % 15}".toString()).build())
+					.routeType(RouteType.ROUTE)
+					.build()
+		}
+		return CLDFArchive.builder().locations(locations).routes(routes).build()
+	}
 }
@@ -0,0 +1,101 @@
+package app.crushlog.cldf.utils
+
+import app.crushlog.cldf.models.Climb
+import app.crushlog.cldf.models.Route
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import app.crushlog.cldf.models.enums.GradeSystem
+
+class GradeScaleSpec extends Specification {
+
+	@Unroll
+	def "should order every #system grade strictly"() {
+		expect:
+		def ordinals = grades.collect { GradeScale.ordinal(system, it) }
+		!ordinals.contains(GradeScale.UNKNOWN)
+		ordinals == ordinals.toSorted()
+		ordinals.toUnique().size() == ordinals.size()
+
+		where:
+		system               | grades
+		GradeSystem.V_SCALE  | ["VB", "V0-", "V0", "V0+", "V1", "V2", "V3", "V4", "V5", "V6", "V7", "V8", "V9", "V10", "V11", "V12", "V13", "V14", "V15", "V16", "V17", "V18"]
+		GradeSystem.FONT     | ["3", "4", "4+", "5", "5+", "6A", "6A+", "6B", "6B+", "6C", "6C+", "7A", "7A+", "7B", "7B+", "7C", "7C+", "8A", "8A+", "8B", "8B+", "8C", "8C+", "9A"]
+		GradeSystem.FRENCH   | ["1", "2", "3", "4a", "4b", "4c", "5a", "5b", "5c", "5c+", "6a", "6a+", "6b", "6b+", "6c", "6c+", "7a", "7a+", "7b", "7b+", "7c", "7c+", "8a", "8a+", "8b", "8b+", "8c", "8c+", "9a", "9a+", "9b", "9b+", "9c", "9c+"]
+		GradeSystem.YDS      | ["5.0", "5.4", "5.7", "5.8", "5.9", "5.10", "5.10a", "5.10b", "5.10c", "5.10d", "5.11", "5.11a", "5.11d", "5.12a", "5.12d", "5.13a", "5.14a", "5.15d"]
+		GradeSystem.UIAA     | ["I", "II", "III", "IV-", "IV", "IV+", "V-", "V", "V+", "VI", "VII", "VIII-", "VIII", "IX", "X", "XI", "XII", "XII+"]
+	}
+
+	@Unroll
+	def "should place #grade at the French equivalent #french"() {
+		expect:
+		GradeScale.ordinal(grade) == GradeScale.ordinal(GradeSystem.FRENCH, french)
+
+		where:
+		grade   | french
+		"6A+"   | "6a+"
+		"5.10a" | "6a"
+		"5.11b" | "6c"
+		"5.12a" | "7a+"
+		"VI"    | "6a"
+		"VII+"  | "6c"
+		"V6"    | "7a"
+		"V10"   | "7c+"
+		"5+"    | "5c"
+	}
+
+	@Unroll
+	def "should detect the system of '#grade'"() {
+		expect:
+		GradeScale.detect(grade) == system
+
+		where:
+		grade   | system
+		"V5"    | GradeSystem.V_SCALE
+		"VB"    | GradeSystem.V_SCALE
+		"VII"   | GradeSystem.UIAA
+		"V+"    | GradeSystem.UIAA
+		"XI-"   | GradeSystem.UIAA
+		"5.10a" | GradeSystem.YDS
+		"7A"    | GradeSystem.FONT
+		"7a"    | GradeSystem.FRENCH
+		"5"     | GradeSystem.FRENCH
+		"Proj"  | null
+		""      | null
+		null    | null
+	}
+
+	@Unroll
+	def "should not read '#grade' as a grade"() {
+		expect:
+		GradeScale.ordinal(grade as String) == GradeScale.UNKNOWN
+
+		where:
+		grade << [null, "", "Proj", "V", "VB+", "V3-4", "5.", "5.1a", "5.10e", "4d", "3+", "10", "6a++", "IIII", "X1"]
+	}
+
+	def "should read UIAA grades with Arabic numerals only when the system is given"() {
+		expect:
+		GradeScale.ordinal(GradeSystem.UIAA, "7+") == GradeScale.ordinal("VII+")
+		GradeScale.ordinal("7+") == GradeScale.ordinal("7a+")
+	}
+
+	def "should use the declared system of a climb's grade"() {
+		given:
+		def uiaa = Climb.GradeInfo.builder().system(GradeSystem.UIAA).grade("7+").build()
+		def undeclared = Climb.GradeInfo.builder().grade("7+").build()
+
+		expect:
+		GradeScale.ordinal(uiaa) == GradeScale.ordinal("VII+")
+		GradeScale.ordinal(undeclared) == GradeScale.ordinal("7a+")
+		GradeScale.ordinal((Climb.GradeInfo) null) == GradeScale.UNKNOWN
+	}
+
+	def "should take the first readable grade of a route"() {
+		expect:
+		GradeScale.ordinal(Route.Grades.builder().font("bad").french("7a").yds("5.11d").build()) == GradeScale.ordinal("7a")
+		GradeScale.ordinal(Route.Grades.builder().uiaa("VIII").build()) == GradeScale.ordinal("VIII")
+		GradeScale.ordinal(Route.Grades.builder().build()) == GradeScale.UNKNOWN
+		GradeScale.ordinal((Route.Grades) null) == GradeScale.UNKNOWN
+	}
+}
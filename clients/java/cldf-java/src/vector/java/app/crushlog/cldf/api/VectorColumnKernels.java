@@ -0,0 +1,320 @@
+package app.crushlog.cldf.api;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ColumnKernels} on the incubating Vector API, comparing a whole vector of codes per
+ * instruction. Counting compares a vector against each code and counts the matching lanes, so it
+ * only pays off for columns with few codes; columns with more codes, such as grades, are counted
+ * by the scalar loop. Selections turn comparison masks directly into bit set words.
+ *
+ * <p>This class is compiled in its own source set, the only one given the incubating module, and
+ * must only be loaded when the {@code jdk.incubator.vector} module is present; {@link
+ * ColumnKernels#create()} loads it by name.
+ */
+final class VectorColumnKernels extends ColumnKernels {
+
+  private static final VectorShape SHAPE = VectorShape.preferredShape();
+  private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+  /** Shorts widened from bytes: two vectors per byte vector */
+  private static final VectorSpecies<Short> WIDE_BYTES = VectorSpecies.of(short.class, SHAPE);
+
+  /** Ints widened from shorts: two vectors per short vector */
+  private static final VectorSpecies<Integer> WIDE_SHORTS = VectorSpecies.of(int.class, SHAPE);
+
+  /** The most codes counted or selected by comparing against each code */
+  private static final int MAX_CODES = 16;
+
+  /** Vectors of bytes summed into short lanes before a lane could overflow */
+  private static final int BYTE_FLUSH = Short.MAX_VALUE / Byte.MAX_VALUE;
+
+  /**
+   * Vectors of shorts summed into int lanes before adding up the lanes could overflow, as lanes are
+   * added up in the lane type
+   */
+  private static final int SHORT_FLUSH =
+      Integer.MAX_VALUE / (Short.MAX_VALUE * WIDE_SHORTS.length());
+
+  /**
+   * Creates the kernels.
+   *
+   * @throws UnsupportedOperationException if the platform has no SIMD registers wide enough to beat
+   *     scalar code and narrow enough for a byte comparison mask to fit in a bit set word
+   */
+  VectorColumnKernels() {
+    if (SHAPE.vectorBitSize() < 128 || BYTES.length() > Long.SIZE) {
+      throw new UnsupportedOperationException(SHAPE.vectorBitSize() + "-bit vectors");
+    }
+  }
+
+  @Override
+  String name() {
+    return "vector-" + SHAPE.vectorBitSize();
+  }
+
+  @Override
+  void countBy(byte[] codes, long[] rows, long[] counts) {
+    if (counts.length > MAX_CODES) {
+      super.countBy(codes, rows, counts);
+      return;
+    }
+    int lanes = BYTES.length();
+    int bound = BYTES.loopBound(codes.length);
+    int row = 0;
+    for (; row < bound; row += lanes) {
+      ByteVector vector = ByteVector.fromArray(BYTES, codes, row);
+      if (rows == null) {
+        for (int code = 0; code < counts.length; code++) {
+          counts[code] += vector.eq((byte) code).trueCount();
+        }
+      } else {
+        long bits = bits(rows, row);
+        if (bits != 0) {
+          VectorMask<Byte> selected = VectorMask.fromLong(BYTES, bits);
+          for (int code = 0; code < counts.length; code++) {
+            counts[code] += vector.compare(VectorOperators.EQ, (byte) code, selected).trueCount();
+          }
+        }
+      }
+    }
+    for (; row < codes.length; row++) {
+      if (codes[row] >= 0 && (rows == null || (bits(rows, row) & 1) != 0)) {
+        counts[codes[row]]++;
+      }
+    }
+  }
+
+  @Override
+  long count(byte[] codes, int code) {
+    if (code < Byte.MIN_VALUE || code > Byte.MAX_VALUE) {
+      return 0;
+    }
+    int lanes = BYTES.length();
+    int bound = BYTES.loopBound(codes.length);
+    long count = 0;
+    int row = 0;
+    for (; row < bound; row += lanes) {
+      count += ByteVector.fromArray(BYTES, codes, row).eq((byte) code).trueCount();
+    }
+    for (; row < codes.length; row++) {
+      if (codes[row] == code) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  long count(short[] codes, int code) {
+    if (code < Short.MIN_VALUE || code > Short.MAX_VALUE) {
+      return 0;
+    }
+    int lanes = SHORTS.length();
+    int bound = SHORTS.loopBound(codes.length);
+    long count = 0;
+    int row = 0;
+    for (; row < bound; row += lanes) {
+      count += ShortVector.fromArray(SHORTS, codes, row).eq((short) code).trueCount();
+    }
+    for (; row < codes.length; row++) {
+      if (codes[row] == code) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  long[] sum(byte[] values) {
+    int lanes = BYTES.length();
+    int bound = BYTES.loopBound(values.length);
+    ShortVector zero = ShortVector.zero(WIDE_BYTES);
+    ShortVector low = zero;
+    ShortVector high = zero;
+    long sum = 0;
+    long count = 0;
+    int pending = 0;
+    int row = 0;
+    for (; row < bound; row += lanes) {
+      ByteVector vector = ByteVector.fromArray(BYTES, values, row);
+      count += vector.compare(VectorOperators.GE, (byte) 0).trueCount();
+      // Missing values are negative, so clamping at zero drops them from the sum
+      ByteVector present = vector.max((byte) 0);
+      low = low.add(present.convertShape(VectorOperators.B2S, WIDE_BYTES, 0));
+      high = high.add(present.convertShape(VectorOperators.B2S, WIDE_BYTES, 1));
+      if (++pending == BYTE_FLUSH) {
+        sum += total(low) + total(high);
+        low = zero;
+        high = zero;
+        pending = 0;
+      }
+    }
+    sum += total(low) + total(high);
+    for (; row < values.length; row++) {
+      if (values[row] >= 0) {
+        sum += values[row];
+        count++;
+      }
+    }
+    return new long[] {sum, count};
+  }
+
+  @Override
+  long[] sum(short[] values) {
+    int lanes = SHORTS.length();
+    int bound = SHORTS.loopBound(values.length);
+    IntVector zero = IntVector.zero(WIDE_SHORTS);
+    IntVector low = zero;
+    IntVector high = zero;
+    long sum = 0;
+    long count = 0;
+    int pending = 0;
+    int row = 0;
+    for (; row < bound; row += lanes) {
+      ShortVector vector = ShortVector.fromArray(SHORTS, values, row);
+      count += vector.compare(VectorOperators.GE, (short) 0).trueCount();
+      ShortVector present = vector.max((short) 0);
+      low = low.add(present.convertShape(VectorOperators.S2I, WIDE_SHORTS, 0));
+      high = high.add(present.convertShape(VectorOperators.S2I, WIDE_SHORTS, 1));
+      if (++pending == SHORT_FLUSH) {
+        sum += low.reduceLanesToLong(VectorOperators.ADD);
+        sum += high.reduceLanesToLong(VectorOperators.ADD);
+        low = zero;
+        high = zero;
+        pending = 0;
+      }
+    }
+    sum += low.reduceLanesToLong(VectorOperators.ADD);
+    sum += high.reduceLanesToLong(VectorOperators.ADD);
+    for (; row < values.length; row++) {
+      if (values[row] >= 0) {
+        sum += values[row];
+        count++;
+      }
+    }
+    return new long[] {sum, count};
+  }
+
+  @Override
+  long[] select(byte[] codes, boolean[] selected) {
+    int[] wanted = selectedCodes(selected);
+    if (wanted == null) {
+      return super.select(codes, selected);
+    }
+    long[] words = new long[words(codes.length)];
+    int lanes = BYTES.length();
+    int bound = BYTES.loopBound(codes.length);
+    int row = 0;
+    for (; row < bound && wanted.length > 0; row += lanes) {
+      ByteVector vector = ByteVector.fromArray(BYTES, codes, row);
+      VectorMask<Byte> mask = vector.eq((byte) wanted[0]);
+      for (int i = 1; i < wanted.length; i++) {
+        mask = mask.or(vector.eq((byte) wanted[i]));
+      }
+      words[row >>> 6] |= mask.toLong() << (row & 63);
+    }
+    for (; row < codes.length; row++) {
+      int code = codes[row];
+      if (code >= 0 && selected[code]) {
+        words[row >>> 6] |= 1L << row;
+      }
+    }
+    return words;
+  }
+
+  @Override
+  long[] select(short[] codes, boolean[] selected) {
+    int[] wanted = selectedCodes(selected);
+    if (wanted == null) {
+      return super.select(codes, selected);
+    }
+    long[] words = new long[words(codes.length)];
+    int lanes = SHORTS.length();
+    int bound = SHORTS.loopBound(codes.length);
+    int row = 0;
+    for (; row < bound && wanted.length > 0; row += lanes) {
+      ShortVector vector = ShortVector.fromArray(SHORTS, codes, row);
+      VectorMask<Short> mask = vector.eq((short) wanted[0]);
+      for (int i = 1; i < wanted.length; i++) {
+        mask = mask.or(vector.eq((short) wanted[i]));
+      }
+      words[row >>> 6] |= mask.toLong() << (row & 63);
+    }
+    for (; row < codes.length; row++) {
+      int code = codes[row];
+      if (code >= 0 && selected[code]) {
+        words[row >>> 6] |= 1L << row;
+      }
+    }
+    return words;
+  }
+
+  @Override
+  long[] selectRange(int[] values, int low, int high) {
+    long[] words = new long[words(values.length)];
+    int lanes = INTS.length();
+    int bound = INTS.loopBound(values.length);
+    int row = 0;
+    for (; row < bound; row += lanes) {
+      IntVector vector = IntVector.fromArray(INTS, values, row);
+      VectorMask<Integer> mask =
+          vector.compare(VectorOperators.GE, low).and(vector.compare(VectorOperators.LE, high));
+      words[row >>> 6] |= mask.toLong() << (row & 63);
+    }
+    for (; row < values.length; row++) {
+      int value = values[row];
+      if (value >= low && value <= high) {
+        words[row >>> 6] |= 1L << row;
+      }
+    }
+    return words;
+  }
+
+  /** Adds up the lanes of a vector of shorts, widened to ints so that the total cannot overflow */
+  private static long total(ShortVector vector) {
+    long total = 0;
+    for (int part = 0; part < 2; part++) {
+      total +=
+          vector
+              .convertShape(VectorOperators.S2I, WIDE_SHORTS, part)
+              .reduceLanesToLong(VectorOperators.ADD);
+    }
+    return total;
+  }
+
+  /** Returns the bits of the selected rows from a row on, in the low bits */
+  private static long bits(long[] rows, int row) {
+    int word = row >>> 6;
+    return word < rows.length ? rows[word] >>> (row & 63) : 0;
+  }
+
+  /** Returns the selected codes, or null if there are too many to compare against one by one */
+  private static int[] selectedCodes(boolean[] selected) {
+    int count = 0;
+    for (boolean code : selected) {
+      if (code) {
+        count++;
+      }
+    }
+    if (count > MAX_CODES) {
+      return null;
+    }
+    int[] codes = new int[count];
+    int next = 0;
+    for (int code = 0; code < selected.length; code++) {
+      if (selected[code]) {
+        codes[next++] = code;
+      }
+    }
+    return codes;
+  }
+}
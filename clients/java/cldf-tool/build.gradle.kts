@@ -99,6 +99,8 @@ dependencies {
 
 application {
     mainClass.set("app.crushlog.cldf.tool.Application")
+    // Lets the climb statistics use the SIMD column kernels of cldf-java
+    applicationDefaultJvmArgs = listOf("--add-modules", "jdk.incubator.vector")
 }
 
 micronaut {
@@ -146,6 +148,7 @@ graalvmNative {
 
 tasks.test {
     useJUnitPlatform()
+    jvmArgs("--add-modules", "jdk.incubator.vector")
 }
 
 
@@ -178,6 +181,7 @@ tasks.register<JavaExec>("jmh") {
     dependsOn("testClasses")
     mainClass.set("org.openjdk.jmh.Main")
     classpath = sourceSets["test"].runtimeClasspath
+    jvmArgs("--add-modules", "jdk.incubator.vector")
     
     // JMH arguments
     args("-rf", "json")
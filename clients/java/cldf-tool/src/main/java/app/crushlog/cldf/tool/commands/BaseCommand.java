@@ -17,7 +17,7 @@ public abstract class BaseCommand implements Runnable {
 
   @Option(
       names = {"--json", "--output-format"},
-      description = "Output format: text, json, yaml (case-insensitive)",
+      description = "Output format: text, json, ndjson, yaml (case-insensitive)",
       defaultValue = "text",
       converter = OutputFormatConverter.class,
       scope = picocli.CommandLine.ScopeType.INHERIT)
@@ -45,7 +45,7 @@ public abstract class BaseCommand implements Runnable {
   protected abstract CommandResult execute() throws Exception;
 
   protected void handleResult(CommandResult result) {
-    if (outputFormat == OutputFormat.JSON) {
+    if (outputFormat == OutputFormat.JSON || outputFormat == OutputFormat.NDJSON) {
       output.writeResult(result);
     } else {
       outputText(result);
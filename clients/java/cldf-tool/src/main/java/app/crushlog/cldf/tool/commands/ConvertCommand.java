@@ -1,16 +1,23 @@
 package app.crushlog.cldf.tool.commands;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.time.format.DateTimeFormatter;
+import java.util.stream.Stream;
 
+import app.crushlog.cldf.api.ArchiveIndex;
 import app.crushlog.cldf.api.CLDF;
 import app.crushlog.cldf.api.CLDFArchive;
+import app.crushlog.cldf.api.CLDFReader;
 import app.crushlog.cldf.models.*;
 import app.crushlog.cldf.tool.models.CommandResult;
 import app.crushlog.cldf.tool.utils.JsonUtils;
+import app.crushlog.cldf.tool.utils.NdjsonWriter;
 import lombok.extern.slf4j.Slf4j;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -49,7 +56,8 @@ public class ConvertCommand extends BaseCommand {
 
   enum ConvertFormat {
     json,
-    csv
+    csv,
+    ndjson
   }
 
   @Override
@@ -65,8 +73,8 @@ public class ConvertCommand extends BaseCommand {
     logInfo("Converting: " + inputFile.getName());
     logInfo("Format: " + format);
 
-    // Read the archive
-    CLDFArchive archive = CLDF.read(inputFile);
+    // Read the archive; NDJSON streams the climbs from the file instead
+    CLDFArchive archive = format != ConvertFormat.ndjson ? CLDF.read(inputFile) : null;
 
     // Perform conversion
     ConversionResult result;
@@ -77,6 +85,9 @@ public class ConvertCommand extends BaseCommand {
       case csv:
         result = convertToCsv(archive);
         break;
+      case ndjson:
+        result = convertToNdjson();
+        break;
       default:
         throw new IllegalArgumentException("Unsupported format: " + format);
     }
@@ -150,19 +161,11 @@ public class ConvertCommand extends BaseCommand {
       }
 
       // Write climbs
+      ArchiveIndex index = ArchiveIndex.of(archive);
       for (Climb climb : archive.getClimbs()) {
         // Find location name
-        String locationName = "Unknown";
-        if (climb.getSessionId() != null) {
-          Session session =
-              archive.getSessions().stream()
-                  .filter(s -> s.getId().equals(climb.getSessionId()))
-                  .findFirst()
-                  .orElse(null);
-          if (session != null) {
-            locationName = session.getLocation();
-          }
-        }
+        String locationName =
+            index.findSession(climb.getSessionId()).map(Session::getLocation).orElse("Unknown");
 
         // Format row
         writer.printf(
@@ -183,6 +186,19 @@ public class ConvertCommand extends BaseCommand {
     return new ConversionResult(itemCount);
   }
 
+  /**
+   * Writes the climbs one per line as they are streamed from the input file, so the archive is
+   * never read whole and a single climb is held at a time.
+   */
+  private ConversionResult convertToNdjson() throws IOException {
+    try (Stream<Climb> climbs = new CLDFReader().streamClimbs(inputFile);
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile));
+        NdjsonWriter writer = new NdjsonWriter(out, JsonUtils.createCompactMapper())) {
+      climbs.forEach(writer::write);
+      return new ConversionResult((int) writer.getCount());
+    }
+  }
+
   private String escapeCsv(String value) {
     if (value == null) return "";
     if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
@@ -15,6 +15,7 @@ import jakarta.inject.Inject;
 
 import app.crushlog.cldf.api.CLDFArchive;
 import app.crushlog.cldf.api.CLDFWriter;
+import app.crushlog.cldf.api.CompressionProfile;
 import app.crushlog.cldf.models.*;
 import app.crushlog.cldf.models.enums.*;
 import app.crushlog.cldf.tool.models.CommandResult;
@@ -76,6 +77,23 @@ public class CreateCommand extends BaseCommand {
       defaultValue = "FULL")
   private MediaStrategy mediaStrategy = MediaStrategy.FULL;
 
+  @Option(
+      names = "--compression",
+      description = "Compression profile: ${COMPLETION-CANDIDATES}",
+      defaultValue = "MAX")
+  private CompressionProfile compression = CompressionProfile.MAX;
+
+  @Option(
+      names = "--compression-threads",
+      description = "Number of threads used to compress archive entries",
+      defaultValue = "1")
+  private int compressionThreads = 1;
+
+  @Option(
+      names = "--entity-index",
+      description = "Write an entity index so single entities can be looked up by CLID or id")
+  private boolean entityIndex;
+
   private final ValidationService validationService;
 
   @Inject
@@ -153,7 +171,11 @@ public class CreateCommand extends BaseCommand {
     }
 
     logInfo("Writing archive to " + outputFile.getAbsolutePath());
-    CLDFWriter writer = new CLDFWriter(prettyPrint, validate);
+    CLDFWriter writer =
+        new CLDFWriter(prettyPrint, validate)
+            .withCompressionProfile(compression)
+            .withCompressionThreads(compressionThreads)
+            .withEntityIndex(entityIndex);
     writer.write(archive, outputFile);
 
     Map<String, Object> stats = new HashMap<>();
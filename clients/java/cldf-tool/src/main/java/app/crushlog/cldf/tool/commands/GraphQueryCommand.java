@@ -1,11 +1,14 @@
 package app.crushlog.cldf.tool.commands;
 
+import java.io.IOException;
 import java.util.*;
 
 import jakarta.inject.Inject;
 
 import app.crushlog.cldf.tool.models.CommandResult;
 import app.crushlog.cldf.tool.services.GraphService;
+import app.crushlog.cldf.tool.utils.NdjsonWriter;
+import app.crushlog.cldf.tool.utils.OutputFormat;
 import lombok.extern.slf4j.Slf4j;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -110,6 +113,9 @@ public class GraphQueryCommand extends BaseCommand {
       if (graphService == null) {
         throw new IllegalStateException("GraphService not initialized");
       }
+      if (outputFormat == OutputFormat.NDJSON) {
+        return streamResults(query, params);
+      }
       List<Map<String, Object>> results = graphService.executeCypher(query, params);
 
       Map<String, Object> data = new HashMap<>();
@@ -134,6 +140,30 @@ public class GraphQueryCommand extends BaseCommand {
     }
   }
 
+  /**
+   * Writes each result row as a line of newline-delimited JSON as soon as the database produces
+   * it, so rows are never collected.
+   */
+  private CommandResult streamResults(String query, Map<String, Object> params)
+      throws IOException {
+    long count;
+    try (NdjsonWriter writer = output.openNdjson()) {
+      graphService.executeCypher(query, params, writer::write);
+      count = writer.getCount();
+    }
+
+    Map<String, Object> data = new HashMap<>();
+    data.put("query", query);
+    data.put("parameters", params);
+    data.put("count", count);
+
+    return CommandResult.builder()
+        .success(true)
+        .message("Query executed successfully")
+        .data(data)
+        .build();
+  }
+
   @Override
   protected void outputText(CommandResult result) {
     if (!result.isSuccess()) {
@@ -7,6 +7,7 @@ import java.util.*;
 import app.crushlog.cldf.api.CLDF;
 import app.crushlog.cldf.api.CLDFArchive;
 import app.crushlog.cldf.api.CLDFWriter;
+import app.crushlog.cldf.api.CompressionProfile;
 import app.crushlog.cldf.models.*;
 import app.crushlog.cldf.models.enums.Platform;
 import app.crushlog.cldf.tool.models.CommandResult;
@@ -43,6 +44,23 @@ public class MergeCommand extends BaseCommand {
       defaultValue = "true")
   private boolean prettyPrint = true;
 
+  @Option(
+      names = "--compression",
+      description = "Compression profile: ${COMPLETION-CANDIDATES}",
+      defaultValue = "MAX")
+  private CompressionProfile compression = CompressionProfile.MAX;
+
+  @Option(
+      names = "--compression-threads",
+      description = "Number of threads used to compress archive entries",
+      defaultValue = "1")
+  private int compressionThreads = 1;
+
+  @Option(
+      names = "--entity-index",
+      description = "Write an entity index so single entities can be looked up by CLID or id")
+  private boolean entityIndex;
+
   enum MergeStrategy {
     append // Simply append all data
   }
@@ -90,7 +108,11 @@ public class MergeCommand extends BaseCommand {
 
     // Write result
     logInfo("Writing merged archive to " + outputFile.getAbsolutePath());
-    CLDFWriter writer = new CLDFWriter(prettyPrint);
+    CLDFWriter writer =
+        new CLDFWriter(prettyPrint)
+            .withCompressionProfile(compression)
+            .withCompressionThreads(compressionThreads)
+            .withEntityIndex(entityIndex);
     writer.write(mergeResult.archive, outputFile);
 
     // Build result data
@@ -0,0 +1,113 @@
+package app.crushlog.cldf.tool.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+import app.crushlog.cldf.tool.services.QueryCache;
+import lombok.extern.slf4j.Slf4j;
+import picocli.CommandLine.Option;
+
+/**
+ * Options of the query result cache, added to a command as a mixin. A command runs its query
+ * through {@link #run}, which looks the result up in the cache first, and attaches {@link
+ * #report()} to its result. Only commands whose result depends on nothing but the archive file may
+ * use it; {@code graph-query} reads a separately loaded graph and is not cached.
+ */
+@Slf4j
+public class QueryCacheOptions {
+
+  @Option(
+      names = {"--cache"},
+      description =
+          "Cache JSON results on disk, keyed by the archive's checksums and the query, and reuse"
+              + " them while the archive is unchanged")
+  boolean enabled;
+
+  @Option(
+      names = {"--cache-dir"},
+      description =
+          "Cache directory (default: $XDG_CACHE_HOME/cldf/queries or ~/.cache/cldf/queries)")
+  File directory;
+
+  @Option(
+      names = {"--cache-max-mb"},
+      description = "Size the cache directory is trimmed to, least recently used first",
+      defaultValue = "64")
+  long maxMegabytes;
+
+  private Map<String, Object> report;
+
+  /**
+   * Returns the data of a query, from the cache when it holds the query's result for the current
+   * content of the archive, otherwise computed and stored. The query runs uncached when the cache
+   * is disabled, the archive has no checksums, or the cache cannot be used.
+   *
+   * @param archive the queried archive, or null if the query does not read one
+   * @param command the name of the command
+   * @param query the parameters that determine the result
+   * @param compute computes the data on a miss; a failure is not cached
+   * @return the data of the query
+   * @throws Exception if computing the data fails
+   */
+  Map<String, Object> run(
+      File archive, String command, Map<String, ?> query, Callable<Map<String, Object>> compute)
+      throws Exception {
+    if (!enabled) {
+      return compute.call();
+    }
+    QueryCache cache =
+        new QueryCache(
+            directory != null ? directory.toPath() : QueryCache.defaultDirectory(),
+            maxMegabytes * 1024 * 1024);
+    String key;
+    Optional<Map<String, Object>> cached;
+    try {
+      String digest = archive != null ? QueryCache.archiveDigest(archive) : null;
+      if (digest == null) {
+        report = Map.of("status", "bypass");
+        return compute.call();
+      }
+      key = cache.key(digest, command, query);
+      cached = cache.get(key);
+    } catch (IOException e) {
+      log.warn("Query cache unavailable", e);
+      report = Map.of("status", "error");
+      return compute.call();
+    }
+    if (cached.isPresent()) {
+      report(cache, "hit");
+      return cached.get();
+    }
+    Map<String, Object> data = compute.call();
+    try {
+      cache.put(key, data);
+    } catch (IOException e) {
+      log.warn("Could not cache query result", e);
+    }
+    report(cache, "miss");
+    return data;
+  }
+
+  /**
+   * Returns the outcome of the last {@link #run} with the cache's hit and miss counts and size, or
+   * null if the cache was not used.
+   */
+  Map<String, Object> report() {
+    return report;
+  }
+
+  private void report(QueryCache cache, String status) {
+    Map<String, Object> outcome = new LinkedHashMap<>();
+    outcome.put("status", status);
+    try {
+      outcome.putAll(cache.stats());
+    } catch (IOException e) {
+      log.warn("Could not read query cache statistics", e);
+    }
+    report = outcome;
+  }
+}
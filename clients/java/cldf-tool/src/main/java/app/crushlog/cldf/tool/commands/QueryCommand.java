@@ -1,20 +1,33 @@
 package app.crushlog.cldf.tool.commands;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import jakarta.inject.Inject;
 
+import app.crushlog.cldf.api.ArchiveIndex;
 import app.crushlog.cldf.api.CLDFArchive;
+import app.crushlog.cldf.api.LazyCLDFArchive;
+import app.crushlog.cldf.clid.CompactCLID;
+import app.crushlog.cldf.clid.EntityType;
 import app.crushlog.cldf.models.*;
 import app.crushlog.cldf.tool.converters.DataTypeConverter;
 import app.crushlog.cldf.tool.models.CommandResult;
 import app.crushlog.cldf.tool.models.DataType;
 import app.crushlog.cldf.tool.services.CLDFService;
+import app.crushlog.cldf.tool.services.FieldProjection;
+import app.crushlog.cldf.tool.services.QueryCache;
 import app.crushlog.cldf.tool.services.QueryService;
+import app.crushlog.cldf.tool.services.RunningStatistics;
+import app.crushlog.cldf.tool.utils.NdjsonWriter;
+import app.crushlog.cldf.tool.utils.OutputFormat;
 import lombok.extern.slf4j.Slf4j;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
@@ -38,7 +51,9 @@ public class QueryCommand extends BaseCommand {
 
   @Option(
       names = {"--filter", "-f"},
-      description = "Filter expression (e.g., 'type=boulder', 'grade>=V4', 'location=Gym')")
+      description =
+          "Filter expression (e.g., 'type=boulder', 'grade>=V4', 'location=Gym'). Supports AND, OR,"
+              + " NOT, parentheses, IN (a, b), BETWEEN a AND b, STARTSWITH and CONTAINS")
   private String filter;
 
   @Option(
@@ -76,6 +91,8 @@ public class QueryCommand extends BaseCommand {
       description = "Search for a specific CLID (CrushLog ID)")
   private String clid;
 
+  @Mixin private QueryCacheOptions cacheOptions = new QueryCacheOptions();
+
   private final CLDFService cldfService;
   private final QueryService queryService;
 
@@ -103,11 +120,37 @@ public class QueryCommand extends BaseCommand {
 
     logInfo("Querying: " + inputFile.getName());
 
-    // Read the archive
-    CLDFArchive archive = cldfService.read(inputFile);
+    if (outputFormat == OutputFormat.NDJSON) {
+      return streamQuery();
+    }
+
+    // JSON results can be reused from the cache while the archive is unchanged
+    Map<String, Object> resultData =
+        outputFormat == OutputFormat.JSON
+            ? cacheOptions.run(inputFile, "query", buildCacheQuery(), this::runQuery)
+            : runQuery();
+    resultData.put("query", buildQueryInfo());
+
+    CommandResult.CommandResultBuilder result =
+        CommandResult.builder().success(true).message("Query completed").data(resultData);
+    if (cacheOptions.report() != null) {
+      result.metadata(Map.of("cache", cacheOptions.report()));
+    }
+    return result.build();
+  }
+
+  /** Runs the query and returns its count, results and statistics as requested */
+  private Map<String, Object> runQuery() throws IOException {
+    // Open the archive lazily so only the selected collection is inflated
+    CLDFArchive archive = cldfService.open(inputFile);
 
     // Perform query
-    QueryResult queryResult = performQuery(archive);
+    QueryResult queryResult;
+    try {
+      queryResult = performQuery(archive);
+    } finally {
+      close(archive);
+    }
 
     // Build result
     Map<String, Object> resultData = new HashMap<>();
@@ -122,14 +165,13 @@ public class QueryCommand extends BaseCommand {
         resultData.put("stats", queryResult.getStats());
       }
     }
+    return resultData;
+  }
 
-    resultData.put("query", buildQueryInfo());
-
-    return CommandResult.builder()
-        .success(true)
-        .message("Query completed")
-        .data(resultData)
-        .build();
+  private static void close(CLDFArchive archive) throws IOException {
+    if (archive instanceof Closeable closeable) {
+      closeable.close();
+    }
   }
 
   @Override
@@ -180,17 +222,118 @@ public class QueryCommand extends BaseCommand {
 
   private QueryResult performQuery(CLDFArchive archive) {
     List<Object> allItems = collectInitialItems(archive);
-    List<Object> processedItems = applyQueryProcessing(allItems);
+    List<Object> processedItems = applyQueryProcessing(archive, allItems);
     Map<String, Object> stats = calculateStatsIfRequested(processedItems);
 
     return QueryResult.builder()
-        .results(processedItems)
+        .results(applyFieldSelection(processedItems))
         .count(processedItems.size())
         .totalCount(allItems.size())
         .stats(stats)
         .build();
   }
 
+  /**
+   * Writes the query results as newline-delimited JSON, one item per line. Without a sort, items
+   * are filtered, paged and written one at a time as they match, and {@code --count} counts the
+   * page the same way, so no list of matches is built. A sort needs the matches before the first
+   * line can be written. Statistics of the written items are accumulated as each line is written,
+   * without keeping the items, and follow as a last {@code {"stats": ...}} line.
+   *
+   * @return the result, whose records have already been written
+   */
+  private CommandResult streamQuery() throws IOException {
+    FieldProjection projection =
+        fields != null && !fields.isEmpty()
+            ? FieldProjection.of(Arrays.asList(fields.split(",")))
+            : null;
+    RunningStatistics statistics = includeStats && !countOnly ? new RunningStatistics() : null;
+    long count;
+    try (NdjsonWriter writer = output.openNdjson()) {
+      Predicate<Object> write =
+          item -> {
+            writer.write(projection != null ? projection.apply(item) : item);
+            if (statistics != null) {
+              statistics.add(item);
+            }
+            return true;
+          };
+      if (countOnly) {
+        long[] matches = {0};
+        forEachMatch(
+            page(
+                item -> {
+                  matches[0]++;
+                  return true;
+                }));
+        writer.write(Map.of("count", matches[0]));
+        count = matches[0];
+      } else if (sortBy != null && !sortBy.isEmpty()) {
+        List<Object> matches = new ArrayList<>();
+        forEachMatch(matches::add);
+        applySortingAndPagination(matches).forEach(write::test);
+        count = writer.getCount();
+      } else {
+        forEachMatch(page(write));
+        count = writer.getCount();
+      }
+      if (statistics != null) {
+        writer.write(Map.of("stats", statistics.toMap()));
+      }
+    }
+
+    Map<String, Object> resultData = new HashMap<>();
+    resultData.put("count", count);
+    resultData.put("query", buildQueryInfo());
+    return CommandResult.builder()
+        .success(true)
+        .message("Query completed")
+        .data(resultData)
+        .build();
+  }
+
+  /**
+   * Passes the items matching the filter to a consumer. Climbs and sessions are read from the file
+   * one at a time, unless the filter bounds their date and the archive's date index can skip the
+   * items outside the range; other selections are taken from the opened archive.
+   */
+  private void forEachMatch(Predicate<Object> consumer) throws IOException {
+    Class<?> indexedType = getIndexedType();
+    if (indexedType != null && !queryService.boundsDate(filter)) {
+      try (Stream<?> items =
+          indexedType == Climb.class
+              ? cldfService.streamClimbs(inputFile)
+              : cldfService.streamSessions(inputFile)) {
+        queryService.forEachMatch(items, filter, consumer);
+      }
+      return;
+    }
+    CLDFArchive archive = cldfService.open(inputFile);
+    try {
+      if (indexedType != null) {
+        queryService.forEachMatch(ArchiveIndex.of(archive), indexedType, filter, consumer);
+      } else {
+        queryService.forEachMatch(collectInitialItems(archive), filter, consumer);
+      }
+    } finally {
+      close(archive);
+    }
+  }
+
+  /** Returns a consumer that skips {@code --offset} items and stops after {@code --limit} items */
+  private Predicate<Object> page(Predicate<Object> consumer) {
+    int skip = offset != null ? Math.max(offset, 0) : 0;
+    int take = limit != null && limit > 0 ? limit : Integer.MAX_VALUE;
+    int[] seen = {0};
+    return item -> {
+      int position = seen[0]++;
+      if (position < skip) {
+        return true;
+      }
+      return consumer.test(item) && position + 1 - skip < take;
+    };
+  }
+
   /**
    * Collects initial items based on CLID search or data type selection.
    *
@@ -309,73 +452,70 @@ public class QueryCommand extends BaseCommand {
   }
 
   /**
-   * Applies all query processing steps: filtering, sorting, pagination, and field selection.
+   * Applies the query processing steps: filtering, sorting and pagination.
    *
+   * @param archive the archive the items were selected from
    * @param items the initial items
    * @return processed items
    */
-  private List<Object> applyQueryProcessing(List<Object> items) {
-    List<Object> processedItems = applyFilter(items);
-    processedItems = applySorting(processedItems);
-    processedItems = applyPagination(processedItems);
-    processedItems = applyFieldSelection(processedItems);
+  private List<Object> applyQueryProcessing(CLDFArchive archive, List<Object> items) {
+    List<Object> processedItems = applyFilter(archive, items);
+    processedItems = applySortingAndPagination(processedItems);
     return processedItems;
   }
 
   /**
-   * Applies filter if specified.
+   * Applies filter if specified. Climbs and sessions are filtered through an {@link ArchiveIndex}
+   * so that date ranges in the filter only test the items in range.
    *
+   * @param archive the archive the items were selected from
    * @param items the items to filter
    * @return filtered items
    */
-  private List<Object> applyFilter(List<Object> items) {
+  private List<Object> applyFilter(CLDFArchive archive, List<Object> items) {
     if (filter != null && !filter.isEmpty()) {
+      Class<?> indexedType = getIndexedType();
+      if (indexedType != null) {
+        return queryService.applyFilter(ArchiveIndex.of(archive), indexedType, filter);
+      }
       return queryService.applyFilter(items, filter);
     }
     return new ArrayList<>(items);
   }
 
-  /**
-   * Applies sorting if specified.
-   *
-   * @param items the items to sort
-   * @return sorted items
-   */
-  private List<Object> applySorting(List<Object> items) {
-    if (sortBy != null && !sortBy.isEmpty()) {
-      return queryService.sort(items, sortBy);
+  /** Returns the model class of the selected collection if it has a date index */
+  private Class<?> getIndexedType() {
+    if (clid != null && !clid.isEmpty()) {
+      return null;
     }
-    return items;
+    return switch (selectType) {
+      case CLIMBS -> Climb.class;
+      case SESSIONS -> Session.class;
+      default -> null;
+    };
   }
 
   /**
-   * Applies pagination (offset and limit) if specified.
+   * Applies sorting and pagination (offset and limit) if specified. With a limit, only the items
+   * up to the end of the requested page are kept while sorting.
    *
-   * @param items the items to paginate
-   * @return paginated items
+   * @param items the items to sort and paginate
+   * @return the requested page of sorted items
    */
-  private List<Object> applyPagination(List<Object> items) {
-    List<Object> paginatedItems = items;
-
-    if (offset != null && offset > 0) {
-      paginatedItems = paginatedItems.stream().skip(offset).collect(Collectors.toList());
-    }
-
-    if (limit != null && limit > 0) {
-      paginatedItems = paginatedItems.stream().limit(limit).collect(Collectors.toList());
-    }
-
-    return paginatedItems;
+  private List<Object> applySortingAndPagination(List<Object> items) {
+    return queryService.sort(
+        items, sortBy, offset != null ? offset : 0, limit != null && limit > 0 ? limit : 0);
   }
 
   /**
-   * Applies field selection if specified.
+   * Applies field selection if specified. Only JSON output is projected: the text output prints
+   * its own summary of each item.
    *
    * @param items the items to filter fields from
    * @return items with selected fields only
    */
   private List<Object> applyFieldSelection(List<Object> items) {
-    if (fields != null && !fields.isEmpty()) {
+    if (fields != null && !fields.isEmpty() && outputFormat == OutputFormat.JSON) {
       return queryService.filterFields(items, Arrays.asList(fields.split(",")));
     }
     return items;
@@ -394,6 +534,15 @@ public class QueryCommand extends BaseCommand {
     return null;
   }
 
+  /** Returns the options that determine the result, as the key of the query in the cache */
+  private Map<String, Object> buildCacheQuery() {
+    Map<String, Object> query = buildQueryInfo();
+    query.put("filter", QueryCache.normalize(filter));
+    query.put("count", countOnly);
+    query.put("stats", includeStats);
+    return query;
+  }
+
   private Map<String, Object> buildQueryInfo() {
     Map<String, Object> queryInfo = new HashMap<>();
     queryInfo.put("select", selectType.name().toLowerCase());
@@ -454,44 +603,64 @@ public class QueryCommand extends BaseCommand {
   }
 
   private Object findByCLID(CLDFArchive archive, String clid) {
+    // An opened archive decodes just the matching entity if it has an entity index
+    if (archive instanceof LazyCLDFArchive lazyArchive) {
+      return lazyArchive.findByCLID(clid).orElse(null);
+    }
+
+    // A canonical CLID names its entity type, so only that collection needs to be loaded and
+    // searched; anything else is looked up in every collection
+    int type = CompactCLID.typeOrdinal(clid);
+    EntityType entityType = type >= 0 ? EntityType.values()[type] : null;
+
     // Search in locations
-    Optional<Location> location =
-        Optional.ofNullable(archive.getLocations()).orElse(Collections.emptyList()).stream()
-            .filter(l -> clid.equals(l.getClid()))
-            .findFirst();
-    if (location.isPresent()) return location.get();
+    if (searches(entityType, EntityType.LOCATION)) {
+      Optional<Location> location =
+          Optional.ofNullable(archive.getLocations()).orElse(Collections.emptyList()).stream()
+              .filter(l -> clid.equals(l.getClid()))
+              .findFirst();
+      if (location.isPresent()) return location.get();
+    }
 
     // Search in routes
-    Optional<Route> route =
-        archive.hasRoutes()
-            ? archive.getRoutes().stream().filter(r -> clid.equals(r.getClid())).findFirst()
-            : Optional.empty();
-    if (route.isPresent()) return route.get();
+    if (searches(entityType, EntityType.ROUTE) && archive.hasRoutes()) {
+      Optional<Route> route =
+          archive.getRoutes().stream().filter(r -> clid.equals(r.getClid())).findFirst();
+      if (route.isPresent()) return route.get();
+    }
 
     // Search in sectors
-    Optional<Sector> sector =
-        archive.hasSectors()
-            ? archive.getSectors().stream().filter(s -> clid.equals(s.getClid())).findFirst()
-            : Optional.empty();
-    if (sector.isPresent()) return sector.get();
+    if (searches(entityType, EntityType.SECTOR) && archive.hasSectors()) {
+      Optional<Sector> sector =
+          archive.getSectors().stream().filter(s -> clid.equals(s.getClid())).findFirst();
+      if (sector.isPresent()) return sector.get();
+    }
 
     // Search in climbs
-    Optional<Climb> climb =
-        Optional.ofNullable(archive.getClimbs()).orElse(Collections.emptyList()).stream()
-            .filter(c -> clid.equals(c.getClid()))
-            .findFirst();
-    if (climb.isPresent()) return climb.get();
+    if (searches(entityType, EntityType.CLIMB)) {
+      Optional<Climb> climb =
+          Optional.ofNullable(archive.getClimbs()).orElse(Collections.emptyList()).stream()
+              .filter(c -> clid.equals(c.getClid()))
+              .findFirst();
+      if (climb.isPresent()) return climb.get();
+    }
 
     // Search in sessions
-    Optional<Session> session =
-        Optional.ofNullable(archive.getSessions()).orElse(Collections.emptyList()).stream()
-            .filter(s -> clid.equals(s.getClid()))
-            .findFirst();
-    if (session.isPresent()) return session.get();
+    if (searches(entityType, EntityType.SESSION)) {
+      Optional<Session> session =
+          Optional.ofNullable(archive.getSessions()).orElse(Collections.emptyList()).stream()
+              .filter(s -> clid.equals(s.getClid()))
+              .findFirst();
+      if (session.isPresent()) return session.get();
+    }
 
     return null;
   }
 
+  private static boolean searches(EntityType clidType, EntityType collectionType) {
+    return clidType == null || clidType == collectionType;
+  }
+
   @lombok.Data
   @lombok.Builder
   private static class QueryResult {
@@ -21,7 +21,7 @@ public class OutputFormatConverter implements ITypeConverter<OutputFormat> {
       // Provide helpful error message with valid options
       throw new IllegalArgumentException(
           String.format(
-              "Invalid output format: '%s'. Valid options are: text, json, yaml (case-insensitive)",
+              "Invalid output format: '%s'. Valid options are: text, json, ndjson, yaml (case-insensitive)",
               value));
     }
   }
@@ -2,8 +2,11 @@ package app.crushlog.cldf.tool.services;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.stream.Stream;
 
 import app.crushlog.cldf.api.CLDFArchive;
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.Session;
 
 /**
  * Interface for reading and writing CLDF archives. Provides methods to handle CLDF file I/O
@@ -20,6 +23,37 @@ public interface CLDFService {
    */
   CLDFArchive read(File file) throws IOException;
 
+  /**
+   * Opens a CLDF archive for lazy reading. Collections are only inflated and parsed when first
+   * accessed, so commands that touch a single collection skip the rest of the archive. The returned
+   * archive may keep the file open and should be closed when it implements {@link
+   * java.io.Closeable}.
+   *
+   * @param file the CLDF file to open
+   * @return the lazily loaded CLDF archive
+   * @throws IOException if opening fails
+   */
+  CLDFArchive open(File file) throws IOException;
+
+  /**
+   * Streams the climbs of a CLDF archive one at a time, followed by those appended in deltas,
+   * without loading the whole collection. The stream holds the file open and must be closed.
+   *
+   * @param file the CLDF file to read
+   * @return the climbs, in archive order
+   * @throws IOException if opening fails
+   */
+  Stream<Climb> streamClimbs(File file) throws IOException;
+
+  /**
+   * Streams the sessions of a CLDF archive one at a time. See {@link #streamClimbs(File)}.
+   *
+   * @param file the CLDF file to read
+   * @return the sessions, in archive order
+   * @throws IOException if opening fails
+   */
+  Stream<Session> streamSessions(File file) throws IOException;
+
   /**
    * Writes a CLDF archive to a file.
    *
@@ -0,0 +1,823 @@
+package app.crushlog.cldf.tool.services;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.utils.GradeScale;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A filter expression parsed once into a predicate tree whose literals are converted up front, so
+ * testing an item only reads its fields and compares values. Field accessors come from {@link
+ * FieldAccessors} and are cached per clause for the last item class seen.
+ *
+ * <p>Grammar, with upper-case keywords:
+ *
+ * <pre>
+ * expression := term (OR term)*
+ * term       := factor (AND factor)*
+ * factor     := NOT factor | '(' expression ')' | clause
+ * clause     := field ('=' | '!=' | '&gt;' | '&gt;=' | '&lt;' | '&lt;=') value
+ *             | field [NOT] IN '(' value (',' value)* ')'
+ *             | field [NOT] BETWEEN value AND value
+ *             | field [NOT] (STARTSWITH | CONTAINS) value
+ * </pre>
+ *
+ * Fields may be nested ({@code grades.grade}). Values are quoted with {@code '} or {@code "}, or
+ * run up to the next {@code AND}, {@code OR} or unbalanced {@code )}. Expressions that do not parse
+ * are read as {@code AND}-separated comparisons, skipping the invalid ones.
+ *
+ * <p>A clause never matches an item whose field is null, or whose field cannot be compared with the
+ * literal, for example a number field against a literal that is not a number. Text matching is
+ * case-insensitive. Grade fields are ordered by their {@link GradeScale} ordinal across systems,
+ * so {@code grade>=6a} also matches {@code V4} and {@code 5.11a}. A climb's grade is read in the
+ * system its grades declare, as when sorting, and other grades in the system their notation shows.
+ *
+ * <p>{@link #plan} orders the operands of each {@code AND} and {@code OR} by their cost and by how
+ * often they decided the result on a sample of the items, so evaluation short-circuits as early as
+ * possible.
+ */
+@Slf4j
+final class CompiledFilter implements Predicate<Object> {
+
+  private static final Pattern CLAUSE_PATTERN = Pattern.compile("(\\w+)(=|!=|>=|<=|>|<)(.+)");
+  private static final Pattern AND_PATTERN = Pattern.compile("\\s+AND\\s+");
+
+  /** Result of a comparison that could not be made */
+  private static final int INCOMPARABLE = Integer.MIN_VALUE;
+
+  /** Number of items tested to estimate how selective each predicate is */
+  private static final int SAMPLE_SIZE = 256;
+
+  private final Node root;
+
+  private CompiledFilter(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Compiles a filter expression.
+   *
+   * @param expression the filter expression
+   * @return the compiled filter
+   */
+  static CompiledFilter compile(String expression) {
+    try {
+      return new CompiledFilter(new Parser(expression).parse());
+    } catch (IllegalArgumentException e) {
+      log.debug("Reading filter as AND-separated comparisons: {}", e.getMessage());
+      return compileComparisons(expression);
+    }
+  }
+
+  /** Compiles the original filter syntax: comparisons joined with AND, skipping invalid ones */
+  private static CompiledFilter compileComparisons(String expression) {
+    List<Node> clauses = new ArrayList<>();
+    for (String filter : AND_PATTERN.split(expression.trim())) {
+      Matcher matcher = CLAUSE_PATTERN.matcher(filter.trim());
+      if (!matcher.matches()) {
+        log.warn("Invalid filter expression: {}", filter.trim());
+        continue;
+      }
+      Clause clause =
+          new Comparison(
+              matcher.group(1),
+              Operator.of(matcher.group(2)),
+              new Literal(unquote(matcher.group(3).trim())));
+      clause.source = filter.trim();
+      clauses.add(clause);
+    }
+    return new CompiledFilter(new Junction(false, clauses));
+  }
+
+  /**
+   * Orders the operands of every {@code AND} and {@code OR} for the items about to be filtered.
+   *
+   * @param items the items
+   * @return this filter
+   */
+  CompiledFilter plan(List<?> items) {
+    if (items.size() > 1) {
+      estimate(root, sample(items));
+    }
+    return this;
+  }
+
+  /**
+   * Returns the dates a field must fall within for an item to match, from comparisons and
+   * BETWEEN clauses joined to the rest of the expression with AND.
+   *
+   * @param field the name of a {@link LocalDate} field
+   * @return the range, or null if the expression does not bound the field
+   */
+  DateRange dateRange(String field) {
+    Node[] conjuncts =
+        root instanceof Junction junction && !junction.any ? junction.operands : new Node[] {root};
+    LocalDate from = null;
+    LocalDate to = null;
+    boolean bounded = false;
+    for (Node node : conjuncts) {
+      LocalDate low = null;
+      LocalDate high = null;
+      if (node instanceof Comparison comparison && comparison.isOn(field)) {
+        LocalDate date = comparison.literal.date;
+        switch (comparison.operator) {
+          case EQUAL -> low = high = date;
+          case GREATER, GREATER_OR_EQUAL -> low = date;
+          case LESS, LESS_OR_EQUAL -> high = date;
+          default -> {}
+        }
+      } else if (node instanceof Between between && between.isOn(field) && !between.negated) {
+        low = between.low.date;
+        high = between.high.date;
+      }
+      if (low != null && (from == null || low.isAfter(from))) {
+        from = low;
+        bounded = true;
+      }
+      if (high != null && (to == null || high.isBefore(to))) {
+        to = high;
+        bounded = true;
+      }
+    }
+    return bounded ? new DateRange(from, to) : null;
+  }
+
+  @Override
+  public boolean test(Object item) {
+    return root.test(item);
+  }
+
+  /** Returns the expression in evaluation order */
+  @Override
+  public String toString() {
+    return root.toString();
+  }
+
+  private static List<Object> sample(List<?> items) {
+    if (items.size() <= SAMPLE_SIZE || !(items instanceof RandomAccess)) {
+      return items.stream().limit(SAMPLE_SIZE).collect(Collectors.toList());
+    }
+    List<Object> sample = new ArrayList<>(SAMPLE_SIZE);
+    double stride = (double) items.size() / SAMPLE_SIZE;
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      sample.add(items.get((int) (i * stride)));
+    }
+    return sample;
+  }
+
+  /** Estimates a node and orders its operands; the pass rate is smoothed away from 0 and 1 */
+  private static Estimate estimate(Node node, List<Object> sample) {
+    if (node instanceof Not not) {
+      Estimate operand = estimate(not.operand, sample);
+      return new Estimate(1 - operand.passRate(), operand.cost());
+    }
+    double cost;
+    if (node instanceof Junction junction) {
+      Estimate[] estimates = new Estimate[junction.operands.length];
+      for (int i = 0; i < estimates.length; i++) {
+        estimates[i] = estimate(junction.operands[i], sample);
+      }
+      cost = junction.order(estimates);
+    } else {
+      cost = ((Clause) node).cost();
+    }
+    int passed = 0;
+    for (Object item : sample) {
+      if (node.test(item)) {
+        passed++;
+      }
+    }
+    return new Estimate((passed + 1.0) / (sample.size() + 2.0), cost);
+  }
+
+  private static String unquote(String value) {
+    if (value.startsWith("'") && value.endsWith("'")
+        || value.startsWith("\"") && value.endsWith("\"")) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  /**
+   * An inclusive range of dates.
+   *
+   * @param from the first date, or null for no lower bound
+   * @param to the last date, or null for no upper bound
+   */
+  record DateRange(LocalDate from, LocalDate to) {}
+
+  /** Expected cost of evaluating a node for one item, and the share of items it matches */
+  private record Estimate(double passRate, double cost) {}
+
+  private interface Node {
+    boolean test(Object item);
+  }
+
+  /** Operands joined with AND, or with OR when {@code any} is set */
+  private static final class Junction implements Node {
+
+    private final boolean any;
+    private Node[] operands;
+
+    Junction(boolean any, List<Node> operands) {
+      this.any = any;
+      this.operands = operands.toArray(new Node[0]);
+    }
+
+    @Override
+    public boolean test(Object item) {
+      for (Node operand : operands) {
+        if (operand.test(item) == any) {
+          return any;
+        }
+      }
+      return !any;
+    }
+
+    /**
+     * Orders the operands so that cheap ones which usually decide the result come first, and
+     * returns the expected cost of the junction.
+     */
+    double order(Estimate[] estimates) {
+      Integer[] order = new Integer[operands.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, Comparator.comparingDouble(i -> costPerDecision(estimates[i])));
+      Node[] ordered = new Node[operands.length];
+      double cost = 0;
+      double reached = 1;
+      for (int i = 0; i < order.length; i++) {
+        Estimate estimate = estimates[order[i]];
+        ordered[i] = operands[order[i]];
+        cost += reached * estimate.cost();
+        reached *= any ? 1 - estimate.passRate() : estimate.passRate();
+      }
+      operands = ordered;
+      return cost;
+    }
+
+    /** An AND is decided by an operand that fails, an OR by one that passes */
+    private double costPerDecision(Estimate estimate) {
+      return estimate.cost() / (any ? estimate.passRate() : 1 - estimate.passRate());
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.stream(operands)
+          .map(Object::toString)
+          .collect(Collectors.joining(any ? " OR " : " AND ", "(", ")"));
+    }
+  }
+
+  private static final class Not implements Node {
+
+    private final Node operand;
+
+    Not(Node operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    public boolean test(Object item) {
+      return !operand.test(item);
+    }
+
+    @Override
+    public String toString() {
+      return "NOT " + operand;
+    }
+  }
+
+  /** The accessor resolved for the last item class a clause was applied to */
+  private record Binding(Class<?> type, Function<Object, Object> accessor) {}
+
+  /** A predicate on the value of one field */
+  private abstract static class Clause implements Node {
+
+    private final String[] path;
+    final boolean onGrade;
+    private final boolean onClimbGrade;
+    private Binding binding;
+    private String source;
+
+    Clause(String field) {
+      this.path = field.split("\\.");
+      this.onGrade = path[path.length - 1].equals("grade");
+      this.onClimbGrade =
+          onGrade && (path.length == 1 || (path.length == 2 && path[0].equals("grades")));
+    }
+
+    @Override
+    public final boolean test(Object item) {
+      if (item == null) {
+        return false;
+      }
+      if (onClimbGrade && item instanceof Climb climb) {
+        // A climb's grade is read in its declared system, as when sorting
+        Climb.GradeInfo grades = climb.getGrades();
+        return grades != null
+            && grades.getGrade() != null
+            && matches(new ClimbGrade(grades.getGrade(), GradeScale.ordinal(grades)));
+      }
+      Object value =
+          path.length == 1
+              ? accessor(item.getClass()).apply(item)
+              : FieldAccessors.getValue(item, path);
+      return value != null && matches(value);
+    }
+
+    /** Returns true if this clause tests a top-level field */
+    boolean isOn(String field) {
+      return path.length == 1 && path[0].equals(field);
+    }
+
+    /** Tests a non-null field value */
+    abstract boolean matches(Object value);
+
+    /** Relative cost of {@link #matches}, one being a single comparison */
+    abstract double baseCost();
+
+    double cost() {
+      // Each nested field is another lookup
+      return baseCost() + path.length - 1;
+    }
+
+    private Function<Object, Object> accessor(Class<?> type) {
+      // Racy but safe: a stale binding is only a cache miss
+      Binding current = binding;
+      if (current == null || current.type() != type) {
+        current = new Binding(type, FieldAccessors.forField(type, path[0]));
+        binding = current;
+      }
+      return current.accessor();
+    }
+
+    @Override
+    public String toString() {
+      return source;
+    }
+  }
+
+  private enum Operator {
+    EQUAL,
+    NOT_EQUAL,
+    GREATER,
+    GREATER_OR_EQUAL,
+    LESS,
+    LESS_OR_EQUAL;
+
+    static Operator of(String symbol) {
+      return switch (symbol) {
+        case "=" -> EQUAL;
+        case "!=" -> NOT_EQUAL;
+        case ">" -> GREATER;
+        case ">=" -> GREATER_OR_EQUAL;
+        case "<" -> LESS;
+        case "<=" -> LESS_OR_EQUAL;
+        default -> throw new IllegalArgumentException("Unknown operator: " + symbol);
+      };
+    }
+  }
+
+  private static final class Comparison extends Clause {
+
+    private final Operator operator;
+    private final Literal literal;
+
+    Comparison(String field, Operator operator, Literal literal) {
+      super(field);
+      this.operator = operator;
+      this.literal = literal;
+    }
+
+    @Override
+    boolean matches(Object value) {
+      if (operator == Operator.EQUAL || operator == Operator.NOT_EQUAL) {
+        Boolean equal = literal.isEqualTo(value);
+        return equal != null && equal == (operator == Operator.EQUAL);
+      }
+      int comparison = literal.compareFrom(value, onGrade);
+      if (comparison == INCOMPARABLE) {
+        return false;
+      }
+      return switch (operator) {
+        case GREATER -> comparison > 0;
+        case GREATER_OR_EQUAL -> comparison >= 0;
+        case LESS -> comparison < 0;
+        default -> comparison <= 0;
+      };
+    }
+
+    @Override
+    double baseCost() {
+      return 1;
+    }
+  }
+
+  private static final class In extends Clause {
+
+    private final Literal[] literals;
+    private final boolean negated;
+
+    In(String field, List<Literal> literals, boolean negated) {
+      super(field);
+      this.literals = literals.toArray(new Literal[0]);
+      this.negated = negated;
+    }
+
+    @Override
+    boolean matches(Object value) {
+      boolean comparable = true;
+      for (Literal literal : literals) {
+        Boolean equal = literal.isEqualTo(value);
+        if (equal == null) {
+          comparable = false;
+        } else if (equal) {
+          return !negated;
+        }
+      }
+      // Like !=, NOT IN does not match a value that cannot be compared with every literal
+      return negated && comparable;
+    }
+
+    @Override
+    double baseCost() {
+      return 1 + literals.length / 2.0;
+    }
+  }
+
+  private static final class Between extends Clause {
+
+    private final Literal low;
+    private final Literal high;
+    private final boolean negated;
+
+    Between(String field, Literal low, Literal high, boolean negated) {
+      super(field);
+      this.low = low;
+      this.high = high;
+      this.negated = negated;
+    }
+
+    @Override
+    boolean matches(Object value) {
+      int fromLow = low.compareFrom(value, onGrade);
+      int fromHigh = high.compareFrom(value, onGrade);
+      if (fromLow == INCOMPARABLE || fromHigh == INCOMPARABLE) {
+        return false;
+      }
+      return (fromLow >= 0 && fromHigh <= 0) != negated;
+    }
+
+    @Override
+    double baseCost() {
+      return 2;
+    }
+  }
+
+  /** Case-insensitive prefix or substring match on the text of a value */
+  private static final class TextMatch extends Clause {
+
+    private final String text;
+    private final boolean prefix;
+    private final boolean negated;
+
+    TextMatch(String field, Literal literal, boolean prefix, boolean negated) {
+      super(field);
+      this.text = literal.text;
+      this.prefix = prefix;
+      this.negated = negated;
+    }
+
+    @Override
+    boolean matches(Object value) {
+      String string = value instanceof Enum<?> constant ? constant.name() : value.toString();
+      boolean found = string.regionMatches(true, 0, text, 0, text.length());
+      if (!prefix) {
+        for (int i = 1; !found && i <= string.length() - text.length(); i++) {
+          found = string.regionMatches(true, i, text, 0, text.length());
+        }
+      }
+      return found != negated;
+    }
+
+    @Override
+    double baseCost() {
+      return prefix ? 1.5 : 3;
+    }
+  }
+
+  /** The grade of a climb with its ordinal in the climb's grade system */
+  private record ClimbGrade(String text, int ordinal) {
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+
+  /** A filter value with every typed form it may be compared as, parsed once */
+  private static final class Literal {
+
+    private final String text;
+    private final boolean bool;
+    private final Number number;
+    private final LocalDate date;
+    private final OffsetDateTime dateTime;
+    private final int grade;
+
+    Literal(String text) {
+      this.text = text;
+      this.bool = Boolean.parseBoolean(text);
+      this.number = parseNumber(text);
+      this.date = parseDate(text);
+      this.dateTime = parseDateTime(text);
+      this.grade = GradeScale.ordinal(text);
+    }
+
+    /** Returns whether a field value equals this literal, or null if they cannot be compared */
+    Boolean isEqualTo(Object value) {
+      if (value instanceof ClimbGrade climbGrade) {
+        return climbGrade.text().equalsIgnoreCase(text);
+      } else if (value instanceof String string) {
+        return string.equalsIgnoreCase(text);
+      } else if (value instanceof Boolean) {
+        return value.equals(bool);
+      } else if (value instanceof Number) {
+        return number != null ? value.equals(number) : null;
+      } else if (value instanceof Enum<?> constant) {
+        return constant.name().equalsIgnoreCase(text);
+      }
+      return value.toString().equals(text);
+    }
+
+    /**
+     * Compares a field value with this literal, returning {@link #INCOMPARABLE} if it cannot. Text
+     * in a grade field is compared as a grade.
+     */
+    int compareFrom(Object value, boolean gradeField) {
+      if (value instanceof Number fieldNumber) {
+        return number != null
+            ? Double.compare(fieldNumber.doubleValue(), number.doubleValue())
+            : INCOMPARABLE;
+      } else if (value instanceof LocalDate fieldDate) {
+        return date != null ? fieldDate.compareTo(date) : INCOMPARABLE;
+      } else if (value instanceof OffsetDateTime fieldDateTime) {
+        return dateTime != null ? fieldDateTime.compareTo(dateTime) : INCOMPARABLE;
+      } else if (value instanceof ClimbGrade climbGrade) {
+        return compareGrade(climbGrade.text(), climbGrade.ordinal());
+      } else if (value instanceof String string) {
+        return gradeField
+            ? compareGrade(string, GradeScale.ordinal(string))
+            : string.compareTo(text);
+      }
+      return INCOMPARABLE;
+    }
+
+    /**
+     * Compares grades of any system by their {@link GradeScale} ordinal. A grade cannot be compared
+     * with text that is not a grade, and two values that are not grades are compared as text.
+     */
+    private int compareGrade(String value, int fieldGrade) {
+      if ((fieldGrade == GradeScale.UNKNOWN) != (grade == GradeScale.UNKNOWN)) {
+        return INCOMPARABLE;
+      }
+      return fieldGrade != GradeScale.UNKNOWN
+          ? Integer.compare(fieldGrade, grade)
+          : value.compareTo(text);
+    }
+
+    private static Number parseNumber(String value) {
+      try {
+        if (value.contains(".")) {
+          return Double.parseDouble(value);
+        }
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    private static LocalDate parseDate(String value) {
+      try {
+        return LocalDate.parse(value);
+      } catch (RuntimeException e) {
+        return null;
+      }
+    }
+
+    private static OffsetDateTime parseDateTime(String value) {
+      try {
+        return OffsetDateTime.parse(value);
+      } catch (RuntimeException e) {
+        return null;
+      }
+    }
+  }
+
+  /** Recursive descent parser for the grammar in the class comment */
+  private static final class Parser {
+
+    private final String input;
+    private int pos;
+
+    Parser(String input) {
+      this.input = input;
+    }
+
+    Node parse() {
+      Node node = parseOr();
+      skipWhitespace();
+      if (pos < input.length()) {
+        throw error("Unexpected '" + input.charAt(pos) + "'");
+      }
+      return node;
+    }
+
+    private Node parseOr() {
+      List<Node> operands = new ArrayList<>();
+      operands.add(parseAnd());
+      while (keyword("OR")) {
+        operands.add(parseAnd());
+      }
+      return operands.size() == 1 ? operands.getFirst() : new Junction(true, operands);
+    }
+
+    private Node parseAnd() {
+      List<Node> operands = new ArrayList<>();
+      operands.add(parseFactor());
+      while (keyword("AND")) {
+        operands.add(parseFactor());
+      }
+      return operands.size() == 1 ? operands.getFirst() : new Junction(false, operands);
+    }
+
+    private Node parseFactor() {
+      if (keyword("NOT")) {
+        return new Not(parseFactor());
+      }
+      if (symbol('(')) {
+        Node node = parseOr();
+        expect(')');
+        return node;
+      }
+      return parseClause();
+    }
+
+    private Clause parseClause() {
+      skipWhitespace();
+      int start = pos;
+      String field = field();
+      boolean negated = keyword("NOT");
+      Clause clause;
+      if (keyword("IN")) {
+        clause = new In(field, list(), negated);
+      } else if (keyword("BETWEEN")) {
+        Literal low = literal(false);
+        if (!keyword("AND")) {
+          throw error("Expected AND in BETWEEN");
+        }
+        clause = new Between(field, low, literal(false), negated);
+      } else if (keyword("STARTSWITH")) {
+        clause = new TextMatch(field, literal(false), true, negated);
+      } else if (keyword("CONTAINS")) {
+        clause = new TextMatch(field, literal(false), false, negated);
+      } else if (negated) {
+        throw error("Expected IN, BETWEEN, STARTSWITH or CONTAINS after NOT");
+      } else {
+        clause = new Comparison(field, operator(), literal(false));
+      }
+      clause.source = input.substring(start, pos).trim();
+      return clause;
+    }
+
+    private String field() {
+      skipWhitespace();
+      int start = pos;
+      while (pos < input.length() && (isWordChar(input.charAt(pos)) || input.charAt(pos) == '.')) {
+        pos++;
+      }
+      String field = input.substring(start, pos);
+      if (field.isEmpty() || field.startsWith(".") || field.endsWith(".") || field.contains("..")) {
+        throw error("Expected a field name");
+      }
+      return field;
+    }
+
+    private Operator operator() {
+      skipWhitespace();
+      for (String symbol : new String[] {"!=", ">=", "<=", "=", ">", "<"}) {
+        if (input.startsWith(symbol, pos)) {
+          pos += symbol.length();
+          return Operator.of(symbol);
+        }
+      }
+      throw error("Expected an operator");
+    }
+
+    private List<Literal> list() {
+      expect('(');
+      List<Literal> literals = new ArrayList<>();
+      do {
+        literals.add(literal(true));
+      } while (symbol(','));
+      expect(')');
+      return literals;
+    }
+
+    /**
+     * Reads a quoted value, or an unquoted one up to an unbalanced parenthesis, the next AND or OR
+     * keyword, or in a list the next comma.
+     */
+    private Literal literal(boolean inList) {
+      skipWhitespace();
+      if (pos < input.length() && (input.charAt(pos) == '\'' || input.charAt(pos) == '"')) {
+        int end = input.indexOf(input.charAt(pos), pos + 1);
+        if (end < 0) {
+          throw error("Unterminated quote");
+        }
+        String text = input.substring(pos + 1, end);
+        pos = end + 1;
+        return new Literal(text);
+      }
+      int start = pos;
+      int depth = 0;
+      while (pos < input.length()) {
+        char c = input.charAt(pos);
+        if (c == ')' && depth == 0
+            || c == ',' && depth == 0 && inList
+            || Character.isWhitespace(c) && !inList && keywordFollows()) {
+          break;
+        }
+        depth += c == '(' ? 1 : c == ')' ? -1 : 0;
+        pos++;
+      }
+      String text = input.substring(start, pos).trim();
+      if (text.isEmpty()) {
+        throw error("Expected a value");
+      }
+      return new Literal(text);
+    }
+
+    private boolean keywordFollows() {
+      int saved = pos;
+      boolean follows = keyword("AND") || keyword("OR");
+      pos = saved;
+      return follows;
+    }
+
+    /** Consumes a keyword if it is the next word */
+    private boolean keyword(String word) {
+      skipWhitespace();
+      int end = pos + word.length();
+      if (input.startsWith(word, pos)
+          && (end == input.length() || !isWordChar(input.charAt(end)))) {
+        pos = end;
+        return true;
+      }
+      return false;
+    }
+
+    private boolean symbol(char c) {
+      skipWhitespace();
+      if (pos < input.length() && input.charAt(pos) == c) {
+        pos++;
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(char c) {
+      if (!symbol(c)) {
+        throw error("Expected '" + c + "'");
+      }
+    }
+
+    private void skipWhitespace() {
+      while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    private static boolean isWordChar(char c) {
+      return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at position " + pos + " in: " + input);
+    }
+  }
+}
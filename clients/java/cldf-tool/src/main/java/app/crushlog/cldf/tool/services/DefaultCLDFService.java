@@ -2,10 +2,13 @@ package app.crushlog.cldf.tool.services;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.stream.Stream;
 
 import jakarta.inject.Singleton;
 
 import app.crushlog.cldf.api.*;
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.Session;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -17,6 +20,21 @@ public class DefaultCLDFService implements CLDFService {
     return CLDF.read(file);
   }
 
+  @Override
+  public CLDFArchive open(File file) throws IOException {
+    return CLDF.open(file);
+  }
+
+  @Override
+  public Stream<Climb> streamClimbs(File file) throws IOException {
+    return new CLDFReader().streamClimbs(file);
+  }
+
+  @Override
+  public Stream<Session> streamSessions(File file) throws IOException {
+    return new CLDFReader().streamSessions(file);
+  }
+
   @Override
   public void write(CLDFArchive archive, File file, boolean prettyPrint) throws IOException {
     CLDFWriter writer = new CLDFWriter(prettyPrint);
@@ -5,6 +5,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import jakarta.annotation.PreDestroy;
 import jakarta.inject.Singleton;
@@ -194,14 +195,21 @@ public class DefaultGraphService implements GraphService {
   /** Execute a Cypher query and return consumed results */
   @Override
   public List<Map<String, Object>> executeCypher(String query, Map<String, Object> parameters) {
+    List<Map<String, Object>> results = new ArrayList<>();
+    executeCypher(query, parameters, results::add);
+    return results;
+  }
+
+  /** Execute a Cypher query and hand each row over as it is pulled from the result */
+  @Override
+  public void executeCypher(
+      String query, Map<String, Object> parameters, Consumer<Map<String, Object>> consumer) {
     try (Transaction tx = graphDb.beginTx()) {
       Result result = tx.execute(query, parameters);
-      List<Map<String, Object>> results = new ArrayList<>();
       while (result.hasNext()) {
-        results.add(result.next());
+        consumer.accept(result.next());
       }
       tx.commit();
-      return results;
     }
   }
 
@@ -1,350 +1,343 @@
 package app.crushlog.cldf.tool.services;
 
-import java.lang.reflect.Field;
-import java.time.LocalDate;
-import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import jakarta.inject.Singleton;
 
+import app.crushlog.cldf.api.ArchiveIndex;
+import app.crushlog.cldf.api.ClimbTable;
 import app.crushlog.cldf.models.Climb;
-import app.crushlog.cldf.models.Location;
 import app.crushlog.cldf.models.Session;
+import app.crushlog.cldf.models.enums.ClimbType;
 import app.crushlog.cldf.models.enums.FinishType;
+import app.crushlog.cldf.utils.GradeScale;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @Singleton
 public class DefaultQueryService implements QueryService {
 
-  private static final Pattern FILTER_PATTERN = Pattern.compile("(\\w+)(=|!=|>=|<=|>|<)(.+)");
-
   @Override
   public List<Object> applyFilter(List<Object> items, String filterExpression) {
     if (items.isEmpty() || filterExpression == null || filterExpression.trim().isEmpty()) {
       return items;
     }
+    List<Object> result = new ArrayList<>();
+    forEachMatch(items, filterExpression, result::add);
+    return result;
+  }
 
-    // Parse filter expressions (support AND for now)
-    String[] filters = filterExpression.split("\\s+AND\\s+");
-    List<Object> result = new ArrayList<>(items);
-
-    for (String filter : filters) {
-      result = applySingleFilter(result, filter.trim());
-    }
-
+  @Override
+  public List<Object> applyFilter(ArchiveIndex index, Class<?> type, String filterExpression) {
+    List<Object> result = new ArrayList<>();
+    forEachMatch(index, type, filterExpression, result::add);
     return result;
   }
 
-  private List<Object> applySingleFilter(List<Object> items, String filter) {
-    Matcher matcher = FILTER_PATTERN.matcher(filter);
-    if (!matcher.matches()) {
-      log.warn("Invalid filter expression: {}", filter);
-      return items;
+  @Override
+  public void forEachMatch(List<?> items, String filterExpression, Predicate<Object> consumer) {
+    if (filterExpression == null || filterExpression.trim().isEmpty()) {
+      for (Object item : items) {
+        if (!consumer.test(item)) {
+          return;
+        }
+      }
+      return;
     }
-
-    String field = matcher.group(1);
-    String operator = matcher.group(2);
-    String rawValue = matcher.group(3).trim();
-
-    // Remove quotes if present
-    final String value;
-    if (rawValue.startsWith("'") && rawValue.endsWith("'")
-        || rawValue.startsWith("\"") && rawValue.endsWith("\"")) {
-      value = rawValue.substring(1, rawValue.length() - 1);
-    } else {
-      value = rawValue;
+    if (items.isEmpty()) {
+      return;
     }
-
-    return items.stream()
-        .filter(item -> matchesFilter(item, field, operator, value))
-        .collect(Collectors.toList());
+    // Parse the expression once, order its predicates for these items and test them in one pass
+    CompiledFilter filter = CompiledFilter.compile(filterExpression).plan(items);
+    log.debug("Filter plan: {}", filter);
+    test(items, filter, consumer);
   }
 
-  private boolean matchesFilter(Object item, String field, String operator, String value) {
-    try {
-      Object fieldValue = getFieldValue(item, field);
-      if (fieldValue == null) {
-        return false;
+  @Override
+  public void forEachMatch(Stream<?> items, String filterExpression, Predicate<Object> consumer) {
+    Predicate<Object> filter =
+        filterExpression == null || filterExpression.trim().isEmpty()
+            ? item -> true
+            : CompiledFilter.compile(filterExpression);
+    for (Iterator<?> iterator = items.iterator(); iterator.hasNext(); ) {
+      Object item = iterator.next();
+      if (filter.test(item) && !consumer.test(item)) {
+        return;
       }
-
-      return switch (operator) {
-        case "=" -> equals(fieldValue, value);
-        case "!=" -> !equals(fieldValue, value);
-        case ">" -> compare(fieldValue, value) > 0;
-        case ">=" -> compare(fieldValue, value) >= 0;
-        case "<" -> compare(fieldValue, value) < 0;
-        case "<=" -> compare(fieldValue, value) <= 0;
-        default -> false;
-      };
-    } catch (Exception e) {
-      log.debug("Error applying filter on field {}: {}", field, e.getMessage());
-      return false;
     }
   }
 
-  private Object getFieldValue(Object item, String fieldName) {
-    // Special handling for nested fields (e.g., grades.grade)
-    String[] parts = fieldName.split("\\.");
-    Object current = item;
+  @Override
+  public boolean boundsDate(String filterExpression) {
+    return filterExpression != null
+        && !filterExpression.trim().isEmpty()
+        && CompiledFilter.compile(filterExpression).dateRange("date") != null;
+  }
 
-    for (String part : parts) {
-      current = getDirectFieldValue(current, part);
-      if (current == null) {
-        return null;
-      }
+  @Override
+  public void forEachMatch(
+      ArchiveIndex index, Class<?> type, String filterExpression, Predicate<Object> consumer) {
+    CompiledFilter filter = CompiledFilter.compile(filterExpression);
+    CompiledFilter.DateRange range = filter.dateRange("date");
+    List<?> candidates;
+    if (type == Climb.class) {
+      candidates =
+          range != null
+              ? index.getClimbsBetween(range.from(), range.to())
+              : index.getArchive().getClimbs();
+    } else if (type == Session.class) {
+      candidates =
+          range != null
+              ? index.getSessionsBetween(range.from(), range.to())
+              : index.getArchive().getSessions();
+    } else {
+      throw new IllegalArgumentException("No date index for " + type.getSimpleName());
     }
-
-    return current;
+    if (candidates == null || candidates.isEmpty()) {
+      return;
+    }
+    filter.plan(candidates);
+    log.debug("Filter plan: {} over {} {}s", filter, candidates.size(), type.getSimpleName());
+    test(candidates, filter, consumer);
   }
 
-  private Object getDirectFieldValue(Object item, String fieldName) {
-    // Special cases for common fields
-    if (item instanceof Climb climb) {
-      switch (fieldName) {
-        case "type":
-          return climb.getType() != null ? climb.getType().name() : null;
-        case "grade":
-          return climb.getGrades() != null ? climb.getGrades().getGrade() : null;
-        case "rating":
-          return climb.getRating();
-        case "date":
-          return climb.getDate();
-        case "routeName":
-          return climb.getRouteName();
-        case "finishType":
-          return climb.getFinishType();
-        case "attempts":
-          return climb.getAttempts();
-        case "isIndoor":
-          return climb.getIsIndoor();
-        default:
-          // Fall through to generic reflection-based access
-          break;
-      }
-    } else if (item instanceof Session session) {
-      switch (fieldName) {
-        case "location":
-          return session.getLocation();
-        case "date":
-          return session.getDate();
-        case "isIndoor":
-          return session.getIsIndoor();
-        default:
-          // Fall through to generic reflection-based access
-          break;
-      }
-    } else if (item instanceof Location location) {
-      switch (fieldName) {
-        case "name":
-          return location.getName();
-        case "country":
-          return location.getCountry();
-        case "isIndoor":
-          return location.getIsIndoor();
-        default:
-          // Fall through to generic reflection-based access
-          break;
+  private static void test(List<?> items, CompiledFilter filter, Predicate<Object> consumer) {
+    for (Object item : items) {
+      if (filter.test(item) && !consumer.test(item)) {
+        return;
       }
     }
+  }
 
-    // Generic reflection-based field access
-    try {
-      Field field = item.getClass().getDeclaredField(fieldName);
-      field.setAccessible(true);
-      return field.get(item);
-    } catch (NoSuchFieldException e) {
-      // Try getter method
-      String getterName =
-          "get" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
-      try {
-        return item.getClass().getMethod(getterName).invoke(item);
-      } catch (Exception ex) {
-        log.debug("Field {} not found on {}", fieldName, item.getClass().getSimpleName());
-        return null;
-      }
-    } catch (IllegalAccessException e) {
-      log.debug("Cannot access field {} on {}", fieldName, item.getClass().getSimpleName());
-      return null;
+  public List<Object> sort(List<Object> items, String sortExpression) {
+    if (items.isEmpty() || sortExpression == null || sortExpression.trim().isEmpty()) {
+      return items;
     }
+    return sort(items, sortExpression, 0, 0);
   }
 
-  private boolean equals(Object fieldValue, String filterValue) {
-    if (fieldValue instanceof String) {
-      return fieldValue.toString().equalsIgnoreCase(filterValue);
-    } else if (fieldValue instanceof Boolean) {
-      return fieldValue.equals(Boolean.parseBoolean(filterValue));
-    } else if (fieldValue instanceof Number) {
-      return fieldValue.equals(parseNumber(filterValue));
-    } else if (fieldValue instanceof Enum) {
-      return ((Enum<?>) fieldValue).name().equalsIgnoreCase(filterValue);
+  @Override
+  public List<Object> sort(List<Object> items, String sortExpression, int offset, int limit) {
+    int from = Math.min(Math.max(offset, 0), items.size());
+    int to = limit > 0 ? (int) Math.min((long) from + limit, items.size()) : items.size();
+    if (sortExpression == null || sortExpression.trim().isEmpty()) {
+      return from == 0 && to == items.size() ? items : new ArrayList<>(items.subList(from, to));
+    }
+    if (from == to) {
+      return new ArrayList<>();
+    }
+
+    boolean descending = sortExpression.startsWith("-");
+    String field = descending ? sortExpression.substring(1) : sortExpression;
+    // Nested fields (e.g., grades.grade) are resolved one part at a time
+    String[] path = field.split("\\.");
+    boolean grade = path[path.length - 1].equals("grade");
+    Function<Object, Object> sortValue = item -> sortValue(item, path, grade);
+
+    // Each value is read once; equal values keep their input order, as in a stable sort
+    Comparator<SortKey> order =
+        (a, b) -> {
+          int result = compareValues(a.value(), b.value());
+          if (descending) {
+            result = -result;
+          }
+          return result != 0 ? result : Integer.compare(a.position(), b.position());
+        };
+
+    SortKey[] keys =
+        to < items.size()
+            ? selectSmallest(items, sortValue, order, to)
+            : extractKeys(items, sortValue);
+    Arrays.sort(keys, order);
+
+    List<Object> sorted = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      sorted.add(keys[i].item());
     }
-    return fieldValue.toString().equals(filterValue);
+    return sorted;
   }
 
-  private int compare(Object fieldValue, String filterValue) {
-    if (fieldValue instanceof Number) {
-      double fieldNum = ((Number) fieldValue).doubleValue();
-      double filterNum = parseNumber(filterValue).doubleValue();
-      return Double.compare(fieldNum, filterNum);
-    } else if (fieldValue instanceof LocalDate fieldDate) {
-      LocalDate filterDate = LocalDate.parse(filterValue);
-      return fieldDate.compareTo(filterDate);
-    } else if (fieldValue instanceof OffsetDateTime fieldDate) {
-      OffsetDateTime filterDate = OffsetDateTime.parse(filterValue);
-      return fieldDate.compareTo(filterDate);
-    } else if (fieldValue instanceof String) {
-      // Special handling for grades
-      if (isGrade(fieldValue.toString())) {
-        return compareGrades(fieldValue.toString(), filterValue);
-      }
-      return fieldValue.toString().compareTo(filterValue);
+  /** A sort value read from an item, with the item's position in the input */
+  private record SortKey(Object value, int position, Object item) {}
+
+  private static SortKey[] extractKeys(List<Object> items, Function<Object, Object> sortValue) {
+    SortKey[] keys = new SortKey[items.size()];
+    int position = 0;
+    for (Object item : items) {
+      keys[position] = new SortKey(sortValue.apply(item), position, item);
+      position++;
     }
-    throw new IllegalArgumentException("Cannot compare " + fieldValue.getClass().getSimpleName());
+    return keys;
   }
 
-  private Number parseNumber(String value) {
-    try {
-      if (value.contains(".")) {
-        return Double.parseDouble(value);
+  /**
+   * Returns the first {@code count} items in sort order, unsorted, keeping only that many keys
+   * in a heap whose head is the last of them.
+   */
+  private static SortKey[] selectSmallest(
+      List<Object> items,
+      Function<Object, Object> sortValue,
+      Comparator<SortKey> order,
+      int count) {
+    PriorityQueue<SortKey> heap = new PriorityQueue<>(count, order.reversed());
+    int position = 0;
+    for (Object item : items) {
+      SortKey key = new SortKey(sortValue.apply(item), position++, item);
+      if (heap.size() < count) {
+        heap.add(key);
+      } else if (order.compare(key, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(key);
       }
-      return Integer.parseInt(value);
-    } catch (NumberFormatException e) {
-      throw new IllegalArgumentException("Invalid number: " + value);
     }
+    return heap.toArray(new SortKey[0]);
   }
 
-  private boolean isGrade(String value) {
-    return value.matches("^(V\\d+|5\\.\\d+[a-d]?)$");
+  /** Reads the value to sort an item by, with grades placed on the shared grade scale */
+  private static Object sortValue(Object item, String[] path, boolean grade) {
+    Object value = FieldAccessors.getValue(item, path);
+    if (grade && value instanceof String text) {
+      int ordinal =
+          item instanceof Climb climb
+              ? GradeScale.ordinal(climb.getGrades())
+              : GradeScale.ordinal(text);
+      return new GradeValue(ordinal, text);
+    }
+    return value;
   }
 
-  private int compareGrades(String grade1, String grade2) {
-    // Simple V-scale comparison
-    if (grade1.startsWith("V") && grade2.startsWith("V")) {
-      int v1 = Integer.parseInt(grade1.substring(1));
-      int v2 = Integer.parseInt(grade2.substring(1));
-      return Integer.compare(v1, v2);
+  /**
+   * A grade ordered by its {@link GradeScale} ordinal, then by its text. Grades that are not on the
+   * scale come after those that are.
+   */
+  private record GradeValue(int ordinal, String grade) implements Comparable<GradeValue> {
+
+    @Override
+    public int compareTo(GradeValue other) {
+      boolean known = ordinal != GradeScale.UNKNOWN;
+      if (known != (other.ordinal != GradeScale.UNKNOWN)) {
+        return known ? -1 : 1;
+      }
+      int result = Integer.compare(ordinal, other.ordinal);
+      return result != 0 ? result : grade.compareTo(other.grade);
     }
-    // Add more grade system comparisons as needed
-    return grade1.compareTo(grade2);
   }
 
-  public List<Object> sort(List<Object> items, String sortExpression) {
-    if (items.isEmpty() || sortExpression == null || sortExpression.trim().isEmpty()) {
-      return items;
+  /** Orders null values first, then comparable values naturally and others by their text */
+  @SuppressWarnings("unchecked")
+  private static int compareValues(Object a, Object b) {
+    if (a == null || b == null) {
+      return a == null ? (b == null ? 0 : -1) : 1;
     }
-
-    boolean descending = sortExpression.startsWith("-");
-    String field = descending ? sortExpression.substring(1) : sortExpression;
-
-    Comparator<Object> comparator =
-        (a, b) -> {
-          Object valueA = getFieldValue(a, field);
-          Object valueB = getFieldValue(b, field);
-
-          if (valueA == null && valueB == null) return 0;
-          if (valueA == null) return descending ? 1 : -1;
-          if (valueB == null) return descending ? -1 : 1;
-
-          int result;
-          if (valueA instanceof Comparable<?>) {
-            result = ((Comparable<Object>) valueA).compareTo(valueB);
-          } else {
-            result = valueA.toString().compareTo(valueB.toString());
-          }
-
-          return descending ? -result : result;
-        };
-
-    return items.stream().sorted(comparator).collect(Collectors.toList());
+    if (a instanceof Comparable<?>) {
+      return ((Comparable<Object>) a).compareTo(b);
+    }
+    return a.toString().compareTo(b.toString());
   }
 
   public List<Object> filterFields(List<Object> items, List<String> fields) {
-    // For now, return items as-is since field filtering would require
-    // creating new objects with only selected fields
-    // This could be implemented with dynamic proxy or map conversion
-    return items;
+    FieldProjection projection = FieldProjection.of(fields);
+    List<Object> projected = new ArrayList<>(items.size());
+    for (Object item : items) {
+      projected.add(projection.apply(item));
+    }
+    return projected;
   }
 
   public Map<String, Object> calculateStatistics(List<Object> items, String type) {
+    if (items.isEmpty() || !(items.getFirst() instanceof Climb)) {
+      RunningStatistics statistics = new RunningStatistics();
+      items.forEach(statistics::add);
+      return statistics.toMap();
+    }
+
     Map<String, Object> stats = new HashMap<>();
     stats.put("total", items.size());
+    calculateClimbStats(items.stream().map(i -> (Climb) i).collect(Collectors.toList()), stats);
+    return stats;
+  }
 
-    if (items.isEmpty()) {
-      return stats;
+  private void calculateClimbStats(List<Climb> climbs, Map<String, Object> stats) {
+    // Aggregate over primitive columns rather than one stream per statistic over the climbs
+    ClimbTable table = ClimbTable.of(climbs);
+
+    Map<String, Long> byType = new HashMap<>();
+    long[] typeCounts = table.countBy(ClimbTable.Column.CLIMB_TYPE);
+    for (ClimbType climbType : ClimbType.values()) {
+      if (typeCounts[climbType.ordinal()] > 0) {
+        byType.put(climbType.getValue(), typeCounts[climbType.ordinal()]);
+      }
     }
+    stats.put("byType", byType);
 
-    Object first = items.getFirst();
-    if (first instanceof Climb) {
-      calculateClimbStats(items.stream().map(i -> (Climb) i).collect(Collectors.toList()), stats);
-    } else if (first instanceof Session) {
-      calculateSessionStats(
-          items.stream().map(i -> (Session) i).collect(Collectors.toList()), stats);
-    } else if (first instanceof Location) {
-      calculateLocationStats(
-          items.stream().map(i -> (Location) i).collect(Collectors.toList()), stats);
+    // Enum keys are converted to strings for JSON serialization
+    Map<String, Long> byFinishType = new HashMap<>();
+    long[] finishCounts = table.countBy(ClimbTable.Column.FINISH_TYPE);
+    for (FinishType finishType : FinishType.values()) {
+      if (finishCounts[finishType.ordinal()] > 0) {
+        byFinishType.put(finishType.getValue(), finishCounts[finishType.ordinal()]);
+      }
     }
+    stats.put("byFinishType", byFinishType);
 
-    return stats;
-  }
+    double avgRating = table.average(ClimbTable.Column.RATING);
+    stats.put("averageRating", Double.isNaN(avgRating) ? 0.0 : Math.round(avgRating * 10) / 10.0);
 
-  private void calculateClimbStats(List<Climb> climbs, Map<String, Object> stats) {
-    Map<String, Long> byType =
-        climbs.stream()
-            .filter(c -> c.getType() != null)
-            .collect(Collectors.groupingBy(c -> c.getType().getValue(), Collectors.counting()));
-    stats.put("byType", byType);
+    stats.put("gradePyramid", gradePyramid(climbs, table));
 
-    Map<FinishType, Long> byFinishType =
-        climbs.stream()
-            .filter(c -> c.getFinishType() != null)
-            .collect(Collectors.groupingBy(Climb::getFinishType, Collectors.counting()));
-    // Convert enum keys to strings for JSON serialization
-    Map<String, Long> byFinishTypeStr =
-        byFinishType.entrySet().stream()
-            .collect(Collectors.toMap(e -> e.getKey().getValue(), Map.Entry::getValue));
-    stats.put("byFinishType", byFinishTypeStr);
-
-    double avgRating =
-        climbs.stream()
-            .filter(c -> c.getRating() != null)
-            .mapToInt(Climb::getRating)
-            .average()
-            .orElse(0.0);
-    stats.put("averageRating", Math.round(avgRating * 10) / 10.0);
-
-    long indoorCount =
-        climbs.stream().filter(c -> c.getIsIndoor() != null && c.getIsIndoor()).count();
+    long indoorCount = table.count(ClimbTable.Column.INDOOR, 1);
     stats.put("indoorCount", indoorCount);
     stats.put("outdoorCount", climbs.size() - indoorCount);
   }
 
-  private void calculateSessionStats(List<Session> sessions, Map<String, Object> stats) {
-    Map<String, Long> byLocation =
-        sessions.stream()
-            .filter(s -> s.getLocation() != null)
-            .collect(Collectors.groupingBy(Session::getLocation, Collectors.counting()));
-    stats.put("byLocation", byLocation);
-
-    long indoorCount =
-        sessions.stream().filter(s -> s.getIsIndoor() != null && s.getIsIndoor()).count();
-    stats.put("indoorCount", indoorCount);
-    stats.put("outdoorCount", sessions.size() - indoorCount);
+  /**
+   * Counts climbs per grade, easiest first across grade systems, from the grade column of the
+   * table. A grade on the shared scale is labelled with the first grade text seen for its ordinal;
+   * grades that are not on the scale follow by their text.
+   */
+  private Map<String, Long> gradePyramid(List<Climb> climbs, ClimbTable table) {
+    long[] counts = table.countBy(ClimbTable.Column.GRADE);
+    String[] labels = new String[counts.length];
+    Map<String, Long> ungraded = new TreeMap<>();
+    for (int row = 0; row < table.size(); row++) {
+      int ordinal = table.get(ClimbTable.Column.GRADE, row);
+      if (ordinal != ClimbTable.MISSING && labels[ordinal] != null) {
+        continue;
+      }
+      Climb.GradeInfo grades = climbs.get(row).getGrades();
+      if (grades == null || grades.getGrade() == null) {
+        continue;
+      }
+      if (ordinal != ClimbTable.MISSING) {
+        labels[ordinal] = grades.getGrade();
+      } else {
+        ungraded.merge(grades.getGrade(), 1L, Long::sum);
+      }
+    }
+    return gradePyramid(counts, labels, ungraded);
   }
 
-  private void calculateLocationStats(List<Location> locations, Map<String, Object> stats) {
-    Map<String, Long> byCountry =
-        locations.stream()
-            .filter(l -> l.getCountry() != null)
-            .collect(Collectors.groupingBy(Location::getCountry, Collectors.counting()));
-    stats.put("byCountry", byCountry);
-
-    long indoorCount =
-        locations.stream().filter(l -> l.getIsIndoor() != null && l.getIsIndoor()).count();
-    stats.put("indoorCount", indoorCount);
-    stats.put("outdoorCount", locations.size() - indoorCount);
+  /**
+   * Lists the grade counts in pyramid order.
+   *
+   * @param counts the number of climbs per {@link GradeScale} ordinal
+   * @param labels the grade text per ordinal
+   * @param ungraded the number of climbs per grade that is not on the scale, ordered by text
+   * @return the counts keyed by grade, easiest first
+   */
+  static Map<String, Long> gradePyramid(
+      long[] counts, String[] labels, Map<String, Long> ungraded) {
+    Map<String, Long> pyramid = new LinkedHashMap<>();
+    for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+      if (counts[ordinal] > 0 && labels[ordinal] != null) {
+        pyramid.put(labels[ordinal], counts[ordinal]);
+      }
+    }
+    pyramid.putAll(ungraded);
+    return pyramid;
   }
 }
@@ -1,17 +1,21 @@
 package app.crushlog.cldf.tool.services;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -23,8 +27,6 @@ import app.crushlog.cldf.tool.models.ChecksumResult;
 import app.crushlog.cldf.tool.models.Statistics;
 import app.crushlog.cldf.tool.models.ValidationReport;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
-import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 
 /**
  * Default implementation of ValidationReportService that provides comprehensive validation of CLDF
@@ -156,8 +158,11 @@ public class DefaultValidationReportService implements ValidationReportService {
       return handleUnsupportedAlgorithm(algorithm);
     }
 
-    // Extract and calculate actual checksums
-    Map<String, String> actualChecksums = calculateArchiveChecksums(archiveFile);
+    // Reuse the digests computed while the archive was inflated, if the reader kept them
+    Map<String, String> actualChecksums =
+        archive.getComputedChecksums() != null
+            ? archive.getComputedChecksums()
+            : calculateArchiveChecksums(archiveFile);
 
     // Compare checksums
     Map<String, Boolean> results = new TreeMap<>();
@@ -198,7 +203,8 @@ public class DefaultValidationReportService implements ValidationReportService {
   }
 
   /**
-   * Calculates SHA-256 checksums for all files in the archive.
+   * Calculates SHA-256 checksums for all files in the archive. Entries are hashed as they are
+   * inflated and never buffered in memory.
    *
    * @param archiveFile the ZIP archive file
    * @return map of file names to their calculated checksums
@@ -206,16 +212,16 @@ public class DefaultValidationReportService implements ValidationReportService {
    */
   private Map<String, String> calculateArchiveChecksums(File archiveFile) throws IOException {
     Map<String, String> checksums = new HashMap<>();
+    MessageDigest digest = createDigest();
 
-    try (FileInputStream fis = new FileInputStream(archiveFile);
-        ZipArchiveInputStream zis = new ZipArchiveInputStream(fis)) {
-
-      ZipArchiveEntry entry;
-      while ((entry = zis.getNextZipEntry()) != null) {
+    // Entries are located through the central directory, which also lists appended deltas
+    try (ZipFile zipFile = new ZipFile(archiveFile)) {
+      for (ZipEntry entry : Collections.list(zipFile.entries())) {
         if (!entry.isDirectory() && !CHECKSUMS_FILE.equals(entry.getName())) {
-          byte[] content = readEntryContent(zis);
-          String checksum = calculateSHA256(content);
-          checksums.put(entry.getName(), checksum);
+          try (InputStream in = zipFile.getInputStream(entry)) {
+            new DigestInputStream(in, digest).transferTo(OutputStream.nullOutputStream());
+          }
+          checksums.put(entry.getName(), toHex(digest.digest()));
         }
       }
     }
@@ -224,47 +230,35 @@ public class DefaultValidationReportService implements ValidationReportService {
   }
 
   /**
-   * Reads the content of a ZIP entry.
+   * Creates a SHA-256 message digest.
    *
-   * @param zis the ZIP archive input stream
-   * @return the content as byte array
-   * @throws IOException if reading fails
+   * @return a new digest instance
+   * @throws IOException if algorithm is not available
    */
-  private byte[] readEntryContent(ZipArchiveInputStream zis) throws IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    byte[] buffer = new byte[8192];
-    int len;
-    while ((len = zis.read(buffer)) > 0) {
-      baos.write(buffer, 0, len);
+  private MessageDigest createDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance(SHA256_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException("SHA-256 algorithm not available", e);
     }
-    return baos.toByteArray();
   }
 
   /**
-   * Calculates SHA-256 checksum for the given data.
+   * Converts a digest to its hex string representation.
    *
-   * @param data the data to checksum
+   * @param hash the digest bytes
    * @return hex string representation of the checksum
-   * @throws IOException if algorithm is not available
    */
-  private String calculateSHA256(byte[] data) throws IOException {
-    try {
-      MessageDigest digest = MessageDigest.getInstance(SHA256_ALGORITHM);
-      byte[] hash = digest.digest(data);
-
-      // Convert to hex string
-      StringBuilder hexString = new StringBuilder();
-      for (byte b : hash) {
-        String hex = Integer.toHexString(0xff & b);
-        if (hex.length() == 1) {
-          hexString.append('0');
-        }
-        hexString.append(hex);
+  private String toHex(byte[] hash) {
+    StringBuilder hexString = new StringBuilder();
+    for (byte b : hash) {
+      String hex = Integer.toHexString(0xff & b);
+      if (hex.length() == 1) {
+        hexString.append('0');
       }
-      return hexString.toString();
-    } catch (NoSuchAlgorithmException e) {
-      throw new IOException("SHA-256 algorithm not available", e);
+      hexString.append(hex);
     }
+    return hexString.toString();
   }
 
   /**
@@ -55,7 +55,7 @@ public class DefaultValidationService implements ValidationService {
   }
 
   private void validateSchemas(CLDFArchive archive, List<String> errors) {
-    SchemaValidator schemaValidator = new SchemaValidator();
+    SchemaValidator schemaValidator = SchemaValidator.shared();
 
     validateManifestSchema(schemaValidator, archive, errors);
     validateCoreDataSchemas(schemaValidator, archive, errors);
@@ -0,0 +1,164 @@
+package app.crushlog.cldf.tool.services;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.Location;
+import app.crushlog.cldf.models.Session;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves query field names to accessors once per class and field name. Common fields of climbs,
+ * sessions and locations are read through their getters; any other field is read through a method
+ * handle to the declared field or its public getter. A field that cannot be resolved reads as null.
+ */
+@Slf4j
+final class FieldAccessors {
+
+  private static final Function<Object, Object> MISSING = item -> null;
+
+  private static final ClassValue<Map<String, Function<Object, Object>>> ACCESSORS =
+      new ClassValue<>() {
+        @Override
+        protected Map<String, Function<Object, Object>> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  private FieldAccessors() {}
+
+  /**
+   * Returns the accessor of a field.
+   *
+   * @param type the class of the items the accessor is applied to
+   * @param fieldName the field name
+   * @return a function returning the field value of an item, or null if it has none
+   */
+  static Function<Object, Object> forField(Class<?> type, String fieldName) {
+    return ACCESSORS.get(type).computeIfAbsent(fieldName, name -> resolve(type, name));
+  }
+
+  /**
+   * Returns the value of a field path such as {@code grades.grade}.
+   *
+   * @param item the item
+   * @param path the field names of the path
+   * @return the value, or null if any field on the path is null or missing
+   */
+  static Object getValue(Object item, String[] path) {
+    Object current = item;
+    for (String fieldName : path) {
+      if (current == null) {
+        return null;
+      }
+      current = forField(current.getClass(), fieldName).apply(current);
+    }
+    return current;
+  }
+
+  private static Function<Object, Object> resolve(Class<?> type, String fieldName) {
+    if (fieldName.isEmpty()) {
+      return MISSING;
+    }
+    Function<Object, Object> accessor = null;
+    if (Climb.class.isAssignableFrom(type)) {
+      accessor = climbAccessor(fieldName);
+    } else if (Session.class.isAssignableFrom(type)) {
+      accessor = sessionAccessor(fieldName);
+    } else if (Location.class.isAssignableFrom(type)) {
+      accessor = locationAccessor(fieldName);
+    }
+    return accessor != null ? accessor : reflectiveAccessor(type, fieldName);
+  }
+
+  private static Function<Object, Object> climbAccessor(String fieldName) {
+    return switch (fieldName) {
+      case "type" ->
+          item -> {
+            Climb climb = (Climb) item;
+            return climb.getType() != null ? climb.getType().name() : null;
+          };
+      case "grade" ->
+          item -> {
+            Climb climb = (Climb) item;
+            return climb.getGrades() != null ? climb.getGrades().getGrade() : null;
+          };
+      case "rating" -> item -> ((Climb) item).getRating();
+      case "date" -> item -> ((Climb) item).getDate();
+      case "routeName" -> item -> ((Climb) item).getRouteName();
+      case "finishType" -> item -> ((Climb) item).getFinishType();
+      case "attempts" -> item -> ((Climb) item).getAttempts();
+      case "isIndoor" -> item -> ((Climb) item).getIsIndoor();
+      default -> null;
+    };
+  }
+
+  private static Function<Object, Object> sessionAccessor(String fieldName) {
+    return switch (fieldName) {
+      case "location" -> item -> ((Session) item).getLocation();
+      case "date" -> item -> ((Session) item).getDate();
+      case "isIndoor" -> item -> ((Session) item).getIsIndoor();
+      default -> null;
+    };
+  }
+
+  private static Function<Object, Object> locationAccessor(String fieldName) {
+    return switch (fieldName) {
+      case "name" -> item -> ((Location) item).getName();
+      case "country" -> item -> ((Location) item).getCountry();
+      case "isIndoor" -> item -> ((Location) item).getIsIndoor();
+      default -> null;
+    };
+  }
+
+  private static Function<Object, Object> reflectiveAccessor(Class<?> type, String fieldName) {
+    MethodHandle handle = findHandle(type, fieldName);
+    if (handle == null) {
+      return MISSING;
+    }
+    if (handle.type().parameterCount() == 0) {
+      // Static fields and getters ignore the item
+      handle = MethodHandles.dropArguments(handle, 0, type);
+    }
+    MethodHandle getter = handle.asType(MethodType.methodType(Object.class, Object.class));
+    return item -> {
+      try {
+        return (Object) getter.invokeExact(item);
+      } catch (Throwable e) {
+        log.debug(
+            "Cannot read field {} on {}: {}", fieldName, type.getSimpleName(), e.getMessage());
+        return null;
+      }
+    };
+  }
+
+  private static MethodHandle findHandle(Class<?> type, String fieldName) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      Field field = type.getDeclaredField(fieldName);
+      field.setAccessible(true);
+      return lookup.unreflectGetter(field);
+    } catch (NoSuchFieldException e) {
+      // Try getter method
+      String getterName =
+          "get" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+      try {
+        Method getter = type.getMethod(getterName);
+        return lookup.unreflect(getter);
+      } catch (NoSuchMethodException | IllegalAccessException | RuntimeException ex) {
+        log.debug("Field {} not found on {}", fieldName, type.getSimpleName());
+        return null;
+      }
+    } catch (IllegalAccessException | RuntimeException e) {
+      log.debug("Cannot access field {} on {}", fieldName, type.getSimpleName());
+      return null;
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package app.crushlog.cldf.tool.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * A selection of fields to serialize, such as {@code date,grades.grade}. {@link #apply(Object)}
+ * wraps an item so that Jackson writes only the selected properties, in the order they were
+ * requested, straight from the item through the property writers of its bean serializer: no copy
+ * or intermediate map of the item is built, and properties that are not selected are never read.
+ *
+ * <p>Names are JSON property names. A name that is not a property, such as {@code grade} of a
+ * climb, is read like a query field through {@link FieldAccessors}. Dotted paths select fields of
+ * nested objects and of the elements of nested collections; unknown names and null values are
+ * left out. The property writers picked for each class are cached by the projection, so a
+ * projection must only be used with one {@code ObjectMapper} configuration.
+ */
+public final class FieldProjection {
+
+  /** The columns of a class that is not serialized as a bean */
+  private static final List<Column> NOT_A_BEAN = List.of();
+
+  /** The selected fields; a null projection selects the whole value */
+  private final Map<String, FieldProjection> fields = new LinkedHashMap<>();
+
+  private final Map<Class<?>, List<Column>> columns = new ConcurrentHashMap<>();
+
+  private FieldProjection() {}
+
+  /**
+   * Parses field paths.
+   *
+   * @param paths the field paths; blank entries are ignored and surrounding spaces trimmed
+   * @return the projection
+   */
+  public static FieldProjection of(List<String> paths) {
+    FieldProjection root = new FieldProjection();
+    for (String path : paths) {
+      String trimmed = path.trim();
+      if (!trimmed.isEmpty()) {
+        root.add(trimmed.split("\\."), 0);
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Wraps an item so that it serializes with the selected fields only.
+   *
+   * @param item the item
+   * @return the wrapped item
+   */
+  public Projected apply(Object item) {
+    return new Projected(item, this);
+  }
+
+  private void add(String[] path, int index) {
+    String name = path[index];
+    if (index == path.length - 1) {
+      fields.put(name, null);
+    } else if (!fields.containsKey(name) || fields.get(name) != null) {
+      fields.computeIfAbsent(name, key -> new FieldProjection()).add(path, index + 1);
+    }
+  }
+
+  private void write(Object value, JsonGenerator gen, SerializerProvider provider)
+      throws IOException {
+    if (value instanceof Collection<?> items) {
+      gen.writeStartArray();
+      for (Object item : items) {
+        if (item == null) {
+          gen.writeNull();
+        } else {
+          write(item, gen, provider);
+        }
+      }
+      gen.writeEndArray();
+    } else if (value instanceof Map<?, ?> map) {
+      gen.writeStartObject();
+      for (Map.Entry<String, FieldProjection> field : fields.entrySet()) {
+        writeField(field.getKey(), map.get(field.getKey()), field.getValue(), gen, provider);
+      }
+      gen.writeEndObject();
+    } else {
+      List<Column> properties = columns(value.getClass(), provider);
+      if (properties == null) {
+        provider.defaultSerializeValue(value, gen);
+        return;
+      }
+      gen.writeStartObject(value);
+      for (Column column : properties) {
+        column.write(value, gen, provider);
+      }
+      gen.writeEndObject();
+    }
+  }
+
+  private static void writeField(
+      String name,
+      Object value,
+      FieldProjection projection,
+      JsonGenerator gen,
+      SerializerProvider provider)
+      throws IOException {
+    if (value == null) {
+      return;
+    }
+    if (projection == null) {
+      provider.defaultSerializeField(name, value, gen);
+    } else {
+      gen.writeFieldName(name);
+      projection.write(value, gen, provider);
+    }
+  }
+
+  /** Returns the columns of a bean class, or null if the class is not serialized as a bean */
+  private List<Column> columns(Class<?> type, SerializerProvider provider)
+      throws JsonMappingException {
+    List<Column> cached = columns.get(type);
+    if (cached == null) {
+      cached = resolve(type, provider);
+      columns.put(type, cached);
+    }
+    return cached != NOT_A_BEAN ? cached : null;
+  }
+
+  private List<Column> resolve(Class<?> type, SerializerProvider provider)
+      throws JsonMappingException {
+    JsonSerializer<Object> serializer = provider.findValueSerializer(type);
+    if (!(serializer instanceof BeanSerializerBase)) {
+      return NOT_A_BEAN;
+    }
+    List<Column> resolved = new ArrayList<>(fields.size());
+    Map<String, PropertyWriter> writers = new HashMap<>();
+    serializer.properties().forEachRemaining(writer -> writers.put(writer.getName(), writer));
+    for (Map.Entry<String, FieldProjection> field : fields.entrySet()) {
+      String name = field.getKey();
+      PropertyWriter writer = writers.get(name);
+      Function<Object, Object> accessor =
+          writer == null ? FieldAccessors.forField(type, name) : null;
+      resolved.add(new Column(name, writer, accessor, field.getValue()));
+    }
+    return resolved;
+  }
+
+  /**
+   * A selected field of a class: written by the bean's property writer when it is a property,
+   * otherwise read through a query field accessor.
+   */
+  private record Column(
+      String name,
+      PropertyWriter writer,
+      Function<Object, Object> accessor,
+      FieldProjection projection) {
+
+    void write(Object bean, JsonGenerator gen, SerializerProvider provider) throws IOException {
+      try {
+        if (writer == null) {
+          writeField(name, accessor.apply(bean), projection, gen, provider);
+        } else if (projection == null) {
+          writer.serializeAsField(bean, gen, provider);
+        } else if (writer instanceof BeanPropertyWriter property) {
+          writeField(name, property.get(bean), projection, gen, provider);
+        }
+      } catch (IOException e) {
+        throw e;
+      } catch (Exception e) {
+        throw JsonMappingException.from(provider, "Cannot write field " + name, e);
+      }
+    }
+  }
+
+  /** An item serialized with the fields of a projection only */
+  @JsonSerialize(using = ProjectedSerializer.class)
+  public record Projected(Object item, FieldProjection projection) {}
+
+  /** Writes a {@link Projected} item */
+  static final class ProjectedSerializer extends StdSerializer<Projected> {
+
+    ProjectedSerializer() {
+      super(Projected.class);
+    }
+
+    @Override
+    public void serialize(Projected value, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      if (value.item() == null) {
+        gen.writeNull();
+      } else {
+        value.projection().write(value.item(), gen, provider);
+      }
+    }
+  }
+}
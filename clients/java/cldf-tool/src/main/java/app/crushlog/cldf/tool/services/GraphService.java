@@ -3,6 +3,7 @@ package app.crushlog.cldf.tool.services;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import app.crushlog.cldf.api.CLDFArchive;
 
@@ -35,6 +36,17 @@ public interface GraphService {
    */
   List<Map<String, Object>> executeCypher(String query, Map<String, Object> parameters);
 
+  /**
+   * Executes a Cypher query and passes each result row to a consumer as the database produces it,
+   * without collecting the rows.
+   *
+   * @param query the Cypher query to execute
+   * @param parameters query parameters
+   * @param consumer receives each result row
+   */
+  void executeCypher(
+      String query, Map<String, Object> parameters, Consumer<Map<String, Object>> consumer);
+
   /**
    * Exports the graph database content back to CLDF archive format.
    *
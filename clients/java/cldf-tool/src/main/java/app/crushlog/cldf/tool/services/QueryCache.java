@@ -0,0 +1,347 @@
+package app.crushlog.cldf.tool.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import app.crushlog.cldf.tool.utils.JsonUtils;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A cache of query results in a local directory, one JSON file per result. Results are keyed by
+ * the content digest of the queried archive, taken from its {@code checksums.json} and the
+ * checksums of its deltas, and by the normalized query, so any change to the archive's content
+ * selects new entries and stale ones simply age out. The least recently used entries are deleted
+ * once the directory grows past its size limit; a hit refreshes the modification time of its
+ * entry, which orders them.
+ *
+ * <p>Hits and misses are counted across runs in the directory's {@code stats} file. Writes and
+ * eviction hold a lock on the directory, so commands running side by side may share a cache.
+ */
+@Slf4j
+public final class QueryCache {
+
+  /** The default size limit of a cache directory */
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  /**
+   * The version of the stored results and of the query semantics behind them, part of every key.
+   * Raise it whenever a change to the tool changes what a query returns or how a result is stored,
+   * so results cached by earlier versions are no longer selected and simply age out.
+   */
+  public static final int FORMAT_VERSION = 1;
+
+  private static final String ALGORITHM = "SHA-256";
+  private static final Pattern CHECKSUMS_ENTRY =
+      Pattern.compile("^checksums(\\.delta-\\d{4,9})?\\.json$");
+  private static final Pattern ENTRY_NAME = Pattern.compile("^[0-9a-f]{64}\\.json$");
+  private static final String LOCK_FILE = ".lock";
+  private static final String STATS_FILE = "stats";
+  private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+  private final Path directory;
+  private final long maxBytes;
+  private final ObjectMapper mapper = JsonUtils.createCompactMapper();
+
+  /**
+   * Creates a cache.
+   *
+   * @param directory the cache directory, created when first written to
+   * @param maxBytes the total size the entries are trimmed to
+   */
+  public QueryCache(Path directory, long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the default cache directory: {@code cldf/queries} in {@code $XDG_CACHE_HOME}, or in
+   * {@code ~/.cache} when it is not set.
+   */
+  public static Path defaultDirectory() {
+    String cacheHome = System.getenv("XDG_CACHE_HOME");
+    Path base =
+        cacheHome != null && !cacheHome.isBlank()
+            ? Path.of(cacheHome)
+            : Path.of(System.getProperty("user.home"), ".cache");
+    return base.resolve("cldf").resolve("queries");
+  }
+
+  /**
+   * Digests the content of an archive through its checksums: {@code checksums.json} and those of
+   * its deltas, in name order. Only these entries are read.
+   *
+   * @param archive the archive file
+   * @return the hex digest, or null if the archive has no {@code checksums.json}
+   * @throws IOException if the archive cannot be read
+   */
+  public static String archiveDigest(File archive) throws IOException {
+    try (ZipFile zip = new ZipFile(archive)) {
+      List<String> names = new ArrayList<>();
+      zip.stream()
+          .map(ZipEntry::getName)
+          .filter(name -> CHECKSUMS_ENTRY.matcher(name).matches())
+          .forEach(names::add);
+      if (!names.contains("checksums.json")) {
+        return null;
+      }
+      names.sort(Comparator.naturalOrder());
+      MessageDigest digest = createDigest();
+      for (String name : names) {
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+          digest.update(in.readAllBytes());
+        }
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    }
+  }
+
+  /**
+   * Builds the key of a query. The query's parameters are ordered by name and null parameters
+   * left out, so the key does not depend on how the options were given. The key also covers
+   * {@link #FORMAT_VERSION}.
+   *
+   * @param archiveDigest the digest of the queried archive, see {@link #archiveDigest}
+   * @param command the name of the command running the query
+   * @param query the query parameters; values must serialize to JSON
+   * @return the key
+   * @throws IOException if the parameters cannot be serialized
+   */
+  public String key(String archiveDigest, String command, Map<String, ?> query)
+      throws IOException {
+    Map<String, Object> normalized = new TreeMap<>();
+    query.forEach(
+        (name, value) -> {
+          if (value != null) {
+            normalized.put(name, value instanceof Map<?, ?> map ? new TreeMap<>(map) : value);
+          }
+        });
+    MessageDigest digest = createDigest();
+    digest.update(
+        (FORMAT_VERSION + "\n" + archiveDigest + '\n' + command + '\n')
+            .getBytes(StandardCharsets.UTF_8));
+    digest.update(mapper.writeValueAsBytes(normalized));
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Collapses runs of whitespace outside quoted strings into single spaces and trims the ends, so
+   * that a filter or Cypher query keeps its key when it is only laid out differently.
+   *
+   * @param text the query text, or null
+   * @return the normalized text, or null
+   */
+  public static String normalize(String text) {
+    if (text == null) {
+      return null;
+    }
+    StringBuilder normalized = new StringBuilder(text.length());
+    char quote = 0;
+    boolean space = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        space = true;
+        continue;
+      }
+      if (space && !normalized.isEmpty()) {
+        normalized.append(' ');
+      }
+      space = false;
+      if (quote != 0 && c == '\\' && i + 1 < text.length()) {
+        // An escaped character never ends the string
+        normalized.append(c).append(text.charAt(++i));
+        continue;
+      }
+      if (quote == 0 && (c == '\'' || c == '"')) {
+        quote = c;
+      } else if (c == quote) {
+        quote = 0;
+      }
+      normalized.append(c);
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Looks up a result and counts the lookup as a hit or a miss.
+   *
+   * @param key the key of the query
+   * @return the cached result, if any
+   * @throws IOException if the cache cannot be read
+   */
+  public Optional<Map<String, Object>> get(String key) throws IOException {
+    Path entry = directory.resolve(key + ".json");
+    Map<String, Object> result = null;
+    try {
+      result = mapper.readValue(Files.readAllBytes(entry), MAP_TYPE);
+      Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+    } catch (NoSuchFileException e) {
+      // A miss
+    } catch (IOException e) {
+      // A truncated or unreadable entry is treated as missing and replaced on the next put
+      log.debug("Ignoring unreadable cache entry {}", entry, e);
+      result = null;
+    }
+    count(result != null);
+    return Optional.ofNullable(result);
+  }
+
+  /**
+   * Stores a result, then deletes the least recently used entries while the cache is over its
+   * size limit. A result larger than the limit is not stored.
+   *
+   * @param key the key of the query
+   * @param result the result; it must serialize to a JSON object
+   * @throws IOException if the cache cannot be written
+   */
+  public void put(String key, Object result) throws IOException {
+    byte[] content = mapper.writeValueAsBytes(result);
+    if (content.length > maxBytes) {
+      log.debug("Not caching a result of {} bytes", content.length);
+      return;
+    }
+    Files.createDirectories(directory);
+    Path entry = directory.resolve(key + ".json");
+    Path temp = Files.createTempFile(directory, key, ".tmp");
+    try {
+      Files.write(temp, content);
+      try {
+        Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    try (FileChannel channel = openLock();
+        FileLock lock = channel.lock()) {
+      evict();
+    }
+  }
+
+  /**
+   * Returns the hit and miss counts and the current size of the cache.
+   *
+   * @return the statistics, in the order they are reported
+   * @throws IOException if the cache cannot be read
+   */
+  public Map<String, Object> stats() throws IOException {
+    long[] counts = readCounts();
+    long entries = 0;
+    long size = 0;
+    for (Entry entry : entries()) {
+      entries++;
+      size += entry.size();
+    }
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("hits", counts[0]);
+    stats.put("misses", counts[1]);
+    stats.put("entries", entries);
+    stats.put("sizeBytes", size);
+    return stats;
+  }
+
+  private void count(boolean hit) throws IOException {
+    Files.createDirectories(directory);
+    try (FileChannel channel = openLock();
+        FileLock lock = channel.lock()) {
+      long[] counts = readCounts();
+      counts[hit ? 0 : 1]++;
+      Files.writeString(directory.resolve(STATS_FILE), counts[0] + " " + counts[1] + "\n");
+    }
+  }
+
+  /** Reads the hit and miss counts, which are zero until the first lookup */
+  private long[] readCounts() throws IOException {
+    try {
+      String[] counts = Files.readString(directory.resolve(STATS_FILE)).trim().split(" ");
+      return new long[] {Long.parseLong(counts[0]), Long.parseLong(counts[1])};
+    } catch (NoSuchFileException e) {
+      return new long[2];
+    } catch (RuntimeException e) {
+      log.debug("Resetting unreadable cache counts", e);
+      return new long[2];
+    }
+  }
+
+  private void evict() throws IOException {
+    List<Entry> entries = entries();
+    long size = entries.stream().mapToLong(Entry::size).sum();
+    entries.sort(Comparator.comparing(Entry::modified));
+    for (Entry entry : entries) {
+      if (size <= maxBytes) {
+        break;
+      }
+      Files.deleteIfExists(entry.path());
+      size -= entry.size();
+      log.debug("Evicted cache entry {}", entry.path().getFileName());
+    }
+  }
+
+  private List<Entry> entries() throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    if (!Files.isDirectory(directory)) {
+      return entries;
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (ENTRY_NAME.matcher(file.getFileName().toString()).matches()) {
+          try {
+            entries.add(
+                new Entry(file, Files.size(file), Files.getLastModifiedTime(file).toInstant()));
+          } catch (NoSuchFileException e) {
+            // Evicted by another command meanwhile
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  /** Opens the file whose lock guards the cache directory against other processes */
+  private FileChannel openLock() throws IOException {
+    return FileChannel.open(
+        directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+  }
+
+  private static MessageDigest createDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(ALGORITHM + " algorithm not available", e);
+    }
+  }
+
+  private record Entry(Path path, long size, Instant modified) {}
+}
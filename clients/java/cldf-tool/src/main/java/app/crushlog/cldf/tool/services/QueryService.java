@@ -2,6 +2,10 @@ package app.crushlog.cldf.tool.services;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import app.crushlog.cldf.api.ArchiveIndex;
 
 /**
  * Interface for querying and filtering CLDF data. Provides methods to apply filter expressions to
@@ -10,15 +14,71 @@ import java.util.Map;
 public interface QueryService {
 
   /**
-   * Applies a filter expression to a list of objects. Supports various operators (=, !=, &gt;=,
-   * &lt;=, &gt;, &lt;) and AND expressions.
+   * Applies a filter expression to a list of objects. Supports comparisons (=, !=, &gt;=, &lt;=,
+   * &gt;, &lt;), IN, BETWEEN, STARTSWITH and CONTAINS, combined with AND, OR, NOT and parentheses.
    *
    * @param items the list of objects to filter
-   * @param filterExpression the filter expression (e.g., "type=boulder AND attempts&gt;1")
+   * @param filterExpression the filter expression (e.g., "type=boulder AND (attempts&gt;1 OR
+   *     finishType IN (flash, onsight))")
    * @return filtered list of objects
    */
   List<Object> applyFilter(List<Object> items, String filterExpression);
 
+  /**
+   * Applies a filter expression to the climbs or sessions of an indexed archive. When the
+   * expression bounds the {@code date} field, only the items in that range of the index's date
+   * order are tested.
+   *
+   * @param index the archive index
+   * @param type {@code Climb.class} or {@code Session.class}
+   * @param filterExpression the filter expression
+   * @return the matching items in archive order
+   */
+  List<Object> applyFilter(ArchiveIndex index, Class<?> type, String filterExpression);
+
+  /**
+   * Tests items against a filter expression one at a time and passes each match to a consumer as
+   * soon as it is found, without collecting the matches.
+   *
+   * @param items the items to test
+   * @param filterExpression the filter expression, or null or blank to pass every item
+   * @param consumer receives the matches in list order and returns false to stop
+   */
+  void forEachMatch(List<?> items, String filterExpression, Predicate<Object> consumer);
+
+  /**
+   * Tests a stream of items against a filter expression one at a time and passes each match to a
+   * consumer as soon as it is read, so the items are never held together. Predicates are tested in
+   * the order they are written, as there is no list to sample their selectivity from.
+   *
+   * @param items the items to test; the caller closes the stream
+   * @param filterExpression the filter expression, or null or blank to pass every item
+   * @param consumer receives the matches in stream order and returns false to stop
+   */
+  void forEachMatch(Stream<?> items, String filterExpression, Predicate<Object> consumer);
+
+  /**
+   * Returns whether a filter expression bounds the {@code date} field, which lets {@link
+   * #forEachMatch(ArchiveIndex, Class, String, Predicate)} test only the items in that range.
+   *
+   * @param filterExpression the filter expression, or null
+   * @return true if the expression bounds the date
+   */
+  boolean boundsDate(String filterExpression);
+
+  /**
+   * Tests the climbs or sessions of an indexed archive against a filter expression, narrowed to
+   * the date range the expression bounds as in {@link #applyFilter(ArchiveIndex, Class, String)},
+   * and passes each match to a consumer as soon as it is found.
+   *
+   * @param index the archive index
+   * @param type {@code Climb.class} or {@code Session.class}
+   * @param filterExpression the filter expression
+   * @param consumer receives the matches in archive order and returns false to stop
+   */
+  void forEachMatch(
+      ArchiveIndex index, Class<?> type, String filterExpression, Predicate<Object> consumer);
+
   /**
    * Sorts a list of objects by the specified field.
    *
@@ -29,10 +89,25 @@ public interface QueryService {
   List<Object> sort(List<Object> items, String sortExpression);
 
   /**
-   * Filters objects to include only specified fields.
+   * Sorts a list of objects by the specified field and returns one page of the result. The sort
+   * value of each item is read once, and when a limit is given only the first {@code offset +
+   * limit} items in sort order are kept while reading, so a small page of a large list is never
+   * fully sorted. Without a sort expression the page is taken in list order.
+   *
+   * @param items the list of objects to sort
+   * @param sortExpression the sort expression (e.g., "-date"), or null to keep list order
+   * @param offset the number of sorted items to skip
+   * @param limit the maximum number of items to return, or 0 for no limit
+   * @return the sorted page
+   */
+  List<Object> sort(List<Object> items, String sortExpression, int offset, int limit);
+
+  /**
+   * Filters objects to include only specified fields. The returned items are views that serialize
+   * to JSON with the specified fields only; see {@link FieldProjection}.
    *
    * @param items the list of objects to filter
-   * @param fields the fields to include
+   * @param fields the fields to include, as JSON property names or dotted paths
    * @return list of objects with only specified fields
    */
   List<Object> filterFields(List<Object> items, List<String> fields);
@@ -0,0 +1,155 @@
+package app.crushlog.cldf.tool.services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.Location;
+import app.crushlog.cldf.models.Session;
+import app.crushlog.cldf.models.enums.ClimbType;
+import app.crushlog.cldf.models.enums.FinishType;
+import app.crushlog.cldf.utils.GradeScale;
+
+/**
+ * Statistics of items that are seen one at a time, such as the records of a streamed query. Each
+ * {@link #add(Object)} folds an item into running counts and the item is not kept, so the
+ * statistics of any number of items take the memory of their distinct grades, locations and
+ * countries only. {@link #toMap()} returns the same statistics as {@link
+ * QueryService#calculateStatistics(java.util.List, String)} for the same items.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class RunningStatistics {
+
+  private static final ClimbType[] CLIMB_TYPES = ClimbType.values();
+  private static final FinishType[] FINISH_TYPES = FinishType.values();
+
+  private long total;
+  private long indoorCount;
+  private Class<?> itemType;
+
+  private final long[] typeCounts = new long[CLIMB_TYPES.length];
+  private final long[] finishCounts = new long[FINISH_TYPES.length];
+  private long ratingSum;
+  private long ratingCount;
+  private long[] gradeCounts = new long[0];
+  private String[] gradeLabels = new String[0];
+  private final Map<String, Long> ungraded = new TreeMap<>();
+
+  private final Map<String, Long> groups = new HashMap<>();
+
+  /**
+   * Adds an item. The kind of statistics is set by the first item; later items of another kind are
+   * counted in the total only.
+   *
+   * @param item the item
+   */
+  public void add(Object item) {
+    total++;
+    if (itemType == null) {
+      itemType = item.getClass();
+    }
+    if (item instanceof Climb climb && itemType == Climb.class) {
+      addClimb(climb);
+    } else if (item instanceof Session session && itemType == Session.class) {
+      addGroup(session.getLocation(), session.getIsIndoor());
+    } else if (item instanceof Location location && itemType == Location.class) {
+      addGroup(location.getCountry(), location.getIsIndoor());
+    }
+  }
+
+  /**
+   * Returns the statistics of the items added so far.
+   *
+   * @return map containing statistical data
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> stats = new HashMap<>();
+    stats.put("total", (int) total);
+    if (total == 0) {
+      return stats;
+    }
+    if (itemType == Climb.class) {
+      putClimbStats(stats);
+    } else if (itemType == Session.class) {
+      stats.put("byLocation", new HashMap<>(groups));
+    } else if (itemType == Location.class) {
+      stats.put("byCountry", new HashMap<>(groups));
+    } else {
+      return stats;
+    }
+    stats.put("indoorCount", indoorCount);
+    stats.put("outdoorCount", total - indoorCount);
+    return stats;
+  }
+
+  private void addClimb(Climb climb) {
+    if (climb.getType() != null) {
+      typeCounts[climb.getType().ordinal()]++;
+    }
+    if (climb.getFinishType() != null) {
+      finishCounts[climb.getFinishType().ordinal()]++;
+    }
+    // Ratings outside the range of the table's rating column are skipped there as well
+    Integer rating = climb.getRating();
+    if (rating != null && rating >= 0 && rating <= Byte.MAX_VALUE) {
+      ratingSum += rating;
+      ratingCount++;
+    }
+    if (Boolean.TRUE.equals(climb.getIsIndoor())) {
+      indoorCount++;
+    }
+    Climb.GradeInfo grades = climb.getGrades();
+    if (grades == null || grades.getGrade() == null) {
+      return;
+    }
+    int ordinal = GradeScale.ordinal(grades);
+    if (ordinal == GradeScale.UNKNOWN || ordinal > Short.MAX_VALUE) {
+      ungraded.merge(grades.getGrade(), 1L, Long::sum);
+      return;
+    }
+    if (ordinal >= gradeCounts.length) {
+      int length = Math.max(ordinal + 1, gradeCounts.length * 2);
+      gradeCounts = Arrays.copyOf(gradeCounts, length);
+      gradeLabels = Arrays.copyOf(gradeLabels, length);
+    }
+    if (gradeLabels[ordinal] == null) {
+      gradeLabels[ordinal] = grades.getGrade();
+    }
+    gradeCounts[ordinal]++;
+  }
+
+  private void addGroup(String key, Boolean indoor) {
+    if (key != null) {
+      groups.merge(key, 1L, Long::sum);
+    }
+    if (Boolean.TRUE.equals(indoor)) {
+      indoorCount++;
+    }
+  }
+
+  private void putClimbStats(Map<String, Object> stats) {
+    Map<String, Long> byType = new HashMap<>();
+    for (ClimbType climbType : CLIMB_TYPES) {
+      if (typeCounts[climbType.ordinal()] > 0) {
+        byType.put(climbType.getValue(), typeCounts[climbType.ordinal()]);
+      }
+    }
+    stats.put("byType", byType);
+
+    Map<String, Long> byFinishType = new HashMap<>();
+    for (FinishType finishType : FINISH_TYPES) {
+      if (finishCounts[finishType.ordinal()] > 0) {
+        byFinishType.put(finishType.getValue(), finishCounts[finishType.ordinal()]);
+      }
+    }
+    stats.put("byFinishType", byFinishType);
+
+    double avgRating = ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+    stats.put("averageRating", Math.round(avgRating * 10) / 10.0);
+
+    stats.put("gradePyramid", DefaultQueryService.gradePyramid(gradeCounts, gradeLabels, ungraded));
+  }
+}
@@ -6,6 +6,7 @@ import java.util.stream.Collectors;
 
 import jakarta.inject.Singleton;
 
+import app.crushlog.cldf.api.ArchiveIndex;
 import app.crushlog.cldf.api.CLDFArchive;
 import app.crushlog.cldf.models.*;
 
@@ -16,6 +17,7 @@ public class TreeService {
       String name, String type, Map<String, Object> attributes, List<TreeNode> children) {}
 
   public TreeNode buildTree(CLDFArchive archive, boolean showDetails) {
+    ArchiveIndex index = ArchiveIndex.of(archive);
     Map<String, Object> rootAttrs = new LinkedHashMap<>();
     rootAttrs.put("version", archive.getManifest().getVersion());
     rootAttrs.put("created", archive.getManifest().getCreationDate());
@@ -29,7 +31,7 @@ public class TreeService {
             locations -> {
               List<TreeNode> locationNodes =
                   locations.stream()
-                      .map(location -> buildLocationNode(archive, location, showDetails))
+                      .map(location -> buildLocationNode(index, location, showDetails))
                       .collect(Collectors.toList());
               rootChildren.add(
                   new TreeNode(
@@ -43,7 +45,7 @@ public class TreeService {
             sessions -> {
               List<TreeNode> sessionNodes =
                   sessions.stream()
-                      .map(session -> buildSessionNode(archive, session))
+                      .map(session -> buildSessionNode(index, session))
                       .collect(Collectors.toList());
               rootChildren.add(
                   new TreeNode(
@@ -77,6 +79,7 @@ public class TreeService {
 
   public Map<String, Object> buildTreeData(
       CLDFArchive archive, String fileName, boolean showDetails) {
+    ArchiveIndex index = ArchiveIndex.of(archive);
     Map<String, Object> tree = new LinkedHashMap<>();
     tree.put("archive", fileName);
     tree.put("version", archive.getManifest().getVersion());
@@ -86,14 +89,14 @@ public class TreeService {
     tree.put(
         "locations",
         Optional.ofNullable(archive.getLocations()).orElse(Collections.emptyList()).stream()
-            .map(location -> buildLocationData(archive, location, showDetails))
+            .map(location -> buildLocationData(index, location, showDetails))
             .collect(Collectors.toList()));
 
     // Add sessions
     tree.put(
         "sessions",
         Optional.ofNullable(archive.getSessions()).orElse(Collections.emptyList()).stream()
-            .map(session -> buildSessionData(archive, session))
+            .map(session -> buildSessionData(index, session))
             .collect(Collectors.toList()));
 
     // Add tags
@@ -116,7 +119,7 @@ public class TreeService {
     return tree;
   }
 
-  private TreeNode buildLocationNode(CLDFArchive archive, Location location, boolean showDetails) {
+  private TreeNode buildLocationNode(ArchiveIndex index, Location location, boolean showDetails) {
     Map<String, Object> attrs = new LinkedHashMap<>();
     attrs.put("id", location.getId());
     attrs.put("type", location.getIsIndoor() ? "Indoor" : "Outdoor");
@@ -134,11 +137,11 @@ public class TreeService {
     List<TreeNode> children = new ArrayList<>();
 
     // Add sectors
-    List<Sector> sectors = getSectorsForLocation(archive, location.getId());
+    List<Sector> sectors = index.getSectorsForLocation(location.getId());
     if (!sectors.isEmpty()) {
       List<TreeNode> sectorNodes =
           sectors.stream()
-              .map(sector -> buildSectorNode(archive, sector))
+              .map(sector -> buildSectorNode(index, sector))
               .collect(Collectors.toList());
       children.add(
           new TreeNode("Sectors", "container", Map.of("count", sectors.size()), sectorNodes));
@@ -147,12 +150,12 @@ public class TreeService {
     return new TreeNode(location.getName(), "location", attrs, children);
   }
 
-  private TreeNode buildSectorNode(CLDFArchive archive, Sector sector) {
+  private TreeNode buildSectorNode(ArchiveIndex index, Sector sector) {
     Map<String, Object> attrs = Map.of("id", sector.getId());
     List<TreeNode> children = new ArrayList<>();
 
     // Add routes
-    List<Route> routes = getRoutesForSector(archive, sector.getId());
+    List<Route> routes = index.getRoutesForSector(sector.getId());
     if (!routes.isEmpty()) {
       List<TreeNode> routeNodes =
           routes.stream().map(this::buildRouteNode).collect(Collectors.toList());
@@ -171,28 +174,26 @@ public class TreeService {
     return new TreeNode(route.getName(), "route", attrs, Collections.emptyList());
   }
 
-  private TreeNode buildSessionNode(CLDFArchive archive, Session session) {
-    String locationName = getLocationName(archive, session.getLocationId());
+  private TreeNode buildSessionNode(ArchiveIndex index, Session session) {
+    String locationName = getLocationName(index, session.getLocationId());
     Map<String, Object> attrs = Map.of("id", session.getId(), "location", locationName);
 
     List<TreeNode> children = new ArrayList<>();
 
     // Add climbs
-    List<Climb> climbs = getClimbsForSession(archive, session.getId());
+    List<Climb> climbs = index.getClimbsForSession(session.getId());
     if (!climbs.isEmpty()) {
       List<TreeNode> climbNodes =
-          climbs.stream().map(climb -> buildClimbNode(archive, climb)).collect(Collectors.toList());
+          climbs.stream().map(climb -> buildClimbNode(index, climb)).collect(Collectors.toList());
       children.add(new TreeNode("Climbs", "container", Map.of("count", climbs.size()), climbNodes));
     }
 
     return new TreeNode(session.getDate().toString(), "session", attrs, children);
   }
 
-  private TreeNode buildClimbNode(CLDFArchive archive, Climb climb) {
+  private TreeNode buildClimbNode(ArchiveIndex index, Climb climb) {
     String routeName =
-        Optional.ofNullable(getRoute(archive, climb.getRouteId()))
-            .map(Route::getName)
-            .orElse("Unknown Route");
+        index.findRoute(climb.getRouteId()).map(Route::getName).orElse("Unknown Route");
 
     Map<String, Object> attrs = Map.of("finishType", climb.getFinishType().toString());
 
@@ -200,7 +201,7 @@ public class TreeService {
   }
 
   private Map<String, Object> buildLocationData(
-      CLDFArchive archive, Location location, boolean showDetails) {
+      ArchiveIndex index, Location location, boolean showDetails) {
     Map<String, Object> locationData = new LinkedHashMap<>();
     locationData.put("id", location.getId());
     locationData.put("name", location.getName());
@@ -222,8 +223,8 @@ public class TreeService {
 
     // Add sectors with their routes
     List<Map<String, Object>> sectorsData =
-        getSectorsForLocation(archive, location.getId()).stream()
-            .map(sector -> buildSectorData(archive, sector))
+        index.getSectorsForLocation(location.getId()).stream()
+            .map(sector -> buildSectorData(index, sector))
             .collect(Collectors.toList());
 
     if (!sectorsData.isEmpty()) {
@@ -233,14 +234,14 @@ public class TreeService {
     return locationData;
   }
 
-  private Map<String, Object> buildSectorData(CLDFArchive archive, Sector sector) {
+  private Map<String, Object> buildSectorData(ArchiveIndex index, Sector sector) {
     Map<String, Object> sectorData = new LinkedHashMap<>();
     sectorData.put("id", sector.getId());
     sectorData.put("name", sector.getName());
 
     // Add routes
     List<Map<String, Object>> routesData =
-        getRoutesForSector(archive, sector.getId()).stream()
+        index.getRoutesForSector(sector.getId()).stream()
             .map(
                 route -> {
                   Map<String, Object> routeMap = new LinkedHashMap<>();
@@ -259,22 +260,20 @@ public class TreeService {
     return sectorData;
   }
 
-  private Map<String, Object> buildSessionData(CLDFArchive archive, Session session) {
+  private Map<String, Object> buildSessionData(ArchiveIndex index, Session session) {
     Map<String, Object> sessionData = new LinkedHashMap<>();
     sessionData.put("id", session.getId());
     sessionData.put("date", session.getDate());
-    sessionData.put("location", getLocationName(archive, session.getLocationId()));
+    sessionData.put("location", getLocationName(index, session.getLocationId()));
 
     List<Map<String, Object>> climbsData =
-        getClimbsForSession(archive, session.getId()).stream()
+        index.getClimbsForSession(session.getId()).stream()
             .map(
                 climb -> {
                   Map<String, Object> climbMap = new LinkedHashMap<>();
                   climbMap.put(
                       "route",
-                      Optional.ofNullable(getRoute(archive, climb.getRouteId()))
-                          .map(Route::getName)
-                          .orElse("Unknown"));
+                      index.findRoute(climb.getRouteId()).map(Route::getName).orElse("Unknown"));
                   climbMap.put("finishType", climb.getFinishType().toString());
                   return climbMap;
                 })
@@ -294,41 +293,8 @@ public class TreeService {
         .orElse("No grade");
   }
 
-  private List<Sector> getSectorsForLocation(CLDFArchive archive, Integer locationId) {
-    return Optional.ofNullable(archive.getSectors()).orElse(Collections.emptyList()).stream()
-        .filter(s -> locationId.equals(s.getLocationId()))
-        .collect(Collectors.toList());
-  }
-
-  private List<Route> getRoutesForSector(CLDFArchive archive, Integer sectorId) {
-    return Optional.ofNullable(archive.getRoutes()).orElse(Collections.emptyList()).stream()
-        .filter(r -> sectorId.equals(r.getSectorId()))
-        .collect(Collectors.toList());
-  }
-
-  private List<Climb> getClimbsForSession(CLDFArchive archive, Integer sessionId) {
-    return Optional.ofNullable(archive.getClimbs()).orElse(Collections.emptyList()).stream()
-        .filter(c -> sessionId.equals(c.getSessionId()))
-        .collect(Collectors.toList());
-  }
-
-  private Route getRoute(CLDFArchive archive, Integer routeId) {
-    return Optional.ofNullable(archive.getRoutes())
-        .flatMap(routes -> routes.stream().filter(r -> routeId.equals(r.getId())).findFirst())
-        .orElse(null);
-  }
-
-  private String getLocationName(CLDFArchive archive, Integer locationId) {
-    if (locationId == null) return "Unknown";
-
-    return Optional.ofNullable(archive.getLocations())
-        .flatMap(
-            locations ->
-                locations.stream()
-                    .filter(l -> locationId.equals(l.getId()))
-                    .map(Location::getName)
-                    .findFirst())
-        .orElse("Unknown");
+  private String getLocationName(ArchiveIndex index, Integer locationId) {
+    return index.findLocation(locationId).map(Location::getName).orElse("Unknown");
   }
 
   private Map<String, String> convertGradesToMap(Route.Grades grades) {
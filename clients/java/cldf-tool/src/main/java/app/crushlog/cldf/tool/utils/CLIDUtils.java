@@ -59,6 +59,8 @@ import java.util.Optional;
  */
 public class CLIDUtils {
 
+  private static final String V1_PREFIX = "clid:v1:";
+
   private CLIDUtils() {
     // Utility class, prevent instantiation
   }
@@ -70,12 +72,12 @@ public class CLIDUtils {
    * @return Optional containing the entity type (e.g., "route", "location"), or empty if invalid
    */
   public static Optional<String> extractEntityType(String clid) {
-    if (!isValidV1CLID(clid)) {
+    int typeEnd = typeEnd(clid);
+    if (typeEnd < 0) {
       return Optional.empty();
     }
 
-    String[] parts = clid.split(":");
-    return Optional.of(parts[2]); // type is at index 2 in v1 format
+    return Optional.of(clid.substring(V1_PREFIX.length(), typeEnd));
   }
 
   /**
@@ -85,12 +87,12 @@ public class CLIDUtils {
    * @return Optional containing the UUID portion, or empty if invalid
    */
   public static Optional<String> extractUuid(String clid) {
-    if (!isValidV1CLID(clid)) {
+    int typeEnd = typeEnd(clid);
+    if (typeEnd < 0) {
       return Optional.empty();
     }
 
-    String[] parts = clid.split(":");
-    return Optional.of(parts[3]); // uuid is at index 3 in v1 format
+    return Optional.of(clid.substring(typeEnd + 1, contentEnd(clid)));
   }
 
   /**
@@ -100,33 +102,7 @@ public class CLIDUtils {
    * @return true if the CLID is valid v1 format, false otherwise
    */
   public static boolean isValidV1CLID(String clid) {
-    if (clid == null || !clid.startsWith("clid:")) {
-      return false;
-    }
-
-    String[] parts = clid.split(":");
-
-    // Must have exactly 4 parts: clid:v1:type:uuid
-    if (parts.length != 4) {
-      return false;
-    }
-
-    // Second part must be "v1"
-    if (!"v1".equals(parts[1])) {
-      return false;
-    }
-
-    // Third part (type) must not be empty
-    if (parts[2].isEmpty()) {
-      return false;
-    }
-
-    // Fourth part (uuid) must not be empty
-    if (parts[3].isEmpty()) {
-      return false;
-    }
-
-    return true;
+    return typeEnd(clid) >= 0;
   }
 
   /**
@@ -136,16 +112,47 @@ public class CLIDUtils {
    * @return Optional containing the custom URI (e.g., "cldf://route/uuid"), or empty if invalid
    */
   public static Optional<String> toCustomUri(String clid) {
-    if (!isValidV1CLID(clid)) {
+    int typeEnd = typeEnd(clid);
+    if (typeEnd < 0) {
       return Optional.empty();
     }
 
-    Optional<String> type = extractEntityType(clid);
-    Optional<String> uuid = extractUuid(clid);
+    return Optional.of(
+        "cldf://"
+            + clid.substring(V1_PREFIX.length(), typeEnd)
+            + "/"
+            + clid.substring(typeEnd + 1, contentEnd(clid)));
+  }
+
+  /**
+   * Locates the separator between the type and UUID of a v1 CLID without splitting it. The CLID
+   * must consist of exactly four non-empty colon-separated parts starting with {@code clid:v1};
+   * trailing colons are ignored.
+   *
+   * @return the index of the colon after the type, or -1 if the CLID is not valid v1 format
+   */
+  private static int typeEnd(String clid) {
+    if (clid == null || !clid.startsWith(V1_PREFIX)) {
+      return -1;
+    }
+
+    int end = contentEnd(clid);
+    int typeEnd = clid.indexOf(':', V1_PREFIX.length());
+    // Type and UUID must not be empty
+    if (typeEnd <= V1_PREFIX.length() || typeEnd >= end) {
+      return -1;
+    }
+    // The UUID must be the last part
+    int next = clid.indexOf(':', typeEnd + 1);
+    return next >= 0 && next < end ? -1 : typeEnd;
+  }
 
-    if (type.isPresent() && uuid.isPresent()) {
-      return Optional.of("cldf://" + type.get() + "/" + uuid.get());
+  /** Returns the length of the CLID without trailing colons */
+  private static int contentEnd(String clid) {
+    int end = clid.length();
+    while (end > 0 && clid.charAt(end - 1) == ':') {
+      end--;
     }
-    return Optional.empty();
+    return end;
   }
 }
@@ -0,0 +1,77 @@
+package app.crushlog.cldf.tool.utils;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes records as newline-delimited JSON: one compact JSON value per line. Each record is
+ * serialized straight into the buffer of a single {@link JsonGenerator}, which passes full buffers
+ * on to the stream, so records reach a reader while later ones are still being produced and no
+ * record is held as a string. Closing the writer flushes it but leaves the stream open.
+ */
+public final class NdjsonWriter implements Closeable, Flushable {
+
+  private final JsonGenerator generator;
+  private final ObjectWriter writer;
+  private long count;
+
+  /**
+   * Creates a writer.
+   *
+   * @param out the stream to write to
+   * @param mapper the mapper whose serialization settings are used; indentation is turned off
+   * @throws IOException if the generator cannot be created
+   */
+  public NdjsonWriter(OutputStream out, ObjectMapper mapper) throws IOException {
+    generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // Lines are ended explicitly, so values need no separator of their own
+    generator.setRootValueSeparator(null);
+    writer =
+        mapper
+            .writer()
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  }
+
+  /**
+   * Writes a record as one line.
+   *
+   * @param record the record
+   * @throws UncheckedIOException if the record cannot be written, so that records can be written
+   *     from callbacks
+   */
+  public void write(Object record) {
+    try {
+      writer.writeValue(generator, record);
+      generator.writeRaw('\n');
+      count++;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the number of records written */
+  public long getCount() {
+    return count;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    generator.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    generator.close();
+  }
+}
@@ -3,5 +3,7 @@ package app.crushlog.cldf.tool.utils;
 public enum OutputFormat {
   TEXT,
   JSON,
+  /** Newline-delimited JSON: one compact JSON value per line */
+  NDJSON,
   YAML
 }
@@ -1,5 +1,6 @@
 package app.crushlog.cldf.tool.utils;
 
+import java.io.IOException;
 import java.io.PrintStream;
 
 import app.crushlog.cldf.tool.models.CommandResult;
@@ -15,6 +16,7 @@ public class OutputHandler {
   private final PrintStream out;
   private final PrintStream err;
   private final ObjectMapper jsonMapper;
+  private boolean streamed;
 
   public OutputHandler(OutputFormat format, boolean quiet) {
     this(format, quiet, System.out, System.err);
@@ -36,6 +38,13 @@ public class OutputHandler {
     try {
       if (format == OutputFormat.JSON) {
         out.println(jsonMapper.writeValueAsString(result));
+      } else if (format == OutputFormat.NDJSON) {
+        // Keep stdout for records: a command that streamed them has nothing more to add
+        if (!result.isSuccess()) {
+          writeError(result.getMessage());
+        } else if (!streamed) {
+          out.println(JsonUtils.createCompactMapper().writeValueAsString(result));
+        }
       } else {
         if (result.getMessage() != null) {
           out.println(result.getMessage());
@@ -51,6 +60,8 @@ public class OutputHandler {
     try {
       if (format == OutputFormat.JSON) {
         err.println(jsonMapper.writeValueAsString(error));
+      } else if (format == OutputFormat.NDJSON) {
+        err.println(JsonUtils.createCompactMapper().writeValueAsString(error));
       } else {
         err.println("Error: " + error.getError().getMessage());
         if (error.getError().getSuggestion() != null) {
@@ -64,7 +75,7 @@ public class OutputHandler {
   }
 
   public void writeError(String message) {
-    if (format == OutputFormat.JSON) {
+    if (isStructured()) {
       ErrorResponse error =
           ErrorResponse.builder()
               .success(false)
@@ -77,19 +88,19 @@ public class OutputHandler {
   }
 
   public void writeInfo(String message) {
-    if (!quiet && format != OutputFormat.JSON) {
+    if (!quiet && !isStructured()) {
       err.println(message);
     }
   }
 
   public void writeWarning(String message) {
-    if (!quiet && format != OutputFormat.JSON) {
+    if (!quiet && !isStructured()) {
       err.println("Warning: " + message);
     }
   }
 
   public void writeDebug(String message) {
-    if (!quiet && format != OutputFormat.JSON) {
+    if (!quiet && !isStructured()) {
       log.debug(message);
     }
   }
@@ -118,4 +129,20 @@ public class OutputHandler {
   public boolean isJsonFormat() {
     return format == OutputFormat.JSON;
   }
+
+  /**
+   * Opens a writer of newline-delimited JSON records on stdout. Once records have been streamed,
+   * {@link #writeResult} no longer writes a successful result.
+   *
+   * @return the writer; closing it flushes stdout but leaves it open
+   * @throws IOException if the writer cannot be created
+   */
+  public NdjsonWriter openNdjson() throws IOException {
+    streamed = true;
+    return new NdjsonWriter(out, JsonUtils.createCompactMapper());
+  }
+
+  private boolean isStructured() {
+    return format == OutputFormat.JSON || format == OutputFormat.NDJSON;
+  }
 }
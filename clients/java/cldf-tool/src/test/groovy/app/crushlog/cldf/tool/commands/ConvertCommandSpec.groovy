@@ -360,6 +360,32 @@ class ConvertCommandSpec extends Specification {
         csvContent.contains("2023-07-15,Unknown,Minimal Route,BOULDER,,TOP,2,,")
     }
 
+    def "should stream climbs to NDJSON without reading the whole archive"() {
+        given: "an archive holding only climbs, which cannot be read whole without a manifest"
+        def file = tempDir.resolve("climbs-only.cldf")
+        new java.util.zip.ZipOutputStream(Files.newOutputStream(file)).withCloseable { zip ->
+            zip.putNextEntry(new java.util.zip.ZipEntry("checksums.json"))
+            zip.write('{"algorithm":"SHA-256"}'.bytes)
+            zip.closeEntry()
+            zip.putNextEntry(new java.util.zip.ZipEntry("climbs.json"))
+            zip.write('{"climbs":[{"id":1,"sessionId":1,"date":"2024-01-15","routeName":"Moon Walk","type":"boulder","finishType":"top","attempts":1},{"id":2,"sessionId":1,"date":"2024-01-16","routeName":"Sun Run","type":"route","finishType":"redpoint","attempts":2}]}'.bytes)
+            zip.closeEntry()
+        }
+        command.inputFile = file.toFile()
+        command.outputFile = tempDir.resolve("climbs.ndjson").toFile()
+        command.format = ConvertCommand.ConvertFormat.ndjson
+
+        when: "converting to NDJSON"
+        def result = command.execute()
+
+        then: "the count is that of the streamed climbs, one per line"
+        result.success
+        result.data.itemsConverted == 2
+        def lines = command.outputFile.readLines()
+        lines.size() == 2
+        lines.collect { new groovy.json.JsonSlurper().parseText(it).routeName } == ["Moon Walk", "Sun Run"]
+    }
+
     def "should handle ConversionResult class"() {
         given: "a ConversionResult instance"
         def result = new ConvertCommand.ConversionResult(42)
@@ -8,7 +8,10 @@ import app.crushlog.cldf.tool.services.CLDFService
 import app.crushlog.cldf.tool.services.QueryService
 import app.crushlog.cldf.tool.services.DefaultQueryService
 import app.crushlog.cldf.tool.utils.OutputFormat
+import app.crushlog.cldf.tool.utils.JsonUtils
 import app.crushlog.cldf.tool.utils.OutputHandler
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
 import spock.lang.Specification
 import spock.lang.TempDir
 
@@ -178,7 +181,7 @@ class QueryCommandSpec extends Specification {
     def "should query all data"() {
         given:
         command.selectType = DataType.ALL
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -198,7 +201,7 @@ class QueryCommandSpec extends Specification {
     def "should query climbs only"() {
         given:
         command.selectType = DataType.CLIMBS
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -214,7 +217,7 @@ class QueryCommandSpec extends Specification {
     def "should query sessions only"() {
         given:
         command.selectType = DataType.SESSIONS
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -230,7 +233,7 @@ class QueryCommandSpec extends Specification {
     def "should query locations only"() {
         given:
         command.selectType = DataType.LOCATIONS
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -247,7 +250,7 @@ class QueryCommandSpec extends Specification {
         given:
         command.selectType = DataType.CLIMBS
         command.limit = 2
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -263,7 +266,7 @@ class QueryCommandSpec extends Specification {
         given:
         command.selectType = DataType.CLIMBS
         command.offset = 1
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -280,7 +283,7 @@ class QueryCommandSpec extends Specification {
         command.selectType = DataType.CLIMBS
         command.limit = 1
         command.offset = 1
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -296,7 +299,7 @@ class QueryCommandSpec extends Specification {
         given:
         command.selectType = DataType.CLIMBS
         command.countOnly = true
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -311,7 +314,7 @@ class QueryCommandSpec extends Specification {
         given:
         command.selectType = DataType.CLIMBS
         command.includeStats = true
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -330,7 +333,7 @@ class QueryCommandSpec extends Specification {
         command.limit = 10
         command.offset = 5
         command.fields = "id,routeName,grade"
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -349,7 +352,7 @@ class QueryCommandSpec extends Specification {
     def "should handle empty results"() {
         given:
         command.selectType = DataType.ROUTES  // No routes in test archive
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -364,7 +367,7 @@ class QueryCommandSpec extends Specification {
     def "should query manifest"() {
         given:
         command.selectType = DataType.MANIFEST
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when:
         def result = command.execute()
@@ -380,7 +383,7 @@ class QueryCommandSpec extends Specification {
     def "should format text output for climbs"() {
         given:
         command.selectType = DataType.CLIMBS
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
         def result = CommandResult.builder()
             .success(true)
             .message("Query completed")
@@ -444,7 +447,7 @@ class QueryCommandSpec extends Specification {
         given: "a query with filter"
         command.selectType = DataType.CLIMBS
         command.filter = "type=boulder"
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "executing the command"
         def result = command.execute()
@@ -460,7 +463,7 @@ class QueryCommandSpec extends Specification {
         given: "a query with sorting"
         command.selectType = DataType.SESSIONS
         command.sortBy = "date"
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "executing the command"
         def result = command.execute()
@@ -475,7 +478,7 @@ class QueryCommandSpec extends Specification {
         given: "a query with field filtering"
         command.selectType = DataType.CLIMBS
         command.fields = "routeName,grade,date"
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "executing the command"
         def result = command.execute()
@@ -486,6 +489,131 @@ class QueryCommandSpec extends Specification {
         result.data.count >= 0
     }
     
+    def "should project JSON results onto the selected fields after computing statistics"() {
+        given: "a JSON query with field filtering and statistics"
+        command.selectType = DataType.CLIMBS
+        command.outputFormat = OutputFormat.JSON
+        command.fields = "routeName,grade"
+        command.includeStats = true
+        cldfService.open(inputFile) >> testArchive
+
+        when: "executing the command"
+        def result = command.execute()
+
+        then: "statistics see whole climbs while results serialize the selected fields only"
+        result.success
+        result.data.stats.total == result.data.count
+        result.data.stats.containsKey("byType")
+        def json = new JsonSlurper().parseText(JsonUtils.toJson(result.data.results, false)) as List<Map>
+        json.size() == result.data.count
+        json.every { it.keySet().every { key -> key in ["routeName", "grade"] } }
+    }
+
+    def "should stream NDJSON results one projected item per line"() {
+        given: "an NDJSON query with a limit and field filtering"
+        def stdout = new ByteArrayOutputStream()
+        command.output = new OutputHandler(OutputFormat.NDJSON, false, new PrintStream(stdout), System.err)
+        command.outputFormat = OutputFormat.NDJSON
+        command.selectType = DataType.CLIMBS
+        command.fields = "routeName"
+        command.limit = 2
+
+        when: "executing the command"
+        def result = command.execute()
+
+        then: "the climbs are streamed from the file without opening the archive"
+        1 * cldfService.streamClimbs(inputFile) >> testArchive.climbs.stream()
+        0 * cldfService.open(_)
+
+        and: "each written line is one climb with the selected field only"
+        result.success
+        result.data.count == 2
+        def lines = stdout.toString("UTF-8").readLines()
+        lines.size() == 2
+        lines.collect { new JsonSlurper().parseText(it) as Map } == testArchive.climbs.take(2).collect { [routeName: it.routeName] }
+    }
+
+    def "should stream an NDJSON count and statistics"() {
+        given: "an NDJSON output handler"
+        def stdout = new ByteArrayOutputStream()
+        command.output = new OutputHandler(OutputFormat.NDJSON, false, new PrintStream(stdout), System.err)
+        command.outputFormat = OutputFormat.NDJSON
+        command.selectType = DataType.CLIMBS
+        cldfService.streamClimbs(inputFile) >> { testArchive.climbs.stream() }
+
+        when: "counting climbs"
+        command.countOnly = true
+        command.execute()
+
+        then: "a single count line is written"
+        new JsonSlurper().parseText(stdout.toString("UTF-8").trim()) == [count: testArchive.climbs.size()]
+
+        when: "streaming climbs with statistics"
+        stdout.reset()
+        command.countOnly = false
+        command.includeStats = true
+        command.execute()
+
+        then: "the statistics of the written climbs follow them on the last line"
+        def lines = stdout.toString("UTF-8").readLines()
+        lines.size() == testArchive.climbs.size() + 1
+        def stats = (new JsonSlurper().parseText(lines.last()) as Map).stats
+        stats.total == testArchive.climbs.size()
+
+        and: "they match the statistics of the climbs as a list"
+        def expected = queryService.calculateStatistics(testArchive.climbs as List<Object>, "climb")
+        stats == new JsonSlurper().parseText(JsonOutput.toJson(expected))
+    }
+
+    def "should stream NDJSON climbs through the date index when the filter bounds the date"() {
+        given: "an NDJSON query with a date range"
+        def stdout = new ByteArrayOutputStream()
+        command.output = new OutputHandler(OutputFormat.NDJSON, false, new PrintStream(stdout), System.err)
+        command.outputFormat = OutputFormat.NDJSON
+        command.selectType = DataType.CLIMBS
+        command.fields = "routeName"
+        command.filter = "date>=2024-01-20"
+
+        when: "executing the command"
+        def result = command.execute()
+
+        then: "the opened archive is filtered through its date index instead of streamed"
+        1 * cldfService.open(inputFile) >> testArchive
+        0 * cldfService.streamClimbs(_)
+        result.data.count == 1
+        new JsonSlurper().parseText(stdout.toString("UTF-8").trim()) == [routeName: "The Bulge"]
+    }
+
+    def "should reuse cached JSON results while the archive is unchanged"() {
+        given: "a JSON query of an archive with checksums and a cache"
+        new java.util.zip.ZipOutputStream(new FileOutputStream(inputFile)).withCloseable { zip ->
+            zip.putNextEntry(new java.util.zip.ZipEntry("checksums.json"))
+            zip.write('{"algorithm":"SHA-256"}'.bytes)
+            zip.closeEntry()
+        }
+        command.outputFormat = OutputFormat.JSON
+        command.selectType = DataType.CLIMBS
+        command.filter = "type=boulder"
+        command.cacheOptions.enabled = true
+        command.cacheOptions.directory = tempDir.resolve("cache").toFile()
+        command.cacheOptions.maxMegabytes = 1
+
+        when: "running the query twice, the second time laid out differently"
+        def first = command.execute()
+        command.filter = "  type=boulder\n"
+        def second = command.execute()
+
+        then: "the archive is read once and the second result comes from the cache"
+        1 * cldfService.open(inputFile) >> testArchive
+        first.metadata.cache.status == "miss"
+        second.metadata.cache.status == "hit"
+        second.metadata.cache.hits == 1
+        second.metadata.cache.misses == 1
+        second.data.count == first.data.count
+        second.data.query.filter == "  type=boulder\n"
+        JsonUtils.toJson(second.data.results, false) == JsonUtils.toJson(first.data.results, false)
+    }
+
     def "should execute query for routes when archive has routes"() {
         given: "an archive with routes"
         command.selectType = DataType.ROUTES
@@ -494,7 +622,7 @@ class QueryCommandSpec extends Specification {
         
         archiveWithRoutes.hasRoutes() >> true
         archiveWithRoutes.getRoutes() >> routes
-        cldfService.read(inputFile) >> archiveWithRoutes
+        cldfService.open(inputFile) >> archiveWithRoutes
 
         when: "executing the command"
         def result = command.execute()
@@ -513,7 +641,7 @@ class QueryCommandSpec extends Specification {
         
         archiveWithSectors.hasSectors() >> true
         archiveWithSectors.getSectors() >> sectors
-        cldfService.read(inputFile) >> archiveWithSectors
+        cldfService.open(inputFile) >> archiveWithSectors
 
         when: "executing the command"
         def result = command.execute()
@@ -532,7 +660,7 @@ class QueryCommandSpec extends Specification {
         
         archiveWithTags.hasTags() >> true
         archiveWithTags.getTags() >> tags
-        cldfService.read(inputFile) >> archiveWithTags
+        cldfService.open(inputFile) >> archiveWithTags
 
         when: "executing the command"
         def result = command.execute()
@@ -551,7 +679,7 @@ class QueryCommandSpec extends Specification {
         
         archiveWithMedia.hasMedia() >> true
         archiveWithMedia.getMediaItems() >> mediaItems
-        cldfService.read(inputFile) >> archiveWithMedia
+        cldfService.open(inputFile) >> archiveWithMedia
 
         when: "executing the command"
         def result = command.execute()
@@ -567,7 +695,7 @@ class QueryCommandSpec extends Specification {
         command.selectType = DataType.CLIMBS
         def archiveWithNulls = Mock(CLDFArchive)
         archiveWithNulls.getClimbs() >> null
-        cldfService.read(inputFile) >> archiveWithNulls
+        cldfService.open(inputFile) >> archiveWithNulls
 
         when: "executing the command"
         def result = command.execute()
@@ -580,7 +708,7 @@ class QueryCommandSpec extends Specification {
     
     def "should execute query and handle CLDFService IOException"() {
         given: "a file that fails to read"
-        cldfService.read(inputFile) >> { throw new IOException("Invalid CLDF format") }
+        cldfService.open(inputFile) >> { throw new IOException("Invalid CLDF format") }
 
         when: "executing the command"
         def result = command.execute()
@@ -598,7 +726,7 @@ class QueryCommandSpec extends Specification {
         command.offset = 1
         command.fields = "routeName,grade"
         command.includeStats = true
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "executing the command"
         def result = command.execute()
@@ -623,7 +751,7 @@ class QueryCommandSpec extends Specification {
         command.limit = 5
         command.offset = 2
         command.fields = "name,country"
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "executing the command"
         def result = command.execute()
@@ -643,7 +771,7 @@ class QueryCommandSpec extends Specification {
         given: "a count only query"
         command.selectType = DataType.SESSIONS
         command.countOnly = true
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "executing the command"
         def result = command.execute()
@@ -660,7 +788,7 @@ class QueryCommandSpec extends Specification {
         given: "a query with statistics enabled"
         command.selectType = DataType.CLIMBS
         command.includeStats = true
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "executing the command"
         def result = command.execute()
@@ -911,7 +1039,7 @@ class QueryCommandSpec extends Specification {
             .climbs(null)
             .checksums(testArchive.checksums)
             .build()
-        cldfService.read(inputFile) >> archiveWithNulls
+        cldfService.open(inputFile) >> archiveWithNulls
 
         when: "executing the command"
         def result = command.execute()
@@ -942,7 +1070,7 @@ class QueryCommandSpec extends Specification {
             .build()
         
         command.clid = "clid:location:550e8400-e29b-41d4-a716-446655440001"
-        cldfService.read(inputFile) >> archiveWithCLID
+        cldfService.open(inputFile) >> archiveWithCLID
 
         when: "searching by CLID"
         def result = command.execute()
@@ -973,7 +1101,7 @@ class QueryCommandSpec extends Specification {
             .build()
         
         command.clid = "clid:route:660e8400-e29b-41d4-a716-446655440002"
-        cldfService.read(inputFile) >> archiveWithCLID
+        cldfService.open(inputFile) >> archiveWithCLID
 
         when: "searching by CLID"
         def result = command.execute()
@@ -1003,7 +1131,7 @@ class QueryCommandSpec extends Specification {
             .build()
         
         command.clid = "clid:sector:770e8400-e29b-41d4-a716-446655440003"
-        cldfService.read(inputFile) >> archiveWithCLID
+        cldfService.open(inputFile) >> archiveWithCLID
 
         when: "searching by CLID"
         def result = command.execute()
@@ -1036,7 +1164,7 @@ class QueryCommandSpec extends Specification {
             .build()
         
         command.clid = "clid:climb:880e8400-e29b-41d4-a716-446655440004"
-        cldfService.read(inputFile) >> archiveWithCLID
+        cldfService.open(inputFile) >> archiveWithCLID
 
         when: "searching by CLID"
         def result = command.execute()
@@ -1066,7 +1194,7 @@ class QueryCommandSpec extends Specification {
             .build()
         
         command.clid = "clid:session:990e8400-e29b-41d4-a716-446655440005"
-        cldfService.read(inputFile) >> archiveWithCLID
+        cldfService.open(inputFile) >> archiveWithCLID
 
         when: "searching by CLID"
         def result = command.execute()
@@ -1084,7 +1212,7 @@ class QueryCommandSpec extends Specification {
     def "should return empty result when CLID not found"() {
         given: "archive without matching CLID"
         command.clid = "clid:route:nonexistent-id"
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "searching by non-existent CLID"
         def result = command.execute()
@@ -1120,7 +1248,7 @@ class QueryCommandSpec extends Specification {
             .routes([route])
             .build()
         
-        cldfService.read(inputFile) >> archiveWithMultiple
+        cldfService.open(inputFile) >> archiveWithMultiple
 
         when: "searching for route CLID"
         command.clid = "clid:route:660e8400-e29b-41d4-a716-446655440002"
@@ -1165,7 +1293,7 @@ class QueryCommandSpec extends Specification {
             .build()
         
         command.clid = "clid:location:550e8400-e29b-41d4-a716-446655440001"
-        cldfService.read(inputFile) >> archiveWithMixed
+        cldfService.open(inputFile) >> archiveWithMixed
 
         when: "searching by CLID"
         def result = command.execute()
@@ -1181,7 +1309,7 @@ class QueryCommandSpec extends Specification {
     def "should include CLID in query info"() {
         given: "a CLID search"
         command.clid = "clid:route:test-id"
-        cldfService.read(inputFile) >> testArchive
+        cldfService.open(inputFile) >> testArchive
 
         when: "executing query"
         def result = command.execute()
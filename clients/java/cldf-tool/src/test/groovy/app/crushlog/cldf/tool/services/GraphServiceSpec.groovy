@@ -153,6 +153,28 @@ class GraphServiceSpec extends Specification {
         1 * mockTransaction.commit()
     }
 
+    def "should hand each Cypher row to a consumer as it is pulled"() {
+        given: "a graph database with query"
+        graphService.setGraphDb(mockGraphDb)
+        def query = "MATCH (n:Climb) RETURN n.routeName as name"
+        def parameters = [:]
+        def events = []
+
+        def result = Mock(Result)
+        result.hasNext() >>> [true, true, false]
+        result.next() >> { events << "pull"; ["name": "Route 1"] } >> { events << "pull"; ["name": "Route 2"] }
+
+        mockGraphDb.beginTx() >> mockTransaction
+        mockTransaction.execute(query, parameters) >> result
+
+        when: "streaming the query"
+        graphService.executeCypher(query, parameters, { row -> events << row.name })
+
+        then: "each row reaches the consumer before the next one is pulled"
+        events == ["pull", "Route 1", "pull", "Route 2"]
+        1 * mockTransaction.commit()
+    }
+
     def "should export graph back to CLDF archive"() {
         given: "a graph database with nodes"
         graphService.setGraphDb(mockGraphDb)
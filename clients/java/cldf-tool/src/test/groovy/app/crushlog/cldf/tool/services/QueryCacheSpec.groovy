@@ -0,0 +1,114 @@
+package app.crushlog.cldf.tool.services
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class QueryCacheSpec extends Specification {
+
+    @TempDir
+    Path tempDir
+
+    def "should digest an archive by its checksums"() {
+        given: "archives with the same and with different checksums"
+        def archive = zip("a.cldf", ["manifest.json": "{}", "climbs.json": "[]", "checksums.json": '{"climbs.json":"1"}'])
+        def rewritten = zip("b.cldf", ["checksums.json": '{"climbs.json":"1"}', "climbs.json": "[ ]"])
+        def appended = zip("c.cldf", ["checksums.json": '{"climbs.json":"1"}', "checksums.delta-0001.json": '{"climbs.delta-0001.json":"2"}'])
+        def unchecked = zip("d.cldf", ["manifest.json": "{}"])
+        def misnamed = zip("e.cldf", ["checksums.json": '{"climbs.json":"1"}', "checksums.delta-99999999999.json": "{}"])
+
+        expect: "only the checksums entries decide the digest"
+        QueryCache.archiveDigest(archive) == QueryCache.archiveDigest(rewritten)
+        QueryCache.archiveDigest(archive) != QueryCache.archiveDigest(appended)
+        QueryCache.archiveDigest(unchecked) == null
+        QueryCache.archiveDigest(misnamed) == QueryCache.archiveDigest(archive)
+    }
+
+    def "should normalize whitespace outside quoted strings"() {
+        expect:
+        QueryCache.normalize(text) == normalized
+
+        where:
+        text                                  | normalized
+        "  type=boulder\n  AND   attempts>1 " | "type=boulder AND attempts>1"
+        "name='Moon  Walk'   OR x=1"          | "name='Moon  Walk' OR x=1"
+        'n.name = "a \\"  b"  RETURN  n'      | 'n.name = "a \\"  b" RETURN n'
+        null                                  | null
+    }
+
+    def "should key queries independently of parameter order and null parameters"() {
+        given: "a cache"
+        def cache = new QueryCache(tempDir, QueryCache.DEFAULT_MAX_BYTES)
+
+        expect:
+        cache.key("d", "query", [select: "climbs", limit: 5, sort: null]) == cache.key("d", "query", [limit: 5, select: "climbs"])
+        cache.key("d", "query", [select: "climbs"]) != cache.key("e", "query", [select: "climbs"])
+        cache.key("d", "query", [select: "climbs"]) != cache.key("d", "graph-query", [select: "climbs"])
+    }
+
+    def "should count hits and misses across cache instances"() {
+        given: "a cache with one stored result"
+        def cache = new QueryCache(tempDir, QueryCache.DEFAULT_MAX_BYTES)
+        def key = cache.key("d", "query", [select: "climbs"])
+
+        when: "looking the result up before and after storing it"
+        def before = cache.get(key)
+        cache.put(key, [count: 2, results: [[routeName: "Moon Walk"]]])
+        def after = new QueryCache(tempDir, QueryCache.DEFAULT_MAX_BYTES).get(key)
+
+        then: "the first lookup misses and the second returns the stored result"
+        !before.present
+        after.get() == [count: 2, results: [[routeName: "Moon Walk"]]]
+        cache.stats() == [hits: 1L, misses: 1L, entries: 1L, sizeBytes: Files.size(tempDir.resolve(key + ".json"))]
+    }
+
+    def "should evict the least recently used results beyond the size limit"() {
+        given: "a cache holding about two results"
+        def value = [text: "x" * 1000]
+        def cache = new QueryCache(tempDir, 2100)
+        def keys = (0..2).collect { cache.key("d", "query", [page: it]) }
+
+        when: "storing two results, reading the first and storing a third"
+        cache.put(keys[0], value)
+        cache.put(keys[1], value)
+        Files.setLastModifiedTime(tempDir.resolve(keys[1] + ".json"), FileTime.fromMillis(0))
+        cache.get(keys[0])
+        cache.put(keys[2], value)
+
+        then: "the result that was not read is evicted"
+        cache.get(keys[0]).present
+        !cache.get(keys[1]).present
+        cache.get(keys[2]).present
+        cache.stats().entries == 2L
+    }
+
+    def "should not store results larger than the size limit"() {
+        given: "a small cache"
+        def cache = new QueryCache(tempDir, 100)
+        def key = cache.key("d", "query", [:])
+
+        when: "storing a large result"
+        cache.put(key, [text: "x" * 1000])
+
+        then: "nothing is stored"
+        !cache.get(key).present
+        cache.stats().entries == 0L
+    }
+
+    private File zip(String name, Map<String, String> entries) {
+        def file = tempDir.resolve(name).toFile()
+        new ZipOutputStream(new FileOutputStream(file)).withCloseable { zip ->
+            entries.each { entryName, content ->
+                zip.putNextEntry(new ZipEntry(entryName))
+                zip.write(content.getBytes("UTF-8"))
+                zip.closeEntry()
+            }
+        }
+        file
+    }
+}
@@ -1,7 +1,12 @@
 package app.crushlog.cldf.tool.services
 
+import app.crushlog.cldf.api.ArchiveIndex
+import app.crushlog.cldf.api.CLDFArchive
 import app.crushlog.cldf.models.enums.ClimbType
 import app.crushlog.cldf.models.enums.FinishType
+import app.crushlog.cldf.models.enums.GradeSystem
+import app.crushlog.cldf.tool.utils.JsonUtils
+import groovy.json.JsonSlurper
 import spock.lang.Specification
 import spock.lang.Unroll
 import app.crushlog.cldf.models.Climb
@@ -214,6 +219,41 @@ class QueryServiceSpec extends Specification {
         result[2].rating == 5
     }
 
+    def "should return a sorted page: sort=#sort offset=#offset limit=#limit"() {
+        given: "climbs with repeated and missing ratings"
+        def climbs = [5, null, 3, 5, 1, 3, null, 4].withIndex().collect { rating, i ->
+            createClimb("Route $i", ClimbType.ROUTE, "5.10a", rating)
+        }
+
+        expect: "the page of a stable sort of the whole list"
+        queryService.sort(climbs, sort, offset, limit)*.routeName == expected.collect { "Route $it".toString() }
+
+        where:
+        sort      | offset | limit || expected
+        "rating"  | 0      | 3     || [1, 6, 4]
+        "rating"  | 2      | 3     || [4, 2, 5]
+        "-rating" | 0      | 2     || [0, 3]
+        "-rating" | 6      | 5     || [1, 6]
+        "-rating" | 3      | 0     || [2, 5, 4, 1, 6]
+        "rating"  | 8      | 2     || []
+        null      | 5      | 2     || [5, 6]
+        ""        | 0      | 0     || [0, 1, 2, 3, 4, 5, 6, 7]
+    }
+
+    def "should select the same top climbs as a full sort"() {
+        given: "many climbs"
+        def random = new Random(7)
+        def climbs = (1..2000).collect {
+            def climb = createClimb("Route $it", ClimbType.BOULDER, "V1", random.nextInt(50))
+            climb.date = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365))
+            climb
+        }
+
+        expect:
+        queryService.sort(climbs, "-date", 0, 20) == queryService.sort(climbs, "-date").take(20)
+        queryService.sort(climbs, "rating", 100, 20) == queryService.sort(climbs, "rating").drop(100).take(20)
+    }
+
     def "should calculate climb statistics"() {
         given: "a list of climbs"
         def climbs = [
@@ -235,6 +275,41 @@ class QueryServiceSpec extends Specification {
         stats.outdoorCount == 2L
     }
 
+    def "should count climbs per grade across grade systems"() {
+        given: "climbs graded in different systems"
+        def climbs = ["V5", "5.10a", "7a", "Proj", "V5", "6A", "5.9"].collect {
+            createClimb("Route", ClimbType.BOULDER, it, 3)
+        }
+
+        when: "calculating statistics"
+        def stats = queryService.calculateStatistics(climbs, "climb")
+
+        then: "grades are ordered on one scale, with unknown grades last"
+        stats.gradePyramid.collect { it.key } == ["5.9", "5.10a", "V5", "7a", "Proj"]
+        stats.gradePyramid["V5"] == 2L
+
+        and: "equivalent grades share the label seen first"
+        stats.gradePyramid["5.10a"] == 2L
+    }
+
+    def "should accumulate the same statistics one item at a time"() {
+        given: "climbs with ratings, finishes and grades in different systems"
+        def climbs = [
+            createClimb("Route 1", ClimbType.ROUTE, "5.10a", 3, true, FinishType.ONSIGHT),
+            createClimb("Route 2", ClimbType.BOULDER, "V5", 4, false, FinishType.FLASH),
+            createClimb("Route 3", ClimbType.BOULDER, "6A", 5, false, FinishType.FLASH),
+            createClimb("Route 4", ClimbType.ROUTE, "Proj", 2, true, FinishType.REDPOINT)
+        ]
+
+        when: "adding the climbs to running statistics"
+        def running = new RunningStatistics()
+        climbs.each { running.add(it) }
+
+        then: "the statistics equal those of the list"
+        running.toMap() == queryService.calculateStatistics(climbs, "climb")
+        running.toMap().gradePyramid.collect { it.key } == ["5.10a", "V5", "Proj"]
+    }
+
     def "should calculate session statistics"() {
         given: "a list of sessions"
         def sessions = [
@@ -397,6 +472,209 @@ class QueryServiceSpec extends Specification {
         result[0].location == "Gym A"
     }
 
+    def "should compare grades across systems: #filter"() {
+        given: "climbs graded in different systems"
+        def climbs = ["5.10a", "V5", "6a+", "5.11b", "VII", "6A", "Proj"].collect {
+            createClimb(it, ClimbType.ROUTE, it, 3)
+        }
+
+        expect:
+        queryService.applyFilter(climbs, filter)*.routeName == expected
+
+        where:
+        filter                          | expected
+        "grade>=6a"                     | ["5.10a", "V5", "6a+", "5.11b", "VII", "6A"]
+        "grade<V3"                      | ["5.10a", "6A"]
+        "grade BETWEEN 6a+ AND 6c"      | ["6a+", "5.11b", "VII"]
+        "grades.grade>5.11a"            | ["V5", "5.11b"]
+        "grade>Proj"                    | []
+        "grade<6a OR grade>=V5"         | ["V5"]
+    }
+
+    def "should filter a climb's grade in its declared system"() {
+        given: "the same grade text declared as UIAA and as French"
+        def uiaa = createClimb("UIAA 7", ClimbType.ROUTE, "7", 3)
+        uiaa.grades.system = GradeSystem.UIAA
+        def french = createClimb("French 7", ClimbType.ROUTE, "7", 3)
+        french.grades.system = GradeSystem.FRENCH
+
+        expect: "filters agree with the sort order"
+        queryService.applyFilter([uiaa, french], "grade<7a")*.routeName == ["UIAA 7"]
+        queryService.applyFilter([uiaa, french], "grades.grade>=7a")*.routeName == ["French 7"]
+        queryService.sort([french, uiaa], "grade")*.routeName == ["UIAA 7", "French 7"]
+    }
+
+    def "should sort grades across systems"() {
+        given: "climbs graded in different systems"
+        def climbs = ["V5", "Proj", "5.10a", "6b", "VI-"].collect {
+            createClimb(it, ClimbType.ROUTE, it, 3)
+        }
+
+        expect:
+        queryService.sort(climbs, "grade")*.routeName == ["VI-", "5.10a", "6b", "V5", "Proj"]
+        queryService.sort(climbs, "-grade", 0, 2)*.routeName == ["Proj", "V5"]
+    }
+
+    def "should apply one filter to items of different types"() {
+        given: "climbs, sessions and locations in one list"
+        def items = [
+            createClimb("Indoor Route", ClimbType.ROUTE, "5.10a", 3, true),
+            createSession("Gym A", true),
+            createLocation("Crag B", "US", false),
+            createClimb("Outdoor Route", ClimbType.ROUTE, "5.10b", 4, false),
+            createLocation("Gym C", "US", true)
+        ]
+
+        when: "filtering by a field they all have"
+        def result = queryService.applyFilter(items, "isIndoor=true")
+
+        then: "matching items of every type are returned in order"
+        result.size() == 3
+        result[0] instanceof Climb
+        result[1] instanceof Session
+        result[2] instanceof Location
+    }
+
+    @Unroll
+    def "should not match values that cannot be compared: #filter"() {
+        given: "a climb with rating 4"
+        def climbs = [createClimb("Route", ClimbType.ROUTE, "V5", 4)]
+
+        expect: "neither the clause nor its negation matches"
+        queryService.applyFilter(climbs, filter).isEmpty()
+
+        where:
+        filter << ["rating=high", "rating!=high", "rating>high", "date<tomorrow", "grade>Vx", "finishType>top"]
+    }
+
+    def "should filter on fields without a dedicated accessor"() {
+        given: "climbs with heights"
+        def low = createClimb("Low", ClimbType.ROUTE, "5.10a", 3)
+        low.height = 8.5
+        def high = createClimb("High", ClimbType.ROUTE, "5.10a", 3)
+        high.height = 25.0
+
+        when: "filtering by height"
+        def result = queryService.applyFilter([low, high, new Climb()], "height>10.0")
+
+        then: "only the high climb is returned"
+        result.size() == 1
+        result[0].routeName == "High"
+    }
+
+    @Unroll
+    def "should evaluate boolean expressions: #filter"() {
+        given: "climbs with different types, grades and ratings"
+        def climbs = [
+            createClimb("Crimp Line", ClimbType.ROUTE, "5.10a", 3, true, FinishType.ONSIGHT),
+            createClimb("Slab Master", ClimbType.BOULDER, "V5", 4, false, FinishType.FLASH),
+            createClimb("The Crimp", ClimbType.ROUTE, "5.11b", 5, false, FinishType.REDPOINT),
+            createClimb("Roof", ClimbType.BOULDER, "V8", 2, true, FinishType.TOP)
+        ]
+
+        when: "filtering"
+        def result = queryService.applyFilter(climbs, filter)
+
+        then: "matching climbs are returned in their original order"
+        result*.routeName == expected
+
+        where:
+        filter                                                   | expected
+        "rating=3 OR rating=5"                                   | ["Crimp Line", "The Crimp"]
+        "type=boulder AND (rating>3 OR isIndoor=true)"           | ["Slab Master", "Roof"]
+        "NOT type=boulder"                                       | ["Crimp Line", "The Crimp"]
+        "NOT (rating<3 OR rating>4) AND isIndoor=false"          | ["Slab Master"]
+        "finishType IN (flash, onsight)"                         | ["Crimp Line", "Slab Master"]
+        "rating NOT IN (2, 3)"                                   | ["Slab Master", "The Crimp"]
+        "rating BETWEEN 3 AND 4"                                 | ["Crimp Line", "Slab Master"]
+        "grade BETWEEN V4 AND V6"                                | ["Slab Master", "The Crimp"]
+        "routeName CONTAINS crimp"                               | ["Crimp Line", "The Crimp"]
+        "routeName STARTSWITH 'the' OR routeName NOT CONTAINS m" | ["The Crimp", "Roof"]
+        "grades.grade IN ('V5', 'V8') AND rating>=3"             | ["Slab Master"]
+    }
+
+    def "should keep values containing keywords and parentheses"() {
+        given: "climbs whose names contain lower-case keywords and parentheses"
+        def climbs = [
+            createClimb("Rock and Roll (sit)", ClimbType.ROUTE, "5.10a", 3),
+            createClimb("Rock", ClimbType.ROUTE, "5.10a", 4)
+        ]
+
+        expect: "unquoted values run up to the next upper-case keyword"
+        queryService.applyFilter(climbs, "routeName=Rock and Roll (sit) AND rating=3").size() == 1
+        queryService.applyFilter(climbs, "(routeName=Rock) OR rating=3").size() == 2
+    }
+
+    def "should evaluate a planned filter the same as the written order"() {
+        given: "many climbs"
+        def climbs = (1..500).collect {
+            def climb = createClimb("Route $it", it % 2 ? ClimbType.ROUTE : ClimbType.BOULDER,
+                "V${it % 10}", it % 5, it % 3 == 0)
+            climb.height = (it % 40) as Double
+            climb
+        }
+        def filter = "routeName CONTAINS 1 AND (height>30 OR grade>=V7) AND NOT isIndoor=true"
+
+        when: "filtering"
+        def result = queryService.applyFilter(climbs, filter)
+
+        then: "the result matches a direct evaluation of the expression"
+        result == climbs.findAll {
+            it.routeName.contains("1") && (it.height > 30 || it.grades.grade.substring(1).toInteger() >= 7) && !it.isIndoor
+        }
+    }
+
+    def "should filter climbs of an archive through its date index"() {
+        given: "climbs in archive order, one without a date"
+        def climbs = [
+            createClimbWithDate("Late", LocalDate.of(2024, 3, 1)),
+            createClimbWithDate("Early", LocalDate.of(2024, 1, 1)),
+            createClimbWithDate("Middle", LocalDate.of(2024, 2, 1)),
+            createClimbWithDate("Undated", null)
+        ]
+        climbs[0].rating = 5
+        climbs[2].rating = 5
+        climbs[3].rating = 5
+        def index = ArchiveIndex.of(CLDFArchive.builder().climbs(climbs).build())
+
+        expect: "date bounds narrow the candidates and archive order is kept"
+        queryService.applyFilter(index, Climb, "date>=2024-01-15 AND rating>4")*.routeName == ["Late", "Middle"]
+        queryService.applyFilter(index, Climb, "date BETWEEN 2024-01-01 AND 2024-02-01")*.routeName == ["Early", "Middle"]
+
+        and: "filters without date bounds see every climb"
+        queryService.applyFilter(index, Climb, "rating=5")*.routeName == ["Late", "Middle", "Undated"]
+        queryService.applyFilter(index, Climb, "date<2024-02-01 OR rating=5")*.routeName == ["Late", "Early", "Middle", "Undated"]
+    }
+
+    def "should serialize only the selected fields"() {
+        given: "climbs with notes and beta"
+        def climb = createClimb("Route 1", ClimbType.BOULDER, "V5", 4)
+        climb.date = LocalDate.of(2024, 1, 10)
+        climb.notes = "long notes"
+        climb.beta = "long beta"
+        def unrated = createClimb("Route 2", ClimbType.ROUTE, "6a", null)
+
+        when: "projecting onto a few fields, an alias and a nested path"
+        def projected = queryService.filterFields([climb, unrated], ["date", "grade", "grades.grade", "rating", "unknown"])
+        def json = JsonUtils.toJson(projected, false)
+
+        then: "only those fields are written, in the requested order, without nulls"
+        json.startsWith('[{"date":"2024-01-10","grade":"V5","grades":{"grade":"V5"},"rating":4}')
+        !json.contains("notes")
+        !json.contains("beta")
+        !json.contains("unknown")
+        !json.contains("routeName")
+        new JsonSlurper().parseText(json)[1].keySet() == ["date", "grade", "grades"] as Set
+    }
+
+    def "should project maps and whole nested values"() {
+        expect:
+        JsonUtils.toJson(queryService.filterFields([[name: "Gym", country: "CZ", extra: 1]], ["name", "country"]), false) ==
+            '[{"name":"Gym","country":"CZ"}]'
+        JsonUtils.toJson(queryService.filterFields([createClimb("Route 1", ClimbType.ROUTE, "5.10a", 3)], ["grades", "grades.system"]), false) ==
+            '[{"grades":{"grade":"5.10a"}}]'
+    }
+
     // Helper methods
     private Climb createClimb(String name, ClimbType type, String grade, Integer rating,
                               Boolean isIndoor = true, FinishType finishType = null) {
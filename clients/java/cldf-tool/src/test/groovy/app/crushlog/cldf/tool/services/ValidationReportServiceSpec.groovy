@@ -104,6 +104,21 @@ class ValidationReportServiceSpec extends Specification {
 		report.errors.any { it.contains("Checksum mismatch") }
 	}
 
+	def "should reuse checksums computed while reading instead of re-reading the file"() {
+		given: "an archive carrying the digests computed by the reader"
+		def archive = createArchiveWithChecksums()
+		archive.computedChecksums = new HashMap<>(archive.checksums.files)
+		def missingFile = new File(tempDir.toFile(), "not-read.cldf")
+		def options = new ValidationOptions(false, true, false)
+
+		when: "validating with checksum verification"
+		def report = service.validateArchive(archive, "test.cldf", missingFile, options)
+
+		then: "the computed digests are used"
+		report.checksumResult.valid
+		report.checksumResult.results.values().every { it }
+	}
+
 	def "should skip checksum validation when disabled"() {
 		given: "validation options with checksums disabled"
 		def archive = createArchiveWithChecksums()
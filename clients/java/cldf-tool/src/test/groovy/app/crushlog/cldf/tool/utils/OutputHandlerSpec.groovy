@@ -2,6 +2,7 @@ package app.crushlog.cldf.tool.utils
 
 import app.crushlog.cldf.tool.models.CommandResult
 import app.crushlog.cldf.tool.models.ErrorResponse
+import groovy.json.JsonSlurper
 import spock.lang.Specification
 
 class OutputHandlerSpec extends Specification {
@@ -391,4 +392,48 @@ class OutputHandlerSpec extends Specification {
         stdout.toString() == ""
         stderr.toString() == ""
     }
-}
\ No newline at end of file
+
+    def "should write result as a single line in NDJSON format"() {
+        given: "an output handler in NDJSON format"
+        def handler = new OutputHandler(OutputFormat.NDJSON, false, out, err)
+
+        when: "writing a result and an info message"
+        handler.writeResult(CommandResult.builder().success(true).message("Done").data(["count": 5]).build())
+        handler.writeInfo("Reading archive")
+
+        then: "the result is one compact line on stdout"
+        def lines = stdout.toString().readLines()
+        lines.size() == 1
+        new JsonSlurper().parseText(lines[0]) == [success: true, message: "Done", data: [count: 5], exitCode: 0]
+        stderr.toString() == ""
+    }
+
+    def "should stream NDJSON records and not repeat a successful result"() {
+        given: "an output handler in NDJSON format"
+        def handler = new OutputHandler(OutputFormat.NDJSON, false, out, err)
+
+        when: "streaming records and then writing the result"
+        def writer = handler.openNdjson()
+        writer.write(["id": 1, "name": "a"])
+        writer.write(["id": 2, "name": "b"])
+        writer.close()
+        handler.writeResult(CommandResult.builder().success(true).message("Done").build())
+
+        then: "only the records are on stdout, one per line"
+        writer.count == 2
+        stdout.toString().readLines() == ['{"id":1,"name":"a"}', '{"id":2,"name":"b"}']
+    }
+
+    def "should write NDJSON failures to stderr"() {
+        given: "an output handler in NDJSON format"
+        def handler = new OutputHandler(OutputFormat.NDJSON, false, out, err)
+
+        when: "writing a failed result"
+        handler.writeResult(CommandResult.builder().success(false).message("Broken").exitCode(1).build())
+
+        then: "stdout is left empty and the error is one line on stderr"
+        stdout.toString() == ""
+        stderr.toString().readLines().size() == 1
+        stderr.toString().contains('"message":"Broken"')
+    }
+}
@@ -0,0 +1,155 @@
+package app.crushlog.cldf.tool.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import app.crushlog.cldf.clid.CLIDGenerator;
+import app.crushlog.cldf.clid.Coordinates;
+import app.crushlog.cldf.clid.Location;
+import app.crushlog.cldf.clid.Route;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares route CLID generation through the batch API, one call per route, and the original
+ * implementation that looked up a digest and ran regex normalizers for every route.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class CLIDGeneratorBenchmark {
+
+  private String locationCLID;
+  private List<Route> routes;
+
+  @Param({"100", "10000"})
+  private int routeCount;
+
+  @Setup
+  public void setup() {
+    locationCLID =
+        CLIDGenerator.generateLocationCLID(
+            Location.builder()
+                .country("US")
+                .state("CA")
+                .city("Yosemite Valley")
+                .name("El Capitan")
+                .coordinates(new Coordinates(37.734000, -119.637700))
+                .isIndoor(false)
+                .build());
+
+    String[] grades = {"5.9", "5.10 a", "5.11b", "5.12c", "5.13 d", "5.14a"};
+    Random random = new Random(42);
+    routes = new ArrayList<>(routeCount);
+    for (int i = 0; i < routeCount; i++) {
+      routes.add(
+          Route.builder()
+              .name("The  Route No. " + (i + 1) + " (Direct)")
+              .grade(grades[random.nextInt(grades.length)])
+              .firstAscent(
+                  random.nextBoolean()
+                      ? Route.FirstAscent.builder()
+                          .name("Climber " + random.nextInt(100))
+                          .year(1950 + random.nextInt(70))
+                          .build()
+                      : null)
+              .height(random.nextBoolean() ? 10.0 + random.nextInt(900) / 3.0 : null)
+              .build());
+    }
+  }
+
+  @Benchmark
+  public List<String> batchRouteCLIDs() {
+    return CLIDGenerator.generateRouteCLIDs(locationCLID, routes);
+  }
+
+  @Benchmark
+  public List<String> singleRouteCLIDs() {
+    List<String> clids = new ArrayList<>(routes.size());
+    for (Route route : routes) {
+      clids.add(CLIDGenerator.generateRouteCLID(locationCLID, route));
+    }
+    return clids;
+  }
+
+  @Benchmark
+  public List<String> legacyRouteCLIDs() throws NoSuchAlgorithmException {
+    List<String> clids = new ArrayList<>(routes.size());
+    for (Route route : routes) {
+      clids.add(legacyRouteCLID(locationCLID, route));
+    }
+    return clids;
+  }
+
+  /** The route CLID algorithm as it was before the generator was optimized. */
+  private static String legacyRouteCLID(String locationCLID, Route route)
+      throws NoSuchAlgorithmException {
+    String locationUuid = locationCLID.substring(locationCLID.lastIndexOf(':') + 1);
+    List<String> components =
+        Arrays.asList(
+            locationUuid,
+            legacyNormalize(route.name()),
+            route.grade().replaceAll("\\s", "").toLowerCase(),
+            route.firstAscent() != null && route.firstAscent().year() != null
+                ? route.firstAscent().year().toString()
+                : "",
+            route.firstAscent() != null && route.firstAscent().name() != null
+                ? legacyNormalize(route.firstAscent().name())
+                : "",
+            route.height() != null ? "%.1f".formatted(route.height()) : "");
+
+    MessageDigest md = MessageDigest.getInstance("SHA-1");
+    md.update(namespaceBytes());
+    byte[] hash = md.digest(String.join(":", components).getBytes(StandardCharsets.UTF_8));
+    hash[6] = (byte) ((hash[6] & 0x0f) | 0x50);
+    hash[8] = (byte) ((hash[8] & 0x3f) | 0x80);
+
+    long msb = 0;
+    long lsb = 0;
+    for (int i = 0; i < 8; i++) {
+      msb = (msb << 8) | (hash[i] & 0xff);
+      lsb = (lsb << 8) | (hash[i + 8] & 0xff);
+    }
+    return "clid:%s:%s:%s".formatted(CLIDGenerator.CURRENT_VERSION, "route", new UUID(msb, lsb));
+  }
+
+  private static String legacyNormalize(String input) {
+    return input
+        .toLowerCase()
+        .trim()
+        .replaceAll("\\s+", "-")
+        .replaceAll("[^\\w\\-]", "")
+        .replaceAll("-+", "-")
+        .replaceAll("(^-)|(-$)", "");
+  }
+
+  private static byte[] namespaceBytes() {
+    long msb = CLIDGenerator.CRUSHLOG_NAMESPACE.getMostSignificantBits();
+    long lsb = CLIDGenerator.CRUSHLOG_NAMESPACE.getLeastSignificantBits();
+    byte[] buffer = new byte[16];
+    for (int i = 0; i < 8; i++) {
+      buffer[i] = (byte) (msb >>> 8 * (7 - i));
+      buffer[i + 8] = (byte) (lsb >>> 8 * (7 - i));
+    }
+    return buffer;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(CLIDGeneratorBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+}
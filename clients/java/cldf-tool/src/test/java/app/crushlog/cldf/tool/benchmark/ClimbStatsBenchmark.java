@@ -0,0 +1,102 @@
+package app.crushlog.cldf.tool.benchmark;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import app.crushlog.cldf.api.ClimbTable;
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.enums.ClimbType;
+import app.crushlog.cldf.models.enums.FinishType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the climb statistics (type and finish type counts, average rating and indoor count)
+ * computed with stream collectors over climb objects with the {@link ClimbTable} kernels over
+ * primitive columns, once on the Vector API and once forced onto the scalar loops. The vector
+ * kernels need {@code --add-modules jdk.incubator.vector}, which the {@code jmh} task passes on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClimbStatsBenchmark {
+
+  private List<Climb> climbs;
+  private ClimbTable table;
+
+  @Param({"1000", "100000", "1000000"})
+  private int climbCount;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    climbs = new ArrayList<>(climbCount);
+    for (int i = 0; i < climbCount; i++) {
+      climbs.add(
+          Climb.builder()
+              .id(i + 1)
+              .type(ClimbType.values()[random.nextInt(ClimbType.values().length)])
+              .finishType(FinishType.values()[random.nextInt(FinishType.values().length)])
+              .isIndoor(random.nextBoolean())
+              .rating(random.nextInt(4) == 0 ? null : 1 + random.nextInt(5))
+              .build());
+    }
+    table = ClimbTable.of(climbs);
+  }
+
+  @Benchmark
+  public void streamCollectors(Blackhole blackhole) {
+    blackhole.consume(
+        climbs.stream()
+            .filter(c -> c.getType() != null)
+            .collect(Collectors.groupingBy(Climb::getType, Collectors.counting())));
+    blackhole.consume(
+        climbs.stream()
+            .filter(c -> c.getFinishType() != null)
+            .collect(Collectors.groupingBy(Climb::getFinishType, Collectors.counting())));
+    blackhole.consume(
+        climbs.stream()
+            .filter(c -> c.getRating() != null)
+            .mapToInt(Climb::getRating)
+            .average()
+            .orElse(0.0));
+    blackhole.consume(
+        climbs.stream().filter(c -> c.getIsIndoor() != null && c.getIsIndoor()).count());
+  }
+
+  @Benchmark
+  public void vectorKernels(Blackhole blackhole) {
+    columnStats(blackhole);
+  }
+
+  @Benchmark
+  @Fork(jvmArgsAppend = "-Dcldf.kernels.scalar=true")
+  public void scalarKernels(Blackhole blackhole) {
+    columnStats(blackhole);
+  }
+
+  private void columnStats(Blackhole blackhole) {
+    blackhole.consume(table.countBy(ClimbTable.Column.CLIMB_TYPE));
+    blackhole.consume(table.countBy(ClimbTable.Column.FINISH_TYPE));
+    blackhole.consume(table.average(ClimbTable.Column.RATING));
+    blackhole.consume(table.count(ClimbTable.Column.INDOOR, 1));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(ClimbStatsBenchmark.class.getSimpleName())
+            .jvmArgsPrepend("--add-modules", "jdk.incubator.vector")
+            .build();
+
+    new Runner(opt).run();
+  }
+}
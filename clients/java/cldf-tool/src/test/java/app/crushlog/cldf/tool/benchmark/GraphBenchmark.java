@@ -9,6 +9,7 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import app.crushlog.cldf.api.CLDFArchive;
+import app.crushlog.cldf.api.ClimbTable;
 import app.crushlog.cldf.models.*;
 import app.crushlog.cldf.models.enums.ClimbType;
 import app.crushlog.cldf.models.enums.FinishType;
@@ -32,6 +33,7 @@ public class GraphBenchmark {
   private DefaultGraphService graphService;
   private DefaultQueryService queryService;
   private CLDFArchive testArchive;
+  private ClimbTable climbTable;
 
   @Param({"100", "1000", "10000"})
   private int dataSize;
@@ -44,6 +46,7 @@ public class GraphBenchmark {
 
     // Create test data
     testArchive = createTestArchive(dataSize);
+    climbTable = ClimbTable.of(testArchive);
 
     // Initialize and load graph
     graphService.initialize();
@@ -88,6 +91,24 @@ public class GraphBenchmark {
     blackhole.consume(gradeCounts);
   }
 
+  @Benchmark
+  public void benchmarkColumnarGradePyramid(Blackhole blackhole) {
+    BitSet sends =
+        climbTable.rowsWhere(
+            ClimbTable.Column.FINISH_TYPE,
+            FinishType.REDPOINT.ordinal(),
+            FinishType.FLASH.ordinal(),
+            FinishType.ONSIGHT.ordinal());
+
+    blackhole.consume(climbTable.countBy(ClimbTable.Column.GRADE, sends));
+  }
+
+  @Benchmark
+  public void benchmarkClimbStatistics(Blackhole blackhole) {
+    blackhole.consume(
+        queryService.calculateStatistics(new ArrayList<>(testArchive.getClimbs()), "climb"));
+  }
+
   @Benchmark
   public void benchmarkGraphPartnerSearch(Blackhole blackhole) {
     var results =
@@ -0,0 +1,78 @@
+package app.crushlog.cldf.tool.benchmark;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.enums.ClimbType;
+import app.crushlog.cldf.models.enums.FinishType;
+import app.crushlog.cldf.tool.services.DefaultQueryService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures query filters over climbs, mixing fields with dedicated accessors, fields read through
+ * method handles, grade comparisons and date literals.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class QueryFilterBenchmark {
+
+  private List<Object> climbs;
+  private DefaultQueryService queryService;
+
+  @Param({"10000", "1000000"})
+  private int climbCount;
+
+  @Setup
+  public void setup() {
+    queryService = new DefaultQueryService();
+    Random random = new Random(42);
+    LocalDate start = LocalDate.of(2020, 1, 1);
+    climbs = new ArrayList<>(climbCount);
+    for (int i = 0; i < climbCount; i++) {
+      climbs.add(
+          Climb.builder()
+              .id(i + 1)
+              .date(start.plusDays(random.nextInt(1500)))
+              .routeName("Route " + i)
+              .type(random.nextBoolean() ? ClimbType.BOULDER : ClimbType.ROUTE)
+              .finishType(FinishType.values()[random.nextInt(FinishType.values().length)])
+              .grades(Climb.GradeInfo.builder().grade("V" + random.nextInt(12)).build())
+              .rating(1 + random.nextInt(5))
+              .height(5.0 + random.nextInt(30))
+              .isIndoor(random.nextBoolean())
+              .build());
+    }
+  }
+
+  @Benchmark
+  public List<Object> filterByAccessors() {
+    return queryService.applyFilter(climbs, "type=boulder AND rating>=4 AND date>=2022-06-01");
+  }
+
+  @Benchmark
+  public List<Object> filterByReflectedField() {
+    return queryService.applyFilter(climbs, "height>20.0 AND isIndoor=false");
+  }
+
+  @Benchmark
+  public List<Object> filterByGrade() {
+    return queryService.applyFilter(climbs, "grade>V5");
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder().include(QueryFilterBenchmark.class.getSimpleName()).forks(1).build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,76 @@
+package app.crushlog.cldf.tool.benchmark;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import app.crushlog.cldf.models.Climb;
+import app.crushlog.cldf.models.enums.ClimbType;
+import app.crushlog.cldf.models.enums.FinishType;
+import app.crushlog.cldf.tool.services.DefaultQueryService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares returning the latest climbs by sorting every climb with selecting a page of them while
+ * reading the sort values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+public class QuerySortBenchmark {
+
+  private List<Object> climbs;
+  private DefaultQueryService queryService;
+
+  @Param({"10000", "1000000"})
+  private int climbCount;
+
+  @Setup
+  public void setup() {
+    queryService = new DefaultQueryService();
+    Random random = new Random(42);
+    LocalDate start = LocalDate.of(2020, 1, 1);
+    climbs = new ArrayList<>(climbCount);
+    for (int i = 0; i < climbCount; i++) {
+      climbs.add(
+          Climb.builder()
+              .id(i + 1)
+              .date(start.plusDays(random.nextInt(1500)))
+              .routeName("Route " + i)
+              .type(ClimbType.BOULDER)
+              .finishType(FinishType.values()[random.nextInt(FinishType.values().length)])
+              .rating(1 + random.nextInt(5))
+              .build());
+    }
+  }
+
+  @Benchmark
+  public List<Object> sortAllThenPage() {
+    List<Object> sorted = queryService.sort(climbs, "-date");
+    return new ArrayList<>(sorted.subList(0, 20));
+  }
+
+  @Benchmark
+  public List<Object> selectLatestPage() {
+    return queryService.sort(climbs, "-date", 0, 20);
+  }
+
+  @Benchmark
+  public List<Object> selectDeepPage() {
+    return queryService.sort(climbs, "-date", 5000, 20);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder().include(QuerySortBenchmark.class.getSimpleName()).forks(1).build();
+
+    new Runner(opt).run();
+  }
+}